@@ -28,6 +28,10 @@ package java.lang;
 import sun.misc.FloatingDecimal;
 import java.util.Arrays;
 
+import static java.lang.String.COMPACT_STRINGS;
+import static java.lang.String.LATIN1;
+import static java.lang.String.UTF16;
+
 /**
  * A mutable sequence of characters.
  * <p>
@@ -42,9 +46,19 @@ import java.util.Arrays;
  */
 abstract class AbstractStringBuilder implements Appendable, CharSequence {
     /**
-     * The value is used for character storage.
+     * The value is used for character storage: one byte per char if
+     * {@code coder} is {@code LATIN1}, otherwise two bytes per char with
+     * the high byte first.
+     */
+    byte[] value;
+
+    /**
+     * The id of the encoding used to encode the bytes in {@code value}.
+     * A builder starts as {@code LATIN1} when compact strings are enabled
+     * and is inflated to {@code UTF16} the first time a char outside the
+     * Latin-1 range is stored; it is never compacted again.
      */
-    char[] value;
+    byte coder;
 
     /**
      * The count is the number of characters used.
@@ -61,7 +75,13 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * Creates an AbstractStringBuilder of the specified capacity.
      */
     AbstractStringBuilder(int capacity) {
-        value = new char[capacity];
+        if (COMPACT_STRINGS) {
+            value = new byte[capacity];
+            coder = LATIN1;
+        } else {
+            value = StringUTF16.newBytesFor(capacity);
+            coder = UTF16;
+        }
     }
 
     /**
@@ -82,7 +102,7 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * @return  the current capacity
      */
     public int capacity() {
-        return value.length;
+        return value.length >> coder;
     }
 
     /**
@@ -110,7 +130,7 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      */
     private void ensureCapacityInternal(int minimumCapacity) {
         // overflow-conscious code
-        if (minimumCapacity - value.length > 0)
+        if (minimumCapacity - (value.length >> coder) > 0)
             expandCapacity(minimumCapacity);
     }
 
@@ -119,15 +139,50 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * size check or synchronization.
      */
     void expandCapacity(int minimumCapacity) {
-        int newCapacity = value.length * 2 + 2;
+        int maxCapacity = Integer.MAX_VALUE >> coder;
+        int newCapacity = (value.length >> coder) * 2 + 2;
         if (newCapacity - minimumCapacity < 0)
             newCapacity = minimumCapacity;
-        if (newCapacity < 0) {
-            if (minimumCapacity < 0) // overflow
+        if (newCapacity < 0 || newCapacity > maxCapacity) {
+            if (minimumCapacity < 0 || minimumCapacity > maxCapacity) // overflow
                 throw new OutOfMemoryError();
-            newCapacity = Integer.MAX_VALUE;
+            newCapacity = maxCapacity;
+        }
+        value = Arrays.copyOf(value, newCapacity << coder);
+    }
+
+    /**
+     * If the coder is {@code LATIN1}, converts the value to {@code UTF16}
+     * keeping the capacity.  All {@code count} chars are converted, so
+     * callers that have already counted a gap for chars still to be
+     * written may call this at any point.
+     */
+    private void inflate() {
+        if (!isLatin1()) {
+            return;
+        }
+        byte[] buf = StringUTF16.newBytesFor(value.length);
+        StringLatin1.inflate(value, 0, buf, 0, count);
+        this.value = buf;
+        this.coder = UTF16;
+    }
+
+    /**
+     * Inflates this builder if str cannot be stored with its coder.
+     */
+    private void inflateIfNeededFor(String str) {
+        if (coder != str.coder()) {
+            inflate();
         }
-        value = Arrays.copyOf(value, newCapacity);
+    }
+
+    /**
+     * Moves the chars from offset to the end of the sequence n places,
+     * towards the end if n is positive and towards the start otherwise.
+     */
+    private void shift(int offset, int n) {
+        System.arraycopy(value, offset << coder,
+                         value, (offset + n) << coder, (count - offset) << coder);
     }
 
     /**
@@ -138,8 +193,8 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * returned by a subsequent call to the {@link #capacity()} method.
      */
     public void trimToSize() {
-        if (count < value.length) {
-            value = Arrays.copyOf(value, count);
+        if (count < capacity()) {
+            value = Arrays.copyOf(value, count << coder);
         }
     }
 
@@ -174,11 +229,9 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
         ensureCapacityInternal(newLength);
 
         if (count < newLength) {
-            for (; count < newLength; count++)
-                value[count] = '\0';
-        } else {
-            count = newLength;
+            Arrays.fill(value, count << coder, newLength << coder, (byte)0);
         }
+        count = newLength;
     }
 
     /**
@@ -201,7 +254,10 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
     public char charAt(int index) {
         if ((index < 0) || (index >= count))
             throw new StringIndexOutOfBoundsException(index);
-        return value[index];
+        if (isLatin1()) {
+            return (char)(value[index] & 0xff);
+        }
+        return StringUTF16.getChar(value, index);
     }
 
     /**
@@ -229,7 +285,10 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
         if ((index < 0) || (index >= count)) {
             throw new StringIndexOutOfBoundsException(index);
         }
-        return Character.codePointAt(value, index);
+        if (isLatin1()) {
+            return value[index] & 0xff;
+        }
+        return StringUTF16.codePointAt(value, index, count);
     }
 
     /**
@@ -258,7 +317,10 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
         if ((i < 0) || (i >= count)) {
             throw new StringIndexOutOfBoundsException(index);
         }
-        return Character.codePointBefore(value, index);
+        if (isLatin1()) {
+            return value[i] & 0xff;
+        }
+        return StringUTF16.codePointBefore(value, index);
     }
 
     /**
@@ -285,7 +347,10 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
         if (beginIndex < 0 || endIndex > count || beginIndex > endIndex) {
             throw new IndexOutOfBoundsException();
         }
-        return Character.codePointCountImpl(value, beginIndex, endIndex-beginIndex);
+        if (isLatin1()) {
+            return endIndex - beginIndex;
+        }
+        return StringUTF16.codePointCount(value, beginIndex, endIndex);
     }
 
     /**
@@ -311,8 +376,7 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
         if (index < 0 || index > count) {
             throw new IndexOutOfBoundsException();
         }
-        return Character.offsetByCodePointsImpl(value, 0, count,
-                                                index, codePointOffset);
+        return Character.offsetByCodePoints(this, index, codePointOffset);
     }
 
     /**
@@ -353,7 +417,13 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
             throw new StringIndexOutOfBoundsException(srcEnd);
         if (srcBegin > srcEnd)
             throw new StringIndexOutOfBoundsException("srcBegin > srcEnd");
-        System.arraycopy(value, srcBegin, dst, dstBegin, srcEnd - srcBegin);
+        if (dstBegin < 0 || dstBegin > dst.length - (srcEnd - srcBegin))
+            throw new ArrayIndexOutOfBoundsException(dstBegin);
+        if (isLatin1()) {
+            StringLatin1.getChars(value, srcBegin, srcEnd, dst, dstBegin);
+        } else {
+            StringUTF16.getChars(value, srcBegin, srcEnd, dst, dstBegin);
+        }
     }
 
     /**
@@ -373,7 +443,12 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
     public void setCharAt(int index, char ch) {
         if ((index < 0) || (index >= count))
             throw new StringIndexOutOfBoundsException(index);
-        value[index] = ch;
+        if (isLatin1() && StringLatin1.canEncode(ch)) {
+            value[index] = (byte)ch;
+        } else {
+            inflate();
+            StringUTF16.putChar(value, index, ch);
+        }
     }
 
     /**
@@ -413,7 +488,8 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
         if (str == null) str = "null";
         int len = str.length();
         ensureCapacityInternal(count + len);
-        str.getChars(0, len, value, count);
+        inflateIfNeededFor(str);
+        str.getBytes(value, count, coder);
         count += len;
         return this;
     }
@@ -422,9 +498,24 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
     public AbstractStringBuilder append(StringBuffer sb) {
         if (sb == null)
             return append("null");
-        int len = sb.length();
+        synchronized (sb) {
+            return append((AbstractStringBuilder) sb);
+        }
+    }
+
+    /**
+     * Appends the contents of another builder, which the caller
+     * synchronizes on if needed.
+     */
+    AbstractStringBuilder append(AbstractStringBuilder asb) {
+        if (asb == null)
+            return append("null");
+        int len = asb.length();
         ensureCapacityInternal(count + len);
-        sb.getChars(0, len, value, count);
+        if (coder != asb.getCoder()) {
+            inflate();
+        }
+        asb.getBytes(value, count, coder);
         count += len;
         return this;
     }
@@ -478,12 +569,72 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
                 + s.length());
         int len = end - start;
         ensureCapacityInternal(count + len);
-        for (int i = start, j = count; i < end; i++, j++)
-            value[j] = s.charAt(i);
-        count += len;
+        appendChars(s, start, end);
         return this;
     }
 
+    /**
+     * Appends chars off to end of s, inflating this builder at the first
+     * char that is not Latin-1.  count is only advanced over the chars
+     * already stored, in case s.charAt throws.
+     */
+    private void appendChars(CharSequence s, int off, int end) {
+        if (isLatin1()) {
+            byte[] val = this.value;
+            for (int i = off, j = count; i < end; i++) {
+                char c = s.charAt(i);
+                if (StringLatin1.canEncode(c)) {
+                    val[j++] = (byte)c;
+                } else {
+                    count = j;
+                    inflate();
+                    StringUTF16.putChars(this.value, j, s, i, end);
+                    count += end - i;
+                    return;
+                }
+            }
+        } else {
+            StringUTF16.putChars(this.value, count, s, off, end);
+        }
+        count += end - off;
+    }
+
+    /**
+     * Stores chars off to end of s from index onwards, inflating this
+     * builder at the first char that is not Latin-1.  The caller has
+     * already made room and counted the chars.
+     */
+    private void putCharsAt(int index, char[] s, int off, int end) {
+        if (isLatin1()) {
+            int n = StringUTF16.compress(s, off, value, index, end - off);
+            if (n == end - off) {
+                return;
+            }
+            index += n;
+            off += n;
+            inflate();
+        }
+        StringUTF16.putChars(this.value, index, s, off, end);
+    }
+
+    private void putCharsAt(int index, CharSequence s, int off, int end) {
+        if (isLatin1()) {
+            byte[] val = this.value;
+            for (int i = off, j = index; i < end; i++) {
+                char c = s.charAt(i);
+                if (StringLatin1.canEncode(c)) {
+                    val[j++] = (byte)c;
+                } else {
+                    inflate();
+                    StringUTF16.putChars(this.value, j, s, i, end);
+                    return;
+                }
+            }
+        } else {
+            StringUTF16.putChars(this.value, index, s, off, end);
+        }
+    }
+
     /**
      * Appends the string representation of the {@code char} array
      * argument to this sequence.
@@ -503,8 +654,9 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
     public AbstractStringBuilder append(char[] str) {
         int len = str.length;
         ensureCapacityInternal(count + len);
-        System.arraycopy(str, 0, value, count, len);
+        int index = count;
         count += len;
+        putCharsAt(index, str, 0, len);
         return this;
     }
 
@@ -531,10 +683,14 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      *         or {@code offset+len > str.length}
      */
     public AbstractStringBuilder append(char str[], int offset, int len) {
-        if (len > 0)                // let arraycopy report AIOOBE for len < 0
-            ensureCapacityInternal(count + len);
-        System.arraycopy(str, offset, value, count, len);
+        if ((offset < 0) || (len < 0) || (offset > str.length - len))
+            throw new ArrayIndexOutOfBoundsException(
+                "offset " + offset + ", len " + len + ", str.length "
+                + str.length);
+        ensureCapacityInternal(count + len);
+        int index = count;
         count += len;
+        putCharsAt(index, str, offset, offset + len);
         return this;
     }
 
@@ -551,20 +707,37 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * @return  a reference to this object.
      */
     public AbstractStringBuilder append(boolean b) {
-        if (b) {
-            ensureCapacityInternal(count + 4);
-            value[count++] = 't';
-            value[count++] = 'r';
-            value[count++] = 'u';
-            value[count++] = 'e';
+        ensureCapacityInternal(count + (b ? 4 : 5));
+        int count = this.count;
+        byte[] val = this.value;
+        if (isLatin1()) {
+            if (b) {
+                val[count++] = 't';
+                val[count++] = 'r';
+                val[count++] = 'u';
+                val[count++] = 'e';
+            } else {
+                val[count++] = 'f';
+                val[count++] = 'a';
+                val[count++] = 'l';
+                val[count++] = 's';
+                val[count++] = 'e';
+            }
         } else {
-            ensureCapacityInternal(count + 5);
-            value[count++] = 'f';
-            value[count++] = 'a';
-            value[count++] = 'l';
-            value[count++] = 's';
-            value[count++] = 'e';
+            if (b) {
+                StringUTF16.putChar(val, count++, 't');
+                StringUTF16.putChar(val, count++, 'r');
+                StringUTF16.putChar(val, count++, 'u');
+                StringUTF16.putChar(val, count++, 'e');
+            } else {
+                StringUTF16.putChar(val, count++, 'f');
+                StringUTF16.putChar(val, count++, 'a');
+                StringUTF16.putChar(val, count++, 'l');
+                StringUTF16.putChar(val, count++, 's');
+                StringUTF16.putChar(val, count++, 'e');
+            }
         }
+        this.count = count;
         return this;
     }
 
@@ -585,7 +758,12 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      */
     public AbstractStringBuilder append(char c) {
         ensureCapacityInternal(count + 1);
-        value[count++] = c;
+        if (isLatin1() && StringLatin1.canEncode(c)) {
+            value[count++] = (byte)c;
+        } else {
+            inflate();
+            StringUTF16.putChar(value, count++, c);
+        }
         return this;
     }
 
@@ -610,7 +788,11 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
                                      : Integer.stringSize(i);
         int spaceNeeded = count + appendedLength;
         ensureCapacityInternal(spaceNeeded);
-        Integer.getChars(i, spaceNeeded, value);
+        if (isLatin1()) {
+            Integer.getChars(i, spaceNeeded, value);
+        } else {
+            StringUTF16.getChars(i, spaceNeeded, value);
+        }
         count = spaceNeeded;
         return this;
     }
@@ -636,7 +818,11 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
                                      : Long.stringSize(l);
         int spaceNeeded = count + appendedLength;
         ensureCapacityInternal(spaceNeeded);
-        Long.getChars(l, spaceNeeded, value);
+        if (isLatin1()) {
+            Long.getChars(l, spaceNeeded, value);
+        } else {
+            StringUTF16.getChars(l, spaceNeeded, value);
+        }
         count = spaceNeeded;
         return this;
     }
@@ -698,7 +884,7 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
             throw new StringIndexOutOfBoundsException();
         int len = end - start;
         if (len > 0) {
-            System.arraycopy(value, start+len, value, start, count-end);
+            shift(end, -len);
             count -= len;
         }
         return this;
@@ -724,16 +910,13 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * {@code codePoint} isn't a valid Unicode code point
      */
     public AbstractStringBuilder appendCodePoint(int codePoint) {
-        final int count = this.count;
-
         if (Character.isBmpCodePoint(codePoint)) {
-            ensureCapacityInternal(count + 1);
-            value[count] = (char) codePoint;
-            this.count = count + 1;
+            return append((char)codePoint);
         } else if (Character.isValidCodePoint(codePoint)) {
             ensureCapacityInternal(count + 2);
-            Character.toSurrogates(codePoint, value, count);
-            this.count = count + 2;
+            inflate();
+            StringUTF16.putChar(value, count++, Character.highSurrogate(codePoint));
+            StringUTF16.putChar(value, count++, Character.lowSurrogate(codePoint));
         } else {
             throw new IllegalArgumentException();
         }
@@ -760,7 +943,7 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
     public AbstractStringBuilder deleteCharAt(int index) {
         if ((index < 0) || (index >= count))
             throw new StringIndexOutOfBoundsException(index);
-        System.arraycopy(value, index+1, value, index, count-index-1);
+        shift(index + 1, -1);
         count--;
         return this;
     }
@@ -797,9 +980,9 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
         int len = str.length();
         int newCount = count + len - (end - start);
         ensureCapacityInternal(newCount);
-
-        System.arraycopy(value, end, value, start + len, count - end);
-        str.getChars(value, start);
+        inflateIfNeededFor(str);
+        shift(end, newCount - count);
+        str.getBytes(value, start, coder);
         count = newCount;
         return this;
     }
@@ -870,7 +1053,10 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
             throw new StringIndexOutOfBoundsException(end);
         if (start > end)
             throw new StringIndexOutOfBoundsException(end - start);
-        return new String(value, start, end - start);
+        if (isLatin1()) {
+            return StringLatin1.newString(value, start, end - start);
+        }
+        return StringUTF16.newString(value, start, end - start);
     }
 
     /**
@@ -904,9 +1090,9 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
                 "offset " + offset + ", len " + len + ", str.length "
                 + str.length);
         ensureCapacityInternal(count + len);
-        System.arraycopy(value, index, value, index + len, count - index);
-        System.arraycopy(str, offset, value, index, len);
+        shift(index, len);
         count += len;
+        putCharsAt(index, str, offset, offset + len);
         return this;
     }
 
@@ -971,9 +1157,10 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
             str = "null";
         int len = str.length();
         ensureCapacityInternal(count + len);
-        System.arraycopy(value, offset, value, offset + len, count - offset);
-        str.getChars(value, offset);
+        inflateIfNeededFor(str);
+        shift(offset, len);
         count += len;
+        str.getBytes(value, offset, coder);
         return this;
     }
 
@@ -1006,9 +1193,9 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
             throw new StringIndexOutOfBoundsException(offset);
         int len = str.length;
         ensureCapacityInternal(count + len);
-        System.arraycopy(value, offset, value, offset + len, count - offset);
-        System.arraycopy(str, 0, value, offset, len);
+        shift(offset, len);
         count += len;
+        putCharsAt(offset, str, 0, len);
         return this;
     }
 
@@ -1097,11 +1284,9 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
                 + s.length());
         int len = end - start;
         ensureCapacityInternal(count + len);
-        System.arraycopy(value, dstOffset, value, dstOffset + len,
-                         count - dstOffset);
-        for (int i=start; i<end; i++)
-            value[dstOffset++] = s.charAt(i);
+        shift(dstOffset, len);
         count += len;
+        putCharsAt(dstOffset, s, start, end);
         return this;
     }
 
@@ -1149,8 +1334,14 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      */
     public AbstractStringBuilder insert(int offset, char c) {
         ensureCapacityInternal(count + 1);
-        System.arraycopy(value, offset, value, offset + 1, count - offset);
-        value[offset] = c;
+        if (isLatin1() && StringLatin1.canEncode(c)) {
+            shift(offset, 1);
+            value[offset] = (byte)c;
+        } else {
+            inflate();
+            shift(offset, 1);
+            StringUTF16.putChar(value, offset, c);
+        }
         count += 1;
         return this;
     }
@@ -1286,8 +1477,7 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      *            <code>null</code>.
      */
     public int indexOf(String str, int fromIndex) {
-        return String.indexOf(value, 0, count,
-                              str.toCharArray(), 0, str.length(), fromIndex);
+        return String.indexOf(value, coder, count, str, fromIndex);
     }
 
     /**
@@ -1330,8 +1520,7 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      *          <code>null</code>.
      */
     public int lastIndexOf(String str, int fromIndex) {
-        return String.lastIndexOf(value, 0, count,
-                              str.toCharArray(), 0, str.length(), fromIndex);
+        return String.lastIndexOf(value, coder, count, str, fromIndex);
     }
 
     /**
@@ -1357,27 +1546,37 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
      * @return  a reference to this object.
      */
     public AbstractStringBuilder reverse() {
-        boolean hasSurrogate = false;
+        byte[] val = this.value;
         int n = count - 1;
+        if (isLatin1()) {
+            // No surrogates can occur in Latin-1
+            for (int j = (n-1) >> 1; j >= 0; --j) {
+                byte temp = val[j];
+                val[j] = val[n - j];
+                val[n - j] = temp;
+            }
+            return this;
+        }
+        boolean hasSurrogate = false;
         for (int j = (n-1) >> 1; j >= 0; --j) {
-            char temp = value[j];
-            char temp2 = value[n - j];
+            char temp = StringUTF16.getChar(val, j);
+            char temp2 = StringUTF16.getChar(val, n - j);
             if (!hasSurrogate) {
                 hasSurrogate = (temp >= Character.MIN_SURROGATE && temp <= Character.MAX_SURROGATE)
                     || (temp2 >= Character.MIN_SURROGATE && temp2 <= Character.MAX_SURROGATE);
             }
-            value[j] = temp2;
-            value[n - j] = temp;
+            StringUTF16.putChar(val, j, temp2);
+            StringUTF16.putChar(val, n - j, temp);
         }
         if (hasSurrogate) {
             // Reverse back all valid surrogate pairs
             for (int i = 0; i < count - 1; i++) {
-                char c2 = value[i];
+                char c2 = StringUTF16.getChar(val, i);
                 if (Character.isLowSurrogate(c2)) {
-                    char c1 = value[i + 1];
+                    char c1 = StringUTF16.getChar(val, i + 1);
                     if (Character.isHighSurrogate(c1)) {
-                        value[i++] = c1;
-                        value[i] = c2;
+                        StringUTF16.putChar(val, i++, c1);
+                        StringUTF16.putChar(val, i, c2);
                     }
                 }
             }
@@ -1400,8 +1599,48 @@ abstract class AbstractStringBuilder implements Appendable, CharSequence {
     /**
      * Needed by <tt>String</tt> for the contentEquals method.
      */
-    final char[] getValue() {
+    final byte[] getValue() {
         return value;
     }
 
+    final byte getCoder() {
+        return COMPACT_STRINGS ? coder : UTF16;
+    }
+
+    final boolean isLatin1() {
+        return COMPACT_STRINGS && coder == LATIN1;
+    }
+
+    /**
+     * Copies the chars of this sequence into dst starting at dstBegin,
+     * encoded as coder, which must be UTF16 unless this builder is
+     * LATIN1.  This method doesn't perform any range checking.
+     */
+    void getBytes(byte dst[], int dstBegin, byte coder) {
+        if (this.coder == coder) {
+            System.arraycopy(value, 0, dst, dstBegin << coder, count << coder);
+        } else {        // this.coder == LATIN1 && coder == UTF16
+            StringLatin1.inflate(value, 0, dst, dstBegin, count);
+        }
+    }
+
+    /**
+     * Sets the contents from the char[] of the serialized form, keeping
+     * its length as the capacity.  Used by the readObject methods of the
+     * subclasses, which have checked that 0 <= count <= value.length.
+     */
+    void initBytes(char[] value, int count) {
+        this.count = count;
+        if (COMPACT_STRINGS) {
+            byte[] val = new byte[value.length];
+            if (StringUTF16.compress(value, 0, val, 0, count) == count) {
+                this.value = val;
+                this.coder = LATIN1;
+                return;
+            }
+        }
+        this.value = StringUTF16.toBytes(value, 0, value.length);
+        this.coder = UTF16;
+    }
+
 }
@@ -145,14 +145,12 @@ package java.lang;
     }
 
     public synchronized int capacity() {
-        return value.length;
+        return super.capacity();
     }
 
 
     public synchronized void ensureCapacity(int minimumCapacity) {
-        if (minimumCapacity > value.length) {
-            expandCapacity(minimumCapacity);
-        }
+        super.ensureCapacity(minimumCapacity);
     }
 
     /**
@@ -175,9 +173,7 @@ package java.lang;
      * @see        #length()
      */
     public synchronized char charAt(int index) {
-        if ((index < 0) || (index >= count))
-            throw new StringIndexOutOfBoundsException(index);
-        return value[index];
+        return super.charAt(index);
     }
 
     /**
@@ -223,9 +219,7 @@ package java.lang;
      * @see        #length()
      */
     public synchronized void setCharAt(int index, char ch) {
-        if ((index < 0) || (index >= count))
-            throw new StringIndexOutOfBoundsException(index);
-        value[index] = ch;
+        super.setCharAt(index, ch);
     }
 
     public synchronized StringBuffer append(Object obj) {
@@ -527,8 +521,7 @@ package java.lang;
      * @since      1.4
      */
     public synchronized int indexOf(String str, int fromIndex) {
-        return String.indexOf(value, 0, count,
-                              str.toCharArray(), 0, str.length(), fromIndex);
+        return super.indexOf(str, fromIndex);
     }
 
     /**
@@ -545,8 +538,7 @@ package java.lang;
      * @since      1.4
      */
     public synchronized int lastIndexOf(String str, int fromIndex) {
-        return String.lastIndexOf(value, 0, count,
-                              str.toCharArray(), 0, str.length(), fromIndex);
+        return super.lastIndexOf(str, fromIndex);
     }
 
     /**
@@ -558,7 +550,8 @@ package java.lang;
     }
 
     public synchronized String toString() {
-        return new String(value, 0, count);
+        return isLatin1() ? StringLatin1.newString(value, 0, count)
+                          : StringUTF16.newString(value, 0, count);
     }
 
     /**
@@ -586,7 +579,10 @@ package java.lang;
     private synchronized void writeObject(java.io.ObjectOutputStream s)
         throws java.io.IOException {
         java.io.ObjectOutputStream.PutField fields = s.putFields();
-        fields.put("value", value);
+        // The serialized form is still a char[] of the current capacity
+        char[] val = new char[capacity()];
+        getChars(0, count, val, 0);
+        fields.put("value", val);
         fields.put("count", count);
         fields.put("shared", false);
         s.writeFields();
@@ -599,7 +595,11 @@ package java.lang;
     private void readObject(java.io.ObjectInputStream s)
         throws java.io.IOException, ClassNotFoundException {
         java.io.ObjectInputStream.GetField fields = s.readFields();
-        value = (char[])fields.get("value", null);
-        count = fields.get("count", 0);
+        char[] val = (char[])fields.get("value", null);
+        int c = fields.get("count", 0);
+        if (c < 0 || c > val.length) {
+            throw new java.io.StreamCorruptedException("count value invalid");
+        }
+        initBytes(val, c);
     }
 }
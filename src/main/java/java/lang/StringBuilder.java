@@ -135,14 +135,7 @@ public final class StringBuilder
 
     // Appends the specified string builder to this sequence.
     private StringBuilder append(StringBuilder sb) {
-        if (sb == null)
-            return append("null");
-        int len = sb.length();
-        int newcount = count + len;
-        if (newcount > value.length)
-            expandCapacity(newcount);
-        sb.getChars(0, len, value, count);
-        count = newcount;
+        super.append((AbstractStringBuilder)sb);
         return this;
     }
 
@@ -376,8 +369,7 @@ public final class StringBuilder
      * @throws NullPointerException {@inheritDoc}
      */
     public int indexOf(String str, int fromIndex) {
-        return String.indexOf(value, 0, count,
-                              str.toCharArray(), 0, str.length(), fromIndex);
+        return super.indexOf(str, fromIndex);
     }
 
     /**
@@ -391,8 +383,7 @@ public final class StringBuilder
      * @throws NullPointerException {@inheritDoc}
      */
     public int lastIndexOf(String str, int fromIndex) {
-        return String.lastIndexOf(value, 0, count,
-                              str.toCharArray(), 0, str.length(), fromIndex);
+        return super.lastIndexOf(str, fromIndex);
     }
 
     public StringBuilder reverse() {
@@ -402,7 +393,8 @@ public final class StringBuilder
 
     public String toString() {
         // Create a copy, don't share the array
-        return new String(value, 0, count);
+        return isLatin1() ? StringLatin1.newString(value, 0, count)
+                          : StringUTF16.newString(value, 0, count);
     }
 
     /**
@@ -420,7 +412,10 @@ public final class StringBuilder
         throws java.io.IOException {
         s.defaultWriteObject();
         s.writeInt(count);
-        s.writeObject(value);
+        // The serialized form is still a char[] of the current capacity
+        char[] val = new char[capacity()];
+        getChars(0, count, val, 0);
+        s.writeObject(val);
     }
 
     /**
@@ -430,8 +425,12 @@ public final class StringBuilder
     private void readObject(java.io.ObjectInputStream s)
         throws java.io.IOException, ClassNotFoundException {
         s.defaultReadObject();
-        count = s.readInt();
-        value = (char[]) s.readObject();
+        int count = s.readInt();
+        char[] val = (char[]) s.readObject();
+        if (count < 0 || count > val.length) {
+            throw new java.io.StreamCorruptedException("count value invalid");
+        }
+        initBytes(val, count);
     }
 
 }
@@ -36,6 +36,7 @@ import java.nio.charset.CharacterCodingException;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.Arrays;
 import sun.misc.MessageUtils;
@@ -43,6 +44,10 @@ import sun.nio.cs.HistoricallyNamedCharset;
 import sun.nio.cs.ArrayDecoder;
 import sun.nio.cs.ArrayEncoder;
 
+import static java.lang.String.COMPACT_STRINGS;
+import static java.lang.String.LATIN1;
+import static java.lang.String.UTF16;
+
 /**
  * Utility class for string encoding and decoding.
  */
@@ -59,6 +64,17 @@ class StringCoding {
 
     private static boolean warnUnsupportedCharset = true;
 
+    /*
+     * The charsets with fast paths below.  Charset.forName hands out one
+     * cached instance per standard charset, so an identity check is enough.
+     */
+    private static final Charset ISO_8859_1 = StandardCharsets.ISO_8859_1;
+    private static final Charset US_ASCII = StandardCharsets.US_ASCII;
+    private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+    /** The replacement of the standard decoders for malformed input */
+    private static final char REPL = '\uFFFD';
+
     private static <T> T deref(ThreadLocal<SoftReference<T>> tl) {
         SoftReference<T> sr = tl.get();
         if (sr == null)
@@ -79,14 +95,34 @@ class StringCoding {
             return Arrays.copyOf(ba, len);
     }
 
-    // Trim the given char array to the given length
-    //
-    private static char[] safeTrim(char[] ca, int len,
-                                   Charset cs, boolean isTrusted) {
-        if (len == ca.length && (isTrusted || System.getSecurityManager() == null))
-            return ca;
-        else
-            return Arrays.copyOf(ca, len);
+    /**
+     * The value and coder of a decoded string.  The decoded chars are
+     * always copied into a new value, compacted to Latin-1 if possible,
+     * so a decoder never holds on to the array of the string.
+     */
+    static class Result {
+        byte[] value;
+        byte coder;
+
+        Result with(byte[] val, byte coder) {
+            this.value = val;
+            this.coder = coder;
+            return this;
+        }
+
+        Result with(char[] ca, int off, int len) {
+            if (COMPACT_STRINGS) {
+                byte[] bs = StringUTF16.compress(ca, off, len);
+                if (bs != null) {
+                    value = bs;
+                    coder = LATIN1;
+                    return this;
+                }
+            }
+            value = StringUTF16.toBytes(ca, off, len);
+            coder = UTF16;
+            return this;
+        }
     }
 
     private static int scale(int len, float expansionFactor) {
@@ -144,14 +180,14 @@ class StringCoding {
             return requestedCharsetName;
         }
 
-        char[] decode(byte[] ba, int off, int len) {
+        Result decode(byte[] ba, int off, int len) {
             int en = scale(len, cd.maxCharsPerByte());
             char[] ca = new char[en];
             if (len == 0)
-                return ca;
+                return new Result().with(ca, 0, 0);
             if (cd instanceof ArrayDecoder) {
                 int clen = ((ArrayDecoder)cd).decode(ba, off, len, ca);
-                return safeTrim(ca, clen, cs, isTrusted);
+                return new Result().with(ca, 0, clen);
             } else {
                 cd.reset();
                 ByteBuffer bb = ByteBuffer.wrap(ba, off, len);
@@ -168,12 +204,12 @@ class StringCoding {
                     // so this shouldn't happen
                     throw new Error(x);
                 }
-                return safeTrim(ca, cb.position(), cs, isTrusted);
+                return new Result().with(ca, 0, cb.position());
             }
         }
     }
 
-    static char[] decode(String charsetName, byte[] ba, int off, int len)
+    static Result decode(String charsetName, byte[] ba, int off, int len)
         throws UnsupportedEncodingException
     {
         StringDecoder sd = deref(decoder);
@@ -183,8 +219,16 @@ class StringCoding {
             sd = null;
             try {
                 Charset cs = lookupCharset(csn);
-                if (cs != null)
+                if (cs != null) {
+                    if (cs == UTF_8) {
+                        return decodeUTF8(ba, off, len);
+                    } else if (cs == ISO_8859_1) {
+                        return decodeLatin1(ba, off, len);
+                    } else if (cs == US_ASCII) {
+                        return decodeASCII(ba, off, len);
+                    }
                     sd = new StringDecoder(cs, csn);
+                }
             } catch (IllegalCharsetNameException x) {}
             if (sd == null)
                 throw new UnsupportedEncodingException(csn);
@@ -193,7 +237,14 @@ class StringCoding {
         return sd.decode(ba, off, len);
     }
 
-    static char[] decode(Charset cs, byte[] ba, int off, int len) {
+    static Result decode(Charset cs, byte[] ba, int off, int len) {
+        if (cs == UTF_8) {
+            return decodeUTF8(ba, off, len);
+        } else if (cs == ISO_8859_1) {
+            return decodeLatin1(ba, off, len);
+        } else if (cs == US_ASCII) {
+            return decodeASCII(ba, off, len);
+        }
         // (1)We never cache the "external" cs, the only benefit of creating
         // an additional StringDe/Encoder object to wrap it is to share the
         // de/encode() method. These SD/E objects are short-lifed, the young-gen
@@ -214,7 +265,7 @@ class StringCoding {
         int en = scale(len, cd.maxCharsPerByte());
         char[] ca = new char[en];
         if (len == 0)
-            return ca;
+            return new Result().with(ca, 0, 0);
         boolean isTrusted = false;
         if (System.getSecurityManager() != null) {
             if (!(isTrusted = (cs.getClass().getClassLoader0() == null))) {
@@ -227,7 +278,7 @@ class StringCoding {
           .reset();
         if (cd instanceof ArrayDecoder) {
             int clen = ((ArrayDecoder)cd).decode(ba, off, len, ca);
-            return safeTrim(ca, clen, cs, isTrusted);
+            return new Result().with(ca, 0, clen);
         } else {
             ByteBuffer bb = ByteBuffer.wrap(ba, off, len);
             CharBuffer cb = CharBuffer.wrap(ca);
@@ -243,12 +294,20 @@ class StringCoding {
                 // so this shouldn't happen
                 throw new Error(x);
             }
-            return safeTrim(ca, cb.position(), cs, isTrusted);
+            return new Result().with(ca, 0, cb.position());
         }
     }
 
-    static char[] decode(byte[] ba, int off, int len) {
-        String csn = Charset.defaultCharset().name();
+    static Result decode(byte[] ba, int off, int len) {
+        Charset cs = Charset.defaultCharset();
+        if (cs == UTF_8) {
+            return decodeUTF8(ba, off, len);
+        } else if (cs == ISO_8859_1) {
+            return decodeLatin1(ba, off, len);
+        } else if (cs == US_ASCII) {
+            return decodeASCII(ba, off, len);
+        }
+        String csn = cs.name();
         try {
             // use charset name decode() variant which provides caching.
             return decode(csn, ba, off, len);
@@ -324,7 +383,13 @@ class StringCoding {
         }
     }
 
-    static byte[] encode(String charsetName, char[] ca, int off, int len)
+    // The encoders work on chars, so inflate the value of the string
+    private static char[] toChars(byte coder, byte[] val) {
+        return (coder == LATIN1) ? StringLatin1.toChars(val)
+                                 : StringUTF16.toChars(val);
+    }
+
+    static byte[] encode(String charsetName, byte coder, byte[] val)
         throws UnsupportedEncodingException
     {
         StringEncoder se = deref(encoder);
@@ -334,17 +399,38 @@ class StringCoding {
             se = null;
             try {
                 Charset cs = lookupCharset(csn);
-                if (cs != null)
+                if (cs != null) {
+                    if (cs == UTF_8) {
+                        return encodeUTF8(coder, val);
+                    } else if (cs == ISO_8859_1) {
+                        return encode8859_1(coder, val);
+                    } else if (cs == US_ASCII) {
+                        return encodeASCII(coder, val);
+                    }
                     se = new StringEncoder(cs, csn);
+                }
             } catch (IllegalCharsetNameException x) {}
             if (se == null)
                 throw new UnsupportedEncodingException (csn);
             set(encoder, se);
         }
-        return se.encode(ca, off, len);
+        char[] ca = toChars(coder, val);
+        return se.encode(ca, 0, ca.length);
+    }
+
+    static byte[] encode(Charset cs, byte coder, byte[] val) {
+        if (cs == UTF_8) {
+            return encodeUTF8(coder, val);
+        } else if (cs == ISO_8859_1) {
+            return encode8859_1(coder, val);
+        } else if (cs == US_ASCII) {
+            return encodeASCII(coder, val);
+        }
+        char[] ca = toChars(coder, val);
+        return encode(cs, ca, 0, ca.length);
     }
 
-    static byte[] encode(Charset cs, char[] ca, int off, int len) {
+    private static byte[] encode(Charset cs, char[] ca, int off, int len) {
         CharsetEncoder ce = cs.newEncoder();
         int en = scale(len, ce.maxBytesPerChar());
         byte[] ba = new byte[en];
@@ -380,16 +466,24 @@ class StringCoding {
         }
     }
 
-    static byte[] encode(char[] ca, int off, int len) {
-        String csn = Charset.defaultCharset().name();
+    static byte[] encode(byte coder, byte[] val) {
+        Charset cs = Charset.defaultCharset();
+        if (cs == UTF_8) {
+            return encodeUTF8(coder, val);
+        } else if (cs == ISO_8859_1) {
+            return encode8859_1(coder, val);
+        } else if (cs == US_ASCII) {
+            return encodeASCII(coder, val);
+        }
+        String csn = cs.name();
         try {
             // use charset name encode() variant which provides caching.
-            return encode(csn, ca, off, len);
+            return encode(csn, coder, val);
         } catch (UnsupportedEncodingException x) {
             warnUnsupportedCharset(csn);
         }
         try {
-            return encode("ISO-8859-1", ca, off, len);
+            return encode("ISO-8859-1", coder, val);
         } catch (UnsupportedEncodingException x) {
             // If this code is hit during VM initialization, MessageUtils is
             // the only way we will be able to get any kind of error message.
@@ -401,4 +495,367 @@ class StringCoding {
             return null;
         }
     }
+
+    // -- Fast paths for ISO-8859-1, US-ASCII and UTF-8 --
+    //
+    // These produce the same result as the ArrayDecoder/ArrayEncoder of the
+    // sun.nio.cs charsets with the REPLACE action, but size the result
+    // exactly and skip the cached StringDecoder/StringEncoder.
+
+    private static boolean hasNegatives(byte[] ba, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            if (ba[i] < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Result decodeLatin1(byte[] ba, int off, int len) {
+        if (COMPACT_STRINGS) {
+            return new Result().with(Arrays.copyOfRange(ba, off, off + len),
+                                     LATIN1);
+        }
+        byte[] dst = StringUTF16.newBytesFor(len);
+        StringLatin1.inflate(ba, off, dst, 0, len);
+        return new Result().with(dst, UTF16);
+    }
+
+    private static Result decodeASCII(byte[] ba, int off, int len) {
+        if (!hasNegatives(ba, off, len)) {
+            return decodeLatin1(ba, off, len);
+        }
+        // Each byte outside ASCII becomes U+FFFD, so the value is UTF16
+        byte[] dst = StringUTF16.newBytesFor(len);
+        for (int i = 0; i < len; i++) {
+            byte b = ba[off++];
+            StringUTF16.putChar(dst, i, (b >= 0) ? b : REPL);
+        }
+        return new Result().with(dst, UTF16);
+    }
+
+    private static Result decodeUTF8(byte[] ba, int off, int len) {
+        // ASCII only optimized prescan
+        int n = 0;
+        while (n < len && ba[off + n] >= 0) {
+            n++;
+        }
+        if (n == len) {
+            return decodeLatin1(ba, off, len);
+        }
+        // UTF-8 never decodes to more chars than it has bytes
+        char[] ca = new char[len];
+        for (int i = 0; i < n; i++) {
+            ca[i] = (char)ba[off + i];
+        }
+        int clen = decodeUTF8(ba, off + n, off + len, ca, n);
+        return new Result().with(ca, 0, clen);
+    }
+
+    private static boolean isNotContinuation(int b) {
+        return (b & 0xc0) != 0x80;
+    }
+
+    //  [C2..DF] [80..BF]
+    private static boolean isMalformed2(int b1, int b2) {
+        return (b1 & 0x1e) == 0x0 || (b2 & 0xc0) != 0x80;
+    }
+
+    //  [E0]     [A0..BF] [80..BF]
+    //  [E1..EF] [80..BF] [80..BF]
+    private static boolean isMalformed3(int b1, int b2, int b3) {
+        return (b1 == (byte)0xe0 && (b2 & 0xe0) == 0x80) ||
+               (b2 & 0xc0) != 0x80 || (b3 & 0xc0) != 0x80;
+    }
+
+    //  [F0]     [90..BF] [80..BF] [80..BF]
+    //  [F1..F3] [80..BF] [80..BF] [80..BF]
+    //  [F4]     [80..8F] [80..BF] [80..BF]
+    //  only check 80-be range here, the [0xf0,0x80...] and [0xf4,0x90-...]
+    //  will be checked by Character.isSupplementaryCodePoint(uc)
+    private static boolean isMalformed4(int b2, int b3, int b4) {
+        return (b2 & 0xc0) != 0x80 || (b3 & 0xc0) != 0x80 ||
+               (b4 & 0xc0) != 0x80;
+    }
+
+    /**
+     * Returns the number of bytes to skip for the malformed nb-byte
+     * sequence starting at sp, or -1 if the rest of the input is to be
+     * dropped.  Like the UTF_8 decoder this looks ahead up to the end
+     * of the array, not just the end of the decoded range.
+     */
+    private static int malformedN(byte[] ba, int sp, int nb) {
+        switch (nb) {
+        case 1:
+            int b1 = ba[sp++];
+            if ((b1 >> 2) == -2) {
+                // 5 bytes 111110xx 10xxxxxx 10xxxxxx 10xxxxxx 10xxxxxx
+                if (ba.length - sp < 4)
+                    return -1;
+                return lookupN(ba, sp, 5);
+            }
+            if ((b1 >> 1) == -2) {
+                // 6 bytes 1111110x 10xxxxxx 10xxxxxx 10xxxxxx 10xxxxxx 10xxxxxx
+                if (ba.length - sp < 5)
+                    return -1;
+                return lookupN(ba, sp, 6);
+            }
+            return 1;
+        case 3:
+            b1 = ba[sp++];
+            int b2 = ba[sp];    // no need to lookup b3
+            return ((b1 == (byte)0xe0 && (b2 & 0xe0) == 0x80) ||
+                    isNotContinuation(b2)) ? 1 : 2;
+        case 4:
+            b1 = ba[sp++] & 0xff;
+            b2 = ba[sp++] & 0xff;
+            if (b1 > 0xf4 ||
+                (b1 == 0xf0 && (b2 < 0x90 || b2 > 0xbf)) ||
+                (b1 == 0xf4 && (b2 & 0xf0) != 0x80) ||
+                isNotContinuation(b2))
+                return 1;
+            if (isNotContinuation(ba[sp]))
+                return 2;
+            return 3;
+        default:
+            assert false;
+            return 1;
+        }
+    }
+
+    private static int lookupN(byte[] ba, int sp, int n) {
+        for (int i = 1; i < n; i++) {
+            if (isNotContinuation(ba[sp++]))
+                return i;
+        }
+        return n;
+    }
+
+    /**
+     * Decodes the UTF-8 bytes from sp to sl into da starting at dp,
+     * replacing malformed input with U+FFFD, and returns the end index.
+     */
+    private static int decodeUTF8(byte[] sa, int sp, int sl, char[] da, int dp) {
+        while (sp < sl) {
+            int b1 = sa[sp++];
+            if (b1 >= 0) {
+                // 1 byte, 7 bits: 0xxxxxxx
+                da[dp++] = (char) b1;
+            } else if ((b1 >> 5) == -2) {
+                // 2 bytes, 11 bits: 110xxxxx 10xxxxxx
+                if (sp < sl) {
+                    int b2 = sa[sp++];
+                    if (isMalformed2(b1, b2)) {
+                        da[dp++] = REPL;
+                        sp--;            // malformedN(bb, 2) always returns 1
+                    } else {
+                        da[dp++] = (char) (((b1 << 6) ^ b2)^
+                                           (((byte) 0xC0 << 6) ^
+                                            ((byte) 0x80 << 0)));
+                    }
+                    continue;
+                }
+                da[dp++] = REPL;
+                return dp;
+            } else if ((b1 >> 4) == -2) {
+                // 3 bytes, 16 bits: 1110xxxx 10xxxxxx 10xxxxxx
+                if (sp + 1 < sl) {
+                    int b2 = sa[sp++];
+                    int b3 = sa[sp++];
+                    if (isMalformed3(b1, b2, b3)) {
+                        da[dp++] = REPL;
+                        sp -= 3;
+                        sp += malformedN(sa, sp, 3);
+                    } else {
+                        da[dp++] = (char)((b1 << 12) ^
+                                          (b2 <<  6) ^
+                                          (b3 ^
+                                          (((byte) 0xE0 << 12) ^
+                                          ((byte) 0x80 <<  6) ^
+                                          ((byte) 0x80 <<  0))));
+                    }
+                    continue;
+                }
+                da[dp++] = REPL;
+                return dp;
+            } else if ((b1 >> 3) == -2) {
+                // 4 bytes, 21 bits: 11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
+                if (sp + 2 < sl) {
+                    int b2 = sa[sp++];
+                    int b3 = sa[sp++];
+                    int b4 = sa[sp++];
+                    int uc = ((b1 << 18) ^
+                              (b2 << 12) ^
+                              (b3 <<  6) ^
+                              (b4 ^
+                               (((byte) 0xF0 << 18) ^
+                               ((byte) 0x80 << 12) ^
+                               ((byte) 0x80 <<  6) ^
+                               ((byte) 0x80 <<  0))));
+                    if (isMalformed4(b2, b3, b4) ||
+                        // shortest form check
+                        !Character.isSupplementaryCodePoint(uc)) {
+                        da[dp++] = REPL;
+                        sp -= 4;
+                        sp += malformedN(sa, sp, 4);
+                    } else {
+                        da[dp++] = Character.highSurrogate(uc);
+                        da[dp++] = Character.lowSurrogate(uc);
+                    }
+                    continue;
+                }
+                da[dp++] = REPL;
+                return dp;
+            } else {
+                da[dp++] = REPL;
+                int n = malformedN(sa, sp - 1, 1);
+                if (n < 0) {
+                    // leading byte for 5 or 6-byte, but don't have enough
+                    // bytes in buffer to check. Consumed rest as malformed.
+                    return dp;
+                }
+                sp += n - 1;
+            }
+        }
+        return dp;
+    }
+
+    private static byte[] encode8859_1(byte coder, byte[] val) {
+        if (coder == LATIN1) {
+            return Arrays.copyOf(val, val.length);
+        }
+        int len = val.length >> 1;
+        byte[] dst = new byte[len];
+        int dp = 0;
+        for (int sp = 0; sp < len; ) {
+            char c = StringUTF16.getChar(val, sp++);
+            if (c <= '\u00FF') {
+                dst[dp++] = (byte)c;
+                continue;
+            }
+            // A surrogate pair is one unmappable character
+            if (Character.isHighSurrogate(c) && sp < len &&
+                Character.isLowSurrogate(StringUTF16.getChar(val, sp))) {
+                sp++;
+            }
+            dst[dp++] = '?';
+        }
+        return (dp == len) ? dst : Arrays.copyOf(dst, dp);
+    }
+
+    private static byte[] encodeASCII(byte coder, byte[] val) {
+        if (coder == LATIN1) {
+            byte[] dst = Arrays.copyOf(val, val.length);
+            for (int i = 0; i < dst.length; i++) {
+                if (dst[i] < 0) {
+                    dst[i] = '?';
+                }
+            }
+            return dst;
+        }
+        int len = val.length >> 1;
+        byte[] dst = new byte[len];
+        int dp = 0;
+        for (int sp = 0; sp < len; ) {
+            char c = StringUTF16.getChar(val, sp++);
+            if (c < 0x80) {
+                dst[dp++] = (byte)c;
+                continue;
+            }
+            // A surrogate pair is one unmappable character
+            if (Character.isHighSurrogate(c) && sp < len &&
+                Character.isLowSurrogate(StringUTF16.getChar(val, sp))) {
+                sp++;
+            }
+            dst[dp++] = '?';
+        }
+        return (dp == len) ? dst : Arrays.copyOf(dst, dp);
+    }
+
+    private static byte[] encodeUTF8(byte coder, byte[] val) {
+        if (coder == LATIN1) {
+            // Every non-ASCII Latin-1 char takes two bytes
+            int n = 0;
+            for (byte b : val) {
+                if (b < 0) {
+                    n++;
+                }
+            }
+            if (n == 0) {
+                return Arrays.copyOf(val, val.length);
+            }
+            byte[] dst = new byte[val.length + n];
+            int dp = 0;
+            for (byte b : val) {
+                if (b >= 0) {
+                    dst[dp++] = b;
+                } else {
+                    dst[dp++] = (byte)(0xc0 | ((b & 0xff) >> 6));
+                    dst[dp++] = (byte)(0x80 | (b & 0x3f));
+                }
+            }
+            return dst;
+        }
+        int sl = val.length >> 1;
+        byte[] dst = new byte[encodedLengthUTF8(val, sl)];
+        int dp = 0;
+        for (int sp = 0; sp < sl; ) {
+            char c = StringUTF16.getChar(val, sp++);
+            if (c < 0x80) {
+                // Have at most seven bits
+                dst[dp++] = (byte)c;
+            } else if (c < 0x800) {
+                // 2 bytes, 11 bits
+                dst[dp++] = (byte)(0xc0 | (c >> 6));
+                dst[dp++] = (byte)(0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                char d;
+                if (Character.isHighSurrogate(c) && sp < sl &&
+                    Character.isLowSurrogate(d = StringUTF16.getChar(val, sp))) {
+                    int uc = Character.toCodePoint(c, d);
+                    dst[dp++] = (byte)(0xf0 | ((uc >> 18)));
+                    dst[dp++] = (byte)(0x80 | ((uc >> 12) & 0x3f));
+                    dst[dp++] = (byte)(0x80 | ((uc >>  6) & 0x3f));
+                    dst[dp++] = (byte)(0x80 | (uc & 0x3f));
+                    sp++;  // 2 chars
+                } else {
+                    // Unpaired surrogate
+                    dst[dp++] = '?';
+                }
+            } else {
+                // 3 bytes, 16 bits
+                dst[dp++] = (byte)(0xe0 | ((c >> 12)));
+                dst[dp++] = (byte)(0x80 | ((c >>  6) & 0x3f));
+                dst[dp++] = (byte)(0x80 | (c & 0x3f));
+            }
+        }
+        return dst;
+    }
+
+    // The exact length of the UTF-8 encoding of the first sl chars of val
+    private static int encodedLengthUTF8(byte[] val, int sl) {
+        long n = 0;
+        for (int sp = 0; sp < sl; ) {
+            char c = StringUTF16.getChar(val, sp++);
+            if (c < 0x80) {
+                n++;
+            } else if (c < 0x800) {
+                n += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && sp < sl &&
+                    Character.isLowSurrogate(StringUTF16.getChar(val, sp))) {
+                    n += 4;
+                    sp++;
+                } else {
+                    n++;
+                }
+            } else {
+                n += 3;
+            }
+        }
+        if (n > Integer.MAX_VALUE) {
+            throw new OutOfMemoryError("Required length exceeds implementation limit");
+        }
+        return (int)n;
+    }
 }
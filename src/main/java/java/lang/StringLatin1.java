@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static java.lang.String.LATIN1;
+import static java.lang.String.UTF16;
+
+/**
+ * Operations on the values of compact strings and string builders,
+ * which hold one ISO-8859-1 (Latin-1) character per byte.
+ *
+ * @see StringUTF16
+ * @since 1.7
+ */
+final class StringLatin1 {
+
+    private StringLatin1() { }
+
+    static char charAt(byte[] value, int index) {
+        if (index < 0 || index >= value.length) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        return (char)(value[index] & 0xff);
+    }
+
+    static char getChar(byte[] value, int index) {
+        return (char)(value[index] & 0xff);
+    }
+
+    static boolean canEncode(int cp) {
+        return cp >>> 8 == 0;
+    }
+
+    static byte[] toBytes(char c) {
+        return new byte[] { (byte)c };
+    }
+
+    /**
+     * Returns the given code points as Latin-1 bytes, or null if any
+     * of them is not a Latin-1 character.
+     */
+    static byte[] toBytes(int[] codePoints, int offset, int count) {
+        byte[] val = new byte[count];
+        for (int i = 0; i < count; i++) {
+            int cp = codePoints[offset++];
+            if (!canEncode(cp)) {
+                return null;
+            }
+            val[i] = (byte)cp;
+        }
+        return val;
+    }
+
+    static char[] toChars(byte[] value) {
+        char[] dst = new char[value.length];
+        inflate(value, 0, dst, 0, value.length);
+        return dst;
+    }
+
+    static void getChars(byte[] value, int srcBegin, int srcEnd,
+                         char[] dst, int dstBegin) {
+        inflate(value, srcBegin, dst, dstBegin, srcEnd - srcBegin);
+    }
+
+    /**
+     * Copies len characters into dst starting at dstOff, widening
+     * each byte to a char.
+     */
+    static void inflate(byte[] src, int srcOff, char[] dst, int dstOff,
+                        int len) {
+        for (int i = 0; i < len; i++) {
+            dst[dstOff++] = (char)(src[srcOff++] & 0xff);
+        }
+    }
+
+    /**
+     * Copies len characters into the UTF-16 value dst starting at
+     * character index dstOff.
+     */
+    static void inflate(byte[] src, int srcOff, byte[] dst, int dstOff,
+                        int len) {
+        for (int i = 0; i < len; i++) {
+            StringUTF16.putChar(dst, dstOff++, src[srcOff++] & 0xff);
+        }
+    }
+
+    /**
+     * Returns a UTF-16 value holding the same characters as value.
+     */
+    static byte[] inflate(byte[] value) {
+        byte[] dst = StringUTF16.newBytesFor(value.length);
+        inflate(value, 0, dst, 0, value.length);
+        return dst;
+    }
+
+    static int compareTo(byte[] value, byte[] other) {
+        int len1 = value.length;
+        int len2 = other.length;
+        int lim = Math.min(len1, len2);
+        for (int k = 0; k < lim; k++) {
+            if (value[k] != other[k]) {
+                return getChar(value, k) - getChar(other, k);
+            }
+        }
+        return len1 - len2;
+    }
+
+    static int compareToUTF16(byte[] value, byte[] other) {
+        int len1 = value.length;
+        int len2 = StringUTF16.length(other);
+        int lim = Math.min(len1, len2);
+        for (int k = 0; k < lim; k++) {
+            char c1 = getChar(value, k);
+            char c2 = StringUTF16.getChar(other, k);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return len1 - len2;
+    }
+
+    static int hashCode(byte[] value) {
+        int h = 0;
+        for (byte v : value) {
+            h = 31 * h + (v & 0xff);
+        }
+        return h;
+    }
+
+    static int indexOf(byte[] value, int ch, int fromIndex) {
+        if (!canEncode(ch)) {
+            return -1;
+        }
+        int max = value.length;
+        if (fromIndex < 0) {
+            fromIndex = 0;
+        } else if (fromIndex >= max) {
+            // Note: fromIndex might be near -1>>>1.
+            return -1;
+        }
+        byte c = (byte)ch;
+        for (int i = fromIndex; i < max; i++) {
+            if (value[i] == c) {
+               return i;
+            }
+        }
+        return -1;
+    }
+
+    static int lastIndexOf(byte[] value, int ch, int fromIndex) {
+        if (!canEncode(ch)) {
+            return -1;
+        }
+        byte c = (byte)ch;
+        int i = Math.min(fromIndex, value.length - 1);
+        for (; i >= 0; i--) {
+            if (value[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches a Latin-1 source for a Latin-1 target.  The arguments
+     * have been checked by {@link String#indexOf(byte[], byte, int,
+     * String, int)}: 0 <= fromIndex < srcCount and tgtCount > 0.
+     */
+    static int indexOf(byte[] src, int srcCount, byte[] tgt, int tgtCount,
+                       int fromIndex) {
+        byte first = tgt[0];
+        int max = srcCount - tgtCount;
+        for (int i = fromIndex; i <= max; i++) {
+            /* Look for first character. */
+            if (src[i] != first) {
+                while (++i <= max && src[i] != first);
+            }
+            /* Found first character, now look at the rest of tgt */
+            if (i <= max) {
+                int j = i + 1;
+                int end = j + tgtCount - 1;
+                for (int k = 1; j < end && src[j] == tgt[k]; j++, k++);
+                if (j == end) {
+                    /* Found whole string. */
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches backwards in a Latin-1 source for a Latin-1 target.
+     * The arguments have been checked by {@link
+     * String#lastIndexOf(byte[], byte, int, String, int)}:
+     * 0 <= fromIndex <= srcCount - tgtCount and tgtCount > 0.
+     */
+    static int lastIndexOf(byte[] src, int srcCount, byte[] tgt,
+                           int tgtCount, int fromIndex) {
+        int min = tgtCount - 1;
+        int i = min + fromIndex;
+        int strLastIndex = tgtCount - 1;
+        byte strLastChar = tgt[strLastIndex];
+
+    startSearchForLastChar:
+        while (true) {
+            while (i >= min && src[i] != strLastChar) {
+                i--;
+            }
+            if (i < min) {
+                return -1;
+            }
+            int j = i - 1;
+            int start = j - strLastIndex;
+            int k = strLastIndex - 1;
+            while (j > start) {
+                if (src[j--] != tgt[k--]) {
+                    i--;
+                    continue startSearchForLastChar;
+                }
+            }
+            return start + 1;
+        }
+    }
+
+    /**
+     * Returns the result of String.replace(oldChar, newChar), or null
+     * if oldChar does not occur.
+     */
+    static String replace(byte[] value, char oldChar, char newChar) {
+        if (!canEncode(oldChar)) {
+            return null;
+        }
+        int len = value.length;
+        int i = -1;
+        while (++i < len) {
+            if (value[i] == (byte)oldChar) {
+                break;
+            }
+        }
+        if (i == len) {
+            return null;
+        }
+        if (canEncode(newChar)) {
+            byte buf[] = Arrays.copyOf(value, len);
+            while (i < len) {
+                if (buf[i] == (byte)oldChar) {
+                    buf[i] = (byte)newChar;
+                }
+                i++;
+            }
+            return new String(buf, LATIN1);
+        }
+        // newChar is not Latin-1, so the result is UTF-16
+        byte buf[] = StringUTF16.newBytesFor(len);
+        inflate(value, 0, buf, 0, i);
+        while (i < len) {
+            char c = getChar(value, i);
+            StringUTF16.putChar(buf, i, (c == oldChar) ? newChar : c);
+            i++;
+        }
+        return new String(buf, UTF16);
+    }
+
+    /**
+     * Returns the result of String.trim(), or null if there is no
+     * leading or trailing white space.
+     */
+    static String trim(byte[] value) {
+        int len = value.length;
+        int st = 0;
+        while ((st < len) && ((value[st] & 0xff) <= ' ')) {
+            st++;
+        }
+        while ((st < len) && ((value[len - 1] & 0xff) <= ' ')) {
+            len--;
+        }
+        return ((st > 0) || (len < value.length)) ?
+            newString(value, st, len - st) : null;
+    }
+
+    /**
+     * Returns the result of String.toLowerCase(locale), or null if
+     * the conversion has to be done on UTF-16 characters.  Outside the
+     * locales with conditional mappings every Latin-1 character has a
+     * single Latin-1 lower case form.
+     */
+    static String toLowerCase(String str, byte[] value, Locale locale) {
+        String lang = locale.getLanguage();
+        if (lang == "tr" || lang == "az" || lang == "lt") {
+            return null;
+        }
+        int first;
+        final int len = value.length;
+        // Now check if there are any characters that need to be changed
+        for (first = 0 ; first < len; first++) {
+            int cp = value[first] & 0xff;
+            if (cp != Character.toLowerCase(cp)) {
+                break;
+            }
+        }
+        if (first == len) {
+            return str;
+        }
+        byte[] result = new byte[len];
+        System.arraycopy(value, 0, result, 0, first);
+        for (int i = first; i < len; i++) {
+            result[i] = (byte)Character.toLowerCase(value[i] & 0xff);
+        }
+        return new String(result, LATIN1);
+    }
+
+    /**
+     * Returns the result of String.toUpperCase(locale), or null if
+     * the conversion has to be done on UTF-16 characters: in locales
+     * with conditional mappings, or for the Latin-1 characters whose
+     * upper case form is not a single Latin-1 character (sharp s,
+     * micro sign and y with diaeresis).
+     */
+    static String toUpperCase(String str, byte[] value, Locale locale) {
+        String lang = locale.getLanguage();
+        if (lang == "tr" || lang == "az" || lang == "lt") {
+            return null;
+        }
+        int first;
+        final int len = value.length;
+        // Now check if there are any characters that need to be changed
+        for (first = 0 ; first < len; first++) {
+            int cp = value[first] & 0xff;
+            if (cp != Character.toUpperCaseEx(cp)) {
+                break;
+            }
+        }
+        if (first == len) {
+            return str;
+        }
+        byte[] result = new byte[len];
+        System.arraycopy(value, 0, result, 0, first);
+        for (int i = first; i < len; i++) {
+            int upper = Character.toUpperCaseEx(value[i] & 0xff);
+            if (!canEncode(upper)) {
+                return null;
+            }
+            result[i] = (byte)upper;
+        }
+        return new String(result, LATIN1);
+    }
+
+    static String newString(byte[] val, int index, int len) {
+        return new String(Arrays.copyOfRange(val, index, index + len),
+                          LATIN1);
+    }
+}
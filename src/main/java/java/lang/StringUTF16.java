@@ -0,0 +1,622 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang;
+
+import java.util.Arrays;
+
+import static java.lang.String.LATIN1;
+import static java.lang.String.UTF16;
+
+/**
+ * Operations on the values of strings and string builders that hold
+ * UTF-16 characters, two bytes per char with the high byte first.
+ *
+ * @see StringLatin1
+ * @since 1.7
+ */
+final class StringUTF16 {
+
+    private StringUTF16() { }
+
+    /**
+     * The maximum number of chars a UTF-16 value can hold.
+     */
+    static final int MAX_LENGTH = Integer.MAX_VALUE >> 1;
+
+    static byte[] newBytesFor(int len) {
+        if (len < 0) {
+            throw new NegativeArraySizeException();
+        }
+        if (len > MAX_LENGTH) {
+            throw new OutOfMemoryError("UTF16 String size is " + len +
+                                       ", should be less than " + MAX_LENGTH);
+        }
+        return new byte[len << 1];
+    }
+
+    static void putChar(byte[] val, int index, int c) {
+        index <<= 1;
+        val[index++] = (byte)(c >> 8);
+        val[index]   = (byte)c;
+    }
+
+    static char getChar(byte[] val, int index) {
+        index <<= 1;
+        return (char)(((val[index++] & 0xff) << 8) |
+                      (val[index] & 0xff));
+    }
+
+    static int length(byte[] value) {
+        return value.length >> 1;
+    }
+
+    static char charAt(byte[] value, int index) {
+        if (index < 0 || index >= value.length >> 1) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        return getChar(value, index);
+    }
+
+    static byte[] toBytes(char[] value, int off, int len) {
+        byte[] val = newBytesFor(len);
+        for (int i = 0; i < len; i++) {
+            putChar(val, i, value[off++]);
+        }
+        return val;
+    }
+
+    static byte[] toBytes(char c) {
+        byte[] result = new byte[2];
+        putChar(result, 0, c);
+        return result;
+    }
+
+    /**
+     * Returns the given code points as a UTF-16 value.
+     *
+     * @throws IllegalArgumentException if any of them is not a valid
+     *         Unicode code point
+     */
+    static byte[] toBytes(int[] codePoints, int offset, int count) {
+        final int end = offset + count;
+
+        // Pass 1: Compute precise size of char[]
+        int n = count;
+        for (int i = offset; i < end; i++) {
+            int c = codePoints[i];
+            if (Character.isBmpCodePoint(c))
+                continue;
+            else if (Character.isValidCodePoint(c))
+                n++;
+            else throw new IllegalArgumentException(Integer.toString(c));
+        }
+
+        // Pass 2: Allocate and fill in the value
+        final byte[] v = newBytesFor(n);
+        for (int i = offset, j = 0; i < end; i++, j++) {
+            int c = codePoints[i];
+            if (Character.isBmpCodePoint(c)) {
+                putChar(v, j, c);
+            } else {
+                putChar(v, j++, Character.highSurrogate(c));
+                putChar(v, j, Character.lowSurrogate(c));
+            }
+        }
+        return v;
+    }
+
+    static char[] toChars(byte[] value) {
+        char[] dst = new char[value.length >> 1];
+        getChars(value, 0, dst.length, dst, 0);
+        return dst;
+    }
+
+    static void getChars(byte[] value, int srcBegin, int srcEnd,
+                         char[] dst, int dstBegin) {
+        for (int i = srcBegin; i < srcEnd; i++) {
+            dst[dstBegin++] = getChar(value, i);
+        }
+    }
+
+    static void putChars(byte[] val, int index, char[] str, int off,
+                         int end) {
+        while (off < end) {
+            putChar(val, index++, str[off++]);
+        }
+    }
+
+    static void putChars(byte[] val, int index, CharSequence s, int off,
+                         int end) {
+        while (off < end) {
+            putChar(val, index++, s.charAt(off++));
+        }
+    }
+
+    /**
+     * Returns len chars of val starting at off as a Latin-1 value, or
+     * null if any of them is not a Latin-1 character.
+     */
+    static byte[] compress(char[] val, int off, int len) {
+        byte[] ret = new byte[len];
+        if (compress(val, off, ret, 0, len) == len) {
+            return ret;
+        }
+        return null;
+    }
+
+    static byte[] compress(byte[] val, int off, int len) {
+        byte[] ret = new byte[len];
+        if (compress(val, off, ret, 0, len) == len) {
+            return ret;
+        }
+        return null;
+    }
+
+    /**
+     * Copies chars into dst until one is found that is not a Latin-1
+     * character, and returns the number of chars copied.
+     */
+    static int compress(char[] src, int srcOff, byte[] dst, int dstOff,
+                        int len) {
+        for (int i = 0; i < len; i++) {
+            char c = src[srcOff++];
+            if (c > 0xFF) {
+                return i;
+            }
+            dst[dstOff++] = (byte)c;
+        }
+        return len;
+    }
+
+    static int compress(byte[] src, int srcOff, byte[] dst, int dstOff,
+                        int len) {
+        for (int i = 0; i < len; i++) {
+            char c = getChar(src, srcOff++);
+            if (c > 0xFF) {
+                return i;
+            }
+            dst[dstOff++] = (byte)c;
+        }
+        return len;
+    }
+
+    static int codePointAt(byte[] value, int index, int end) {
+        char c1 = getChar(value, index);
+        if (Character.isHighSurrogate(c1) && ++index < end) {
+            char c2 = getChar(value, index);
+            if (Character.isLowSurrogate(c2)) {
+               return Character.toCodePoint(c1, c2);
+            }
+        }
+        return c1;
+    }
+
+    static int codePointBefore(byte[] value, int index) {
+        char c2 = getChar(value, --index);
+        if (Character.isLowSurrogate(c2) && index > 0) {
+            char c1 = getChar(value, --index);
+            if (Character.isHighSurrogate(c1)) {
+               return Character.toCodePoint(c1, c2);
+            }
+        }
+        return c2;
+    }
+
+    static int codePointCount(byte[] value, int beginIndex, int endIndex) {
+        int count = endIndex - beginIndex;
+        for (int i = beginIndex; i < endIndex; ) {
+            if (Character.isHighSurrogate(getChar(value, i++)) &&
+                i < endIndex &&
+                Character.isLowSurrogate(getChar(value, i))) {
+                count--;
+                i++;
+            }
+        }
+        return count;
+    }
+
+    static int hashCode(byte[] value) {
+        int h = 0;
+        int length = value.length >> 1;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + getChar(value, i);
+        }
+        return h;
+    }
+
+    static int compareTo(byte[] value, byte[] other) {
+        int len1 = length(value);
+        int len2 = length(other);
+        int lim = Math.min(len1, len2);
+        for (int k = 0; k < lim; k++) {
+            char c1 = getChar(value, k);
+            char c2 = getChar(other, k);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return len1 - len2;
+    }
+
+    static int compareToLatin1(byte[] value, byte[] other) {
+        return -StringLatin1.compareToUTF16(other, value);
+    }
+
+    static int indexOf(byte[] value, int ch, int fromIndex) {
+        int max = value.length >> 1;
+        if (fromIndex < 0) {
+            fromIndex = 0;
+        } else if (fromIndex >= max) {
+            // Note: fromIndex might be near -1>>>1.
+            return -1;
+        }
+        if (ch < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            // handle most cases here (ch is a BMP code point or a
+            // negative value (invalid code point))
+            for (int i = fromIndex; i < max; i++) {
+                if (getChar(value, i) == ch) {
+                    return i;
+                }
+            }
+            return -1;
+        } else {
+            return indexOfSupplementary(value, ch, fromIndex, max);
+        }
+    }
+
+    /**
+     * Handles (rare) calls of indexOf with a supplementary character.
+     */
+    private static int indexOfSupplementary(byte[] value, int ch,
+                                            int fromIndex, int max) {
+        if (Character.isValidCodePoint(ch)) {
+            final char hi = Character.highSurrogate(ch);
+            final char lo = Character.lowSurrogate(ch);
+            for (int i = fromIndex; i < max - 1; i++) {
+                if (getChar(value, i) == hi && getChar(value, i + 1) == lo) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    static int lastIndexOf(byte[] value, int ch, int fromIndex) {
+        if (ch < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            // handle most cases here (ch is a BMP code point or a
+            // negative value (invalid code point))
+            int i = Math.min(fromIndex, (value.length >> 1) - 1);
+            for (; i >= 0; i--) {
+                if (getChar(value, i) == ch) {
+                    return i;
+                }
+            }
+            return -1;
+        } else {
+            return lastIndexOfSupplementary(value, ch, fromIndex);
+        }
+    }
+
+    /**
+     * Handles (rare) calls of lastIndexOf with a supplementary character.
+     */
+    private static int lastIndexOfSupplementary(byte[] value, int ch,
+                                                int fromIndex) {
+        if (Character.isValidCodePoint(ch)) {
+            char hi = Character.highSurrogate(ch);
+            char lo = Character.lowSurrogate(ch);
+            int i = Math.min(fromIndex, (value.length >> 1) - 2);
+            for (; i >= 0; i--) {
+                if (getChar(value, i) == hi && getChar(value, i + 1) == lo) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches a UTF-16 source for a UTF-16 target.  The arguments
+     * have been checked by {@link String#indexOf(byte[], byte, int,
+     * String, int)}: 0 <= fromIndex < srcCount and tgtCount > 0.
+     */
+    static int indexOf(byte[] src, int srcCount, byte[] tgt, int tgtCount,
+                       int fromIndex) {
+        char first = getChar(tgt, 0);
+        int max = srcCount - tgtCount;
+        for (int i = fromIndex; i <= max; i++) {
+            /* Look for first character. */
+            if (getChar(src, i) != first) {
+                while (++i <= max && getChar(src, i) != first);
+            }
+            /* Found first character, now look at the rest of tgt */
+            if (i <= max) {
+                int j = i + 1;
+                int end = j + tgtCount - 1;
+                for (int k = 1;
+                     j < end && getChar(src, j) == getChar(tgt, k);
+                     j++, k++);
+                if (j == end) {
+                    /* Found whole string. */
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches a UTF-16 source for a Latin-1 target, under the same
+     * conditions as {@link #indexOf(byte[], int, byte[], int, int)}.
+     */
+    static int indexOfLatin1(byte[] src, int srcCount, byte[] tgt,
+                             int tgtCount, int fromIndex) {
+        char first = (char)(tgt[0] & 0xff);
+        int max = srcCount - tgtCount;
+        for (int i = fromIndex; i <= max; i++) {
+            /* Look for first character. */
+            if (getChar(src, i) != first) {
+                while (++i <= max && getChar(src, i) != first);
+            }
+            /* Found first character, now look at the rest of tgt */
+            if (i <= max) {
+                int j = i + 1;
+                int end = j + tgtCount - 1;
+                for (int k = 1;
+                     j < end && getChar(src, j) == (tgt[k] & 0xff);
+                     j++, k++);
+                if (j == end) {
+                    /* Found whole string. */
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches backwards in a UTF-16 source for a UTF-16 target.  The
+     * arguments have been checked by {@link String#lastIndexOf(byte[],
+     * byte, int, String, int)}: 0 <= fromIndex <= srcCount - tgtCount
+     * and tgtCount > 0.
+     */
+    static int lastIndexOf(byte[] src, int srcCount, byte[] tgt,
+                           int tgtCount, int fromIndex) {
+        int min = tgtCount - 1;
+        int i = min + fromIndex;
+        int strLastIndex = tgtCount - 1;
+        char strLastChar = getChar(tgt, strLastIndex);
+
+    startSearchForLastChar:
+        while (true) {
+            while (i >= min && getChar(src, i) != strLastChar) {
+                i--;
+            }
+            if (i < min) {
+                return -1;
+            }
+            int j = i - 1;
+            int start = j - strLastIndex;
+            int k = strLastIndex - 1;
+            while (j > start) {
+                if (getChar(src, j--) != getChar(tgt, k--)) {
+                    i--;
+                    continue startSearchForLastChar;
+                }
+            }
+            return start + 1;
+        }
+    }
+
+    /**
+     * Searches backwards in a UTF-16 source for a Latin-1 target,
+     * under the same conditions as {@link #lastIndexOf(byte[], int,
+     * byte[], int, int)}.
+     */
+    static int lastIndexOfLatin1(byte[] src, int srcCount, byte[] tgt,
+                                 int tgtCount, int fromIndex) {
+        int min = tgtCount - 1;
+        int i = min + fromIndex;
+        int strLastIndex = tgtCount - 1;
+        char strLastChar = (char)(tgt[strLastIndex] & 0xff);
+
+    startSearchForLastChar:
+        while (true) {
+            while (i >= min && getChar(src, i) != strLastChar) {
+                i--;
+            }
+            if (i < min) {
+                return -1;
+            }
+            int j = i - 1;
+            int start = j - strLastIndex;
+            int k = strLastIndex - 1;
+            while (j > start) {
+                if (getChar(src, j--) != (tgt[k--] & 0xff)) {
+                    i--;
+                    continue startSearchForLastChar;
+                }
+            }
+            return start + 1;
+        }
+    }
+
+    /**
+     * Returns the result of String.replace(oldChar, newChar), or null
+     * if oldChar does not occur.
+     */
+    static String replace(byte[] value, char oldChar, char newChar) {
+        int len = value.length >> 1;
+        int i = -1;
+        while (++i < len) {
+            if (getChar(value, i) == oldChar) {
+                break;
+            }
+        }
+        if (i == len) {
+            return null;
+        }
+        byte buf[] = Arrays.copyOf(value, value.length);
+        while (i < len) {
+            if (getChar(buf, i) == oldChar) {
+                putChar(buf, i, newChar);
+            }
+            i++;
+        }
+        // Replacing the only non-Latin-1 chars may allow compaction
+        if (String.COMPACT_STRINGS && !StringLatin1.canEncode(oldChar) &&
+            StringLatin1.canEncode(newChar)) {
+            byte[] val = compress(buf, 0, len);
+            if (val != null) {
+                return new String(val, LATIN1);
+            }
+        }
+        return new String(buf, UTF16);
+    }
+
+    /**
+     * Returns the result of String.trim(), or null if there is no
+     * leading or trailing white space.
+     */
+    static String trim(byte[] value) {
+        int length = value.length >> 1;
+        int len = length;
+        int st = 0;
+        while (st < len && getChar(value, st) <= ' ') {
+            st++;
+        }
+        while (st < len && getChar(value, len - 1) <= ' ') {
+            len--;
+        }
+        return ((st > 0) || (len < length )) ?
+            newString(value, st, len - st) : null;
+    }
+
+    /**
+     * Returns a string holding len chars of val starting at index,
+     * compacted to Latin-1 when possible.
+     */
+    static String newString(byte[] val, int index, int len) {
+        if (String.COMPACT_STRINGS) {
+            byte[] buf = compress(val, index, len);
+            if (buf != null) {
+                return new String(buf, LATIN1);
+            }
+        }
+        int last = index + len;
+        return new String(Arrays.copyOfRange(val, index << 1, last << 1),
+                          UTF16);
+    }
+
+    /**
+     * Places the characters representing the integer i into the UTF-16
+     * value buf, ending just before character index "index".
+     *
+     * @see Integer#getChars(int, int, char[])
+     */
+    static void getChars(int i, int index, byte[] buf) {
+        int q, r;
+        int charPos = index;
+        boolean negative = (i < 0);
+
+        if (negative) {
+            i = -i;
+        }
+
+        // Generate two digits per iteration
+        while (i >= 65536) {
+            q = i / 100;
+        // really: r = i - (q * 100);
+            r = i - ((q << 6) + (q << 5) + (q << 2));
+            i = q;
+            putChar(buf, --charPos, Integer.DigitOnes[r]);
+            putChar(buf, --charPos, Integer.DigitTens[r]);
+        }
+
+        // Fall thru to fast mode for smaller numbers
+        for (;;) {
+            q = (i * 52429) >>> (16+3);
+            r = i - ((q << 3) + (q << 1));  // r = i-(q*10) ...
+            putChar(buf, --charPos, Integer.digits[r]);
+            i = q;
+            if (i == 0) break;
+        }
+        if (negative) {
+            putChar(buf, --charPos, '-');
+        }
+    }
+
+    /**
+     * Places the characters representing the long l into the UTF-16
+     * value buf, ending just before character index "index".
+     *
+     * @see Long#getChars(long, int, char[])
+     */
+    static void getChars(long l, int index, byte[] buf) {
+        long q;
+        int r;
+        int charPos = index;
+        boolean negative = (l < 0);
+
+        if (negative) {
+            l = -l;
+        }
+
+        // Get 2 digits/iteration using longs until quotient fits into an int
+        while (l > Integer.MAX_VALUE) {
+            q = l / 100;
+            // really: r = l - (q * 100);
+            r = (int)(l - ((q << 6) + (q << 5) + (q << 2)));
+            l = q;
+            putChar(buf, --charPos, Integer.DigitOnes[r]);
+            putChar(buf, --charPos, Integer.DigitTens[r]);
+        }
+
+        // Get 2 digits/iteration using ints
+        int q2;
+        int i2 = (int)l;
+        while (i2 >= 65536) {
+            q2 = i2 / 100;
+            // really: r = i2 - (q2 * 100);
+            r = i2 - ((q2 << 6) + (q2 << 5) + (q2 << 2));
+            i2 = q2;
+            putChar(buf, --charPos, Integer.DigitOnes[r]);
+            putChar(buf, --charPos, Integer.DigitTens[r]);
+        }
+
+        // Fall thru to fast mode for smaller numbers
+        for (;;) {
+            q2 = (i2 * 52429) >>> (16+3);
+            r = i2 - ((q2 << 3) + (q2 << 1));  // r = i2-(q2*10) ...
+            putChar(buf, --charPos, Integer.digits[r]);
+            i2 = q2;
+            if (i2 == 0) break;
+        }
+        if (negative) {
+            putChar(buf, --charPos, '-');
+        }
+    }
+}
@@ -0,0 +1,1067 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Helper utilities for the parallel sort methods in Arrays.parallelSort.
+ *
+ * For each primitive type, plus Object, we define a static class to
+ * contain the Sorter and Merger implementations for that type:
+ *
+ * Sorter classes based mainly on CilkSort
+ * <A href="http://supertech.lcs.mit.edu/cilk/"> Cilk</A>:
+ * Basic algorithm:
+ * if array size is small, just use a sequential sort (via Arrays.sort)
+ *         Otherwise:
+ *         1. Break array in half.
+ *         2. For each half,
+ *             a. break the half in half (i.e., quarters),
+ *             b. sort the quarters
+ *             c. merge them together
+ *         3. merge together the two halves.
+ *
+ * One reason for splitting in quarters is that this guarantees that
+ * the final sort is in the main array, not the workspace array.
+ * (workspace and main swap roles on each subsort step.)  Leaf-level
+ * sorts use the associated sequential sort.
+ *
+ * Merger classes perform merging for Sorter.  They are structured
+ * such that if the underlying sort is stable (as is true for
+ * TimSort), then so is the full sort.  If big enough, they split the
+ * largest of the two partitions in half, find the greatest point in
+ * smaller partition less than the beginning of the second half of
+ * larger via binary search; and then merge in parallel the two
+ * partitions.  Each level joins its subtasks with invokeAll before
+ * merging.  Elements comparing equal to a split point always stay
+ * with the left partition's side of the split, which keeps Object
+ * sorts stable.
+ *
+ * The primitive float and double sorts first move NaNs to the end
+ * and afterwards order negative zeros before positive zeros exactly
+ * as DualPivotQuicksort does, so that merging may use the primitive
+ * comparison operators and the results are identical to those of
+ * Arrays.sort.
+ *
+ * Tasks run in the pool of the calling thread if it is a
+ * ForkJoinWorkerThread, otherwise in a shared pool created on first
+ * use with one thread per available processor.
+ */
+/*package*/ class ArraysParallelSortHelpers {
+
+    private ArraysParallelSortHelpers() {}
+
+    /** Number of CPUS, to decide whether to use parallel sorting */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Holder for the shared pool, created only when first used by a
+     * thread that is not already running in a ForkJoinPool.
+     */
+    static final class SortPool {
+        static final ForkJoinPool POOL = new ForkJoinPool(NCPU);
+    }
+
+    /**
+     * Returns the target parallelism of the pool in which a sort
+     * invoked by the current thread would run.
+     */
+    static int getParallelism() {
+        return ForkJoinTask.inForkJoinPool() ?
+            ForkJoinTask.getPool().getParallelism() : NCPU;
+    }
+
+    /**
+     * Runs the given sort task to completion in the current pool, if
+     * any, else the shared pool.
+     */
+    static void invoke(ForkJoinTask<?> task) {
+        if (ForkJoinTask.inForkJoinPool())
+            task.invoke();
+        else
+            SortPool.POOL.invoke(task);
+    }
+
+    /**
+     * Comparator used by the merges of Comparable Object sorts.
+     */
+    static final class NaturalOrder implements Comparator<Object> {
+        @SuppressWarnings("unchecked")
+        public int compare(Object first, Object second) {
+            return ((Comparable<Object>)first).compareTo(second);
+        }
+        static final NaturalOrder INSTANCE = new NaturalOrder();
+    }
+
+    /*
+     * Style note: The task classes have a lot of parameters, that are
+     * stored as task fields and copied to local variables and used in
+     * compute() methods, We pack these into as few code lines as
+     * possible, and hoist consistency checks among them before main
+     * loops, to reduce distraction.
+     */
+
+    /**
+     * Object version.
+     */
+    static final class FJObject {
+        static <T> void sort(T[] a, int fromIndex, int toIndex,
+                             Comparator<? super T> c, int gran) {
+            int n = toIndex - fromIndex;
+            @SuppressWarnings("unchecked")
+            T[] w = (T[])java.lang.reflect.Array.newInstance
+                (a.getClass().getComponentType(), n);
+            invoke(new Sorter<T>(a, w, fromIndex, n, 0, gran,
+                                 (c == null) ? NaturalOrder.INSTANCE : c));
+        }
+
+        static final class Sorter<T> extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final T[] a, w;
+            final int base, size, wbase, gran;
+            final Comparator<? super T> comparator;
+            Sorter(T[] a, T[] w, int base, int size, int wbase, int gran,
+                   Comparator<? super T> comparator) {
+                this.a = a; this.w = w; this.base = base; this.size = size;
+                this.wbase = wbase; this.gran = gran;
+                this.comparator = comparator;
+            }
+            protected void compute() {
+                Comparator<? super T> c = this.comparator;
+                T[] a = this.a, w = this.w; // localize all params
+                int b = this.base, n = this.size, wb = this.wbase, g = this.gran;
+                if (n <= g) {
+                    if (c == NaturalOrder.INSTANCE)
+                        ComparableTimSort.sort(a, b, b + n);
+                    else
+                        TimSort.sort(a, b, b + n, c);
+                    return;
+                }
+                int h = n >>> 1, q = h >>> 1, u = h + q; // quartiles
+                invokeAll(new Sorter<T>(a, w, b, q, wb, g, c),
+                          new Sorter<T>(a, w, b+q, h-q, wb+q, g, c),
+                          new Sorter<T>(a, w, b+h, q, wb+h, g, c),
+                          new Sorter<T>(a, w, b+u, n-u, wb+u, g, c));
+                invokeAll(new Merger<T>(a, w, b, q, b+q, h-q, wb, g, c),
+                          new Merger<T>(a, w, b+h, q, b+u, n-u, wb+h, g, c));
+                new Merger<T>(w, a, wb, h, wb+h, n-h, b, g, c).compute();
+            }
+        }
+
+        static final class Merger<T> extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final T[] a, w; // main and workspace arrays
+            final int lbase, lsize, rbase, rsize, wbase, gran;
+            Comparator<? super T> comparator;
+            Merger(T[] a, T[] w, int lbase, int lsize, int rbase,
+                   int rsize, int wbase, int gran,
+                   Comparator<? super T> comparator) {
+                this.a = a; this.w = w;
+                this.lbase = lbase; this.lsize = lsize;
+                this.rbase = rbase; this.rsize = rsize;
+                this.wbase = wbase; this.gran = gran;
+                this.comparator = comparator;
+            }
+            protected void compute() {
+                Comparator<? super T> c = this.comparator;
+                T[] a = this.a, w = this.w; // localize all params
+                int lb = this.lbase, ln = this.lsize, rb = this.rbase,
+                    rn = this.rsize, k = this.wbase, g = this.gran;
+                if (a == null || w == null || lb < 0 || rb < 0 || k < 0 ||
+                    c == null)
+                    throw new IllegalStateException(); // hoist checks
+                int lh, rh;
+                if (ln >= rn) {
+                    if (ln > g) { // split left half, lower bound in right
+                        T split = a[(lh = ln >>> 1) + lb];
+                        rh = rn;
+                        for (int lo = 0; lo < rh; ) {
+                            int rm = (lo + rh) >>> 1;
+                            if (c.compare(split, a[rm + rb]) <= 0)
+                                rh = rm;
+                            else
+                                lo = rm + 1;
+                        }
+                        invokeAll(new Merger<T>(a, w, lb, lh, rb, rh, k, g, c),
+                                  new Merger<T>(a, w, lb + lh, ln - lh, rb + rh,
+                                                rn - rh, k + lh + rh, g, c));
+                        return;
+                    }
+                }
+                else if (rn > g) { // split right half, upper bound in left
+                    T split = a[(rh = rn >>> 1) + rb];
+                    lh = ln;
+                    for (int lo = 0; lo < lh; ) {
+                        int lm = (lo + lh) >>> 1;
+                        if (c.compare(split, a[lm + lb]) < 0)
+                            lh = lm;
+                        else
+                            lo = lm + 1;
+                    }
+                    invokeAll(new Merger<T>(a, w, lb, lh, rb, rh, k, g, c),
+                              new Merger<T>(a, w, lb + lh, ln - lh, rb + rh,
+                                            rn - rh, k + lh + rh, g, c));
+                    return;
+                }
+
+                int lf = lb + ln, rf = rb + rn;
+                while (lb < lf && rb < rf) {
+                    T t, al, ar;
+                    if (c.compare((al = a[lb]), (ar = a[rb])) <= 0) {
+                        lb++; t = al;
+                    }
+                    else {
+                        rb++; t = ar;
+                    }
+                    w[k++] = t;
+                }
+                if (rb < rf)
+                    System.arraycopy(a, rb, w, k, rf - rb);
+                else if (lb < lf)
+                    System.arraycopy(a, lb, w, k, lf - lb);
+            }
+        }
+    } // FJObject
+
+    /**
+     * Byte version.
+     */
+    static final class FJByte {
+        static void sort(byte[] a, int fromIndex, int toIndex, int gran) {
+            int n = toIndex - fromIndex;
+            invoke(new Sorter(a, new byte[n], fromIndex, n, 0, gran));
+        }
+
+        static final class Sorter extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final byte[] a, w;
+            final int base, size, wbase, gran;
+            Sorter(byte[] a, byte[] w, int base, int size, int wbase,
+                   int gran) {
+                this.a = a; this.w = w; this.base = base; this.size = size;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                byte[] a = this.a, w = this.w; // localize all params
+                int b = this.base, n = this.size, wb = this.wbase, g = this.gran;
+                if (n <= g) {
+                    DualPivotQuicksort.sort(a, b, b + n - 1);
+                    return;
+                }
+                int h = n >>> 1, q = h >>> 1, u = h + q; // quartiles
+                invokeAll(new Sorter(a, w, b, q, wb, g),
+                          new Sorter(a, w, b+q, h-q, wb+q, g),
+                          new Sorter(a, w, b+h, q, wb+h, g),
+                          new Sorter(a, w, b+u, n-u, wb+u, g));
+                invokeAll(new Merger(a, w, b, q, b+q, h-q, wb, g),
+                          new Merger(a, w, b+h, q, b+u, n-u, wb+h, g));
+                new Merger(w, a, wb, h, wb+h, n-h, b, g).compute();
+            }
+        }
+
+        static final class Merger extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final byte[] a, w; // main and workspace arrays
+            final int lbase, lsize, rbase, rsize, wbase, gran;
+            Merger(byte[] a, byte[] w, int lbase, int lsize, int rbase,
+                   int rsize, int wbase, int gran) {
+                this.a = a; this.w = w;
+                this.lbase = lbase; this.lsize = lsize;
+                this.rbase = rbase; this.rsize = rsize;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                byte[] a = this.a, w = this.w; // localize all params
+                int lb = this.lbase, ln = this.lsize, rb = this.rbase,
+                    rn = this.rsize, k = this.wbase, g = this.gran;
+                if (a == null || w == null || lb < 0 || rb < 0 || k < 0)
+                    throw new IllegalStateException(); // hoist checks
+                int lh, rh;
+                if (ln >= rn) {
+                    if (ln > g) { // split left half, lower bound in right
+                        byte split = a[(lh = ln >>> 1) + lb];
+                        rh = rn;
+                        for (int lo = 0; lo < rh; ) {
+                            int rm = (lo + rh) >>> 1;
+                            if (split <= a[rm + rb])
+                                rh = rm;
+                            else
+                                lo = rm + 1;
+                        }
+                        invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                                  new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                             rn - rh, k + lh + rh, g));
+                        return;
+                    }
+                }
+                else if (rn > g) { // split right half, upper bound in left
+                    byte split = a[(rh = rn >>> 1) + rb];
+                    lh = ln;
+                    for (int lo = 0; lo < lh; ) {
+                        int lm = (lo + lh) >>> 1;
+                        if (split < a[lm + lb])
+                            lh = lm;
+                        else
+                            lo = lm + 1;
+                    }
+                    invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                              new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                         rn - rh, k + lh + rh, g));
+                    return;
+                }
+
+                int lf = lb + ln, rf = rb + rn;
+                while (lb < lf && rb < rf) {
+                    byte t, al, ar;
+                    if ((al = a[lb]) <= (ar = a[rb])) {
+                        lb++; t = al;
+                    }
+                    else {
+                        rb++; t = ar;
+                    }
+                    w[k++] = t;
+                }
+                if (rb < rf)
+                    System.arraycopy(a, rb, w, k, rf - rb);
+                else if (lb < lf)
+                    System.arraycopy(a, lb, w, k, lf - lb);
+            }
+        }
+    } // FJByte
+
+    /**
+     * Char version.
+     */
+    static final class FJChar {
+        static void sort(char[] a, int fromIndex, int toIndex, int gran) {
+            int n = toIndex - fromIndex;
+            invoke(new Sorter(a, new char[n], fromIndex, n, 0, gran));
+        }
+
+        static final class Sorter extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final char[] a, w;
+            final int base, size, wbase, gran;
+            Sorter(char[] a, char[] w, int base, int size, int wbase,
+                   int gran) {
+                this.a = a; this.w = w; this.base = base; this.size = size;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                char[] a = this.a, w = this.w; // localize all params
+                int b = this.base, n = this.size, wb = this.wbase, g = this.gran;
+                if (n <= g) {
+                    DualPivotQuicksort.sort(a, b, b + n - 1);
+                    return;
+                }
+                int h = n >>> 1, q = h >>> 1, u = h + q; // quartiles
+                invokeAll(new Sorter(a, w, b, q, wb, g),
+                          new Sorter(a, w, b+q, h-q, wb+q, g),
+                          new Sorter(a, w, b+h, q, wb+h, g),
+                          new Sorter(a, w, b+u, n-u, wb+u, g));
+                invokeAll(new Merger(a, w, b, q, b+q, h-q, wb, g),
+                          new Merger(a, w, b+h, q, b+u, n-u, wb+h, g));
+                new Merger(w, a, wb, h, wb+h, n-h, b, g).compute();
+            }
+        }
+
+        static final class Merger extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final char[] a, w; // main and workspace arrays
+            final int lbase, lsize, rbase, rsize, wbase, gran;
+            Merger(char[] a, char[] w, int lbase, int lsize, int rbase,
+                   int rsize, int wbase, int gran) {
+                this.a = a; this.w = w;
+                this.lbase = lbase; this.lsize = lsize;
+                this.rbase = rbase; this.rsize = rsize;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                char[] a = this.a, w = this.w; // localize all params
+                int lb = this.lbase, ln = this.lsize, rb = this.rbase,
+                    rn = this.rsize, k = this.wbase, g = this.gran;
+                if (a == null || w == null || lb < 0 || rb < 0 || k < 0)
+                    throw new IllegalStateException(); // hoist checks
+                int lh, rh;
+                if (ln >= rn) {
+                    if (ln > g) { // split left half, lower bound in right
+                        char split = a[(lh = ln >>> 1) + lb];
+                        rh = rn;
+                        for (int lo = 0; lo < rh; ) {
+                            int rm = (lo + rh) >>> 1;
+                            if (split <= a[rm + rb])
+                                rh = rm;
+                            else
+                                lo = rm + 1;
+                        }
+                        invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                                  new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                             rn - rh, k + lh + rh, g));
+                        return;
+                    }
+                }
+                else if (rn > g) { // split right half, upper bound in left
+                    char split = a[(rh = rn >>> 1) + rb];
+                    lh = ln;
+                    for (int lo = 0; lo < lh; ) {
+                        int lm = (lo + lh) >>> 1;
+                        if (split < a[lm + lb])
+                            lh = lm;
+                        else
+                            lo = lm + 1;
+                    }
+                    invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                              new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                         rn - rh, k + lh + rh, g));
+                    return;
+                }
+
+                int lf = lb + ln, rf = rb + rn;
+                while (lb < lf && rb < rf) {
+                    char t, al, ar;
+                    if ((al = a[lb]) <= (ar = a[rb])) {
+                        lb++; t = al;
+                    }
+                    else {
+                        rb++; t = ar;
+                    }
+                    w[k++] = t;
+                }
+                if (rb < rf)
+                    System.arraycopy(a, rb, w, k, rf - rb);
+                else if (lb < lf)
+                    System.arraycopy(a, lb, w, k, lf - lb);
+            }
+        }
+    } // FJChar
+
+    /**
+     * Short version.
+     */
+    static final class FJShort {
+        static void sort(short[] a, int fromIndex, int toIndex, int gran) {
+            int n = toIndex - fromIndex;
+            invoke(new Sorter(a, new short[n], fromIndex, n, 0, gran));
+        }
+
+        static final class Sorter extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final short[] a, w;
+            final int base, size, wbase, gran;
+            Sorter(short[] a, short[] w, int base, int size, int wbase,
+                   int gran) {
+                this.a = a; this.w = w; this.base = base; this.size = size;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                short[] a = this.a, w = this.w; // localize all params
+                int b = this.base, n = this.size, wb = this.wbase, g = this.gran;
+                if (n <= g) {
+                    DualPivotQuicksort.sort(a, b, b + n - 1);
+                    return;
+                }
+                int h = n >>> 1, q = h >>> 1, u = h + q; // quartiles
+                invokeAll(new Sorter(a, w, b, q, wb, g),
+                          new Sorter(a, w, b+q, h-q, wb+q, g),
+                          new Sorter(a, w, b+h, q, wb+h, g),
+                          new Sorter(a, w, b+u, n-u, wb+u, g));
+                invokeAll(new Merger(a, w, b, q, b+q, h-q, wb, g),
+                          new Merger(a, w, b+h, q, b+u, n-u, wb+h, g));
+                new Merger(w, a, wb, h, wb+h, n-h, b, g).compute();
+            }
+        }
+
+        static final class Merger extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final short[] a, w; // main and workspace arrays
+            final int lbase, lsize, rbase, rsize, wbase, gran;
+            Merger(short[] a, short[] w, int lbase, int lsize, int rbase,
+                   int rsize, int wbase, int gran) {
+                this.a = a; this.w = w;
+                this.lbase = lbase; this.lsize = lsize;
+                this.rbase = rbase; this.rsize = rsize;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                short[] a = this.a, w = this.w; // localize all params
+                int lb = this.lbase, ln = this.lsize, rb = this.rbase,
+                    rn = this.rsize, k = this.wbase, g = this.gran;
+                if (a == null || w == null || lb < 0 || rb < 0 || k < 0)
+                    throw new IllegalStateException(); // hoist checks
+                int lh, rh;
+                if (ln >= rn) {
+                    if (ln > g) { // split left half, lower bound in right
+                        short split = a[(lh = ln >>> 1) + lb];
+                        rh = rn;
+                        for (int lo = 0; lo < rh; ) {
+                            int rm = (lo + rh) >>> 1;
+                            if (split <= a[rm + rb])
+                                rh = rm;
+                            else
+                                lo = rm + 1;
+                        }
+                        invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                                  new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                             rn - rh, k + lh + rh, g));
+                        return;
+                    }
+                }
+                else if (rn > g) { // split right half, upper bound in left
+                    short split = a[(rh = rn >>> 1) + rb];
+                    lh = ln;
+                    for (int lo = 0; lo < lh; ) {
+                        int lm = (lo + lh) >>> 1;
+                        if (split < a[lm + lb])
+                            lh = lm;
+                        else
+                            lo = lm + 1;
+                    }
+                    invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                              new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                         rn - rh, k + lh + rh, g));
+                    return;
+                }
+
+                int lf = lb + ln, rf = rb + rn;
+                while (lb < lf && rb < rf) {
+                    short t, al, ar;
+                    if ((al = a[lb]) <= (ar = a[rb])) {
+                        lb++; t = al;
+                    }
+                    else {
+                        rb++; t = ar;
+                    }
+                    w[k++] = t;
+                }
+                if (rb < rf)
+                    System.arraycopy(a, rb, w, k, rf - rb);
+                else if (lb < lf)
+                    System.arraycopy(a, lb, w, k, lf - lb);
+            }
+        }
+    } // FJShort
+
+    /**
+     * Int version.
+     */
+    static final class FJInt {
+        static void sort(int[] a, int fromIndex, int toIndex, int gran) {
+            int n = toIndex - fromIndex;
+            invoke(new Sorter(a, new int[n], fromIndex, n, 0, gran));
+        }
+
+        static final class Sorter extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final int[] a, w;
+            final int base, size, wbase, gran;
+            Sorter(int[] a, int[] w, int base, int size, int wbase,
+                   int gran) {
+                this.a = a; this.w = w; this.base = base; this.size = size;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                int[] a = this.a, w = this.w; // localize all params
+                int b = this.base, n = this.size, wb = this.wbase, g = this.gran;
+                if (n <= g) {
+                    DualPivotQuicksort.sort(a, b, b + n - 1);
+                    return;
+                }
+                int h = n >>> 1, q = h >>> 1, u = h + q; // quartiles
+                invokeAll(new Sorter(a, w, b, q, wb, g),
+                          new Sorter(a, w, b+q, h-q, wb+q, g),
+                          new Sorter(a, w, b+h, q, wb+h, g),
+                          new Sorter(a, w, b+u, n-u, wb+u, g));
+                invokeAll(new Merger(a, w, b, q, b+q, h-q, wb, g),
+                          new Merger(a, w, b+h, q, b+u, n-u, wb+h, g));
+                new Merger(w, a, wb, h, wb+h, n-h, b, g).compute();
+            }
+        }
+
+        static final class Merger extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final int[] a, w; // main and workspace arrays
+            final int lbase, lsize, rbase, rsize, wbase, gran;
+            Merger(int[] a, int[] w, int lbase, int lsize, int rbase,
+                   int rsize, int wbase, int gran) {
+                this.a = a; this.w = w;
+                this.lbase = lbase; this.lsize = lsize;
+                this.rbase = rbase; this.rsize = rsize;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                int[] a = this.a, w = this.w; // localize all params
+                int lb = this.lbase, ln = this.lsize, rb = this.rbase,
+                    rn = this.rsize, k = this.wbase, g = this.gran;
+                if (a == null || w == null || lb < 0 || rb < 0 || k < 0)
+                    throw new IllegalStateException(); // hoist checks
+                int lh, rh;
+                if (ln >= rn) {
+                    if (ln > g) { // split left half, lower bound in right
+                        int split = a[(lh = ln >>> 1) + lb];
+                        rh = rn;
+                        for (int lo = 0; lo < rh; ) {
+                            int rm = (lo + rh) >>> 1;
+                            if (split <= a[rm + rb])
+                                rh = rm;
+                            else
+                                lo = rm + 1;
+                        }
+                        invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                                  new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                             rn - rh, k + lh + rh, g));
+                        return;
+                    }
+                }
+                else if (rn > g) { // split right half, upper bound in left
+                    int split = a[(rh = rn >>> 1) + rb];
+                    lh = ln;
+                    for (int lo = 0; lo < lh; ) {
+                        int lm = (lo + lh) >>> 1;
+                        if (split < a[lm + lb])
+                            lh = lm;
+                        else
+                            lo = lm + 1;
+                    }
+                    invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                              new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                         rn - rh, k + lh + rh, g));
+                    return;
+                }
+
+                int lf = lb + ln, rf = rb + rn;
+                while (lb < lf && rb < rf) {
+                    int t, al, ar;
+                    if ((al = a[lb]) <= (ar = a[rb])) {
+                        lb++; t = al;
+                    }
+                    else {
+                        rb++; t = ar;
+                    }
+                    w[k++] = t;
+                }
+                if (rb < rf)
+                    System.arraycopy(a, rb, w, k, rf - rb);
+                else if (lb < lf)
+                    System.arraycopy(a, lb, w, k, lf - lb);
+            }
+        }
+    } // FJInt
+
+    /**
+     * Long version.
+     */
+    static final class FJLong {
+        static void sort(long[] a, int fromIndex, int toIndex, int gran) {
+            int n = toIndex - fromIndex;
+            invoke(new Sorter(a, new long[n], fromIndex, n, 0, gran));
+        }
+
+        static final class Sorter extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final long[] a, w;
+            final int base, size, wbase, gran;
+            Sorter(long[] a, long[] w, int base, int size, int wbase,
+                   int gran) {
+                this.a = a; this.w = w; this.base = base; this.size = size;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                long[] a = this.a, w = this.w; // localize all params
+                int b = this.base, n = this.size, wb = this.wbase, g = this.gran;
+                if (n <= g) {
+                    DualPivotQuicksort.sort(a, b, b + n - 1);
+                    return;
+                }
+                int h = n >>> 1, q = h >>> 1, u = h + q; // quartiles
+                invokeAll(new Sorter(a, w, b, q, wb, g),
+                          new Sorter(a, w, b+q, h-q, wb+q, g),
+                          new Sorter(a, w, b+h, q, wb+h, g),
+                          new Sorter(a, w, b+u, n-u, wb+u, g));
+                invokeAll(new Merger(a, w, b, q, b+q, h-q, wb, g),
+                          new Merger(a, w, b+h, q, b+u, n-u, wb+h, g));
+                new Merger(w, a, wb, h, wb+h, n-h, b, g).compute();
+            }
+        }
+
+        static final class Merger extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final long[] a, w; // main and workspace arrays
+            final int lbase, lsize, rbase, rsize, wbase, gran;
+            Merger(long[] a, long[] w, int lbase, int lsize, int rbase,
+                   int rsize, int wbase, int gran) {
+                this.a = a; this.w = w;
+                this.lbase = lbase; this.lsize = lsize;
+                this.rbase = rbase; this.rsize = rsize;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                long[] a = this.a, w = this.w; // localize all params
+                int lb = this.lbase, ln = this.lsize, rb = this.rbase,
+                    rn = this.rsize, k = this.wbase, g = this.gran;
+                if (a == null || w == null || lb < 0 || rb < 0 || k < 0)
+                    throw new IllegalStateException(); // hoist checks
+                int lh, rh;
+                if (ln >= rn) {
+                    if (ln > g) { // split left half, lower bound in right
+                        long split = a[(lh = ln >>> 1) + lb];
+                        rh = rn;
+                        for (int lo = 0; lo < rh; ) {
+                            int rm = (lo + rh) >>> 1;
+                            if (split <= a[rm + rb])
+                                rh = rm;
+                            else
+                                lo = rm + 1;
+                        }
+                        invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                                  new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                             rn - rh, k + lh + rh, g));
+                        return;
+                    }
+                }
+                else if (rn > g) { // split right half, upper bound in left
+                    long split = a[(rh = rn >>> 1) + rb];
+                    lh = ln;
+                    for (int lo = 0; lo < lh; ) {
+                        int lm = (lo + lh) >>> 1;
+                        if (split < a[lm + lb])
+                            lh = lm;
+                        else
+                            lo = lm + 1;
+                    }
+                    invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                              new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                         rn - rh, k + lh + rh, g));
+                    return;
+                }
+
+                int lf = lb + ln, rf = rb + rn;
+                while (lb < lf && rb < rf) {
+                    long t, al, ar;
+                    if ((al = a[lb]) <= (ar = a[rb])) {
+                        lb++; t = al;
+                    }
+                    else {
+                        rb++; t = ar;
+                    }
+                    w[k++] = t;
+                }
+                if (rb < rf)
+                    System.arraycopy(a, rb, w, k, rf - rb);
+                else if (lb < lf)
+                    System.arraycopy(a, lb, w, k, lf - lb);
+            }
+        }
+    } // FJLong
+
+    /**
+     * Float version.
+     */
+    static final class FJFloat {
+        static void sort(float[] a, int fromIndex, int toIndex, int gran) {
+            /*
+             * Move NaNs to the end exactly as DualPivotQuicksort does,
+             * so that the merges may use primitive comparisons.
+             */
+            int right = toIndex - 1;
+            while (fromIndex <= right && Float.isNaN(a[right]))
+                --right;
+            for (int k = right; --k >= fromIndex; ) {
+                float ak = a[k];
+                if (ak != ak) { // a[k] is NaN
+                    a[k] = a[right];
+                    a[right] = ak;
+                    --right;
+                }
+            }
+            toIndex = right + 1;
+            int n = toIndex - fromIndex;
+            invoke(new Sorter(a, new float[n], fromIndex, n, 0, gran));
+
+            /*
+             * The merges treat -0.0 and 0.0 as equal, so the zeros
+             * form one run in arbitrary order.  Place the negative
+             * zeros first.
+             */
+            int lo = fromIndex, hi = toIndex;
+            while (lo < hi) { // find first element not less than zero
+                int middle = (lo + hi) >>> 1;
+                if (a[middle] < 0.0f)
+                    lo = middle + 1;
+                else
+                    hi = middle;
+            }
+            int negativeZeros = 0, k = lo;
+            for (; k < toIndex && a[k] == 0.0f; ++k) {
+                if (Float.floatToRawIntBits(a[k]) < 0) // a[k] is -0.0
+                    ++negativeZeros;
+            }
+            for (int i = lo; i < k; ++i)
+                a[i] = (i - lo < negativeZeros) ? -0.0f : 0.0f;
+        }
+
+        static final class Sorter extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final float[] a, w;
+            final int base, size, wbase, gran;
+            Sorter(float[] a, float[] w, int base, int size, int wbase,
+                   int gran) {
+                this.a = a; this.w = w; this.base = base; this.size = size;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                float[] a = this.a, w = this.w; // localize all params
+                int b = this.base, n = this.size, wb = this.wbase, g = this.gran;
+                if (n <= g) {
+                    DualPivotQuicksort.sort(a, b, b + n - 1);
+                    return;
+                }
+                int h = n >>> 1, q = h >>> 1, u = h + q; // quartiles
+                invokeAll(new Sorter(a, w, b, q, wb, g),
+                          new Sorter(a, w, b+q, h-q, wb+q, g),
+                          new Sorter(a, w, b+h, q, wb+h, g),
+                          new Sorter(a, w, b+u, n-u, wb+u, g));
+                invokeAll(new Merger(a, w, b, q, b+q, h-q, wb, g),
+                          new Merger(a, w, b+h, q, b+u, n-u, wb+h, g));
+                new Merger(w, a, wb, h, wb+h, n-h, b, g).compute();
+            }
+        }
+
+        static final class Merger extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final float[] a, w; // main and workspace arrays
+            final int lbase, lsize, rbase, rsize, wbase, gran;
+            Merger(float[] a, float[] w, int lbase, int lsize, int rbase,
+                   int rsize, int wbase, int gran) {
+                this.a = a; this.w = w;
+                this.lbase = lbase; this.lsize = lsize;
+                this.rbase = rbase; this.rsize = rsize;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                float[] a = this.a, w = this.w; // localize all params
+                int lb = this.lbase, ln = this.lsize, rb = this.rbase,
+                    rn = this.rsize, k = this.wbase, g = this.gran;
+                if (a == null || w == null || lb < 0 || rb < 0 || k < 0)
+                    throw new IllegalStateException(); // hoist checks
+                int lh, rh;
+                if (ln >= rn) {
+                    if (ln > g) { // split left half, lower bound in right
+                        float split = a[(lh = ln >>> 1) + lb];
+                        rh = rn;
+                        for (int lo = 0; lo < rh; ) {
+                            int rm = (lo + rh) >>> 1;
+                            if (split <= a[rm + rb])
+                                rh = rm;
+                            else
+                                lo = rm + 1;
+                        }
+                        invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                                  new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                             rn - rh, k + lh + rh, g));
+                        return;
+                    }
+                }
+                else if (rn > g) { // split right half, upper bound in left
+                    float split = a[(rh = rn >>> 1) + rb];
+                    lh = ln;
+                    for (int lo = 0; lo < lh; ) {
+                        int lm = (lo + lh) >>> 1;
+                        if (split < a[lm + lb])
+                            lh = lm;
+                        else
+                            lo = lm + 1;
+                    }
+                    invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                              new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                         rn - rh, k + lh + rh, g));
+                    return;
+                }
+
+                int lf = lb + ln, rf = rb + rn;
+                while (lb < lf && rb < rf) {
+                    float t, al, ar;
+                    if ((al = a[lb]) <= (ar = a[rb])) {
+                        lb++; t = al;
+                    }
+                    else {
+                        rb++; t = ar;
+                    }
+                    w[k++] = t;
+                }
+                if (rb < rf)
+                    System.arraycopy(a, rb, w, k, rf - rb);
+                else if (lb < lf)
+                    System.arraycopy(a, lb, w, k, lf - lb);
+            }
+        }
+    } // FJFloat
+
+    /**
+     * Double version.
+     */
+    static final class FJDouble {
+        static void sort(double[] a, int fromIndex, int toIndex, int gran) {
+            /*
+             * Move NaNs to the end exactly as DualPivotQuicksort does,
+             * so that the merges may use primitive comparisons.
+             */
+            int right = toIndex - 1;
+            while (fromIndex <= right && Double.isNaN(a[right]))
+                --right;
+            for (int k = right; --k >= fromIndex; ) {
+                double ak = a[k];
+                if (ak != ak) { // a[k] is NaN
+                    a[k] = a[right];
+                    a[right] = ak;
+                    --right;
+                }
+            }
+            toIndex = right + 1;
+            int n = toIndex - fromIndex;
+            invoke(new Sorter(a, new double[n], fromIndex, n, 0, gran));
+
+            /*
+             * The merges treat -0.0 and 0.0 as equal, so the zeros
+             * form one run in arbitrary order.  Place the negative
+             * zeros first.
+             */
+            int lo = fromIndex, hi = toIndex;
+            while (lo < hi) { // find first element not less than zero
+                int middle = (lo + hi) >>> 1;
+                if (a[middle] < 0.0d)
+                    lo = middle + 1;
+                else
+                    hi = middle;
+            }
+            int negativeZeros = 0, k = lo;
+            for (; k < toIndex && a[k] == 0.0d; ++k) {
+                if (Double.doubleToRawLongBits(a[k]) < 0) // a[k] is -0.0
+                    ++negativeZeros;
+            }
+            for (int i = lo; i < k; ++i)
+                a[i] = (i - lo < negativeZeros) ? -0.0d : 0.0d;
+        }
+
+        static final class Sorter extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final double[] a, w;
+            final int base, size, wbase, gran;
+            Sorter(double[] a, double[] w, int base, int size, int wbase,
+                   int gran) {
+                this.a = a; this.w = w; this.base = base; this.size = size;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                double[] a = this.a, w = this.w; // localize all params
+                int b = this.base, n = this.size, wb = this.wbase, g = this.gran;
+                if (n <= g) {
+                    DualPivotQuicksort.sort(a, b, b + n - 1);
+                    return;
+                }
+                int h = n >>> 1, q = h >>> 1, u = h + q; // quartiles
+                invokeAll(new Sorter(a, w, b, q, wb, g),
+                          new Sorter(a, w, b+q, h-q, wb+q, g),
+                          new Sorter(a, w, b+h, q, wb+h, g),
+                          new Sorter(a, w, b+u, n-u, wb+u, g));
+                invokeAll(new Merger(a, w, b, q, b+q, h-q, wb, g),
+                          new Merger(a, w, b+h, q, b+u, n-u, wb+h, g));
+                new Merger(w, a, wb, h, wb+h, n-h, b, g).compute();
+            }
+        }
+
+        static final class Merger extends RecursiveAction {
+            private static final long serialVersionUID = 2446542900576103244L;
+            final double[] a, w; // main and workspace arrays
+            final int lbase, lsize, rbase, rsize, wbase, gran;
+            Merger(double[] a, double[] w, int lbase, int lsize, int rbase,
+                   int rsize, int wbase, int gran) {
+                this.a = a; this.w = w;
+                this.lbase = lbase; this.lsize = lsize;
+                this.rbase = rbase; this.rsize = rsize;
+                this.wbase = wbase; this.gran = gran;
+            }
+            protected void compute() {
+                double[] a = this.a, w = this.w; // localize all params
+                int lb = this.lbase, ln = this.lsize, rb = this.rbase,
+                    rn = this.rsize, k = this.wbase, g = this.gran;
+                if (a == null || w == null || lb < 0 || rb < 0 || k < 0)
+                    throw new IllegalStateException(); // hoist checks
+                int lh, rh;
+                if (ln >= rn) {
+                    if (ln > g) { // split left half, lower bound in right
+                        double split = a[(lh = ln >>> 1) + lb];
+                        rh = rn;
+                        for (int lo = 0; lo < rh; ) {
+                            int rm = (lo + rh) >>> 1;
+                            if (split <= a[rm + rb])
+                                rh = rm;
+                            else
+                                lo = rm + 1;
+                        }
+                        invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                                  new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                             rn - rh, k + lh + rh, g));
+                        return;
+                    }
+                }
+                else if (rn > g) { // split right half, upper bound in left
+                    double split = a[(rh = rn >>> 1) + rb];
+                    lh = ln;
+                    for (int lo = 0; lo < lh; ) {
+                        int lm = (lo + lh) >>> 1;
+                        if (split < a[lm + lb])
+                            lh = lm;
+                        else
+                            lo = lm + 1;
+                    }
+                    invokeAll(new Merger(a, w, lb, lh, rb, rh, k, g),
+                              new Merger(a, w, lb + lh, ln - lh, rb + rh,
+                                         rn - rh, k + lh + rh, g));
+                    return;
+                }
+
+                int lf = lb + ln, rf = rb + rn;
+                while (lb < lf && rb < rf) {
+                    double t, al, ar;
+                    if ((al = a[lb]) <= (ar = a[rb])) {
+                        lb++; t = al;
+                    }
+                    else {
+                        rb++; t = ar;
+                    }
+                    w[k++] = t;
+                }
+                if (rb < rf)
+                    System.arraycopy(a, rb, w, k, rf - rb);
+                else if (lb < lf)
+                    System.arraycopy(a, lb, w, k, lf - lb);
+            }
+        }
+    } // FJDouble
+}
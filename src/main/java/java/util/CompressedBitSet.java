@@ -0,0 +1,1659 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.primitive.IntIterator;
+
+/**
+ * A compressed vector of bits, for sets of nonnegative integers that
+ * may be sparse, clustered or dense.  Like {@link BitSet}, the bits
+ * of a {@code CompressedBitSet} are indexed by nonnegative integers,
+ * and may be examined, set, cleared and combined with the bits of
+ * another set through logical AND, inclusive OR, exclusive OR and
+ * AND NOT operations.  Unlike a {@code BitSet}, whose storage is
+ * proportional to the index of its highest set bit, storage is
+ * roughly proportional to the number of set bits, or to the number
+ * of runs of consecutive set bits, whichever is smaller.
+ *
+ * <p>The index space is divided into chunks of 2<sup>16</sup>
+ * consecutive bits.  Only chunks containing set bits are stored, each
+ * in one of three forms: a sorted array of the indices of its set
+ * bits, if there are few of them; a plain bitmap, otherwise; or a
+ * sorted list of runs of consecutive set bits, if that is smaller.
+ * The form of a chunk is chosen automatically as bits are set and
+ * cleared.  Runs are produced by the range operations, and by {@link
+ * #compact}, which converts each chunk to its smallest form.
+ * Logical operations on two sets only visit the chunks present in
+ * either, and operate on the stored forms directly, so they take
+ * time roughly proportional to the size of the stored forms rather
+ * than to the range of the indices.
+ *
+ * <p>By default, all bits in the set initially have the value
+ * {@code false}.
+ *
+ * <p>Unless otherwise noted, passing a null parameter to any of the
+ * methods in a {@code CompressedBitSet} will result in a
+ * {@code NullPointerException}.
+ *
+ * <p>A {@code CompressedBitSet} is not safe for multithreaded use
+ * without external synchronization.
+ *
+ * @see BitSet
+ * @since 1.7
+ */
+public class CompressedBitSet implements Cloneable, java.io.Serializable {
+    /*
+     * A bit index is split into a 15-bit key, its high bits, and a
+     * 16-bit low part.  The keys of the chunks that contain set bits
+     * are held in increasing order in "keys", and the corresponding
+     * chunks in "containers", so that a chunk is found by binary
+     * search.  A container never holds zero bits; containers that
+     * become empty are removed.
+     *
+     * There are three kinds of containers, as in "roaring" bitmaps:
+     * an ArrayContainer holds the sorted low parts of at most
+     * MAX_ARRAY bits; a BitmapContainer holds 1024 words and always
+     * more than MAX_ARRAY bits, so that it is never larger than the
+     * equivalent array; and a RunContainer holds sorted, disjoint and
+     * non-adjacent runs as (start, length - 1) pairs.  Set bits are
+     * added to ArrayContainers, which are converted to
+     * BitmapContainers when they overflow, and back when they become
+     * small again.  RunContainers are only created by the range
+     * operations and compact(), and are converted to one of the
+     * other kinds if single-bit updates fragment them.
+     *
+     * Containers are mutable and never shared between sets.  Binary
+     * operations on containers that take a mutable path (add,
+     * remove) return the container to use afterwards, which may be a
+     * different kind.  Logical operations on containers return new
+     * containers.  They handle arrays by lookups into the other
+     * container, and all other combinations word-wise.
+     */
+
+    /** The number of bits in the low part of a bit index. */
+    static final int CHUNK_BITS = 16;
+
+    /** The number of bits in a chunk. */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /** The number of possible chunk keys for nonnegative indices. */
+    static final int MAX_KEYS = 1 << (31 - CHUNK_BITS);
+
+    /** The number of words in a bitmap. */
+    static final int WORDS = CHUNK_SIZE >>> 6;
+
+    /** The maximum cardinality of an ArrayContainer. */
+    static final int MAX_ARRAY = 4096;
+
+    /** The maximum number of runs in a RunContainer. */
+    static final int MAX_RUNS = 2048;
+
+    /** Container kinds in the serialized form */
+    static final byte ARRAY = 0, BITMAP = 1, RUN = 2;
+
+    /** The keys of the chunks, in increasing order. */
+    private transient char[] keys;
+
+    /** The containers of the chunks. */
+    private transient Container[] containers;
+
+    /** The number of chunks. */
+    private transient int size;
+
+    private static final long serialVersionUID = -3286441398461937102L;
+
+    /**
+     * Creates a new bit set. All bits are initially {@code false}.
+     */
+    public CompressedBitSet() {
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    /**
+     * Returns a new compressed bit set containing all the bits in the
+     * given {@link BitSet}.
+     *
+     * @param bs the bit set
+     * @return a {@code CompressedBitSet} containing all the bits in
+     *         the bit set
+     */
+    public static CompressedBitSet valueOf(BitSet bs) {
+        long[] words = bs.toLongArray();
+        CompressedBitSet result = new CompressedBitSet();
+        for (int key = 0; key * WORDS < words.length; ++key) {
+            long[] w = Arrays.copyOfRange(words, key * WORDS,
+                                          (key + 1) * WORDS);
+            Container c = fromWords(w);
+            if (c.cardinality() > 0)
+                result.append(key, optimize(c));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new {@link BitSet} containing all the bits in this
+     * compressed bit set.  The storage of the result is proportional
+     * to the index of the highest set bit.
+     *
+     * @return a {@code BitSet} containing all the bits in this set
+     */
+    public BitSet toBitSet() {
+        int length = length();
+        long[] words = new long[(int) (((long) length + 63) >>> 6)];
+        for (int i = 0; i < size; ++i) {
+            int off = keys[i] * WORDS;
+            System.arraycopy(containers[i].words(), 0, words, off,
+                             Math.min(WORDS, words.length - off));
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Returns a new array containing the indices of the set bits, in
+     * increasing order.
+     *
+     * @return the indices of the set bits
+     */
+    public int[] toArray() {
+        int[] a = new int[cardinality()];
+        int n = 0;
+        for (IntIterator it = iterator(); it.hasNext(); )
+            a[n++] = it.nextInt();
+        return a;
+    }
+
+    /* ---------------- Chunk table -------------- */
+
+    /**
+     * Returns the index of the chunk with the given key, or
+     * (-(insertion point) - 1) if none.
+     */
+    private int indexOf(int key) {
+        return Arrays.binarySearch(keys, 0, size, (char) key);
+    }
+
+    /**
+     * Returns the index of the first chunk whose key is not less than
+     * the given key.
+     */
+    private int lowerBound(int key) {
+        int i = indexOf(key);
+        return (i >= 0) ? i : -i - 1;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n > keys.length) {
+            int len = Math.max(n, keys.length + (keys.length >> 1));
+            keys = Arrays.copyOf(keys, len);
+            containers = Arrays.copyOf(containers, len);
+        }
+    }
+
+    private void insertAt(int i, int key, Container c) {
+        ensureCapacity(size + 1);
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = (char) key;
+        containers[i] = c;
+        ++size;
+    }
+
+    private void append(int key, Container c) {
+        ensureCapacity(size + 1);
+        keys[size] = (char) key;
+        containers[size++] = c;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * Installs the container for chunk i, removing the chunk if the
+     * container is empty.
+     */
+    private void update(int i, Container c) {
+        if (c.cardinality() == 0)
+            removeAt(i);
+        else
+            containers[i] = c;
+    }
+
+    /**
+     * Replaces the chunk table with the given one, clearing unused
+     * slots.
+     */
+    private void install(char[] k, Container[] c, int n) {
+        keys = k;
+        containers = c;
+        size = n;
+    }
+
+    private static void checkIndex(int bitIndex) {
+        if (bitIndex < 0)
+            throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+    }
+
+    /**
+     * Checks that fromIndex ... toIndex is a valid range of bit indices.
+     */
+    private static void checkRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0)
+            throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        if (toIndex < 0)
+            throw new IndexOutOfBoundsException("toIndex < 0: " + toIndex);
+        if (fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex +
+                                                " > toIndex: " + toIndex);
+    }
+
+    /* ---------------- Single bits -------------- */
+
+    /**
+     * Sets the bit at the specified index to {@code true}.
+     *
+     * @param  bitIndex a bit index
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void set(int bitIndex) {
+        checkIndex(bitIndex);
+        int key = bitIndex >>> CHUNK_BITS;
+        int low = bitIndex & (CHUNK_SIZE - 1);
+        int i = indexOf(key);
+        if (i >= 0)
+            containers[i] = containers[i].add(low);
+        else
+            insertAt(-i - 1, key, new ArrayContainer(low));
+    }
+
+    /**
+     * Sets the bit at the specified index to the specified value.
+     *
+     * @param  bitIndex a bit index
+     * @param  value a boolean value to set
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void set(int bitIndex, boolean value) {
+        if (value)
+            set(bitIndex);
+        else
+            clear(bitIndex);
+    }
+
+    /**
+     * Sets the bit specified by the index to {@code false}.
+     *
+     * @param  bitIndex the index of the bit to be cleared
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void clear(int bitIndex) {
+        checkIndex(bitIndex);
+        int i = indexOf(bitIndex >>> CHUNK_BITS);
+        if (i >= 0)
+            update(i, containers[i].remove(bitIndex & (CHUNK_SIZE - 1)));
+    }
+
+    /**
+     * Sets the bit at the specified index to the complement of its
+     * current value.
+     *
+     * @param  bitIndex the index of the bit to flip
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void flip(int bitIndex) {
+        if (get(bitIndex))
+            clear(bitIndex);
+        else
+            set(bitIndex);
+    }
+
+    /**
+     * Returns the value of the bit with the specified index. The value
+     * is {@code true} if the bit with the index {@code bitIndex}
+     * is currently set in this {@code CompressedBitSet}; otherwise,
+     * the result is {@code false}.
+     *
+     * @param  bitIndex   the bit index
+     * @return the value of the bit with the specified index
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public boolean get(int bitIndex) {
+        checkIndex(bitIndex);
+        int i = indexOf(bitIndex >>> CHUNK_BITS);
+        return i >= 0 &&
+            containers[i].contains(bitIndex & (CHUNK_SIZE - 1));
+    }
+
+    /* ---------------- Ranges -------------- */
+
+    /** Range operations */
+    private static final int SET = 0, CLEAR = 1, FLIP = 2;
+
+    /**
+     * Applies a range operation to the bits from fromIndex
+     * (inclusive) to toIndex (exclusive), rebuilding the chunk table
+     * in one pass.
+     */
+    private void rangeOp(int fromIndex, int toIndex, int op) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex)
+            return;
+        int last = toIndex - 1;
+        int firstKey = fromIndex >>> CHUNK_BITS;
+        int lastKey = last >>> CHUNK_BITS;
+        int lo = lowerBound(firstKey);
+        int hi = lowerBound(lastKey + 1);
+        int cap = size - (hi - lo) +
+            ((op == CLEAR) ? hi - lo : lastKey - firstKey + 1);
+        char[] k = new char[Math.max(4, cap)];
+        Container[] cs = new Container[k.length];
+        System.arraycopy(keys, 0, k, 0, lo);
+        System.arraycopy(containers, 0, cs, 0, lo);
+        int n = lo;
+        for (int key = firstKey, j = lo; key <= lastKey; ++key) {
+            Container c = null;
+            if (j < hi && keys[j] == key)
+                c = containers[j++];
+            else if (op == CLEAR) {
+                if (j == hi)
+                    break;
+                key = keys[j] - 1;      // skip to the next present chunk
+                continue;
+            }
+            int start = (key == firstKey) ? fromIndex & (CHUNK_SIZE - 1) : 0;
+            int end = (key == lastKey) ?
+                (last & (CHUNK_SIZE - 1)) + 1 : CHUNK_SIZE;
+            Container range = RunContainer.range(start, end);
+            Container r;
+            if (c == null)
+                r = range;
+            else if (start == 0 && end == CHUNK_SIZE && op != FLIP)
+                r = (op == SET) ? range : null;
+            else if (op == SET)
+                r = optimize(or(c, range));
+            else if (op == CLEAR)
+                r = optimize(andNot(c, range));
+            else
+                r = optimize(xor(c, range));
+            if (r != null && r.cardinality() > 0) {
+                k[n] = (char) key;
+                cs[n++] = r;
+            }
+        }
+        System.arraycopy(keys, hi, k, n, size - hi);
+        System.arraycopy(containers, hi, cs, n, size - hi);
+        install(k, cs, n + size - hi);
+    }
+
+    /**
+     * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to {@code true}.
+     *
+     * @param  fromIndex index of the first bit to be set
+     * @param  toIndex index after the last bit to be set
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void set(int fromIndex, int toIndex) {
+        rangeOp(fromIndex, toIndex, SET);
+    }
+
+    /**
+     * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to the specified value.
+     *
+     * @param  fromIndex index of the first bit to be set
+     * @param  toIndex index after the last bit to be set
+     * @param  value value to set the selected bits to
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void set(int fromIndex, int toIndex, boolean value) {
+        rangeOp(fromIndex, toIndex, value ? SET : CLEAR);
+    }
+
+    /**
+     * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to {@code false}.
+     *
+     * @param  fromIndex index of the first bit to be cleared
+     * @param  toIndex index after the last bit to be cleared
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void clear(int fromIndex, int toIndex) {
+        rangeOp(fromIndex, toIndex, CLEAR);
+    }
+
+    /**
+     * Sets each bit from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to the complement of its current
+     * value.
+     *
+     * @param  fromIndex index of the first bit to flip
+     * @param  toIndex index after the last bit to flip
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void flip(int fromIndex, int toIndex) {
+        rangeOp(fromIndex, toIndex, FLIP);
+    }
+
+    /**
+     * Sets all of the bits in this CompressedBitSet to {@code false}.
+     */
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    /* ---------------- Searching -------------- */
+
+    /**
+     * Returns the index of the first bit that is set to {@code true}
+     * that occurs on or after the specified starting index. If no such
+     * bit exists then {@code -1} is returned.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the next set bit, or {@code -1} if there
+     *         is no such bit
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex < 0)
+            throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        int key = fromIndex >>> CHUNK_BITS;
+        int i = lowerBound(key);
+        if (i < size && keys[i] == key) {
+            int r = containers[i].nextSetBit(fromIndex & (CHUNK_SIZE - 1));
+            if (r >= 0)
+                return (key << CHUNK_BITS) | r;
+            ++i;
+        }
+        return (i < size) ?
+            (keys[i] << CHUNK_BITS) | containers[i].first() : -1;
+    }
+
+    /**
+     * Returns the index of the first bit that is set to {@code false}
+     * that occurs on or after the specified starting index.  If all
+     * bits from the starting index up to {@link Integer#MAX_VALUE}
+     * are set, {@code -1} is returned.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the next clear bit, or {@code -1} if there
+     *         is no such bit
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public int nextClearBit(int fromIndex) {
+        if (fromIndex < 0)
+            throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        int key = fromIndex >>> CHUNK_BITS;
+        int low = fromIndex & (CHUNK_SIZE - 1);
+        for (int i = lowerBound(key); ; ++i) {
+            if (i >= size || keys[i] != key)
+                return (key << CHUNK_BITS) | low;
+            int r = containers[i].nextClearBit(low);
+            if (r < CHUNK_SIZE)
+                return (key << CHUNK_BITS) | r;
+            if (++key == MAX_KEYS)
+                return -1;
+            low = 0;
+        }
+    }
+
+    /**
+     * Returns the index of the nearest bit that is set to {@code true}
+     * that occurs on or before the specified starting index.
+     * If no such bit exists, or if {@code -1} is given as the
+     * starting index, then {@code -1} is returned.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the previous set bit, or {@code -1} if there
+     *         is no such bit
+     * @throws IndexOutOfBoundsException if the specified index is less
+     *         than {@code -1}
+     */
+    public int previousSetBit(int fromIndex) {
+        if (fromIndex < 0) {
+            if (fromIndex == -1)
+                return -1;
+            throw new IndexOutOfBoundsException(
+                "fromIndex < -1: " + fromIndex);
+        }
+        int key = fromIndex >>> CHUNK_BITS;
+        int i = lowerBound(key);
+        if (i < size && keys[i] == key) {
+            int r = containers[i].previousSetBit(fromIndex & (CHUNK_SIZE - 1));
+            if (r >= 0)
+                return (key << CHUNK_BITS) | r;
+        }
+        --i;
+        return (i >= 0) ?
+            (keys[i] << CHUNK_BITS) | containers[i].last() : -1;
+    }
+
+    /**
+     * Returns the index of the nearest bit that is set to {@code false}
+     * that occurs on or before the specified starting index.
+     * If no such bit exists, or if {@code -1} is given as the
+     * starting index, then {@code -1} is returned.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the previous clear bit, or {@code -1} if there
+     *         is no such bit
+     * @throws IndexOutOfBoundsException if the specified index is less
+     *         than {@code -1}
+     */
+    public int previousClearBit(int fromIndex) {
+        if (fromIndex < 0) {
+            if (fromIndex == -1)
+                return -1;
+            throw new IndexOutOfBoundsException(
+                "fromIndex < -1: " + fromIndex);
+        }
+        int key = fromIndex >>> CHUNK_BITS;
+        int low = fromIndex & (CHUNK_SIZE - 1);
+        int i = indexOf(key);
+        if (i < 0)
+            return fromIndex;
+        for (;;) {
+            int r = containers[i].previousClearBit(low);
+            if (r >= 0)
+                return (key << CHUNK_BITS) | r;
+            if (key-- == 0)
+                return -1;
+            if (--i < 0 || keys[i] != key)
+                return (key << CHUNK_BITS) | (CHUNK_SIZE - 1);
+            low = CHUNK_SIZE - 1;
+        }
+    }
+
+    /**
+     * Returns the "logical size" of this {@code CompressedBitSet}: the
+     * index of the highest set bit plus one. Returns zero if the set
+     * contains no set bits.
+     *
+     * @return the logical size of this {@code CompressedBitSet}
+     */
+    public int length() {
+        if (size == 0)
+            return 0;
+        return ((keys[size - 1] << CHUNK_BITS) |
+                containers[size - 1].last()) + 1;
+    }
+
+    /**
+     * Returns true if this {@code CompressedBitSet} contains no bits
+     * that are set to {@code true}.
+     *
+     * @return boolean indicating whether this {@code CompressedBitSet}
+     *         is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of bits set to {@code true} in this
+     * {@code CompressedBitSet}, or {@link Integer#MAX_VALUE} if all
+     * 2<sup>31</sup> bits are set.
+     *
+     * @return the number of bits set to {@code true} in this
+     *         {@code CompressedBitSet}
+     */
+    public int cardinality() {
+        long sum = 0;
+        for (int i = 0; i < size; ++i)
+            sum += containers[i].cardinality();
+        return (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns an estimate of the number of bytes used to represent
+     * the bits of this set.
+     *
+     * @return the estimated storage size in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = 6L * keys.length;
+        for (int i = 0; i < size; ++i)
+            bytes += containers[i].sizeInBytes();
+        return bytes;
+    }
+
+    /**
+     * Converts each chunk of this set to its smallest form, using
+     * runs of set bits where they are smaller than the alternatives,
+     * and releases unused storage.  This is worthwhile once a set
+     * built incrementally is not expected to change much.
+     */
+    public void compact() {
+        for (int i = 0; i < size; ++i)
+            containers[i] = optimize(containers[i]);
+        if (keys.length > size) {
+            keys = Arrays.copyOf(keys, size);
+            containers = Arrays.copyOf(containers, size);
+        }
+    }
+
+    /* ---------------- Logical operations -------------- */
+
+    /**
+     * Returns true if the specified {@code CompressedBitSet} has any
+     * bits set to {@code true} that are also set to {@code true} in
+     * this {@code CompressedBitSet}.
+     *
+     * @param  set {@code CompressedBitSet} to intersect with
+     * @return boolean indicating whether this {@code CompressedBitSet}
+     *         intersects the specified {@code CompressedBitSet}
+     */
+    public boolean intersects(CompressedBitSet set) {
+        for (int i = 0, j = 0; i < size && j < set.size; ) {
+            int ki = keys[i], kj = set.keys[j];
+            if (ki < kj)
+                ++i;
+            else if (ki > kj)
+                ++j;
+            else if (intersects(containers[i++], set.containers[j++]))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Performs a logical <b>AND</b> of this target bit set with the
+     * argument bit set. This bit set is modified so that each bit in it
+     * has the value {@code true} if and only if it both initially
+     * had the value {@code true} and the corresponding bit in the
+     * bit set argument also had the value {@code true}.
+     *
+     * @param set a compressed bit set
+     */
+    public void and(CompressedBitSet set) {
+        if (this == set)
+            return;
+        int n = 0;
+        for (int i = 0, j = 0; i < size && j < set.size; ) {
+            int ki = keys[i], kj = set.keys[j];
+            if (ki < kj)
+                ++i;
+            else if (ki > kj)
+                ++j;
+            else {
+                Container c = and(containers[i++], set.containers[j++]);
+                if (c.cardinality() > 0) {
+                    keys[n] = (char) ki;
+                    containers[n++] = c;
+                }
+            }
+        }
+        Arrays.fill(containers, n, size, null);
+        size = n;
+    }
+
+    /**
+     * Performs a logical <b>OR</b> of this bit set with the bit set
+     * argument. This bit set is modified so that a bit in it has the
+     * value {@code true} if and only if it either already had the
+     * value {@code true} or the corresponding bit in the bit set
+     * argument has the value {@code true}.
+     *
+     * @param set a compressed bit set
+     */
+    public void or(CompressedBitSet set) {
+        if (this == set)
+            return;
+        merge(set, false);
+    }
+
+    /**
+     * Performs a logical <b>XOR</b> of this bit set with the bit set
+     * argument. This bit set is modified so that a bit in it has the
+     * value {@code true} if and only if one of the following
+     * statements holds:
+     * <ul>
+     * <li>The bit initially has the value {@code true}, and the
+     *     corresponding bit in the argument has the value {@code false}.
+     * <li>The bit initially has the value {@code false}, and the
+     *     corresponding bit in the argument has the value {@code true}.
+     * </ul>
+     *
+     * @param  set a compressed bit set
+     */
+    public void xor(CompressedBitSet set) {
+        if (this == set)
+            clear();
+        else
+            merge(set, true);
+    }
+
+    /**
+     * Implements or and xor, which keep the chunks present in either
+     * set.
+     */
+    private void merge(CompressedBitSet set, boolean xor) {
+        int cap = Math.max(4, size + set.size);
+        char[] k = new char[cap];
+        Container[] cs = new Container[cap];
+        int n = 0, i = 0, j = 0;
+        while (i < size || j < set.size) {
+            int ki = (i < size) ? keys[i] : Integer.MAX_VALUE;
+            int kj = (j < set.size) ? set.keys[j] : Integer.MAX_VALUE;
+            Container c;
+            if (ki < kj) {
+                c = containers[i++];
+                k[n] = (char) ki;
+            } else if (ki > kj) {
+                c = set.containers[j++].copy();
+                k[n] = (char) kj;
+            } else {
+                Container a = containers[i++], b = set.containers[j++];
+                c = xor ? xor(a, b) : or(a, b);
+                k[n] = (char) ki;
+            }
+            if (c.cardinality() > 0)
+                cs[n++] = c;
+        }
+        install(k, cs, n);
+    }
+
+    /**
+     * Clears all of the bits in this {@code CompressedBitSet} whose
+     * corresponding bit is set in the specified {@code CompressedBitSet}.
+     *
+     * @param  set the {@code CompressedBitSet} with which to mask this
+     *         {@code CompressedBitSet}
+     */
+    public void andNot(CompressedBitSet set) {
+        if (this == set) {
+            clear();
+            return;
+        }
+        int n = 0;
+        for (int i = 0, j = 0; i < size; ) {
+            int ki = keys[i];
+            while (j < set.size && set.keys[j] < ki)
+                ++j;
+            Container c = containers[i++];
+            if (j < set.size && set.keys[j] == ki)
+                c = andNot(c, set.containers[j++]);
+            if (c.cardinality() > 0) {
+                keys[n] = (char) ki;
+                containers[n++] = c;
+            }
+        }
+        Arrays.fill(containers, n, size, null);
+        size = n;
+    }
+
+    /* ---------------- Iteration -------------- */
+
+    /**
+     * Returns an iterator over the indices of the set bits, in
+     * increasing order.  The iterator supports {@code remove}, which
+     * clears the bit last returned.  The bit set must not otherwise be
+     * modified during iteration.
+     *
+     * @return an iterator over the indices of the set bits
+     */
+    public IntIterator iterator() {
+        return new BitIterator();
+    }
+
+    private final class BitIterator implements IntIterator {
+        /** Index of the current chunk */
+        int ci;
+        /** Position in the current chunk: an array index, or a low part */
+        int pos;
+        /** The next index to return, or -1 if none */
+        int next;
+        /** The last index returned, or -1 if none or removed */
+        int lastReturned = -1;
+
+        BitIterator() {
+            advance();
+        }
+
+        /**
+         * Finds the next set bit at or after the current position.
+         */
+        private void advance() {
+            for (; ci < size; ++ci, pos = 0) {
+                Container c = containers[ci];
+                int r;
+                if (c instanceof ArrayContainer) {
+                    ArrayContainer a = (ArrayContainer) c;
+                    r = (pos < a.cardinality) ? a.content[pos++] : -1;
+                } else if (pos < CHUNK_SIZE &&
+                           (r = c.nextSetBit(pos)) >= 0) {
+                    pos = r + 1;
+                } else
+                    r = -1;
+                if (r >= 0) {
+                    next = (keys[ci] << CHUNK_BITS) | r;
+                    return;
+                }
+            }
+            next = -1;
+        }
+
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        public int nextInt() {
+            int r = next;
+            if (r < 0)
+                throw new NoSuchElementException();
+            lastReturned = r;
+            advance();
+            return r;
+        }
+
+        public void remove() {
+            if (lastReturned < 0)
+                throw new IllegalStateException();
+            clear(lastReturned);
+            lastReturned = -1;
+            // The chunk table or container kind may have changed
+            if (next >= 0) {
+                ci = indexOf(next >>> CHUNK_BITS);
+                int low = next & (CHUNK_SIZE - 1);
+                Container c = containers[ci];
+                pos = (c instanceof ArrayContainer) ?
+                    ((ArrayContainer) c).indexOf(low) + 1 : low + 1;
+            }
+        }
+    }
+
+    /* ---------------- Object methods -------------- */
+
+    /**
+     * Returns the hash code value for this compressed bit set.  The
+     * hash code depends only on which bits are set, and not on how
+     * they are stored.
+     *
+     * @return the hash code value for this compressed bit set
+     */
+    public int hashCode() {
+        int h = 1;
+        for (IntIterator it = iterator(); it.hasNext(); )
+            h = 31 * h + it.nextInt();
+        return h;
+    }
+
+    /**
+     * Compares this object against the specified object.
+     * The result is {@code true} if and only if the argument is
+     * not {@code null} and is a {@code CompressedBitSet} object that has
+     * exactly the same set of bits set to {@code true} as this bit
+     * set.
+     *
+     * @param  obj the object to compare with
+     * @return {@code true} if the objects are the same;
+     *         {@code false} otherwise
+     */
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CompressedBitSet))
+            return false;
+        if (this == obj)
+            return true;
+        CompressedBitSet set = (CompressedBitSet) obj;
+        if (size != set.size)
+            return false;
+        for (int i = 0; i < size; ++i) {
+            if (keys[i] != set.keys[i] ||
+                !sameBits(containers[i], set.containers[i]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cloning this {@code CompressedBitSet} produces a new
+     * {@code CompressedBitSet} that is equal to it.
+     *
+     * @return a clone of this bit set
+     */
+    public Object clone() {
+        try {
+            CompressedBitSet result = (CompressedBitSet) super.clone();
+            result.keys = Arrays.copyOf(keys, Math.max(4, size));
+            result.containers = new Container[result.keys.length];
+            for (int i = 0; i < size; ++i)
+                result.containers[i] = containers[i].copy();
+            return result;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Returns a string representation of this bit set, in the same
+     * form as {@link BitSet#toString}: the indices of the set bits in
+     * increasing order, separated by ",&nbsp;" and surrounded by
+     * braces.
+     *
+     * @return a string representation of this bit set
+     */
+    public String toString() {
+        StringBuilder b = new StringBuilder("{");
+        IntIterator it = iterator();
+        if (it.hasNext()) {
+            b.append(it.nextInt());
+            while (it.hasNext())
+                b.append(", ").append(it.nextInt());
+        }
+        return b.append('}').toString();
+    }
+
+    /**
+     * Save the state of the {@code CompressedBitSet} instance to a
+     * stream (i.e., serialize it).
+     *
+     * @serialData The number of chunks (int), followed for each chunk
+     *             in increasing order by its key (char), the kind of
+     *             its container (byte: 0 for an array, 1 for a bitmap,
+     *             2 for runs), and its contents: for an array, the
+     *             number of elements (int) followed by the elements
+     *             (each a char); for a bitmap, 1024 words (each a
+     *             long); for runs, the number of runs (int) followed
+     *             by the start and length minus one of each run (each
+     *             a char).
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        for (int i = 0; i < size; ++i) {
+            s.writeChar(keys[i]);
+            containers[i].write(s);
+        }
+    }
+
+    /**
+     * Reconstitute the {@code CompressedBitSet} instance from a stream
+     * (i.e., deserialize it).
+     */
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int n = s.readInt();
+        if (n < 0 || n > MAX_KEYS)
+            throw new InvalidObjectException("bad chunk count: " + n);
+        keys = new char[Math.max(4, n)];
+        containers = new Container[keys.length];
+        size = 0;
+        int prev = -1;
+        for (int i = 0; i < n; ++i) {
+            int key = s.readChar();
+            if (key <= prev || key >= MAX_KEYS)
+                throw new InvalidObjectException("bad chunk key: " + key);
+            append(key, read(s));
+            prev = key;
+        }
+    }
+
+    /* ---------------- Containers -------------- */
+
+    /**
+     * The bits of a chunk, indexed by low parts in [0, CHUNK_SIZE).
+     */
+    abstract static class Container {
+        abstract int cardinality();
+        abstract boolean contains(int x);
+        /** Sets bit x, returning the container to use afterwards. */
+        abstract Container add(int x);
+        /** Clears bit x, returning the container to use afterwards. */
+        abstract Container remove(int x);
+        abstract int first();
+        abstract int last();
+        /** Returns the next set bit at or after x, or -1. */
+        abstract int nextSetBit(int x);
+        /** Returns the next clear bit at or after x, or CHUNK_SIZE. */
+        abstract int nextClearBit(int x);
+        /** Returns the previous set bit at or before x, or -1. */
+        abstract int previousSetBit(int x);
+        /** Returns the previous clear bit at or before x, or -1. */
+        abstract int previousClearBit(int x);
+        /** Returns the bits as words; the result must not be modified. */
+        abstract long[] words();
+        abstract int sizeInBytes();
+        abstract Container copy();
+        abstract void write(DataOutput out) throws IOException;
+    }
+
+    static final class ArrayContainer extends Container {
+        char[] content;
+        int cardinality;
+
+        ArrayContainer(char[] content, int cardinality) {
+            this.content = content;
+            this.cardinality = cardinality;
+        }
+
+        ArrayContainer(int x) {
+            content = new char[4];
+            content[0] = (char) x;
+            cardinality = 1;
+        }
+
+        int indexOf(int x) {
+            return Arrays.binarySearch(content, 0, cardinality, (char) x);
+        }
+
+        int cardinality() { return cardinality; }
+
+        boolean contains(int x) { return indexOf(x) >= 0; }
+
+        Container add(int x) {
+            int i = indexOf(x);
+            if (i >= 0)
+                return this;
+            if (cardinality == MAX_ARRAY)
+                return new BitmapContainer(words(), cardinality).add(x);
+            i = -i - 1;
+            if (cardinality == content.length)
+                content = Arrays.copyOf(content, Math.min
+                                        (MAX_ARRAY, cardinality +
+                                         (cardinality >> 1) + 1));
+            System.arraycopy(content, i, content, i + 1, cardinality - i);
+            content[i] = (char) x;
+            ++cardinality;
+            return this;
+        }
+
+        Container remove(int x) {
+            int i = indexOf(x);
+            if (i >= 0) {
+                System.arraycopy(content, i + 1, content, i,
+                                 cardinality - i - 1);
+                --cardinality;
+            }
+            return this;
+        }
+
+        int first() { return content[0]; }
+
+        int last() { return content[cardinality - 1]; }
+
+        int nextSetBit(int x) {
+            int i = indexOf(x);
+            if (i < 0)
+                i = -i - 1;
+            return (i < cardinality) ? content[i] : -1;
+        }
+
+        int nextClearBit(int x) {
+            int i = indexOf(x);
+            if (i >= 0) {
+                while (i < cardinality && content[i] == x) {
+                    ++i;
+                    ++x;
+                }
+            }
+            return x;
+        }
+
+        int previousSetBit(int x) {
+            int i = indexOf(x);
+            if (i < 0)
+                i = -i - 2;
+            return (i >= 0) ? content[i] : -1;
+        }
+
+        int previousClearBit(int x) {
+            int i = indexOf(x);
+            if (i >= 0) {
+                while (i >= 0 && content[i] == x) {
+                    --i;
+                    --x;
+                }
+            }
+            return x;
+        }
+
+        long[] words() {
+            long[] w = new long[WORDS];
+            for (int i = 0; i < cardinality; ++i) {
+                int v = content[i];
+                w[v >>> 6] |= 1L << v;
+            }
+            return w;
+        }
+
+        int sizeInBytes() { return 2 * content.length; }
+
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, cardinality),
+                                      cardinality);
+        }
+
+        /**
+         * Returns the elements that are (or, if keep is false, are
+         * not) contained in the other container.
+         */
+        ArrayContainer filter(Container other, boolean keep) {
+            char[] r = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; ++i) {
+                char v = content[i];
+                if (other.contains(v) == keep)
+                    r[n++] = v;
+            }
+            return new ArrayContainer(r, n);
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeByte(ARRAY);
+            out.writeInt(cardinality);
+            for (int i = 0; i < cardinality; ++i)
+                out.writeChar(content[i]);
+        }
+    }
+
+    static final class BitmapContainer extends Container {
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        int cardinality() { return cardinality; }
+
+        boolean contains(int x) {
+            return (words[x >>> 6] & (1L << x)) != 0;
+        }
+
+        Container add(int x) {
+            long m = 1L << x;
+            int i = x >>> 6;
+            if ((words[i] & m) == 0) {
+                words[i] |= m;
+                ++cardinality;
+            }
+            return this;
+        }
+
+        Container remove(int x) {
+            long m = 1L << x;
+            int i = x >>> 6;
+            if ((words[i] & m) != 0) {
+                words[i] &= ~m;
+                if (--cardinality <= MAX_ARRAY)
+                    return fromWords(words);
+            }
+            return this;
+        }
+
+        int first() { return nextSetBit(0); }
+
+        int last() { return previousSetBit(CHUNK_SIZE - 1); }
+
+        int nextSetBit(int x) {
+            int i = x >>> 6;
+            long w = words[i] & (-1L << x);
+            for (;;) {
+                if (w != 0)
+                    return (i << 6) + Long.numberOfTrailingZeros(w);
+                if (++i == WORDS)
+                    return -1;
+                w = words[i];
+            }
+        }
+
+        int nextClearBit(int x) {
+            int i = x >>> 6;
+            long w = ~words[i] & (-1L << x);
+            for (;;) {
+                if (w != 0)
+                    return (i << 6) + Long.numberOfTrailingZeros(w);
+                if (++i == WORDS)
+                    return CHUNK_SIZE;
+                w = ~words[i];
+            }
+        }
+
+        int previousSetBit(int x) {
+            int i = x >>> 6;
+            long w = words[i] & (-1L >>> -(x + 1));
+            for (;;) {
+                if (w != 0)
+                    return ((i + 1) << 6) - 1 - Long.numberOfLeadingZeros(w);
+                if (i-- == 0)
+                    return -1;
+                w = words[i];
+            }
+        }
+
+        int previousClearBit(int x) {
+            int i = x >>> 6;
+            long w = ~words[i] & (-1L >>> -(x + 1));
+            for (;;) {
+                if (w != 0)
+                    return ((i + 1) << 6) - 1 - Long.numberOfLeadingZeros(w);
+                if (i-- == 0)
+                    return -1;
+                w = ~words[i];
+            }
+        }
+
+        long[] words() { return words; }
+
+        int sizeInBytes() { return 8 * WORDS; }
+
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeByte(BITMAP);
+            for (long w : words)
+                out.writeLong(w);
+        }
+    }
+
+    static final class RunContainer extends Container {
+        /** Pairs of (start, length - 1) */
+        char[] runs;
+        int nruns;
+        int cardinality;
+
+        RunContainer(char[] runs, int nruns, int cardinality) {
+            this.runs = runs;
+            this.nruns = nruns;
+            this.cardinality = cardinality;
+        }
+
+        /** Returns a container holding the bits in [from, to). */
+        static RunContainer range(int from, int to) {
+            return new RunContainer(new char[] {
+                    (char) from, (char) (to - from - 1) }, 1, to - from);
+        }
+
+        int start(int i) { return runs[2 * i]; }
+
+        int end(int i) { return runs[2 * i] + runs[2 * i + 1]; }
+
+        /** Returns the last run starting at or before x, or -1. */
+        int find(int x) {
+            int lo = 0, hi = nruns - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runs[2 * mid] <= x)
+                    lo = mid + 1;
+                else
+                    hi = mid - 1;
+            }
+            return hi;
+        }
+
+        private void insertRun(int i, int start, int lengthMinusOne) {
+            if (2 * nruns + 2 > runs.length)
+                runs = Arrays.copyOf(runs, 2 * nruns + 2 + nruns);
+            System.arraycopy(runs, 2 * i, runs, 2 * i + 2, 2 * (nruns - i));
+            runs[2 * i] = (char) start;
+            runs[2 * i + 1] = (char) lengthMinusOne;
+            ++nruns;
+        }
+
+        private void removeRun(int i) {
+            System.arraycopy(runs, 2 * i + 2, runs, 2 * i,
+                             2 * (nruns - i - 1));
+            --nruns;
+        }
+
+        int cardinality() { return cardinality; }
+
+        boolean contains(int x) {
+            int i = find(x);
+            return i >= 0 && x <= end(i);
+        }
+
+        Container add(int x) {
+            int i = find(x);
+            if (i >= 0 && x <= end(i))
+                return this;
+            boolean joinsPrev = i >= 0 && end(i) + 1 == x;
+            boolean joinsNext = i + 1 < nruns && start(i + 1) == x + 1;
+            if (joinsPrev && joinsNext) {
+                runs[2 * i + 1] = (char) (end(i + 1) - start(i));
+                removeRun(i + 1);
+            } else if (joinsPrev)
+                ++runs[2 * i + 1];
+            else if (joinsNext) {
+                runs[2 * i + 2] = (char) x;
+                ++runs[2 * i + 3];
+            } else
+                insertRun(i + 1, x, 0);
+            ++cardinality;
+            return (nruns > MAX_RUNS) ? fromWords(words()) : this;
+        }
+
+        Container remove(int x) {
+            int i = find(x);
+            if (i < 0 || x > end(i))
+                return this;
+            int s = start(i), e = end(i);
+            if (s == e)
+                removeRun(i);
+            else if (x == s) {
+                runs[2 * i] = (char) (s + 1);
+                --runs[2 * i + 1];
+            } else if (x == e)
+                --runs[2 * i + 1];
+            else {
+                runs[2 * i + 1] = (char) (x - 1 - s);
+                insertRun(i + 1, x + 1, e - x - 1);
+            }
+            --cardinality;
+            return (nruns > MAX_RUNS) ? fromWords(words()) : this;
+        }
+
+        int first() { return start(0); }
+
+        int last() { return end(nruns - 1); }
+
+        int nextSetBit(int x) {
+            int i = find(x);
+            if (i >= 0 && x <= end(i))
+                return x;
+            return (i + 1 < nruns) ? start(i + 1) : -1;
+        }
+
+        int nextClearBit(int x) {
+            int i = find(x);
+            return (i >= 0 && x <= end(i)) ? end(i) + 1 : x;
+        }
+
+        int previousSetBit(int x) {
+            int i = find(x);
+            return (i < 0) ? -1 : Math.min(x, end(i));
+        }
+
+        int previousClearBit(int x) {
+            int i = find(x);
+            return (i >= 0 && x <= end(i)) ? start(i) - 1 : x;
+        }
+
+        long[] words() {
+            long[] w = new long[WORDS];
+            for (int i = 0; i < nruns; ++i)
+                setRange(w, start(i), end(i) + 1);
+            return w;
+        }
+
+        int sizeInBytes() { return 2 * runs.length; }
+
+        Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, 2 * nruns),
+                                    nruns, cardinality);
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeByte(RUN);
+            out.writeInt(nruns);
+            for (int i = 0; i < 2 * nruns; ++i)
+                out.writeChar(runs[i]);
+        }
+    }
+
+    /**
+     * Sets the bits in [from, to) of the given words.
+     */
+    static void setRange(long[] w, int from, int to) {
+        int i = from >>> 6, j = (to - 1) >>> 6;
+        long first = -1L << from, last = -1L >>> -to;
+        if (i == j)
+            w[i] |= first & last;
+        else {
+            w[i] |= first;
+            for (int k = i + 1; k < j; ++k)
+                w[k] = -1L;
+            w[j] |= last;
+        }
+    }
+
+    /**
+     * Returns an array or bitmap container holding the given words,
+     * which are used directly in the case of a bitmap.
+     */
+    static Container fromWords(long[] w) {
+        int card = 0;
+        for (long x : w)
+            card += Long.bitCount(x);
+        if (card > MAX_ARRAY)
+            return new BitmapContainer(w, card);
+        char[] c = new char[card];
+        int n = 0;
+        for (int i = 0; i < WORDS; ++i) {
+            for (long x = w[i]; x != 0; x &= x - 1)
+                c[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(x));
+        }
+        return new ArrayContainer(c, card);
+    }
+
+    /**
+     * Returns the container holding the same bits as c in the form
+     * using the least storage.
+     */
+    static Container optimize(Container c) {
+        int card = c.cardinality();
+        int nruns = 0;
+        for (int x = c.nextSetBit(0); x >= 0; ) {
+            ++nruns;
+            int y = c.nextClearBit(x);
+            x = (y < CHUNK_SIZE) ? c.nextSetBit(y) : -1;
+        }
+        int runBytes = 4 * nruns;
+        int otherBytes = (card <= MAX_ARRAY) ? 2 * card : 8 * WORDS;
+        if (runBytes < otherBytes) {
+            if (c instanceof RunContainer)
+                return c;
+            char[] runs = new char[2 * nruns];
+            int i = 0;
+            for (int x = c.nextSetBit(0); x >= 0; ) {
+                int y = c.nextClearBit(x);
+                runs[i++] = (char) x;
+                runs[i++] = (char) (y - x - 1);
+                x = (y < CHUNK_SIZE) ? c.nextSetBit(y) : -1;
+            }
+            return new RunContainer(runs, nruns, card);
+        }
+        if (c instanceof RunContainer)
+            return fromWords(c.words());
+        if (c instanceof ArrayContainer) {
+            ArrayContainer a = (ArrayContainer) c;
+            if (a.content.length > card)
+                return a.copy();
+        }
+        return c;
+    }
+
+    static Container read(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        if (kind == ARRAY) {
+            int n = in.readInt();
+            if (n <= 0 || n > MAX_ARRAY)
+                throw new InvalidObjectException("bad array size: " + n);
+            char[] c = new char[n];
+            for (int i = 0; i < n; ++i) {
+                c[i] = in.readChar();
+                if (i > 0 && c[i] <= c[i - 1])
+                    throw new InvalidObjectException("unsorted array");
+            }
+            return new ArrayContainer(c, n);
+        }
+        if (kind == BITMAP) {
+            long[] w = new long[WORDS];
+            for (int i = 0; i < WORDS; ++i)
+                w[i] = in.readLong();
+            Container c = fromWords(w);
+            if (c.cardinality() == 0)
+                throw new InvalidObjectException("empty bitmap");
+            return c;
+        }
+        if (kind == RUN) {
+            int n = in.readInt();
+            if (n <= 0 || n > MAX_RUNS)
+                throw new InvalidObjectException("bad run count: " + n);
+            char[] runs = new char[2 * n];
+            int card = 0, end = -2;
+            for (int i = 0; i < n; ++i) {
+                int s = runs[2 * i] = in.readChar();
+                int len = runs[2 * i + 1] = in.readChar();
+                if (s <= end + 1 || s + len >= CHUNK_SIZE)
+                    throw new InvalidObjectException("bad run");
+                end = s + len;
+                card += len + 1;
+            }
+            return new RunContainer(runs, n, card);
+        }
+        throw new InvalidObjectException("bad container kind: " + kind);
+    }
+
+    /* ---------------- Container algebra -------------- */
+
+    static Container and(Container a, Container b) {
+        if (a instanceof ArrayContainer)
+            return ((ArrayContainer) a).filter(b, true);
+        if (b instanceof ArrayContainer)
+            return ((ArrayContainer) b).filter(a, true);
+        long[] x = a.words(), y = b.words(), r = new long[WORDS];
+        for (int i = 0; i < WORDS; ++i)
+            r[i] = x[i] & y[i];
+        return fromWords(r);
+    }
+
+    static Container andNot(Container a, Container b) {
+        if (a instanceof ArrayContainer)
+            return ((ArrayContainer) a).filter(b, false);
+        long[] x = a.words(), y = b.words(), r = new long[WORDS];
+        for (int i = 0; i < WORDS; ++i)
+            r[i] = x[i] & ~y[i];
+        return fromWords(r);
+    }
+
+    static Container or(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer &&
+            a.cardinality() + b.cardinality() <= MAX_ARRAY)
+            return mergeArrays((ArrayContainer) a, (ArrayContainer) b, false);
+        long[] x = a.words(), y = b.words(), r = new long[WORDS];
+        for (int i = 0; i < WORDS; ++i)
+            r[i] = x[i] | y[i];
+        return fromWords(r);
+    }
+
+    static Container xor(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer &&
+            a.cardinality() + b.cardinality() <= MAX_ARRAY)
+            return mergeArrays((ArrayContainer) a, (ArrayContainer) b, true);
+        long[] x = a.words(), y = b.words(), r = new long[WORDS];
+        for (int i = 0; i < WORDS; ++i)
+            r[i] = x[i] ^ y[i];
+        return fromWords(r);
+    }
+
+    /**
+     * Returns the union, or if xor is true the symmetric difference,
+     * of two array containers.
+     */
+    static ArrayContainer mergeArrays(ArrayContainer a, ArrayContainer b,
+                                      boolean xor) {
+        char[] x = a.content, y = b.content;
+        int m = a.cardinality, n = b.cardinality;
+        char[] r = new char[m + n];
+        int i = 0, j = 0, k = 0;
+        while (i < m && j < n) {
+            char u = x[i], v = y[j];
+            if (u < v) {
+                r[k++] = u;
+                ++i;
+            } else if (u > v) {
+                r[k++] = v;
+                ++j;
+            } else {
+                if (!xor)
+                    r[k++] = u;
+                ++i;
+                ++j;
+            }
+        }
+        while (i < m)
+            r[k++] = x[i++];
+        while (j < n)
+            r[k++] = y[j++];
+        return new ArrayContainer(r, k);
+    }
+
+    static boolean intersects(Container a, Container b) {
+        if (b instanceof ArrayContainer) {
+            Container t = a;
+            a = b;
+            b = t;
+        }
+        if (a instanceof ArrayContainer) {
+            ArrayContainer c = (ArrayContainer) a;
+            for (int i = 0; i < c.cardinality; ++i)
+                if (b.contains(c.content[i]))
+                    return true;
+            return false;
+        }
+        long[] x = a.words(), y = b.words();
+        for (int i = 0; i < WORDS; ++i)
+            if ((x[i] & y[i]) != 0)
+                return true;
+        return false;
+    }
+
+    static boolean sameBits(Container a, Container b) {
+        if (a.cardinality() != b.cardinality())
+            return false;
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a, y = (ArrayContainer) b;
+            for (int i = 0; i < x.cardinality; ++i)
+                if (x.content[i] != y.content[i])
+                    return false;
+            return true;
+        }
+        return Arrays.equals(a.words(), b.words());
+    }
+}
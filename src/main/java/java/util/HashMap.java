@@ -279,6 +279,90 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
     // 与此实例关联的随机值，应用于键的哈希码，使哈希冲突更难找到。如果为 0，则禁用替代散列。
     transient int hashSeed = 0;
 
+    /*
+     * Tree bins.  A bin whose chain grows to TREEIFY_THRESHOLD entries
+     * (once the table holds at least MIN_TREEIFY_CAPACITY bins) gets a
+     * red-black tree index (TreeBin) over its entries, kept in the
+     * treeBins array parallel to table.  The entries themselves, and
+     * their next links, stay exactly as for plain bins, so that
+     * iterators, LinkedHashMap ordering and all subclass hooks
+     * (createEntry, recordAccess, recordRemoval) are unaffected; only
+     * lookups and removals in the bin go through the tree, giving
+     * O(log n) worst-case time even when many keys collide, for all
+     * key types.  Trees are ordered by hash, then by compareTo for
+     * keys of the same Comparable class, then by a class name and
+     * identity hash tie-break; equal-hash keys that are not mutually
+     * comparable may require searching both subtrees.  The chain of a
+     * tree bin is kept in tree order, so that the predecessor needed
+     * to unlink an entry is found by the tree too.  A bin is turned
+     * back into a plain list (by dropping its tree) when removals
+     * shrink it to UNTREEIFY_THRESHOLD entries, and all trees are
+     * rebuilt as needed after a resize.
+     *
+     * Each tree counts the insertions that fell through to the
+     * tie-break.  When more than half of a bin's entries could not be
+     * ordered that way (typically many equal-hash keys that are not
+     * mutually comparable), lookups would have to search both
+     * subtrees nearly everywhere, which is slower than walking the
+     * chain, so the tree is dropped and the bin is marked with the
+     * UNORDERED sentinel.  Marked bins stay plain lists, and are not
+     * treeified again on each insertion, until the next resize
+     * reconsiders them.
+     */
+    /*
+     * 20211012
+     * 树化桶: 当散列表容量不小于MIN_TREEIFY_CAPACITY, 且某个桶的链表长度达到TREEIFY_THRESHOLD时, 为该桶的条目建立红黑树索引(TreeBin),
+     * 保存在与table平行的treeBins数组中. 条目本身及其next链接保持不变, 因此迭代器、LinkedHashMap的顺序以及子类钩子方法都不受影响,
+     * 只是该桶的查找和删除改为走红黑树, 使得即使大量键冲突时最坏情况也为O(log n), 且适用于所有键类型. 红黑树先按hash排序, 同类Comparable
+     * 键再按compareTo排序, 最后按类名和identityHashCode决胜; 树化桶的链表按树的中序排列, 以便删除时通过树找到前驱结点.
+     * 删除使桶缩小到UNTREEIFY_THRESHOLD时丢弃红黑树退化为链表, 扩容后按需重建所有红黑树.
+     * 每棵红黑树统计插入时需要tieBreakOrder决胜的次数, 超过桶中条目的一半时(通常是大量hash相等又不可相互比较的键),
+     * 查找几乎处处都要搜索两棵子树, 比遍历链表还慢, 因此丢弃红黑树并用UNORDERED哨兵标记该桶; 被标记的桶保持为链表,
+     * 不会在每次插入时重新树化, 直到下次扩容时再重新判断.
+     */
+
+    /**
+     * The bin count threshold for using a tree rather than list for a
+     * bin.  Must be greater than 2 and should be at least 8.
+     */
+    // 使用红黑树而不是链表的桶结点数阈值
+    static final int TREEIFY_THRESHOLD = 8;
+
+    /**
+     * The bin count threshold for untreeifying a (split) bin during a
+     * removal.  Should be less than TREEIFY_THRESHOLD.
+     */
+    // 删除时树化桶退化为链表的桶结点数阈值
+    static final int UNTREEIFY_THRESHOLD = 6;
+
+    /**
+     * The smallest table capacity for which bins may be treeified.
+     * (Otherwise the table is resized if too many entries in a bin.)
+     */
+    // 允许树化的最小散列表容量, 小于该容量时则优先扩容散列表
+    static final int MIN_TREEIFY_CAPACITY = 64;
+
+    /**
+     * Tree indexes of treeified bins, parallel to table, or null if
+     * no bin is currently treeified.
+     */
+    // 与table平行的红黑树索引数组, 没有树化的桶时为null
+    transient TreeBin<K,V>[] treeBins;
+
+    /**
+     * The number of non-null elements of treeBins.
+     */
+    // 当前树化的桶数
+    transient int treeBinCount;
+
+    /**
+     * Marks, in treeBins, a bin whose keys cannot be ordered well
+     * enough for a tree to pay off.  Such a bin is treated as a plain
+     * list but is not treeified again until the next resize.
+     */
+    // treeBins中的哨兵, 标记键无法有效排序的桶: 该桶按链表处理, 且在下次扩容前不再树化
+    static final TreeBin<?,?> UNORDERED = new TreeBin<Object,Object>();
+
     /**
      * Constructs an empty <tt>HashMap</tt> with the specified initial
      * capacity and load factor.
@@ -531,6 +615,13 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
             return null;
         }
 
+        // 如果第1个桶已树化, 则通过红黑树查找null键
+        TreeBin<K,V> tb = treeBinAt(0);
+        if (tb != null) {
+            Entry<K,V> e = tb.find(0, null);
+            return e == null ? null : e.value;
+        }
+
         // 第1个桶结点e, 如果e键为null, 则返回e值, 否则返回null
         for (Entry<K,V> e = table[0]; e != null; e = e.next) {
             if (e.key == null)
@@ -565,8 +656,14 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
         // HashCode扰动函数, key为String类型则返回key的32位哈希码即可, 否则哈希种子异或k的散列码, 再把结果高位的特征和低位的特征组合起来，降低哈希冲突的概率，也就是说，尽量做到任何一位的变化都能对最终得到的结果产生影响
         int hash = (key == null) ? 0 : hash(key);
 
-        // 返回哈希码 h 的索引, 获取该索引所在的桶结点e, 遍历e链表
-        for (Entry<K,V> e = table[indexFor(hash, table.length)]; e != null; e = e.next) {
+        // 返回哈希码 h 的索引, 如果该桶已树化, 则通过红黑树查找
+        int i = indexFor(hash, table.length);
+        TreeBin<K,V> tb = treeBinAt(i);
+        if (tb != null)
+            return tb.find(hash, key);
+
+        // 获取该索引所在的桶结点e, 遍历e链表
+        for (Entry<K,V> e = table[i]; e != null; e = e.next) {
             Object k;
 
             // 如果e的hash等于key的hash值, 且e键等于key或者e键equals key, 说明e就是要找的结点, 则返回e结点即可
@@ -607,8 +704,20 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
         // 返回哈希码 h 的索引
         int i = indexFor(hash, table.length);
 
+        // 如果i桶已树化, 则通过红黑树查找key, 找到则替换e值并返回旧值
+        TreeBin<K,V> tb = treeBinAt(i);
+        if (tb != null) {
+            Entry<K,V> e = tb.find(hash, key);
+            if (e != null) {
+                V oldValue = e.value;
+                e.value = value;
+                e.recordAccess(this);// LinkedHashMap值覆盖回调方法
+                return oldValue;
+            }
+        }
+
         // 从i桶开始遍历链表, 当前遍历结点e, e键k
-        for (Entry<K,V> e = table[i]; e != null; e = e.next) {
+        else for (Entry<K,V> e = table[i]; e != null; e = e.next) {
             Object k;
 
             // 如果e的hash值等于key的hash值, 且e键等于key或者e键equalskey, 说明e结点就是要找的结点, 则替换e值并返回旧值
@@ -636,8 +745,20 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
      */
     // 将null键、value值添加到第1个桶, 其中底层会调整散列表大小
     private V putForNullKey(V value) {
+        // 如果第1个桶已树化, 则通过红黑树查找null键, 找到则替换e值并返回旧值
+        TreeBin<K,V> tb = treeBinAt(0);
+        if (tb != null) {
+            Entry<K,V> e = tb.find(0, null);
+            if (e != null) {
+                V oldValue = e.value;
+                e.value = value;
+                e.recordAccess(this);// LinkedHashMap值覆盖回调方法
+                return oldValue;
+            }
+        }
+
         // 从第1个桶开始遍历链表, 当前遍历结点e
-        for (Entry<K,V> e = table[0]; e != null; e = e.next) {
+        else for (Entry<K,V> e = table[0]; e != null; e = e.next) {
             // 如果e键确实为null, 说明e结点就是要找的结点, 则替换e值并返回旧值
             if (e.key == null) {
                 V oldValue = e.value;
@@ -677,7 +798,15 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
          * clone or deserialize.  It will only happen for construction if the
          * input Map is a sorted map whose ordering is inconsistent w/ equals.
          */
-        for (Entry<K,V> e = table[i]; e != null; e = e.next) {
+        TreeBin<K,V> tb = treeBinAt(i);
+        if (tb != null) {
+            Entry<K,V> e = tb.find(hash, key);
+            if (e != null) {
+                e.value = value;
+                return;
+            }
+        }
+        else for (Entry<K,V> e = table[i]; e != null; e = e.next) {
             Object k;
             if (e.hash == hash &&
                 ((k = e.key) == key || (key != null && key.equals(k)))) {
@@ -688,6 +817,9 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
 
         // 使用hash值以及哈希索引, 在散列表中创建条目, 不会调整散列表大小
         createEntry(hash, key, value, i);
+
+        // 把新条目加入树化桶的红黑树, 或者在桶过长时树化该桶, 但不会调整散列表大小
+        afterBinInsertion(i, false);
     }
 
     // 添加复制集合所有元素, 但不会调整散列表的大小
@@ -736,6 +868,10 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
 
         table = newTable;
         threshold = (int)Math.min(newCapacity * loadFactor, MAXIMUM_CAPACITY + 1);
+
+        // 如果存在树化的桶, 由于条目已经重新分布到新散列表, 则需要为新散列表中的长链表重建红黑树
+        if (treeBins != null)
+            rebuildTreeBins();
     }
 
     /**
@@ -853,8 +989,22 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
         // HashCode扰动函数, key为String类型则返回key的32位哈希码即可, 否则哈希种子异或k的散列码, 再把结果高位的特征和低位的特征组合起来，降低哈希冲突的概率，也就是说，尽量做到任何一位的变化都能对最终得到的结果产生影响
         int hash = (key == null) ? 0 : hash(key);
 
-        // 返回哈希码h的索引i, 获取i桶结点e、前驱prev(初始时为e)
+        // 返回哈希码h的索引i, 如果i桶已树化, 则通过红黑树查找并删除结点
         int i = indexFor(hash, table.length);
+        TreeBin<K,V> tb = treeBinAt(i);
+        if (tb != null) {
+            TreeNode<K,V> p = tb.getTreeNode(hash, key);
+            if (p == null)
+                return null;
+            Entry<K,V> e = p.entry;
+            modCount++;
+            size--;
+            removeTreeNode(tb, p, i);
+            e.recordRemoval(this);
+            return e;
+        }
+
+        // 获取i桶结点e、前驱prev(初始时为e)
         Entry<K,V> prev = table[i];
         Entry<K,V> e = prev;
 
@@ -903,6 +1053,18 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
         Object key = entry.getKey();
         int hash = (key == null) ? 0 : hash(key);
         int i = indexFor(hash, table.length);
+        TreeBin<K,V> tb = treeBinAt(i);
+        if (tb != null) {
+            TreeNode<K,V> p = tb.getTreeNode(hash, key);
+            Entry<K,V> e;
+            if (p == null || !(e = p.entry).equals(entry))
+                return null;
+            modCount++;
+            size--;
+            removeTreeNode(tb, p, i);
+            e.recordRemoval(this);
+            return e;
+        }
         Entry<K,V> prev = table[i];
         Entry<K,V> e = prev;
 
@@ -932,6 +1094,8 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
     public void clear() {
         modCount++;
         Arrays.fill(table, null);
+        treeBins = null;
+        treeBinCount = 0;
         size = 0;
     }
 
@@ -989,6 +1153,8 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
                table.length));
         }
         result.entrySet = null;
+        result.treeBins = null;
+        result.treeBinCount = 0;
         result.modCount = 0;
         result.size = 0;
         result.init();
@@ -1096,6 +1262,9 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
 
         // 添加复制集合所有元素, 但不会调整散列表的大小
         createEntry(hash, key, value, bucketIndex);
+
+        // 把新条目加入树化桶的红黑树, 或者在桶过长时树化该桶(散列表太小时则扩容)
+        afterBinInsertion(bucketIndex, true);
     }
 
     /**
@@ -1120,6 +1289,625 @@ public class HashMap<K,V> extends AbstractMap<K,V> implements Map<K,V>, Cloneabl
         size++;
     }
 
+    /* ---------------- Tree bins -------------- */
+
+    /**
+     * Returns the tree index of bin i, or null if the bin is a plain
+     * list.
+     */
+    // 返回i桶的红黑树索引, 如果i桶没有树化(或被标记为UNORDERED)则返回null
+    final TreeBin<K,V> treeBinAt(int i) {
+        TreeBin<K,V>[] tbs = treeBins; TreeBin<K,V> tb;
+        return (tbs == null || (tb = tbs[i]) == UNORDERED) ? null : tb;
+    }
+
+    /**
+     * Called by addEntry and putForCreate after createEntry has linked
+     * a new entry at the head of bin i.  If the bin is treeified, adds
+     * the entry to its tree and moves it to its place in tree order;
+     * otherwise treeifies the bin if its chain has become too long, or
+     * if the table is still too small to treeify and canResize is
+     * true, resizes instead.  A tree whose keys turn out to be mostly
+     * unordered is dropped, and bins marked UNORDERED are left alone.
+     */
+    // 新条目插入到i桶头部后调用: 如果i桶已树化, 则把新条目加入红黑树并按中序移动到链表对应的位置, 如果树中键大多无法排序则丢弃红黑树;
+    // 否则如果链表过长则树化该桶, 如果散列表容量太小且允许扩容, 则扩容散列表; 被标记为UNORDERED的桶保持不变
+    final void afterBinInsertion(int i, boolean canResize) {
+        Entry<K,V> e = table[i];
+        TreeBin<K,V>[] tbs = treeBins;
+        TreeBin<K,V> tb = (tbs == null) ? null : tbs[i];
+        if (tb == UNORDERED)
+            return;
+        if (tb != null) {
+            Entry<K,V> pred = tb.putEntry(e);
+            if (pred != null) {
+                table[i] = e.next;
+                e.next = pred.next;
+                pred.next = e;
+            }
+            if (tb.unordered())
+                markUnordered(i);
+        }
+        else {
+            int binCount = 0;
+            for (Entry<K,V> p = e; p != null && binCount < TREEIFY_THRESHOLD; p = p.next)
+                ++binCount;
+            if (binCount >= TREEIFY_THRESHOLD) {
+                if (table.length >= MIN_TREEIFY_CAPACITY)
+                    treeifyBin(i);
+                else if (canResize)
+                    resize(2 * table.length);
+            }
+        }
+    }
+
+    /**
+     * Builds the tree index of bin i and relinks its chain in tree
+     * order, or, if the keys of the bin are mostly unordered, leaves
+     * the chain as is and marks the bin UNORDERED.
+     */
+    // 为i桶建立红黑树索引, 并按树的中序重新链接链表; 如果桶中键大多无法排序, 则保持链表不变并把该桶标记为UNORDERED
+    @SuppressWarnings("unchecked")
+    final void treeifyBin(int i) {
+        TreeBin<K,V>[] tbs = treeBins;
+        if (tbs == null)
+            treeBins = tbs = (TreeBin<K,V>[]) new TreeBin[table.length];
+        TreeBin<K,V> tb = new TreeBin<>();
+        for (Entry<K,V> e = table[i]; e != null; e = e.next)
+            tb.putEntry(e);
+        if (tb.unordered())
+            tb = (TreeBin<K,V>) UNORDERED;
+        else
+            table[i] = tb.relink();
+        tbs[i] = tb;
+        ++treeBinCount;
+    }
+
+    /**
+     * Discards the tree index of bin i, marking the bin UNORDERED so
+     * that it is not treeified again before the next resize.
+     */
+    // 丢弃i桶的红黑树索引并标记为UNORDERED, 使其在下次扩容前不再树化, 链表保持不变
+    @SuppressWarnings("unchecked")
+    final void markUnordered(int i) {
+        treeBins[i] = (TreeBin<K,V>) UNORDERED;
+    }
+
+    /**
+     * Discards the tree index of bin i, leaving its chain as is.
+     */
+    // 丢弃i桶的红黑树索引, 链表保持不变
+    final void untreeifyBin(int i) {
+        treeBins[i] = null;
+        if (--treeBinCount == 0)
+            treeBins = null;
+    }
+
+    /**
+     * Recreates the tree indexes after the table has been resized,
+     * treeifying each bin whose chain still reaches
+     * TREEIFY_THRESHOLD.
+     */
+    // 扩容后重建红黑树索引, 对链表长度仍达到TREEIFY_THRESHOLD的桶重新树化
+    final void rebuildTreeBins() {
+        treeBins = null;
+        treeBinCount = 0;
+        Entry<K,V>[] tab = table;
+        if (tab.length < MIN_TREEIFY_CAPACITY)
+            return;
+        for (int i = 0; i < tab.length; i++) {
+            int binCount = 0;
+            for (Entry<K,V> p = tab[i]; p != null && binCount < TREEIFY_THRESHOLD; p = p.next)
+                ++binCount;
+            if (binCount >= TREEIFY_THRESHOLD)
+                treeifyBin(i);
+        }
+    }
+
+    /**
+     * Unlinks the entry of tree node p from bin i, removing p from
+     * tree bin tb, and untreeifies the bin if it becomes small
+     * enough.
+     */
+    // 从i桶的链表以及红黑树中删除结点p, 如果桶足够小则退化为链表
+    final void removeTreeNode(TreeBin<K,V> tb, TreeNode<K,V> p, int i) {
+        Entry<K,V> e = p.entry;
+        Entry<K,V> pred = tb.removeNode(p);
+        if (pred == null)
+            table[i] = e.next;
+        else
+            pred.next = e.next;
+        if (tb.size <= UNTREEIFY_THRESHOLD)
+            untreeifyBin(i);
+    }
+
+    /**
+     * Returns x's Class if it is of the form "class C implements
+     * Comparable<C>", else null.
+     */
+    // 如果x的类型C实现了Comparable<C>, 则返回C, 否则返回null
+    static Class<?> comparableClassFor(Object x) {
+        if (x instanceof Comparable) {
+            Class<?> c; java.lang.reflect.Type[] ts, as;
+            java.lang.reflect.Type t; java.lang.reflect.ParameterizedType p;
+            if ((c = x.getClass()) == String.class) // bypass checks
+                return c;
+            if ((ts = c.getGenericInterfaces()) != null) {
+                for (int i = 0; i < ts.length; ++i) {
+                    if (((t = ts[i]) instanceof java.lang.reflect.ParameterizedType) &&
+                        ((p = (java.lang.reflect.ParameterizedType)t).getRawType() ==
+                         Comparable.class) &&
+                        (as = p.getActualTypeArguments()) != null &&
+                        as.length == 1 && as[0] == c) // type arg is c
+                        return c;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns k.compareTo(x) if x matches kc (k's screened comparable
+     * class), else 0.
+     */
+    // 如果x的类型为kc, 则返回k.compareTo(x), 否则返回0
+    @SuppressWarnings({"rawtypes","unchecked"}) // for cast to Comparable
+    static int compareComparables(Class<?> kc, Object k, Object x) {
+        return (x == null || x.getClass() != kc ? 0 :
+                ((Comparable)k).compareTo(x));
+    }
+
+    /**
+     * Tie-breaking utility for ordering insertions when equal
+     * hashCodes and non-comparable. We don't require a total
+     * order, just a consistent insertion rule to maintain
+     * equivalence across rebalancings.
+     */
+    // hash值相等且不可比较时的决胜排序: 先比较类名, 再比较identityHashCode
+    static int tieBreakOrder(Object a, Object b) {
+        int d;
+        if (a == null || b == null ||
+            (d = a.getClass().getName().
+             compareTo(b.getClass().getName())) == 0)
+            d = (System.identityHashCode(a) <= System.identityHashCode(b) ?
+                 -1 : 1);
+        return d;
+    }
+
+    /**
+     * Red-black tree node of a TreeBin, holding one entry of the bin.
+     */
+    // 树化桶中的红黑树结点, 持有桶中的一个条目
+    static final class TreeNode<K,V> {
+        Entry<K,V> entry;
+        TreeNode<K,V> parent;
+        TreeNode<K,V> left;
+        TreeNode<K,V> right;
+        boolean red;
+
+        TreeNode(Entry<K,V> entry) {
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Red-black tree index over the entries of one bin, ordered by
+     * hash, then by compareTo for keys of the same Comparable class,
+     * then by tieBreakOrder.  The chain of the bin is kept in the
+     * same (in-order) order, so that the chain predecessor of an
+     * entry is the entry of its in-order predecessor.  Deletion
+     * swaps entries between nodes rather than relinking nodes, which
+     * keeps the in-order sequence of entries intact.  Balancing
+     * algorithms are adapted from CLR, as in TreeMap.
+     */
+    // 单个桶中条目的红黑树索引: 按hash、同类Comparable键的compareTo、tieBreakOrder排序, 桶的链表也按相同的中序排列
+    static final class TreeBin<K,V> {
+        TreeNode<K,V> root;
+        int size;
+
+        /**
+         * The number of insertions that had to use tieBreakOrder.
+         */
+        // 插入时需要用tieBreakOrder决胜的次数
+        int ties;
+
+        /**
+         * Returns true if more than half of the entries could not be
+         * ordered by hash and compareTo, so that a lookup would search
+         * both subtrees nearly everywhere.
+         */
+        // 如果超过一半的条目无法通过hash和compareTo排序(查找几乎处处都要搜索两棵子树), 则返回true
+        final boolean unordered() {
+            return ties > (size >>> 1);
+        }
+
+        /**
+         * Returns the entry with the given hash and key, or null if
+         * none.
+         */
+        // 返回指定hash和key的条目, 找不到则返回null
+        final Entry<K,V> find(int h, Object k) {
+            TreeNode<K,V> p = getTreeNode(h, k);
+            return (p == null) ? null : p.entry;
+        }
+
+        /**
+         * Returns the node holding the given hash and key, or null if
+         * none.
+         */
+        // 返回持有指定hash和key的树结点, 找不到则返回null
+        final TreeNode<K,V> getTreeNode(int h, Object k) {
+            return (root == null) ? null : find(root, h, k, null);
+        }
+
+        /**
+         * Finds the node starting at root p with the given hash and key.
+         * The kc argument caches comparableClassFor(key) upon first use
+         * comparing keys.
+         */
+        // 从p开始查找指定hash和key的树结点, kc缓存key的可比较类型
+        static <K,V> TreeNode<K,V> find(TreeNode<K,V> p, int h, Object k,
+                                        Class<?> kc) {
+            do {
+                int ph, dir; K pk; Entry<K,V> pe;
+                TreeNode<K,V> pl = p.left, pr = p.right, q;
+                if ((ph = (pe = p.entry).hash) > h)
+                    p = pl;
+                else if (ph < h)
+                    p = pr;
+                else if ((pk = pe.key) == k || (k != null && k.equals(pk)))
+                    return p;
+                else if (pl == null)
+                    p = pr;
+                else if (pr == null)
+                    p = pl;
+                else if ((kc != null ||
+                          (kc = comparableClassFor(k)) != null) &&
+                         (dir = compareComparables(kc, k, pk)) != 0)
+                    p = (dir < 0) ? pl : pr;
+                else if ((q = find(pr, h, k, kc)) != null)
+                    return q;
+                else
+                    p = pl;
+            } while (p != null);
+            return null;
+        }
+
+        /**
+         * Adds entry e, which must not already be present, to the
+         * tree.
+         *
+         * @return the entry preceding e in tree order, or null if e
+         *         is first
+         */
+        // 把条目e加入红黑树, 返回中序中e的前驱条目, e为第一个时返回null
+        final Entry<K,V> putEntry(Entry<K,V> e) {
+            TreeNode<K,V> x = new TreeNode<>(e);
+            ++size;
+            if (root == null) {
+                root = x;
+                return null;
+            }
+            int h = e.hash;
+            K k = e.key;
+            Class<?> kc = null;
+            boolean tied = false;
+            for (TreeNode<K,V> p = root;;) {
+                int dir, ph; K pk = p.entry.key;
+                if ((ph = p.entry.hash) > h)
+                    dir = -1;
+                else if (ph < h)
+                    dir = 1;
+                else if ((kc == null &&
+                          (kc = comparableClassFor(k)) == null) ||
+                         (dir = compareComparables(kc, k, pk)) == 0) {
+                    dir = tieBreakOrder(k, pk);
+                    tied = true;
+                }
+                TreeNode<K,V> xp = p;
+                if ((p = (dir <= 0) ? p.left : p.right) == null) {
+                    if (tied)
+                        ++ties;
+                    x.parent = xp;
+                    if (dir <= 0)
+                        xp.left = x;
+                    else
+                        xp.right = x;
+                    balanceInsertion(x);
+                    TreeNode<K,V> pred = predecessor(x);
+                    return (pred == null) ? null : pred.entry;
+                }
+            }
+        }
+
+        /**
+         * Removes node p from the tree.
+         *
+         * @return the entry preceding p's entry in tree order, or null
+         *         if it is first
+         */
+        // 从红黑树中删除结点p, 返回中序中p条目的前驱条目, p条目为第一个时返回null
+        final Entry<K,V> removeNode(TreeNode<K,V> p) {
+            TreeNode<K,V> pred = predecessor(p);
+            Entry<K,V> predEntry = (pred == null) ? null : pred.entry;
+            --size;
+            // If strictly internal, copy successor's entry to p and then
+            // make p point to successor.
+            if (p.left != null && p.right != null) {
+                TreeNode<K,V> s = successor(p);
+                p.entry = s.entry;
+                p = s;
+            } // p has 2 children
+
+            // Start fixup at replacement node, if it exists.
+            TreeNode<K,V> replacement = (p.left != null ? p.left : p.right);
+
+            if (replacement != null) {
+                // Link replacement to parent
+                replacement.parent = p.parent;
+                if (p.parent == null)
+                    root = replacement;
+                else if (p == p.parent.left)
+                    p.parent.left  = replacement;
+                else
+                    p.parent.right = replacement;
+
+                // Null out links so they are OK to use by fixAfterDeletion.
+                p.left = p.right = p.parent = null;
+
+                // Fix replacement
+                if (!p.red)
+                    balanceDeletion(replacement);
+            } else if (p.parent == null) { // return if we are the only node.
+                root = null;
+            } else { //  No children. Use self as phantom replacement and unlink.
+                if (!p.red)
+                    balanceDeletion(p);
+
+                if (p.parent != null) {
+                    if (p == p.parent.left)
+                        p.parent.left = null;
+                    else if (p == p.parent.right)
+                        p.parent.right = null;
+                    p.parent = null;
+                }
+            }
+            p.entry = null;
+            return predEntry;
+        }
+
+        /**
+         * Relinks the entries in tree order.
+         *
+         * @return the first entry
+         */
+        // 按树的中序重新链接所有条目, 返回第一个条目
+        final Entry<K,V> relink() {
+            TreeNode<K,V> p = root;
+            if (p == null)
+                return null;
+            while (p.left != null)
+                p = p.left;
+            Entry<K,V> first = p.entry, last = first;
+            while ((p = successor(p)) != null) {
+                last.next = p.entry;
+                last = p.entry;
+            }
+            last.next = null;
+            return first;
+        }
+
+        static <K,V> TreeNode<K,V> successor(TreeNode<K,V> t) {
+            if (t == null)
+                return null;
+            else if (t.right != null) {
+                TreeNode<K,V> p = t.right;
+                while (p.left != null)
+                    p = p.left;
+                return p;
+            } else {
+                TreeNode<K,V> p = t.parent;
+                TreeNode<K,V> ch = t;
+                while (p != null && ch == p.right) {
+                    ch = p;
+                    p = p.parent;
+                }
+                return p;
+            }
+        }
+
+        static <K,V> TreeNode<K,V> predecessor(TreeNode<K,V> t) {
+            if (t == null)
+                return null;
+            else if (t.left != null) {
+                TreeNode<K,V> p = t.left;
+                while (p.right != null)
+                    p = p.right;
+                return p;
+            } else {
+                TreeNode<K,V> p = t.parent;
+                TreeNode<K,V> ch = t;
+                while (p != null && ch == p.left) {
+                    ch = p;
+                    p = p.parent;
+                }
+                return p;
+            }
+        }
+
+        /*
+         * Balancing operations.
+         *
+         * Implementations of rebalancings during insertion and deletion
+         * are slightly different than the CLR version.  Rather than using
+         * dummy nilnodes, we use a set of accessors that deal properly
+         * with null.  They are used to avoid messiness surrounding
+         * nullness checks in the main algorithms.
+         */
+
+        private static <K,V> boolean colorOf(TreeNode<K,V> p) {
+            return (p == null ? false : p.red);
+        }
+
+        private static <K,V> TreeNode<K,V> parentOf(TreeNode<K,V> p) {
+            return (p == null ? null: p.parent);
+        }
+
+        private static <K,V> void setColor(TreeNode<K,V> p, boolean red) {
+            if (p != null)
+                p.red = red;
+        }
+
+        private static <K,V> TreeNode<K,V> leftOf(TreeNode<K,V> p) {
+            return (p == null) ? null: p.left;
+        }
+
+        private static <K,V> TreeNode<K,V> rightOf(TreeNode<K,V> p) {
+            return (p == null) ? null: p.right;
+        }
+
+        /** From CLR */
+        private void rotateLeft(TreeNode<K,V> p) {
+            if (p != null) {
+                TreeNode<K,V> r = p.right;
+                p.right = r.left;
+                if (r.left != null)
+                    r.left.parent = p;
+                r.parent = p.parent;
+                if (p.parent == null)
+                    root = r;
+                else if (p.parent.left == p)
+                    p.parent.left = r;
+                else
+                    p.parent.right = r;
+                r.left = p;
+                p.parent = r;
+            }
+        }
+
+        /** From CLR */
+        private void rotateRight(TreeNode<K,V> p) {
+            if (p != null) {
+                TreeNode<K,V> l = p.left;
+                p.left = l.right;
+                if (l.right != null) l.right.parent = p;
+                l.parent = p.parent;
+                if (p.parent == null)
+                    root = l;
+                else if (p.parent.right == p)
+                    p.parent.right = l;
+                else p.parent.left = l;
+                l.right = p;
+                p.parent = l;
+            }
+        }
+
+        /** From CLR */
+        private void balanceInsertion(TreeNode<K,V> x) {
+            x.red = true;
+
+            while (x != null && x != root && x.parent.red) {
+                if (parentOf(x) == leftOf(parentOf(parentOf(x)))) {
+                    TreeNode<K,V> y = rightOf(parentOf(parentOf(x)));
+                    if (colorOf(y)) {
+                        setColor(parentOf(x), false);
+                        setColor(y, false);
+                        setColor(parentOf(parentOf(x)), true);
+                        x = parentOf(parentOf(x));
+                    } else {
+                        if (x == rightOf(parentOf(x))) {
+                            x = parentOf(x);
+                            rotateLeft(x);
+                        }
+                        setColor(parentOf(x), false);
+                        setColor(parentOf(parentOf(x)), true);
+                        rotateRight(parentOf(parentOf(x)));
+                    }
+                } else {
+                    TreeNode<K,V> y = leftOf(parentOf(parentOf(x)));
+                    if (colorOf(y)) {
+                        setColor(parentOf(x), false);
+                        setColor(y, false);
+                        setColor(parentOf(parentOf(x)), true);
+                        x = parentOf(parentOf(x));
+                    } else {
+                        if (x == leftOf(parentOf(x))) {
+                            x = parentOf(x);
+                            rotateRight(x);
+                        }
+                        setColor(parentOf(x), false);
+                        setColor(parentOf(parentOf(x)), true);
+                        rotateLeft(parentOf(parentOf(x)));
+                    }
+                }
+            }
+            root.red = false;
+        }
+
+        /** From CLR */
+        private void balanceDeletion(TreeNode<K,V> x) {
+            while (x != root && !colorOf(x)) {
+                if (x == leftOf(parentOf(x))) {
+                    TreeNode<K,V> sib = rightOf(parentOf(x));
+
+                    if (colorOf(sib)) {
+                        setColor(sib, false);
+                        setColor(parentOf(x), true);
+                        rotateLeft(parentOf(x));
+                        sib = rightOf(parentOf(x));
+                    }
+
+                    if (!colorOf(leftOf(sib)) &&
+                        !colorOf(rightOf(sib))) {
+                        setColor(sib, true);
+                        x = parentOf(x);
+                    } else {
+                        if (!colorOf(rightOf(sib))) {
+                            setColor(leftOf(sib), false);
+                            setColor(sib, true);
+                            rotateRight(sib);
+                            sib = rightOf(parentOf(x));
+                        }
+                        setColor(sib, colorOf(parentOf(x)));
+                        setColor(parentOf(x), false);
+                        setColor(rightOf(sib), false);
+                        rotateLeft(parentOf(x));
+                        x = root;
+                    }
+                } else { // symmetric
+                    TreeNode<K,V> sib = leftOf(parentOf(x));
+
+                    if (colorOf(sib)) {
+                        setColor(sib, false);
+                        setColor(parentOf(x), true);
+                        rotateRight(parentOf(x));
+                        sib = leftOf(parentOf(x));
+                    }
+
+                    if (!colorOf(rightOf(sib)) &&
+                        !colorOf(leftOf(sib))) {
+                        setColor(sib, true);
+                        x = parentOf(x);
+                    } else {
+                        if (!colorOf(leftOf(sib))) {
+                            setColor(rightOf(sib), false);
+                            setColor(sib, true);
+                            rotateLeft(sib);
+                            sib = leftOf(parentOf(x));
+                        }
+                        setColor(sib, colorOf(parentOf(x)));
+                        setColor(parentOf(x), false);
+                        setColor(leftOf(sib), false);
+                        rotateRight(parentOf(x));
+                        x = root;
+                    }
+                }
+            }
+
+            setColor(x, false);
+        }
+    }
+
     private abstract class HashIterator<E> implements Iterator<E> {
         Entry<K,V> next;        // next entry to return 下一个返回的条目
         int expectedModCount;   // For fast-fail 对于快速失败
@@ -26,6 +26,7 @@
 package java.util;
 
 import java.security.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class that represents an immutable universally unique identifier (UUID).
@@ -58,7 +59,16 @@ import java.security.*;
  * <p> The version field holds a value that describes the type of this {@code
  * UUID}.  There are four different basic types of UUIDs: time-based, DCE
  * security, name-based, and randomly generated UUIDs.  These types have a
- * version value of 1, 2, 3 and 4, respectively.
+ * version value of 1, 2, 3 and 4, respectively.  In addition, {@link
+ * #timeOrderedUUID} creates UUIDs of version 7, whose most significant bits
+ * begin with the number of milliseconds since the epoch, so that they sort
+ * by creation time:
+ * <pre>
+ * 0xFFFFFFFFFFFF0000 unix_ts_ms
+ * 0x000000000000F000 version
+ * 0x0000000000000FFF rand_a
+ * </pre>
+ * with the variant and 62 random bits in the least significant long.
  *
  * <p> For more information including algorithms used to create {@code UUID}s,
  * see <a href="http://www.ietf.org/rfc/rfc4122.txt"> <i>RFC&nbsp;4122: A
@@ -91,9 +101,54 @@ public final class UUID implements java.io.Serializable, Comparable<UUID> {
     /*
      * The random number generator used by this class to create random
      * based UUIDs. In a holder class to defer initialization until needed.
+     * It only seeds the generators of each thread, which are used to
+     * create the UUIDs, so that threads do not contend for it.
      */
     private static class Holder {
         static final SecureRandom numberGenerator = new SecureRandom();
+
+        static final ThreadLocal<Generator> generators =
+            new ThreadLocal<Generator>() {
+                protected Generator initialValue() {
+                    return new Generator();
+                }
+            };
+
+        /**
+         * The last timestamp of timeOrderedUUID: the milliseconds since
+         * the epoch shifted left by 12 bits, plus a sequence number.
+         */
+        static final AtomicLong lastTime = new AtomicLong();
+    }
+
+    /*
+     * A cryptographically strong generator confined to one thread, with
+     * a buffer for the bytes of one UUID.
+     */
+    private static final class Generator {
+        final SecureRandom random;
+        final byte[] bytes = new byte[16];
+
+        Generator() {
+            byte[] seed = new byte[32];
+            Holder.numberGenerator.nextBytes(seed);
+            SecureRandom r;
+            try {
+                r = SecureRandom.getInstance("SHA1PRNG");
+                r.setSeed(seed);
+            } catch (NoSuchAlgorithmException e) {
+                r = new SecureRandom(seed);
+            }
+            random = r;
+        }
+
+        long nextLong() {
+            random.nextBytes(bytes);
+            long v = 0;
+            for (int i = 0; i < 8; i++)
+                v = (v << 8) | (bytes[i] & 0xff);
+            return v;
+        }
     }
 
     // Constructors and Factories
@@ -134,15 +189,16 @@ public final class UUID implements java.io.Serializable, Comparable<UUID> {
      * Static factory to retrieve a type 4 (pseudo randomly generated) UUID.
      *
      * The {@code UUID} is generated using a cryptographically strong pseudo
-     * random number generator.
+     * random number generator.  Each thread uses a generator of its own,
+     * seeded from a shared one on first use, so that threads creating
+     * UUIDs concurrently do not wait for each other.
      *
      * @return  A randomly generated {@code UUID}
      */
     public static UUID randomUUID() {
-        SecureRandom ng = Holder.numberGenerator;
-
-        byte[] randomBytes = new byte[16];
-        ng.nextBytes(randomBytes);
+        Generator g = Holder.generators.get();
+        byte[] randomBytes = g.bytes;
+        g.random.nextBytes(randomBytes);
         randomBytes[6]  &= 0x0f;  /* clear version        */
         randomBytes[6]  |= 0x40;  /* set to version 4     */
         randomBytes[8]  &= 0x3f;  /* clear variant        */
@@ -150,6 +206,66 @@ public final class UUID implements java.io.Serializable, Comparable<UUID> {
         return new UUID(randomBytes);
     }
 
+    /**
+     * Static factory to retrieve a type 4 (pseudo randomly generated) UUID
+     * using the given random number generator.
+     *
+     * <p> The strength of the {@code UUID} is that of the generator.  For
+     * identifiers that need not be unpredictable, such as trace IDs, a
+     * {@link java.util.concurrent.ThreadLocalRandom} is considerably faster
+     * than {@link #randomUUID()}:
+     * <pre>
+     *   UUID id = UUID.randomUUID(ThreadLocalRandom.current());
+     * </pre>
+     *
+     * @param  random
+     *         The generator of the random bits of the {@code UUID}
+     *
+     * @return  A randomly generated {@code UUID}
+     *
+     * @throws  NullPointerException
+     *          If {@code random} is null
+     *
+     * @since 1.7
+     */
+    public static UUID randomUUID(Random random) {
+        long msb = random.nextLong();
+        long lsb = random.nextLong();
+        msb = (msb & ~0xf000L) | 0x4000L;                  /* version 4    */
+        lsb = (lsb & ~(0xcL << 60)) | (0x8L << 60);        /* IETF variant */
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Static factory to retrieve a version 7 (time-ordered) {@code UUID}.
+     *
+     * <p> The most significant 48 bits of the {@code UUID} hold the current
+     * time in milliseconds since midnight, January 1, 1970 UTC, and the 74
+     * remaining bits that are not taken by the version and variant are
+     * filled by a sequence number and by a cryptographically strong pseudo
+     * random number generator of the current thread.  UUIDs created by this
+     * method in one Java virtual machine are strictly increasing in the
+     * order of {@link #compareTo compareTo}, even if the system clock is set
+     * back, which makes them suitable as keys of database indexes.
+     *
+     * @return  A time-ordered {@code UUID}
+     *
+     * @since 1.7
+     */
+    public static UUID timeOrderedUUID() {
+        AtomicLong lastTime = Holder.lastTime;
+        long now = System.currentTimeMillis() << 12;
+        long last, time;
+        do {
+            last = lastTime.get();
+            time = (now > last) ? now : last + 1;   // at most 4096 per ms
+        } while (!lastTime.compareAndSet(last, time));
+        long msb = ((time >>> 12) << 16) | 0x7000L | (time & 0xfffL);
+        long lsb = Holder.generators.get().nextLong();
+        lsb = (lsb & ~(0xcL << 60)) | (0x8L << 60);        /* IETF variant */
+        return new UUID(msb, lsb);
+    }
+
     /**
      * Static factory to retrieve a type 3 (name based) {@code UUID} based on
      * the specified byte array.
@@ -238,6 +354,7 @@ public final class UUID implements java.io.Serializable, Comparable<UUID> {
      * <li>2    DCE security UUID
      * <li>3    Name-based UUID
      * <li>4    Randomly generated UUID
+     * <li>7    Time-ordered UUID
      * </ul>
      *
      * @return  The version number of this {@code UUID}
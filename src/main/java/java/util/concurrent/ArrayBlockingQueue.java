@@ -156,6 +156,38 @@ public class ArrayBlockingQueue<E> extends AbstractQueue<E>
         notEmpty.signal();
     }
 
+    /**
+     * Inserts n elements of a, starting at index i, at current put
+     * position, advances, and signals.  Call only when holding lock,
+     * with n no greater than the remaining capacity.
+     */
+    private void insertAll(Object[] a, int i, int n) {
+        final Object[] items = this.items;
+        int k = putIndex;
+        int first = Math.min(n, items.length - k);
+        System.arraycopy(a, i, items, k, first);
+        System.arraycopy(a, i + first, items, 0, n - first);
+        k += n;
+        putIndex = (k >= items.length) ? k - items.length : k;
+        count += n;
+        for (int j = 0; j < n; ++j) // one waiting take per element
+            notEmpty.signal();
+    }
+
+    /**
+     * Returns the elements of c as an array, checking them for null
+     * before any is inserted.
+     */
+    private Object[] elementsOf(Collection<? extends E> c) {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object e : a)
+            checkNotNull(e);
+        return a;
+    }
+
     /**
      * Extracts element at current take position, advances, and signals.
      * Call only when holding lock.
@@ -356,6 +388,76 @@ public class ArrayBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * Inserts as many of the elements of the specified collection as
+     * fit at the tail of this queue, in traversal order of the
+     * collection's iterator, without waiting.  All of the elements
+     * are inserted under a single acquisition of the lock, so they
+     * appear contiguously in this queue.
+     *
+     * @param c the elements to insert
+     * @return the number of elements inserted, which is less than the
+     *         size of the collection if this queue became full
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null, in which case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.7
+     */
+    public int offerAll(Collection<? extends E> c) {
+        Object[] a = elementsOf(c);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = Math.min(a.length, items.length - count);
+            if (n > 0)
+                insertAll(a, 0, n);
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts all of the elements of the specified collection at the
+     * tail of this queue, in traversal order of the collection's
+     * iterator, waiting for space to become available as necessary.
+     * The lock is acquired once, and each wait inserts as many of the
+     * remaining elements as then fit, so the elements of a collection
+     * larger than the remaining capacity may be interleaved with
+     * those of other producers.
+     *
+     * <p>If interrupted while waiting, the elements inserted up to
+     * that point remain in this queue.
+     *
+     * @param c the elements to insert
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null, in which case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.7
+     */
+    public void putAll(Collection<? extends E> c) throws InterruptedException {
+        Object[] a = elementsOf(c);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            int i = 0;
+            while (i < a.length) {
+                while (count == items.length)
+                    notFull.await();
+                int n = Math.min(a.length - i, items.length - count);
+                insertAll(a, i, n);
+                i += n;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public E poll() {
         final ReentrantLock lock = this.lock;
         lock.lock();
@@ -676,30 +778,92 @@ public class ArrayBlockingQueue<E> extends AbstractQueue<E>
             throw new IllegalArgumentException();
         if (maxElements <= 0)
             return 0;
-        final Object[] items = this.items;
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            int i = takeIndex;
-            int n = 0;
-            int max = (maxElements < count) ? maxElements : count;
-            while (n < max) {
-                c.add(this.<E>cast(items[i]));
-                items[i] = null;
-                i = inc(i);
-                ++n;
-            }
-            if (n > 0) {
-                count -= n;
-                takeIndex = i;
-                notFull.signalAll();
+            return extractTo(c, maxElements);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes at most the given number of available elements from
+     * this queue and adds them to the given collection, waiting if
+     * necessary up to the specified wait time for an element to
+     * become available.  Once there is an element, the elements then
+     * present, up to {@code maxElements} of them, are removed under
+     * the same acquisition of the lock without waiting further.
+     *
+     * @param c the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @param timeout how long to wait before giving up, in units of
+     *        {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return the number of elements transferred, or zero if the
+     *         specified waiting time elapses before an element is
+     *         available
+     * @throws InterruptedException if interrupted while waiting
+     * @throws UnsupportedOperationException if addition of elements
+     *         is not supported by the specified collection
+     * @throws ClassCastException if the class of an element of this queue
+     *         prevents it from being added to the specified collection
+     * @throws NullPointerException if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is this
+     *         queue, or some property of an element of this queue prevents
+     *         it from being added to the specified collection
+     * @since 1.7
+     */
+    public int drainTo(Collection<? super E> c, int maxElements,
+                       long timeout, TimeUnit unit)
+        throws InterruptedException {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0)
+                    return 0;
+                nanos = notEmpty.awaitNanos(nanos);
             }
-            return n;
+            return extractTo(c, maxElements);
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Extracts up to max elements from current take position into c,
+     * advances, and signals.  Call only when holding lock.
+     *
+     * @return the number of elements extracted
+     */
+    private int extractTo(Collection<? super E> c, int max) {
+        final Object[] items = this.items;
+        int i = takeIndex;
+        int n = 0;
+        if (max > count)
+            max = count;
+        while (n < max) {
+            c.add(this.<E>cast(items[i]));
+            items[i] = null;
+            i = inc(i);
+            ++n;
+        }
+        if (n > 0) {
+            count -= n;
+            takeIndex = i;
+            notFull.signalAll();
+        }
+        return n;
+    }
+
     /**
      * Returns an iterator over the elements in this queue in proper sequence.
      * The elements will be returned in order from first (head) to last (tail).
@@ -0,0 +1,1159 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+import java.util.concurrent.locks.*;
+import java.util.*;
+
+/**
+ * A bounded {@linkplain BlockingQueue blocking queue} backed by an
+ * array, in which insertions and removals do not take locks.  This
+ * queue orders elements FIFO (first-in-first-out).  The <em>head</em>
+ * of the queue is that element that has been on the queue the longest
+ * time.  The <em>tail</em> of the queue is that element that has been
+ * on the queue the shortest time. New elements are inserted at the
+ * tail of the queue, and the queue retrieval operations obtain
+ * elements at the head of the queue.
+ *
+ * <p>Like {@link ArrayBlockingQueue}, this is a &quot;bounded
+ * buffer&quot; whose capacity is fixed on construction.  Unlike it,
+ * producers and consumers claim positions in the buffer with atomic
+ * updates of two separate counters rather than by holding a common
+ * lock, so that any number of producers and consumers can proceed
+ * concurrently, and a producer and a consumer never wait for each
+ * other unless the queue is full or empty.  Attempts to {@code put} an
+ * element into a full queue, or to {@code take} an element from an
+ * empty queue, spin briefly and then block.  No fairness policy is
+ * supported.
+ *
+ * <p>Beware that, unlike in most collections, the {@code size} method
+ * is only an estimate when the queue is being modified concurrently.
+ * Removal of arbitrary elements, by {@code remove(Object)} or by the
+ * {@code remove} method of an iterator, is supported but slow: it scans
+ * the queue, and the slot of a removed interior element keeps counting
+ * against the capacity until the elements before it have been taken.
+ * The iterator traverses a snapshot of the elements taken when it is
+ * created, and does not throw {@link ConcurrentModificationException}.
+ *
+ * <p>This class and its iterator implement all of the
+ * <em>optional</em> methods of the {@link Collection} and {@link
+ * Iterator} interfaces.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @since 1.7
+ * @author Doug Lea
+ * @param <E> the type of elements held in this collection
+ */
+public class ConcurrentArrayBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E>, java.io.Serializable {
+    private static final long serialVersionUID = -3624187932845129175L;
+
+    /*
+     * This is a variant of the bounded multi-producer multi-consumer
+     * queue of Dmitry Vyukov.  Each slot of the array carries a
+     * sequence number in addition to its item.  A slot with sequence
+     * number 2p is free for the producer that claims position p (of the
+     * unbounded sequence of positions mapped onto the array), and one
+     * with sequence number 2p+1 holds an item for the consumer that
+     * claims position p.  Producers claim positions by CASing the tail
+     * counter, and consumers by CASing the head counter, after checking
+     * that the slot is ready; a producer publishes an item by setting
+     * the sequence number of its slot to 2*position+1, and a consumer
+     * frees the slot by setting it to 2*(position+capacity).  (The
+     * original algorithm uses position+1 and position+capacity, which
+     * cannot be told apart when the capacity is one.)  A slot whose
+     * sequence number lags
+     * shows that the queue is full (for producers) or empty (for
+     * consumers).  An element whose producer has claimed its position
+     * but not yet published it is not visible to consumers, so offer
+     * and poll may report a full or empty queue while another thread
+     * is in the middle of an operation; blocking operations are
+     * woken by that thread when it completes.
+     *
+     * The counters are padded so that producers and consumers do not
+     * contend for one cache line.
+     *
+     * Batch operations claim a run of consecutive positions with a
+     * single CAS, after checking that each of their slots is ready, and
+     * then fill or empty the slots in order.  Only the ready prefix of
+     * a run is claimed, so offerAll may insert fewer elements than fit
+     * while an earlier consumer is still emptying its slot.
+     *
+     * Arbitrary elements are removed by replacing them, with a CAS of
+     * the item, by the TOMBSTONE marker, leaving the slot in place.
+     * Consumers therefore take items with a CAS too (so that a
+     * remover and a consumer cannot both get one element), and skip
+     * tombstones, freeing their slots; tombstones reaching the head
+     * are also skipped at once by the remover.  The tombstones field
+     * counts those not yet skipped, so that size can exclude them.
+     *
+     * Threads that find the queue full or empty spin for a while and
+     * then block on one of two conditions of a lock, which is used for
+     * nothing else.  They announce themselves in waitingTakers or
+     * waitingPutters before rechecking the queue.  Since both the
+     * announcement and the publication of a sequence number are
+     * volatile writes followed by volatile reads of the other, a
+     * thread completing an operation either sees the waiter, and
+     * signals it, or the waiter sees the completed operation.
+     */
+
+    /** The number of times to spin before blocking. */
+    static final int SPINS =
+        (Runtime.getRuntime().availableProcessors() < 2) ? 0 : 1 << 7;
+
+    /** The capacity bound. */
+    private final int capacity;
+
+    /** Main lock guarding the blocked threads only */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Condition for waiting takes */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** Condition for waiting puts */
+    private final Condition notFull = lock.newCondition();
+
+    /** The queued items */
+    private transient Object[] items;
+
+    /** The sequence numbers of the slots */
+    private transient long[] sequences;
+
+    /** capacity - 1 if capacity is a power of two, else -1 */
+    private transient int mask;
+
+    /** The next position to take from */
+    private transient Counter head;
+
+    /** The next position to put at */
+    private transient Counter tail;
+
+    /** Number of threads blocked, or about to block, in takes */
+    private transient volatile int waitingTakers;
+
+    /** Number of threads blocked, or about to block, in puts */
+    private transient volatile int waitingPutters;
+
+    /** Number of removed elements whose slots have not been freed */
+    private transient volatile int tombstones;
+
+    /** Replaces removed elements in their slots */
+    private static final Object TOMBSTONE = new Object();
+
+    /**
+     * Padded variant of AtomicLong supporting only raw accesses plus
+     * CAS. The value field is placed between two sets of padding
+     * fields so that the head and tail do not share a cache line.
+     */
+    static final class Counter {
+        volatile long p0, p1, p2, p3, p4, p5, p6;
+        volatile long value;
+        volatile long q0, q1, q2, q3, q4, q5, q6;
+        Counter(long x) { value = x; }
+
+        final boolean cas(long cmp, long val) {
+            return UNSAFE.compareAndSwapLong(this, valueOffset, cmp, val);
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe UNSAFE;
+        private static final long valueOffset;
+        static {
+            try {
+                UNSAFE = sun.misc.Unsafe.getUnsafe();
+                Class<?> ak = Counter.class;
+                valueOffset = UNSAFE.objectFieldOffset
+                    (ak.getDeclaredField("value"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * Creates a {@code ConcurrentArrayBlockingQueue} with the given
+     * (fixed) capacity.
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public ConcurrentArrayBlockingQueue(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        this.capacity = capacity;
+        init();
+    }
+
+    /**
+     * Creates a {@code ConcurrentArrayBlockingQueue} with the given
+     * (fixed) capacity, initially containing the elements of the
+     * given collection, added in traversal order of the collection's
+     * iterator.
+     *
+     * @param capacity the capacity of this queue
+     * @param c the collection of elements to initially contain
+     * @throws IllegalArgumentException if {@code capacity} is less than
+     *         {@code c.size()}, or less than 1.
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public ConcurrentArrayBlockingQueue(int capacity,
+                                        Collection<? extends E> c) {
+        this(capacity);
+        for (E e : c) {
+            if (!offer(e))
+                throw new IllegalArgumentException();
+        }
+    }
+
+    private void init() {
+        int n = capacity;
+        items = new Object[n];
+        long[] seqs = new long[n];
+        for (int i = 0; i < n; i++)
+            seqs[i] = (long)i << 1;
+        sequences = seqs;
+        mask = ((n & (n - 1)) == 0) ? n - 1 : -1;
+        head = new Counter(0L);
+        tail = new Counter(0L);
+    }
+
+    /**
+     * Throws NullPointerException if argument is null.
+     *
+     * @param v the element
+     */
+    private static void checkNotNull(Object v) {
+        if (v == null)
+            throw new NullPointerException();
+    }
+
+    // Slot access
+
+    private int index(long pos) {
+        int m = mask;
+        return (m >= 0) ? (int)pos & m : (int)(pos % capacity);
+    }
+
+    private long sequenceAt(int i) {
+        return UNSAFE.getLongVolatile(sequences, ((long)i << LSHIFT) + LBASE);
+    }
+
+    private void setSequence(int i, long s) {
+        UNSAFE.putLongVolatile(sequences, ((long)i << LSHIFT) + LBASE, s);
+    }
+
+    private Object itemAt(int i) {
+        return UNSAFE.getObjectVolatile(items, ((long)i << ASHIFT) + ABASE);
+    }
+
+    private void setItem(int i, Object x) {
+        UNSAFE.putOrderedObject(items, ((long)i << ASHIFT) + ABASE, x);
+    }
+
+    private boolean casItem(int i, Object cmp, Object val) {
+        return UNSAFE.compareAndSwapObject
+            (items, ((long)i << ASHIFT) + ABASE, cmp, val);
+    }
+
+    /**
+     * Clears the item of a claimed slot, returning the element or
+     * TOMBSTONE if it was removed.
+     */
+    private Object takeItem(int i) {
+        Object x;
+        do {} while (!casItem(i, x = itemAt(i), null));
+        return x;
+    }
+
+    private void addTombstones(int d) {
+        int c;
+        do {} while (!UNSAFE.compareAndSwapInt
+                     (this, TOMBSTONES, c = tombstones, c + d));
+    }
+
+    /**
+     * Inserts e at the tail if a slot is free.
+     *
+     * @return true if inserted, false if the queue was full
+     */
+    private boolean enqueue(E e) {
+        final Counter tail = this.tail;
+        for (;;) {
+            long pos = tail.value;
+            int i = index(pos);
+            long dif = sequenceAt(i) - (pos << 1);
+            if (dif == 0L) {
+                if (tail.cas(pos, pos + 1)) {
+                    setItem(i, e);
+                    setSequence(i, (pos << 1) + 1);
+                    return true;
+                }
+            }
+            else if (dif < 0L)
+                return false;
+        }
+    }
+
+    /**
+     * Removes and returns the element at the head, if any.
+     *
+     * @return the element, or null if the queue was empty
+     */
+    private E dequeue() {
+        final Counter head = this.head;
+        for (;;) {
+            long pos = head.value;
+            int i = index(pos);
+            long dif = sequenceAt(i) - ((pos << 1) + 1);
+            if (dif == 0L) {
+                if (head.cas(pos, pos + 1)) {
+                    Object x = takeItem(i);
+                    setSequence(i, (pos + capacity) << 1);
+                    if (x != TOMBSTONE) {
+                        @SuppressWarnings("unchecked") E e = (E)x;
+                        return e;
+                    }
+                    addTombstones(-1);
+                    signalNotFull(1);
+                }
+            }
+            else if (dif < 0L)
+                return null;
+        }
+    }
+
+    /**
+     * Frees the slots of tombstones at the head.
+     */
+    private void skipTombstones() {
+        final Counter head = this.head;
+        int n = 0;
+        for (;;) {
+            long pos = head.value;
+            int i = index(pos);
+            if (sequenceAt(i) != (pos << 1) + 1 || itemAt(i) != TOMBSTONE)
+                break;
+            if (head.cas(pos, pos + 1)) {
+                setItem(i, null);
+                setSequence(i, (pos + capacity) << 1);
+                ++n;
+            }
+        }
+        if (n > 0) {
+            addTombstones(-n);
+            signalNotFull(n);
+        }
+    }
+
+    /**
+     * Removes one element that is o, or, unless identity is true,
+     * that equals o, by replacing it with TOMBSTONE.
+     *
+     * @return true if an element was removed
+     */
+    private boolean removeElement(Object o, boolean identity) {
+        final Counter head = this.head;
+        long t = tail.value;
+        for (long pos = head.value; pos < t; pos++) {
+            int i = index(pos);
+            long s = (pos << 1) + 1;
+            Object x;
+            if (sequenceAt(i) == s && (x = itemAt(i)) != null &&
+                x != TOMBSTONE && sequenceAt(i) == s &&
+                (x == o || (!identity && o.equals(x))) &&
+                casItem(i, x, TOMBSTONE)) {
+                addTombstones(1);
+                skipTombstones();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts up to n elements of a, starting at index i, at the tail,
+     * claiming their positions with a single CAS.
+     *
+     * @return the number of elements inserted, zero if the queue was full
+     */
+    private int enqueueAll(Object[] a, int i, int n) {
+        final Counter tail = this.tail;
+        for (;;) {
+            long pos = tail.value;
+            long dif = 0L;
+            int k = 0;
+            while (k < n &&
+                   (dif = sequenceAt(index(pos + k)) - ((pos + k) << 1)) == 0L)
+                ++k;
+            if (k == 0) {
+                if (dif < 0L)
+                    return 0;
+            }
+            else if (tail.cas(pos, pos + k)) {
+                for (int j = 0; j < k; ++j) {
+                    long p = pos + j;
+                    int s = index(p);
+                    setItem(s, a[i + j]);
+                    setSequence(s, (p << 1) + 1);
+                }
+                return k;
+            }
+        }
+    }
+
+    /**
+     * Removes up to max elements at the head, claiming their positions
+     * with a single CAS, and adds them to c.  Tombstones among the
+     * claimed positions are skipped, and do not count towards max; if
+     * there were any, further positions are claimed to make up for them.
+     * Signals waiting puts even if c.add throws, in which case the
+     * claimed elements not yet added are discarded.
+     *
+     * @return the number of elements removed, zero if the queue was empty
+     */
+    private int dequeueAll(Collection<? super E> c, int max) {
+        final Counter head = this.head;
+        int n = 0;
+        while (n < max) {
+            long pos;
+            int k;
+            for (;;) {
+                pos = head.value;
+                long dif = 0L;
+                k = 0;
+                while (k < max - n &&
+                       (dif = sequenceAt(index(pos + k)) -
+                        (((pos + k) << 1) + 1)) == 0L)
+                    ++k;
+                if (k == 0) {
+                    if (dif < 0L)
+                        return n;
+                }
+                else if (head.cas(pos, pos + k))
+                    break;
+            }
+            int j = 0, skipped = 0;
+            try {
+                while (j < k) {
+                    long p = pos + j++;
+                    int s = index(p);
+                    Object x = takeItem(s);
+                    setSequence(s, (p + capacity) << 1);
+                    if (x == TOMBSTONE)
+                        ++skipped;
+                    else {
+                        @SuppressWarnings("unchecked") E e = (E)x;
+                        c.add(e);
+                        ++n;
+                    }
+                }
+            } finally {
+                while (j < k) {
+                    long p = pos + j++;
+                    int s = index(p);
+                    if (takeItem(s) == TOMBSTONE)
+                        ++skipped;
+                    setSequence(s, (p + capacity) << 1);
+                }
+                if (skipped > 0)
+                    addTombstones(-skipped);
+                signalNotFull(k);
+            }
+            if (skipped == 0)
+                break;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the elements of c as an array, checking them for null
+     * before any is inserted.
+     */
+    private Object[] elementsOf(Collection<? extends E> c) {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object e : a)
+            checkNotNull(e);
+        return a;
+    }
+
+    /**
+     * Wakes up waiting takes, if there may be some.  Called after n
+     * elements are inserted.
+     */
+    private void signalNotEmpty(int n) {
+        if (waitingTakers > 0) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                if (n == 1)
+                    notEmpty.signal();
+                else
+                    notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Wakes up waiting puts, if there may be some.  Called after n
+     * elements are removed.
+     */
+    private void signalNotFull(int n) {
+        if (waitingPutters > 0) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                if (n == 1)
+                    notFull.signal();
+                else
+                    notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Inserts e, waiting if necessary for space to become available.
+     *
+     * @param timed if true, wait at most nanos
+     * @return true if inserted, false on timeout
+     */
+    private boolean awaitPut(E e, boolean timed, long nanos)
+        throws InterruptedException {
+        int spins = SPINS;
+        while (!enqueue(e)) {
+            if (spins > 0) {
+                --spins;
+                continue;
+            }
+            if (timed && nanos <= 0L)
+                return false;
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                ++waitingPutters;
+                try {
+                    if (enqueue(e))
+                        break;
+                    if (timed)
+                        nanos = notFull.awaitNanos(nanos);
+                    else
+                        notFull.await();
+                } catch (InterruptedException ie) {
+                    notFull.signal(); // propagate to non-interrupted thread
+                    throw ie;
+                } finally {
+                    --waitingPutters;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        signalNotEmpty(1);
+        return true;
+    }
+
+    /**
+     * Removes the head, waiting if necessary for an element to become
+     * available.
+     *
+     * @param timed if true, wait at most nanos
+     * @return the head, or null on timeout
+     */
+    private E awaitTake(boolean timed, long nanos)
+        throws InterruptedException {
+        E x;
+        int spins = SPINS;
+        while ((x = dequeue()) == null) {
+            if (spins > 0) {
+                --spins;
+                continue;
+            }
+            if (timed && nanos <= 0L)
+                return null;
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                ++waitingTakers;
+                try {
+                    if ((x = dequeue()) != null)
+                        break;
+                    if (timed)
+                        nanos = notEmpty.awaitNanos(nanos);
+                    else
+                        notEmpty.await();
+                } catch (InterruptedException ie) {
+                    notEmpty.signal(); // propagate to non-interrupted thread
+                    throw ie;
+                } finally {
+                    --waitingTakers;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        signalNotFull(1);
+        return x;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's capacity,
+     * returning {@code true} upon success and throwing an
+     * {@code IllegalStateException} if this queue is full.
+     *
+     * @param e the element to add
+     * @return {@code true} (as specified by {@link Collection#add})
+     * @throws IllegalStateException if this queue is full
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean add(E e) {
+        return super.add(e);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's capacity,
+     * returning {@code true} upon success and {@code false} if this queue
+     * is full.  This method is generally preferable to method {@link #add},
+     * which can fail to insert an element only by throwing an exception.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        checkNotNull(e);
+        if (!enqueue(e))
+            return false;
+        signalNotEmpty(1);
+        return true;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * for space to become available if the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        if (enqueue(e))
+            signalNotEmpty(1);
+        else
+            awaitPut(e, false, 0L);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * up to the specified wait time for space to become available if
+     * the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        checkNotNull(e);
+        if (enqueue(e)) {
+            signalNotEmpty(1);
+            return true;
+        }
+        return awaitPut(e, true, unit.toNanos(timeout));
+    }
+
+    /**
+     * Inserts as many of the elements of the specified collection as
+     * fit at the tail of this queue, in traversal order of the
+     * collection's iterator, without waiting.  The positions of all
+     * inserted elements are claimed by a single atomic update, so
+     * they appear contiguously in this queue.
+     *
+     * @param c the elements to insert
+     * @return the number of elements inserted, which is less than the
+     *         size of the collection if this queue became full
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null, in which case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     */
+    public int offerAll(Collection<? extends E> c) {
+        Object[] a = elementsOf(c);
+        int n = (a.length == 0) ? 0 : enqueueAll(a, 0, a.length);
+        if (n > 0)
+            signalNotEmpty(n);
+        return n;
+    }
+
+    /**
+     * Inserts all of the elements of the specified collection at the
+     * tail of this queue, in traversal order of the collection's
+     * iterator, waiting for space to become available as necessary.
+     * As many of the elements as fit are inserted by a single atomic
+     * update, so the elements of a collection larger than the
+     * remaining capacity may be interleaved with those of other
+     * producers.
+     *
+     * <p>If interrupted while waiting, the elements inserted up to
+     * that point remain in this queue.
+     *
+     * @param c the elements to insert
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null, in which case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     */
+    @SuppressWarnings("unchecked")
+    public void putAll(Collection<? extends E> c) throws InterruptedException {
+        Object[] a = elementsOf(c);
+        int i = 0;
+        while (i < a.length) {
+            int n = enqueueAll(a, i, a.length - i);
+            if (n > 0) {
+                signalNotEmpty(n);
+                i += n;
+            }
+            else
+                awaitPut((E)a[i++], false, 0L);
+        }
+    }
+
+    public E poll() {
+        E x = dequeue();
+        if (x != null)
+            signalNotFull(1);
+        return x;
+    }
+
+    public E take() throws InterruptedException {
+        E x = dequeue();
+        if (x == null)
+            return awaitTake(false, 0L);
+        signalNotFull(1);
+        return x;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E x = dequeue();
+        if (x == null)
+            return awaitTake(true, unit.toNanos(timeout));
+        signalNotFull(1);
+        return x;
+    }
+
+    public E peek() {
+        final Counter head = this.head;
+        for (;;) {
+            long pos = head.value;
+            int i = index(pos);
+            long dif = sequenceAt(i) - ((pos << 1) + 1);
+            if (dif < 0L)
+                return null;
+            if (dif == 0L) {
+                Object x = itemAt(i);
+                if (x == TOMBSTONE)
+                    skipTombstones();
+                else if (x != null && head.value == pos) {
+                    @SuppressWarnings("unchecked") E e = (E)x;
+                    return e;
+                }
+            }
+        }
+    }
+
+    // this doc comment is overridden to remove the reference to collections
+    // greater in size than Integer.MAX_VALUE
+    /**
+     * Returns the number of elements in this queue.  If elements are
+     * being inserted or removed concurrently, the result may include
+     * elements whose insertion or removal is still in progress.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        final Counter head = this.head;
+        for (;;) {
+            long h = head.value;
+            long t = tail.value;
+            if (head.value == h) {
+                long n = t - h - tombstones;
+                return (n <= 0L) ? 0 : (n >= capacity) ? capacity : (int)n;
+            }
+        }
+    }
+
+    // this doc comment is a modified copy of the inherited doc comment,
+    // without the reference to unlimited queues.
+    /**
+     * Returns the number of additional elements that this queue can ideally
+     * (in the absence of memory or resource constraints) accept without
+     * blocking. This is always equal to the initial capacity of this queue
+     * less the current {@code size} of this queue.
+     *
+     * <p>Note that you <em>cannot</em> always tell if an attempt to insert
+     * an element will succeed by inspecting {@code remainingCapacity}
+     * because it may be the case that another thread is about to
+     * insert or remove an element.
+     */
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue,
+     * if it is present.  More formally, removes an element {@code e} such
+     * that {@code o.equals(e)}, if this queue contains one or more such
+     * elements.
+     * Returns {@code true} if this queue contained the specified element
+     * (or equivalently, if this queue changed as a result of the call).
+     *
+     * <p>Removal of interior elements in this queue is slow: it
+     * traverses the queue, and the slot of the removed element is only
+     * freed once the elements before it have been taken.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        return o != null && removeElement(o, false);
+    }
+
+    /**
+     * Returns {@code true} if this queue contains the specified element.
+     * More formally, returns {@code true} if and only if this queue contains
+     * at least one element {@code e} such that {@code o.equals(e)}.
+     *
+     * @param o object to be checked for containment in this queue
+     * @return {@code true} if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        if (o == null) return false;
+        for (Object x : toArray()) {
+            if (o.equals(x))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue, in
+     * proper sequence, as seen by a traversal from the head to the tail
+     * that may miss concurrent insertions and removals.
+     *
+     * <p>The returned array will be "safe" in that no references to it are
+     * maintained by this queue.  (In other words, this method must allocate
+     * a new array).  The caller is thus free to modify the returned array.
+     *
+     * <p>This method acts as bridge between array-based and collection-based
+     * APIs.
+     *
+     * @return an array containing all of the elements in this queue
+     */
+    public Object[] toArray() {
+        final Counter head = this.head;
+        for (;;) {
+            long h = head.value;
+            long t = tail.value;
+            int n = (int)Math.max(0L, Math.min(t - h, (long)capacity));
+            Object[] a = new Object[n];
+            int k = 0;
+            for (long pos = h; pos < h + n; pos++) {
+                int i = index(pos);
+                if (sequenceAt(i) != (pos << 1) + 1)
+                    break;          // not yet published, or taken
+                Object x = itemAt(i);
+                if (x == null || sequenceAt(i) != (pos << 1) + 1)
+                    break;
+                if (x != TOMBSTONE)
+                    a[k++] = x;
+            }
+            if (head.value == h)
+                return (k == n) ? a : Arrays.copyOf(a, k);
+        }
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue, in
+     * proper sequence; the runtime type of the returned array is that of
+     * the specified array.  If the queue fits in the specified array, it
+     * is returned therein.  Otherwise, a new array is allocated with the
+     * runtime type of the specified array and the size of this queue.
+     *
+     * <p>If this queue fits in the specified array with room to spare
+     * (i.e., the array has more elements than this queue), the element in
+     * the array immediately following the end of the queue is set to
+     * {@code null}.
+     *
+     * <p>Like the {@link #toArray()} method, this method acts as bridge between
+     * array-based and collection-based APIs.  Further, this method allows
+     * precise control over the runtime type of the output array, and may,
+     * under certain circumstances, be used to save allocation costs.
+     *
+     * @param a the array into which the elements of the queue are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose
+     * @return an array containing all of the elements in this queue
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this queue
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] elements = toArray();
+        int n = elements.length;
+        if (a.length < n)
+            return (T[])Arrays.copyOf(elements, n, a.getClass());
+        System.arraycopy(elements, 0, a, 0, n);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    /**
+     * Removes all of the elements from this queue.  Elements inserted
+     * while this method runs may or may not be removed.
+     */
+    public void clear() {
+        int n = 0;
+        while (dequeue() != null)
+            ++n;
+        if (n > 0)
+            signalNotFull(n);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        return (maxElements <= 0) ? 0 : dequeueAll(c, maxElements);
+    }
+
+    /**
+     * Removes at most the given number of available elements from
+     * this queue and adds them to the given collection, waiting if
+     * necessary up to the specified wait time for an element to
+     * become available.  Once there is an element, the elements then
+     * present, up to {@code maxElements} of them, are removed by a
+     * single atomic update without waiting further.
+     *
+     * @param c the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @param timeout how long to wait before giving up, in units of
+     *        {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return the number of elements transferred, or zero if the
+     *         specified waiting time elapses before an element is
+     *         available
+     * @throws InterruptedException if interrupted while waiting
+     * @throws UnsupportedOperationException if addition of elements
+     *         is not supported by the specified collection
+     * @throws ClassCastException if the class of an element of this queue
+     *         prevents it from being added to the specified collection
+     * @throws NullPointerException if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is this
+     *         queue, or some property of an element of this queue prevents
+     *         it from being added to the specified collection
+     */
+    public int drainTo(Collection<? super E> c, int maxElements,
+                       long timeout, TimeUnit unit)
+        throws InterruptedException {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        int n = dequeueAll(c, maxElements);
+        if (n > 0)
+            return n;
+        E x = awaitTake(true, unit.toNanos(timeout));
+        if (x == null)
+            return 0;
+        c.add(x);
+        return (maxElements == 1) ? 1 : 1 + dequeueAll(c, maxElements - 1);
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements in this queue,
+     * in proper sequence.  The elements will be returned in order from
+     * first (head) to last (tail).
+     *
+     * <p>The returned {@code Iterator} traverses the elements present
+     * when it is created, as by {@link #toArray()}, will never throw
+     * {@link java.util.ConcurrentModificationException
+     * ConcurrentModificationException}.  Its {@code remove} method
+     * removes the last element returned from this queue, if it is
+     * still present, as slowly as {@link #remove(Object)}.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        @SuppressWarnings("unchecked") E[] snapshot = (E[])toArray();
+        return new Itr(snapshot);
+    }
+
+    /**
+     * Iterator over a snapshot of the elements.
+     */
+    private class Itr implements Iterator<E> {
+        private final E[] snapshot;
+        private int cursor;
+        private int lastRet = -1;
+
+        Itr(E[] snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        public boolean hasNext() {
+            return cursor < snapshot.length;
+        }
+
+        public E next() {
+            if (cursor >= snapshot.length)
+                throw new NoSuchElementException();
+            return snapshot[lastRet = cursor++];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            removeElement(snapshot[lastRet], true);
+            lastRet = -1;
+        }
+    }
+
+    /**
+     * Saves the state to a stream (that is, serializes it).
+     *
+     * @serialData The capacity is emitted (int), followed by all of
+     * its elements (each an {@code Object}) in the proper order,
+     * followed by a null
+     * @param s the stream
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+
+        // Write out any hidden stuff, plus capacity
+        s.defaultWriteObject();
+
+        // Write out all elements in the proper order.
+        for (Object x : toArray())
+            s.writeObject(x);
+
+        // Use trailing null as sentinel
+        s.writeObject(null);
+    }
+
+    /**
+     * Reconstitutes this queue instance from a stream (that is,
+     * deserializes it).
+     *
+     * @param s the stream
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        // Read in capacity, and any hidden stuff
+        s.defaultReadObject();
+        if (capacity <= 0)
+            throw new java.io.InvalidObjectException("capacity");
+        init();
+
+        // Read in all elements and place in queue
+        for (;;) {
+            @SuppressWarnings("unchecked")
+            E item = (E)s.readObject();
+            if (item == null)
+                break;
+            add(item);
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    private static final long LBASE;
+    private static final int LSHIFT;
+    private static final long TOMBSTONES;
+    static {
+        try {
+            UNSAFE = sun.misc.Unsafe.getUnsafe();
+            TOMBSTONES = UNSAFE.objectFieldOffset
+                (ConcurrentArrayBlockingQueue.class.getDeclaredField("tombstones"));
+            Class<?> ak = Object[].class;
+            Class<?> lk = long[].class;
+            ABASE = UNSAFE.arrayBaseOffset(ak);
+            int scale = UNSAFE.arrayIndexScale(ak);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            LBASE = UNSAFE.arrayBaseOffset(lk);
+            scale = UNSAFE.arrayIndexScale(lk);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            LSHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,1718 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * A hash table supporting full concurrency of retrievals and
+ * adjustable expected concurrency for updates, that holds at most a
+ * given total <em>weight</em> of entries.  When an insertion causes
+ * the weight of the map to exceed its capacity, entries are evicted
+ * according to an {@link EvictionPolicy}: either the least recently
+ * used, or the least frequently used, entries are removed first.
+ * Entries may also be configured to expire a fixed time after they
+ * were written, or after they were last accessed.
+ *
+ * <p>The weight of each entry is determined by a {@link Weigher} when
+ * the entry is inserted or its value replaced.  By default each entry
+ * has weight one, so that the capacity bounds the number of entries.
+ *
+ * <p>The entries are held in a {@link ConcurrentHashMap}, so lookups
+ * and updates have the same concurrency properties as in that class.
+ * The eviction order is maintained by bookkeeping that needs
+ * exclusive access, but retrievals do not wait for it: each one is
+ * recorded in a small per-thread-group buffer, and the buffers are
+ * applied in batches by whichever thread next succeeds in obtaining
+ * the bookkeeping lock without blocking.  Buffered accesses may be
+ * dropped when a buffer is full, in which case the eviction order
+ * reflects access patterns only approximately.  Updates are buffered
+ * in the same way but never dropped.  As a consequence, the weight of
+ * the map may transiently exceed its capacity while other threads
+ * are still updating it.  Method {@link #cleanUp} may be used to
+ * apply all pending bookkeeping immediately.
+ *
+ * <p>Expired entries are never returned by retrieval operations, and
+ * are removed as they are encountered or when the bookkeeping is
+ * next performed.  They may still be counted by {@link #size} until
+ * then.  Under the {@link EvictionPolicy#LFU LFU} policy, access
+ * counts are not decayed over time, so that policy suits workloads
+ * whose popular entries do not change much.
+ *
+ * <p>Hit, miss, eviction and expiration counts are maintained in
+ * striped counters, and may be obtained through {@link #stats}.
+ *
+ * <p>Iterators and views are weakly consistent, as for {@link
+ * ConcurrentHashMap}, and do not throw {@link
+ * ConcurrentModificationException}.  Traversal does not count as
+ * access for the eviction order.
+ *
+ * <p>Instances are created using a {@link Builder}, as in:
+ * <pre> {@code
+ * ConcurrentCache<String, byte[]> cache =
+ *     new ConcurrentCache.Builder<String, byte[]>()
+ *         .maximumWeight(64 * 1024 * 1024)
+ *         .weigher(new ConcurrentCache.Weigher<String, byte[]>() {
+ *             public int weightOf(String key, byte[] value) {
+ *                 return value.length + 1;
+ *             }})
+ *         .expireAfterAccess(10, TimeUnit.MINUTES)
+ *         .build();}</pre>
+ *
+ * <p>Like {@link java.util.Hashtable} but unlike {@link java.util.HashMap},
+ * this class does <em>not</em> allow {@code null} to be used as a
+ * key or value.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @since 1.7
+ * @author Doug Lea
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public class ConcurrentCache<K, V> extends AbstractMap<K, V>
+        implements ConcurrentMap<K, V>, Serializable {
+
+    /*
+     * Overview:
+     *
+     * Each mapping is held in a Node stored in a ConcurrentHashMap.
+     * The value and weight of a Node are held together in an
+     * immutable WeightedValue, which is replaced by CAS, so that a
+     * value and its weight always change together.  The sign of the
+     * weight encodes the life cycle of the node: positive while the
+     * node is in the map (alive), negative once it has been or is
+     * being removed from the map (retired), and zero once the
+     * bookkeeping has accounted for its removal (dead).
+     *
+     * The bookkeeping consists of the total weighted size and the
+     * orders used for eviction and expiration, all guarded by
+     * evictionLock: an access-ordered list (for LRU eviction and
+     * expire-after-access), a write-ordered list (for
+     * expire-after-write), and for LFU eviction a list of frequency
+     * buckets, each holding, in access order, the nodes accessed
+     * exactly that many times.  This gives O(1) LFU updates.  Nodes
+     * are linked into only those orders that are in use.  All lists
+     * are circular and doubly-linked through sentinel nodes.
+     *
+     * Rather than acquiring the lock on every operation, operations
+     * record what they did in buffers that are drained under the
+     * lock, as in the "BP-Wrapper" technique.  Reads are recorded in
+     * one of a number of striped ring buffers, selected by thread
+     * id.  Each holds READ_BUFFER_SIZE slots, written without CAS by
+     * a racy increment of the stripe's write count, so that
+     * concurrent readers of a stripe may occasionally overwrite each
+     * other's entries; losing a read only makes the access order
+     * less accurate.  A drain is attempted when READ_BUFFER_THRESHOLD
+     * reads are pending in a stripe.  Writes instead enqueue a task
+     * (AddTask, UpdateTask or RemovalTask) on a ConcurrentLinkedQueue,
+     * and always try to drain.  Tasks for the same node may be run
+     * in a different order than their operations occurred.  This is
+     * harmless because tasks only link nodes that are still alive,
+     * and because weights are accounted so as to cancel out in any
+     * order: AddTask adds the initial weight, UpdateTask the
+     * difference, and making the node dead subtracts the last
+     * weight.
+     *
+     * The drainStatus field avoids needless drain attempts: it is
+     * REQUIRED when writes are pending, and PROCESSING while a
+     * thread is draining.  A write that fails to acquire the lock
+     * leaves it REQUIRED, so that its task is run by the next
+     * operation to come along if not by the current drainer.  Each
+     * drain runs at most a bounded number of tasks, to bound the
+     * time for which the lock is held by an unlucky caller.
+     *
+     * Expiration is checked on every retrieval against timestamps
+     * held in the nodes, so expired entries are never returned.  A
+     * thread that finds an expired entry removes it.  Drains also
+     * remove expired entries from the head of the write and access
+     * orders.
+     *
+     * Counters use LongAdder, so that recording statistics does not
+     * itself become a point of contention.
+     */
+
+    /* ---------------- Constants -------------- */
+
+    /** Number of CPUS, to place bounds on buffer counts */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** The number of read buffers, a power of two. */
+    static final int READ_BUFFERS = ceilingPowerOfTwo(Math.min(NCPU, 64));
+
+    /** Mask for selecting a read buffer */
+    static final int READ_BUFFERS_MASK = READ_BUFFERS - 1;
+
+    /** The number of pending reads in a buffer that triggers a drain. */
+    static final int READ_BUFFER_THRESHOLD = 32;
+
+    /** The maximum number of reads drained from a buffer at a time. */
+    static final int READ_BUFFER_DRAIN_THRESHOLD = 2 * READ_BUFFER_THRESHOLD;
+
+    /** The number of slots in each read buffer, a power of two. */
+    static final int READ_BUFFER_SIZE = 2 * READ_BUFFER_DRAIN_THRESHOLD;
+
+    /** Mask for selecting a slot in a read buffer */
+    static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    /**
+     * The spacing of the per-buffer counters in their arrays, so
+     * that the counters of different buffers do not share cache
+     * lines.
+     */
+    static final int COUNTER_STRIDE = 16;
+
+    /** The maximum number of write tasks run per drain. */
+    static final int WRITE_BUFFER_DRAIN_THRESHOLD = 16;
+
+    /** drainStatus values */
+    static final int IDLE = 0, REQUIRED = 1, PROCESSING = 2;
+
+    /** Expiration time value meaning that entries do not expire */
+    static final long NO_EXPIRY = -1L;
+
+    static int ceilingPowerOfTwo(int n) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+
+    /* ---------------- Public nested types -------------- */
+
+    /**
+     * The policy used to select entries to evict when the weight of
+     * a cache exceeds its capacity.
+     */
+    public enum EvictionPolicy {
+        /** Evict the least recently used entry first. */
+        LRU,
+        /**
+         * Evict the least frequently used entry first, and among
+         * entries used equally often, the least recently used one.
+         */
+        LFU
+    }
+
+    /**
+     * Determines the weight of entries.  The weight of an entry is
+     * determined only when it is inserted or its value replaced, so
+     * it should not depend on mutable state of the key or value.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    public interface Weigher<K, V> {
+        /**
+         * Returns the weight of an entry, which must be at least one.
+         *
+         * @param key the key
+         * @param value the value
+         * @return the weight of the entry
+         */
+        int weightOf(K key, V value);
+    }
+
+    /** The default weigher, giving each entry weight one. */
+    enum SingletonWeigher implements Weigher<Object, Object> {
+        INSTANCE;
+        public int weightOf(Object key, Object value) {
+            return 1;
+        }
+    }
+
+    /**
+     * A snapshot of the statistics of a cache.
+     */
+    public static final class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long expirationCount;
+
+        Stats(long hitCount, long missCount,
+              long evictionCount, long expirationCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.expirationCount = expirationCount;
+        }
+
+        /**
+         * Returns the number of retrievals that found a mapping.
+         *
+         * @return the number of hits
+         */
+        public long hitCount() { return hitCount; }
+
+        /**
+         * Returns the number of retrievals that found no mapping,
+         * including those finding an expired one.
+         *
+         * @return the number of misses
+         */
+        public long missCount() { return missCount; }
+
+        /**
+         * Returns the number of retrievals.
+         *
+         * @return the number of hits and misses
+         */
+        public long requestCount() { return hitCount + missCount; }
+
+        /**
+         * Returns the ratio of hits to retrievals, or {@code 1.0} if
+         * there have been no retrievals.
+         *
+         * @return the hit rate
+         */
+        public double hitRate() {
+            long requests = requestCount();
+            return (requests == 0L) ? 1.0 : (double)hitCount / requests;
+        }
+
+        /**
+         * Returns the number of entries evicted to keep the weight of
+         * the cache within its capacity.
+         *
+         * @return the number of evictions
+         */
+        public long evictionCount() { return evictionCount; }
+
+        /**
+         * Returns the number of entries removed because they expired.
+         *
+         * @return the number of expirations
+         */
+        public long expirationCount() { return expirationCount; }
+
+        /**
+         * Returns a string representation of these statistics.
+         *
+         * @return a string representation of these statistics
+         */
+        public String toString() {
+            return "Stats[hits=" + hitCount + ", misses=" + missCount +
+                ", evictions=" + evictionCount +
+                ", expirations=" + expirationCount + "]";
+        }
+    }
+
+    /**
+     * A builder of {@link ConcurrentCache} instances.  A maximum
+     * weight must be specified; all other settings are optional.
+     *
+     * @param <K> the type of keys maintained by the cache
+     * @param <V> the type of mapped values
+     */
+    public static final class Builder<K, V> {
+        long capacity = -1L;
+        int initialCapacity = 16;
+        int concurrencyLevel = 16;
+        EvictionPolicy policy = EvictionPolicy.LRU;
+        Weigher<? super K, ? super V> weigher;
+        long expireAfterWriteNanos = NO_EXPIRY;
+        long expireAfterAccessNanos = NO_EXPIRY;
+
+        /**
+         * Creates a new builder.
+         */
+        @SuppressWarnings("unchecked")
+        public Builder() {
+            weigher = (Weigher<? super K, ? super V>)
+                (Weigher<?, ?>)SingletonWeigher.INSTANCE;
+        }
+
+        /**
+         * Specifies the maximum total weight of the entries of the
+         * cache.  With the default weigher, this is the maximum
+         * number of entries.
+         *
+         * @param maximumWeight the maximum weight
+         * @return this builder
+         * @throws IllegalArgumentException if maximumWeight is negative
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight) {
+            if (maximumWeight < 0L)
+                throw new IllegalArgumentException();
+            this.capacity = maximumWeight;
+            return this;
+        }
+
+        /**
+         * Specifies the weigher used to determine the weight of
+         * entries.
+         *
+         * @param weigher the weigher
+         * @return this builder
+         * @throws NullPointerException if weigher is null
+         */
+        public Builder<K, V> weigher(Weigher<? super K, ? super V> weigher) {
+            if (weigher == null)
+                throw new NullPointerException();
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Specifies the eviction policy.  The default is {@link
+         * EvictionPolicy#LRU}.
+         *
+         * @param policy the eviction policy
+         * @return this builder
+         * @throws NullPointerException if policy is null
+         */
+        public Builder<K, V> evictionPolicy(EvictionPolicy policy) {
+            if (policy == null)
+                throw new NullPointerException();
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * Specifies the initial capacity of the underlying hash table.
+         *
+         * @param initialCapacity the initial capacity
+         * @return this builder
+         * @throws IllegalArgumentException if initialCapacity is negative
+         */
+        public Builder<K, V> initialCapacity(int initialCapacity) {
+            if (initialCapacity < 0)
+                throw new IllegalArgumentException();
+            this.initialCapacity = initialCapacity;
+            return this;
+        }
+
+        /**
+         * Specifies the estimated number of concurrently updating
+         * threads, used as a sizing hint for the underlying hash
+         * table.
+         *
+         * @param concurrencyLevel the estimated number of concurrently
+         *        updating threads
+         * @return this builder
+         * @throws IllegalArgumentException if concurrencyLevel is
+         *         not positive
+         */
+        public Builder<K, V> concurrencyLevel(int concurrencyLevel) {
+            if (concurrencyLevel <= 0)
+                throw new IllegalArgumentException();
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        /**
+         * Specifies that entries expire once the given duration has
+         * elapsed after they were inserted or their value was last
+         * replaced.
+         *
+         * @param duration the duration
+         * @param unit the unit of the duration
+         * @return this builder
+         * @throws IllegalArgumentException if duration is negative
+         * @throws NullPointerException if unit is null
+         */
+        public Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+            if (duration < 0L)
+                throw new IllegalArgumentException();
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Specifies that entries expire once the given duration has
+         * elapsed after they were inserted, their value was replaced,
+         * or they were last retrieved.
+         *
+         * @param duration the duration
+         * @param unit the unit of the duration
+         * @return this builder
+         * @throws IllegalArgumentException if duration is negative
+         * @throws NullPointerException if unit is null
+         */
+        public Builder<K, V> expireAfterAccess(long duration, TimeUnit unit) {
+            if (duration < 0L)
+                throw new IllegalArgumentException();
+            this.expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Creates a new cache with the settings of this builder.
+         *
+         * @return a new cache
+         * @throws IllegalStateException if no maximum weight was specified
+         */
+        public ConcurrentCache<K, V> build() {
+            if (capacity < 0L)
+                throw new IllegalStateException("maximumWeight not set");
+            return new ConcurrentCache<K, V>(this);
+        }
+    }
+
+    /* ---------------- Nodes -------------- */
+
+    /**
+     * An immutable value together with its weight, whose sign also
+     * encodes the life cycle of the node holding it.
+     */
+    static final class WeightedValue<V> {
+        final V value;
+        final int weight;
+
+        WeightedValue(V value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        /** Returns whether the node is in the map. */
+        boolean isAlive() { return weight > 0; }
+    }
+
+    /**
+     * A mapping, together with its links in the bookkeeping orders.
+     */
+    static final class Node<K, V> {
+        final K key;
+        volatile WeightedValue<V> weightedValue;
+        /** System.nanoTime of the last write, if expiring */
+        volatile long writeTime;
+        /** System.nanoTime of the last access, if expiring */
+        volatile long accessTime;
+
+        // The following fields are guarded by evictionLock, and are
+        // null when the node is not linked in the corresponding order.
+
+        /** Links in the access order */
+        Node<K, V> prev, next;
+        /** Links in the write order */
+        Node<K, V> writePrev, writeNext;
+        /** Links within the frequency bucket */
+        Node<K, V> freqPrev, freqNext;
+        /** The frequency bucket holding this node */
+        Frequency<K, V> frequency;
+
+        Node(K key, WeightedValue<V> weightedValue, long now) {
+            this.key = key;
+            this.weightedValue = weightedValue;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+
+        /** Creates a sentinel of the access, write and bucket orders. */
+        Node() {
+            this.key = null;
+            prev = next = writePrev = writeNext = freqPrev = freqNext = this;
+        }
+
+        V getValue() {
+            return weightedValue.value;
+        }
+
+        final boolean casValue(WeightedValue<V> cmp, WeightedValue<V> val) {
+            return UNSAFE.compareAndSwapObject(this, valueOffset, cmp, val);
+        }
+
+        // Unsafe mechanics
+        static final sun.misc.Unsafe UNSAFE;
+        static final long valueOffset;
+        static {
+            try {
+                UNSAFE = sun.misc.Unsafe.getUnsafe();
+                Class<?> k = Node.class;
+                valueOffset = UNSAFE.objectFieldOffset
+                    (k.getDeclaredField("weightedValue"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * A bucket of the nodes accessed a given number of times, used by
+     * the LFU policy.  Buckets are kept in increasing order of count,
+     * and only non-empty buckets are linked.
+     */
+    static final class Frequency<K, V> {
+        final int count;
+        /** Sentinel of the nodes in this bucket, in access order */
+        final Node<K, V> nodes = new Node<K, V>();
+        Frequency<K, V> prev, next;
+
+        Frequency(int count) {
+            this.count = count;
+            prev = next = this;
+        }
+    }
+
+    /* ---------------- Fields -------------- */
+
+    /** The mappings */
+    final ConcurrentHashMap<K, Node<K, V>> data;
+
+    /** The lock guarding the bookkeeping */
+    final ReentrantLock evictionLock = new ReentrantLock();
+
+    /** The buffered write tasks */
+    final ConcurrentLinkedQueue<Runnable> writeBuffer =
+        new ConcurrentLinkedQueue<Runnable>();
+
+    /** The read buffers, each READ_BUFFER_SIZE consecutive slots */
+    final AtomicReferenceArray<Node<K, V>> readBuffer;
+
+    /** Per-buffer count of reads recorded, at COUNTER_STRIDE spacing */
+    final AtomicLongArray readBufferWriteCount;
+
+    /** Per-buffer write count at the start of the last drain */
+    final AtomicLongArray readBufferDrainAtWriteCount;
+
+    /** Per-buffer count of reads drained; guarded by evictionLock */
+    final long[] readBufferReadCount;
+
+    /** IDLE, REQUIRED or PROCESSING */
+    volatile int drainStatus;
+
+    /** Sentinel of the access order; guarded by evictionLock */
+    final Node<K, V> accessOrder = new Node<K, V>();
+
+    /** Sentinel of the write order; guarded by evictionLock */
+    final Node<K, V> writeOrder = new Node<K, V>();
+
+    /** Sentinel of the frequency buckets; guarded by evictionLock */
+    final Frequency<K, V> frequencies = new Frequency<K, V>(0);
+
+    /** The total weight of the entries; written under evictionLock */
+    volatile long weightedSize;
+
+    /** The maximum weighted size; written under evictionLock */
+    volatile long capacity;
+
+    final Weigher<? super K, ? super V> weigher;
+    final EvictionPolicy policy;
+    final int concurrencyLevel;
+    final long expireAfterWriteNanos;
+    final long expireAfterAccessNanos;
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+    final LongAdder expirations = new LongAdder();
+
+    transient Set<K> keySet;
+    transient Collection<V> values;
+    transient Set<Map.Entry<K, V>> entrySet;
+
+    /* ---------------- Construction -------------- */
+
+    /**
+     * Creates a new cache holding at most the given number of
+     * entries, with LRU eviction and no expiration.
+     *
+     * @param maximumSize the maximum number of entries
+     * @throws IllegalArgumentException if maximumSize is negative
+     */
+    public ConcurrentCache(long maximumSize) {
+        this(new Builder<K, V>().maximumWeight(maximumSize));
+    }
+
+    ConcurrentCache(Builder<K, V> builder) {
+        capacity = builder.capacity;
+        weigher = builder.weigher;
+        policy = builder.policy;
+        concurrencyLevel = builder.concurrencyLevel;
+        expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        data = new ConcurrentHashMap<K, Node<K, V>>
+            (builder.initialCapacity, 0.75f, concurrencyLevel);
+        readBuffer = new AtomicReferenceArray<Node<K, V>>
+            (READ_BUFFERS * READ_BUFFER_SIZE);
+        readBufferWriteCount =
+            new AtomicLongArray(READ_BUFFERS * COUNTER_STRIDE);
+        readBufferDrainAtWriteCount =
+            new AtomicLongArray(READ_BUFFERS * COUNTER_STRIDE);
+        readBufferReadCount = new long[READ_BUFFERS];
+    }
+
+    /* ---------------- Expiration -------------- */
+
+    /** Returns whether entries may expire. */
+    final boolean expires() {
+        return expireAfterWriteNanos != NO_EXPIRY ||
+            expireAfterAccessNanos != NO_EXPIRY;
+    }
+
+    /** Returns whether the node has expired at time now. */
+    final boolean hasExpired(Node<K, V> node, long now) {
+        return (expireAfterWriteNanos != NO_EXPIRY &&
+                now - node.writeTime >= expireAfterWriteNanos) ||
+            (expireAfterAccessNanos != NO_EXPIRY &&
+             now - node.accessTime >= expireAfterAccessNanos);
+    }
+
+    /** Returns whether the node is alive and has not expired. */
+    final boolean isLive(Node<K, V> node, long now) {
+        return node.weightedValue.isAlive() &&
+            !(expires() && hasExpired(node, now));
+    }
+
+    /** Returns the current time, if needed for expiration. */
+    final long now() {
+        return expires() ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Removes a node found to have expired, if still mapped.
+     */
+    final void removeExpired(Node<K, V> node) {
+        if (data.remove(node.key, node)) {
+            makeRetired(node);
+            expirations.increment();
+            afterWrite(new RemovalTask(node));
+        }
+    }
+
+    /* ---------------- Life cycle -------------- */
+
+    /**
+     * Atomically transitions the node from alive to retired, if it
+     * is still alive and holds the expected value.
+     */
+    static <K, V> boolean tryToRetire(Node<K, V> node,
+                                      WeightedValue<V> expect) {
+        if (expect.isAlive()) {
+            WeightedValue<V> retired =
+                new WeightedValue<V>(expect.value, -expect.weight);
+            return node.casValue(expect, retired);
+        }
+        return false;
+    }
+
+    /**
+     * Atomically transitions the node from alive to retired, if it
+     * is alive.
+     */
+    static <K, V> void makeRetired(Node<K, V> node) {
+        for (;;) {
+            WeightedValue<V> current = node.weightedValue;
+            if (!current.isAlive() || tryToRetire(node, current))
+                return;
+        }
+    }
+
+    /**
+     * Atomically transitions the node to dead, and removes its weight
+     * from the weighted size.  Call only holding evictionLock.
+     */
+    final void makeDead(Node<K, V> node) {
+        for (;;) {
+            WeightedValue<V> current = node.weightedValue;
+            if (current.weight == 0)
+                return;
+            WeightedValue<V> dead = new WeightedValue<V>(current.value, 0);
+            if (node.casValue(current, dead)) {
+                weightedSize = weightedSize - Math.abs(current.weight);
+                return;
+            }
+        }
+    }
+
+    /* ---------------- Bookkeeping orders -------------- */
+
+    // All methods in this section are called only holding evictionLock.
+
+    static <K, V> void linkLast(Node<K, V> h, Node<K, V> node) {
+        Node<K, V> p = h.prev;
+        node.prev = p;
+        node.next = h;
+        p.next = node;
+        h.prev = node;
+    }
+
+    static <K, V> void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+    }
+
+    static <K, V> void linkLastWrite(Node<K, V> h, Node<K, V> node) {
+        Node<K, V> p = h.writePrev;
+        node.writePrev = p;
+        node.writeNext = h;
+        p.writeNext = node;
+        h.writePrev = node;
+    }
+
+    static <K, V> void unlinkWrite(Node<K, V> node) {
+        node.writePrev.writeNext = node.writeNext;
+        node.writeNext.writePrev = node.writePrev;
+        node.writePrev = node.writeNext = null;
+    }
+
+    static <K, V> void linkLastFrequency(Frequency<K, V> f,
+                                         Node<K, V> node) {
+        Node<K, V> h = f.nodes;
+        Node<K, V> p = h.freqPrev;
+        node.freqPrev = p;
+        node.freqNext = h;
+        p.freqNext = node;
+        h.freqPrev = node;
+        node.frequency = f;
+    }
+
+    /**
+     * Unlinks the node from its frequency bucket, and the bucket if
+     * it becomes empty.
+     */
+    static <K, V> void unlinkFrequency(Node<K, V> node) {
+        Frequency<K, V> f = node.frequency;
+        node.freqPrev.freqNext = node.freqNext;
+        node.freqNext.freqPrev = node.freqPrev;
+        node.freqPrev = node.freqNext = null;
+        node.frequency = null;
+        if (f.nodes.freqNext == f.nodes) {
+            f.prev.next = f.next;
+            f.next.prev = f.prev;
+        }
+    }
+
+    /**
+     * Returns the bucket for the given count following p, creating it
+     * if needed.
+     */
+    static <K, V> Frequency<K, V> frequencyAfter(Frequency<K, V> p,
+                                                 int count) {
+        Frequency<K, V> f = p.next;
+        if (f.count == count)
+            return f;
+        f = new Frequency<K, V>(count);
+        f.prev = p;
+        f.next = p.next;
+        p.next.prev = f;
+        p.next = f;
+        return f;
+    }
+
+    /** Links a newly added node into the orders in use. */
+    final void link(Node<K, V> node) {
+        if (policy == EvictionPolicy.LRU ||
+            expireAfterAccessNanos != NO_EXPIRY)
+            linkLast(accessOrder, node);
+        if (expireAfterWriteNanos != NO_EXPIRY)
+            linkLastWrite(writeOrder, node);
+        if (policy == EvictionPolicy.LFU)
+            linkLastFrequency(frequencyAfter(frequencies, 1), node);
+    }
+
+    /** Unlinks the node from all orders it is linked in. */
+    final void unlinkAll(Node<K, V> node) {
+        if (node.prev != null)
+            unlink(node);
+        if (node.writePrev != null)
+            unlinkWrite(node);
+        if (node.frequency != null)
+            unlinkFrequency(node);
+    }
+
+    /** Updates the orders for an access to the node. */
+    final void applyRead(Node<K, V> node) {
+        if (node.prev != null) {
+            unlink(node);
+            linkLast(accessOrder, node);
+        }
+        Frequency<K, V> f = node.frequency;
+        if (f != null) {
+            int count = f.count;
+            if (count != Integer.MAX_VALUE)
+                ++count;
+            Frequency<K, V> g = frequencyAfter(f, count);
+            unlinkFrequency(node);
+            linkLastFrequency(g, node);
+        }
+    }
+
+    /** Updates the orders for a write of the node. */
+    final void applyWrite(Node<K, V> node) {
+        applyRead(node);
+        if (node.writePrev != null) {
+            unlinkWrite(node);
+            linkLastWrite(writeOrder, node);
+        }
+    }
+
+    /**
+     * Returns the next node to evict, or null if there is none.
+     */
+    final Node<K, V> victim() {
+        if (policy == EvictionPolicy.LFU) {
+            Frequency<K, V> f = frequencies.next;
+            return (f == frequencies) ? null : f.nodes.freqNext;
+        }
+        Node<K, V> node = accessOrder.next;
+        return (node == accessOrder) ? null : node;
+    }
+
+    /**
+     * Evicts nodes until the weighted size is within capacity, or no
+     * linked node remains.
+     */
+    final void evict() {
+        while (weightedSize > capacity) {
+            Node<K, V> node = victim();
+            if (node == null)
+                return;
+            if (data.remove(node.key, node))
+                evictions.increment();
+            unlinkAll(node);
+            makeDead(node);
+        }
+    }
+
+    /**
+     * Removes expired nodes from the heads of the write and access
+     * orders.
+     */
+    final void expire() {
+        long now = System.nanoTime();
+        Node<K, V> node;
+        if (expireAfterWriteNanos != NO_EXPIRY) {
+            while ((node = writeOrder.writeNext) != writeOrder &&
+                   now - node.writeTime >= expireAfterWriteNanos)
+                expireNode(node);
+        }
+        if (expireAfterAccessNanos != NO_EXPIRY) {
+            while ((node = accessOrder.next) != accessOrder &&
+                   now - node.accessTime >= expireAfterAccessNanos)
+                expireNode(node);
+        }
+    }
+
+    final void expireNode(Node<K, V> node) {
+        if (data.remove(node.key, node))
+            expirations.increment();
+        unlinkAll(node);
+        makeDead(node);
+    }
+
+    /** Adds a newly inserted node. */
+    final class AddTask implements Runnable {
+        final Node<K, V> node;
+        final int weight;
+
+        AddTask(Node<K, V> node, int weight) {
+            this.node = node;
+            this.weight = weight;
+        }
+
+        public void run() {
+            weightedSize = weightedSize + weight;
+            if (node.weightedValue.isAlive()) {
+                // Make room before linking, so that under LFU a new
+                // node is not chosen ahead of rarely used old ones
+                evict();
+                link(node);
+                evict();
+            }
+        }
+    }
+
+    /** Accounts for a replaced value. */
+    final class UpdateTask implements Runnable {
+        final Node<K, V> node;
+        final int weightDifference;
+
+        UpdateTask(Node<K, V> node, int weightDifference) {
+            this.node = node;
+            this.weightDifference = weightDifference;
+        }
+
+        public void run() {
+            weightedSize = weightedSize + weightDifference;
+            applyWrite(node);
+            evict();
+        }
+    }
+
+    /** Removes a retired node. */
+    final class RemovalTask implements Runnable {
+        final Node<K, V> node;
+
+        RemovalTask(Node<K, V> node) {
+            this.node = node;
+        }
+
+        public void run() {
+            unlinkAll(node);
+            makeDead(node);
+        }
+    }
+
+    /* ---------------- Buffers -------------- */
+
+    static int readBufferIndex() {
+        return ((int) Thread.currentThread().getId()) & READ_BUFFERS_MASK;
+    }
+
+    /**
+     * Records an access to the node, and drains the buffers if
+     * enough accesses are pending.
+     */
+    final void afterRead(Node<K, V> node) {
+        int i = readBufferIndex();
+        int k = i * COUNTER_STRIDE;
+        long writeCount = readBufferWriteCount.get(k);
+        readBufferWriteCount.lazySet(k, writeCount + 1);
+        readBuffer.lazySet(i * READ_BUFFER_SIZE +
+                           (int) (writeCount & READ_BUFFER_MASK), node);
+        long pending = writeCount - readBufferDrainAtWriteCount.get(k);
+        int s = drainStatus;
+        if (s == REQUIRED ||
+            (s == IDLE && pending >= READ_BUFFER_THRESHOLD))
+            tryToDrainBuffers();
+    }
+
+    /**
+     * Buffers a write task, and attempts to drain the buffers.
+     */
+    final void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        drainStatus = REQUIRED;
+        tryToDrainBuffers();
+    }
+
+    /**
+     * Drains the buffers if the lock is available.
+     */
+    final void tryToDrainBuffers() {
+        final ReentrantLock lock = this.evictionLock;
+        if (lock.tryLock()) {
+            try {
+                drainStatus = PROCESSING;
+                drainBuffers();
+            } finally {
+                UNSAFE.compareAndSwapInt(this, drainStatusOffset,
+                                         PROCESSING, IDLE);
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies buffered reads and writes, and removes expired entries.
+     * Call only holding evictionLock.
+     */
+    final void drainBuffers() {
+        int start = readBufferIndex();
+        for (int i = start; i < start + READ_BUFFERS; ++i)
+            drainReadBuffer(i & READ_BUFFERS_MASK);
+        for (int n = 0; n < WRITE_BUFFER_DRAIN_THRESHOLD; ++n) {
+            Runnable task = writeBuffer.poll();
+            if (task == null)
+                break;
+            task.run();
+        }
+        if (expires())
+            expire();
+        if (!writeBuffer.isEmpty())
+            drainStatus = REQUIRED;
+    }
+
+    final void drainReadBuffer(int i) {
+        int k = i * COUNTER_STRIDE;
+        long writeCount = readBufferWriteCount.get(k);
+        for (int n = 0; n < READ_BUFFER_DRAIN_THRESHOLD; ++n) {
+            int index = i * READ_BUFFER_SIZE +
+                (int) (readBufferReadCount[i] & READ_BUFFER_MASK);
+            Node<K, V> node = readBuffer.get(index);
+            if (node == null)
+                break;
+            readBuffer.lazySet(index, null);
+            applyRead(node);
+            ++readBufferReadCount[i];
+        }
+        readBufferDrainAtWriteCount.lazySet(k, writeCount);
+    }
+
+    /* ---------------- Cache operations -------------- */
+
+    /**
+     * Returns the maximum total weight of the entries of this cache.
+     *
+     * @return the capacity of this cache
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the maximum total weight of the entries of this cache,
+     * evicting entries if needed to comply with the new capacity.
+     *
+     * @param capacity the maximum weight
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public void setCapacity(long capacity) {
+        if (capacity < 0L)
+            throw new IllegalArgumentException();
+        final ReentrantLock lock = this.evictionLock;
+        lock.lock();
+        try {
+            this.capacity = capacity;
+            drainBuffers();
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the total weight of the entries of this cache, as of
+     * the last time buffered operations were applied.
+     *
+     * @return the weighted size of this cache
+     */
+    public long weightedSize() {
+        return Math.max(0L, weightedSize);
+    }
+
+    /**
+     * Returns the eviction policy of this cache.
+     *
+     * @return the eviction policy
+     */
+    public EvictionPolicy evictionPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this cache.
+     *
+     * @return the statistics of this cache
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(),
+                         evictions.sum(), expirations.sum());
+    }
+
+    /**
+     * Applies all buffered operations and removes expired entries.
+     * This is otherwise done incrementally as the cache is used.
+     */
+    public void cleanUp() {
+        final ReentrantLock lock = this.evictionLock;
+        lock.lock();
+        try {
+            drainStatus = PROCESSING;
+            do {
+                drainBuffers();
+            } while (!writeBuffer.isEmpty());
+        } finally {
+            UNSAFE.compareAndSwapInt(this, drainStatusOffset,
+                                     PROCESSING, IDLE);
+            lock.unlock();
+        }
+    }
+
+    /* ---------------- Map operations -------------- */
+
+    /**
+     * Returns the number of key-value mappings in this map.  This
+     * may include expired entries that have not yet been removed.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Returns <tt>true</tt> if this map contains no key-value mappings.
+     *
+     * @return <tt>true</tt> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no unexpired mapping for
+     * the key.  A successful retrieval counts as an access to the
+     * entry for the eviction order and for expiration.
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public V get(Object key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (expires()) {
+            long now = System.nanoTime();
+            if (hasExpired(node, now)) {
+                misses.increment();
+                removeExpired(node);
+                return null;
+            }
+            if (expireAfterAccessNanos != NO_EXPIRY)
+                node.accessTime = now;
+        }
+        afterRead(node);
+        hits.increment();
+        return node.getValue();
+    }
+
+    /**
+     * Tests if the specified object is a key in this map, without
+     * counting as an access to the entry.
+     *
+     * @param  key   possible key
+     * @return <tt>true</tt> if and only if the specified object
+     *         is a key in this map, as determined by the
+     *         <tt>equals</tt> method; <tt>false</tt> otherwise.
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean containsKey(Object key) {
+        Node<K, V> node = data.get(key);
+        return node != null && isLive(node, now());
+    }
+
+    /**
+     * Returns <tt>true</tt> if this map maps one or more keys to the
+     * specified value. Note: This method requires a full internal
+     * traversal of the hash table, and so is much slower than
+     * method <tt>containsKey</tt>.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return <tt>true</tt> if this map maps one or more keys to the
+     *         specified value
+     * @throws NullPointerException if the specified value is null
+     */
+    public boolean containsValue(Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        long now = now();
+        for (Node<K, V> node : data.values()) {
+            if (value.equals(node.getValue()) && isLive(node, now))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Maps the specified key to the specified value in this map,
+     * evicting other entries if needed to keep the weight of the map
+     * within its capacity.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with <tt>key</tt>, or
+     *         <tt>null</tt> if there was no mapping for <tt>key</tt>
+     * @throws NullPointerException if the specified key or value is null
+     * @throws IllegalArgumentException if the weigher returns a
+     *         weight less than one
+     */
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or <tt>null</tt> if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     * @throws IllegalArgumentException if the weigher returns a
+     *         weight less than one
+     */
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    final V put(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        int weight = weigher.weightOf(key, value);
+        if (weight < 1)
+            throw new IllegalArgumentException("weight < 1");
+        long now = now();
+        WeightedValue<V> weightedValue = new WeightedValue<V>(value, weight);
+        Node<K, V> node = new Node<K, V>(key, weightedValue, now);
+        for (;;) {
+            Node<K, V> prior = data.putIfAbsent(key, node);
+            if (prior == null) {
+                afterWrite(new AddTask(node, weight));
+                return null;
+            }
+            if (expires() && hasExpired(prior, now)) {
+                removeExpired(prior);
+                continue;
+            }
+            if (onlyIfAbsent) {
+                afterRead(prior);
+                return prior.getValue();
+            }
+            for (;;) {
+                WeightedValue<V> old = prior.weightedValue;
+                if (!old.isAlive())
+                    break;
+                if (expires())
+                    prior.writeTime = prior.accessTime = now;
+                if (prior.casValue(old, weightedValue)) {
+                    afterWrite(new UpdateTask(prior, weight - old.weight));
+                    return old.value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the key (and its corresponding value) from this map.
+     * This method does nothing if the key is not in the map.
+     *
+     * @param  key the key that needs to be removed
+     * @return the previous value associated with <tt>key</tt>, or
+     *         <tt>null</tt> if there was no unexpired mapping for
+     *         <tt>key</tt>
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        Node<K, V> node = data.remove(key);
+        if (node == null)
+            return null;
+        boolean expired = expires() && hasExpired(node, System.nanoTime());
+        makeRetired(node);
+        afterWrite(new RemovalTask(node));
+        return expired ? null : node.getValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        Node<K, V> node = data.get(key);
+        if (node == null || value == null)
+            return false;
+        WeightedValue<V> weightedValue = node.weightedValue;
+        for (;;) {
+            if (value.equals(weightedValue.value) && isLive(node, now())) {
+                if (tryToRetire(node, weightedValue)) {
+                    if (data.remove(key, node)) {
+                        afterWrite(new RemovalTask(node));
+                        return true;
+                    }
+                } else {
+                    weightedValue = node.weightedValue;
+                    if (weightedValue.isAlive())
+                        continue; // retry after an intermediate update
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or <tt>null</tt> if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     * @throws IllegalArgumentException if the weigher returns a
+     *         weight less than one
+     */
+    public V replace(K key, V value) {
+        return doReplace(key, null, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if any of the arguments are null
+     * @throws IllegalArgumentException if the weigher returns a
+     *         weight less than one
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null)
+            throw new NullPointerException();
+        return doReplace(key, oldValue, newValue) != null;
+    }
+
+    /**
+     * Implements both forms of replace.
+     *
+     * @param expect the expected value, or null to replace any value
+     * @return the replaced value, or null if none
+     */
+    final V doReplace(K key, Object expect, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        int weight = weigher.weightOf(key, value);
+        if (weight < 1)
+            throw new IllegalArgumentException("weight < 1");
+        Node<K, V> node = data.get(key);
+        if (node == null)
+            return null;
+        long now = now();
+        WeightedValue<V> weightedValue = new WeightedValue<V>(value, weight);
+        for (;;) {
+            WeightedValue<V> old = node.weightedValue;
+            if (!old.isAlive() ||
+                (expect != null && !expect.equals(old.value)))
+                return null;
+            if (expires()) {
+                if (hasExpired(node, now)) {
+                    removeExpired(node);
+                    return null;
+                }
+                node.writeTime = node.accessTime = now;
+            }
+            if (node.casValue(old, weightedValue)) {
+                afterWrite(new UpdateTask(node, weight - old.weight));
+                return old.value;
+            }
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        final ReentrantLock lock = this.evictionLock;
+        lock.lock();
+        try {
+            for (Node<K, V> node : data.values()) {
+                if (data.remove(node.key, node)) {
+                    makeRetired(node);
+                    writeBuffer.add(new RemovalTask(node));
+                }
+            }
+            Runnable task;
+            while ((task = writeBuffer.poll()) != null)
+                task.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the mapping held in the given node, if still mapped.
+     * Used by iterators.
+     */
+    final void removeNode(Node<K, V> node) {
+        if (data.remove(node.key, node)) {
+            makeRetired(node);
+            afterWrite(new RemovalTask(node));
+        }
+    }
+
+    /* ---------------- Views -------------- */
+
+    /**
+     * Returns a {@link Set} view of the keys contained in this map.
+     * The set is backed by the map, so changes to the map are
+     * reflected in the set, and vice-versa.  The set supports element
+     * removal, which removes the corresponding mapping from this map,
+     * via the <tt>Iterator.remove</tt>, <tt>Set.remove</tt>,
+     * <tt>removeAll</tt>, <tt>retainAll</tt>, and <tt>clear</tt>
+     * operations.  It does not support the <tt>add</tt> or
+     * <tt>addAll</tt> operations.
+     *
+     * <p>The view's <tt>iterator</tt> is a "weakly consistent" iterator
+     * that will never throw {@link ConcurrentModificationException},
+     * and guarantees to traverse elements as they existed upon
+     * construction of the iterator, and may (but is not guaranteed to)
+     * reflect any modifications subsequent to construction.
+     */
+    public Set<K> keySet() {
+        Set<K> ks = keySet;
+        return (ks != null) ? ks : (keySet = new KeySet());
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this
+     * map, with the same properties as the {@link #keySet} view.
+     */
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        return (vs != null) ? vs : (values = new Values());
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this
+     * map, with the same properties as the {@link #keySet} view.
+     * Setting the value of an entry obtained from the view's iterator
+     * replaces the value in this map.
+     */
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet());
+    }
+
+    abstract class NodeIterator {
+        final Iterator<Node<K, V>> it = data.values().iterator();
+        final long now = now();
+        Node<K, V> nextNode;
+        Node<K, V> lastReturned;
+
+        NodeIterator() {
+            advance();
+        }
+
+        final void advance() {
+            while (it.hasNext()) {
+                Node<K, V> node = it.next();
+                if (isLive(node, now)) {
+                    nextNode = node;
+                    return;
+                }
+            }
+            nextNode = null;
+        }
+
+        public final boolean hasNext() {
+            return nextNode != null;
+        }
+
+        final Node<K, V> next0() {
+            Node<K, V> node = nextNode;
+            if (node == null)
+                throw new NoSuchElementException();
+            lastReturned = node;
+            advance();
+            return node;
+        }
+
+        public final void remove() {
+            Node<K, V> node = lastReturned;
+            if (node == null)
+                throw new IllegalStateException();
+            lastReturned = null;
+            removeNode(node);
+        }
+    }
+
+    final class KeyIterator extends NodeIterator implements Iterator<K> {
+        public K next() {
+            return next0().key;
+        }
+    }
+
+    final class ValueIterator extends NodeIterator implements Iterator<V> {
+        public V next() {
+            return next0().getValue();
+        }
+    }
+
+    final class EntryIterator extends NodeIterator
+        implements Iterator<Map.Entry<K, V>> {
+        public Map.Entry<K, V> next() {
+            Node<K, V> node = next0();
+            return new WriteThroughEntry(node.key, node.getValue());
+        }
+    }
+
+    /**
+     * Custom Entry class used by EntryIterator.next(), that relays
+     * setValue changes to the underlying map.
+     */
+    final class WriteThroughEntry
+        extends AbstractMap.SimpleEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        WriteThroughEntry(K k, V v) {
+            super(k, v);
+        }
+
+        public V setValue(V value) {
+            if (value == null)
+                throw new NullPointerException();
+            V v = super.setValue(value);
+            ConcurrentCache.this.put(getKey(), value);
+            return v;
+        }
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+        public int size() {
+            return ConcurrentCache.this.size();
+        }
+        public boolean isEmpty() {
+            return ConcurrentCache.this.isEmpty();
+        }
+        public boolean contains(Object o) {
+            return ConcurrentCache.this.containsKey(o);
+        }
+        public boolean remove(Object o) {
+            return ConcurrentCache.this.remove(o) != null;
+        }
+        public void clear() {
+            ConcurrentCache.this.clear();
+        }
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+        public int size() {
+            return ConcurrentCache.this.size();
+        }
+        public boolean isEmpty() {
+            return ConcurrentCache.this.isEmpty();
+        }
+        public boolean contains(Object o) {
+            return ConcurrentCache.this.containsValue(o);
+        }
+        public void clear() {
+            ConcurrentCache.this.clear();
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+            Object k = e.getKey(), v = e.getValue();
+            if (k == null || v == null)
+                return false;
+            Node<K, V> node = data.get(k);
+            return node != null && v.equals(node.getValue()) &&
+                isLive(node, now());
+        }
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+            Object k = e.getKey(), v = e.getValue();
+            return k != null && ConcurrentCache.this.remove(k, v);
+        }
+        public int size() {
+            return ConcurrentCache.this.size();
+        }
+        public boolean isEmpty() {
+            return ConcurrentCache.this.isEmpty();
+        }
+        public void clear() {
+            ConcurrentCache.this.clear();
+        }
+    }
+
+    /* ---------------- Serialization Support -------------- */
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Returns a {@link SerializationProxy} holding the settings and
+     * the unexpired mappings of this cache.  Statistics and the
+     * eviction order are not serialized.
+     */
+    Object writeReplace() {
+        return new SerializationProxy<K, V>(this);
+    }
+
+    private void readObject(ObjectInputStream stream)
+        throws InvalidObjectException {
+        throw new InvalidObjectException("Proxy required");
+    }
+
+    /**
+     * The serialized form of a ConcurrentCache.  The weigher must be
+     * serializable for the cache to be serialized.
+     */
+    static final class SerializationProxy<K, V> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final long capacity;
+        final int concurrencyLevel;
+        final EvictionPolicy policy;
+        final Weigher<? super K, ? super V> weigher;
+        final long expireAfterWriteNanos;
+        final long expireAfterAccessNanos;
+        final Map<K, V> data;
+
+        SerializationProxy(ConcurrentCache<K, V> cache) {
+            capacity = cache.capacity;
+            concurrencyLevel = cache.concurrencyLevel;
+            policy = cache.policy;
+            weigher = cache.weigher;
+            expireAfterWriteNanos = cache.expireAfterWriteNanos;
+            expireAfterAccessNanos = cache.expireAfterAccessNanos;
+            data = new HashMap<K, V>(cache);
+        }
+
+        Object readResolve() {
+            Builder<K, V> builder = new Builder<K, V>()
+                .maximumWeight(capacity)
+                .concurrencyLevel(concurrencyLevel)
+                .initialCapacity(data.size())
+                .evictionPolicy(policy)
+                .weigher(weigher);
+            builder.expireAfterWriteNanos = expireAfterWriteNanos;
+            builder.expireAfterAccessNanos = expireAfterAccessNanos;
+            ConcurrentCache<K, V> cache = builder.build();
+            cache.putAll(data);
+            return cache;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long drainStatusOffset;
+    static {
+        try {
+            UNSAFE = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = ConcurrentCache.class;
+            drainStatusOffset = UNSAFE.objectFieldOffset
+                (k.getDeclaredField("drainStatus"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
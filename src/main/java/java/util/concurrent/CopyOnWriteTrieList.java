@@ -0,0 +1,1548 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A thread-safe variant of {@link java.util.ArrayList} in which all
+ * mutative operations (<tt>add</tt>, <tt>set</tt>, and so on) are
+ * implemented by making a fresh copy of the affected part of an
+ * immutable tree.
+ *
+ * <p>Like {@link CopyOnWriteArrayList}, this class never changes the
+ * state that readers and iterators see; instead, each mutation
+ * publishes a new version of the list.  Unlike it, the elements are
+ * held in a balanced tree of small arrays, and a new version shares
+ * all of the tree with the previous one except for the nodes on the
+ * path to the position changed.  A mutation at a single position thus
+ * copies <tt>O(log n)</tt> slots rather than the whole list, which
+ * makes this class preferable for large lists that are still mostly
+ * read, such as registries of thousands of listeners.  In return,
+ * positional access takes <tt>O(log n)</tt> time rather than constant
+ * time, and traversal is somewhat slower than over a flat array.
+ * Bulk operations that test every element, such as <tt>remove(Object)</tt>,
+ * <tt>contains</tt> and <tt>addIfAbsent</tt>, still take linear time.
+ *
+ * <p>The "snapshot" style iterator method uses a reference to the
+ * version of the list at the point that the iterator was created.
+ * This version never changes during the lifetime of the iterator, so
+ * interference is impossible and the iterator is guaranteed not to
+ * throw <tt>ConcurrentModificationException</tt>.  The iterator will
+ * not reflect additions, removals, or changes to the list since the
+ * iterator was created.  Element-changing operations on iterators
+ * themselves (<tt>remove</tt>, <tt>set</tt>, and <tt>add</tt>) are not
+ * supported. These methods throw <tt>UnsupportedOperationException</tt>.
+ *
+ * <p>All elements are permitted, including <tt>null</tt>.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code CopyOnWriteTrieList}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code CopyOnWriteTrieList} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @see CopyOnWriteArrayList
+ * @see CopyOnWriteTrieSet
+ * @since 1.7
+ * @author Doug Lea
+ * @param <E> the type of elements held in this collection
+ */
+public class CopyOnWriteTrieList<E>
+    implements List<E>, RandomAccess, Cloneable, java.io.Serializable {
+    private static final long serialVersionUID = -2183402640426519163L;
+
+    /*
+     * The list is a B-tree with positions as implicit keys, in the
+     * style of the relaxed radix balanced trees used for persistent
+     * vectors.  Leaves hold up to WIDTH elements, and branches up to
+     * WIDTH children together with the cumulative sizes of those
+     * children, which are used to find the child holding an index.
+     * All leaves are at the same depth.  Nodes are never modified
+     * once published: an update copies the nodes on the path from the
+     * root to the affected leaf and installs the new root, so that
+     * every root ever published describes a consistent version of the
+     * list.  Arrays are always exactly as long as their contents.
+     *
+     * A node that overflows on insertion is split in two by its
+     * parent, and the root by adding a level.  Splits normally divide
+     * a node evenly, but a node overflowing because of an append
+     * keeps WIDTH slots on the left, so that lists built by appends,
+     * the common case, have full nodes.  A node that falls below
+     * MIN_WIDTH on removal is merged with, or shares slots with, a
+     * sibling; a root branch with a single child is replaced by it.
+     * Nodes on the right edge may thus be less than half full, which
+     * does not affect the logarithmic bound on depth.
+     *
+     * As in CopyOnWriteArrayList, mutators are serialized by a lock,
+     * and readers just read the volatile root.
+     */
+
+    /** The maximum number of slots in a node. */
+    static final int WIDTH = 32;
+
+    /** The number of slots below which nodes are merged on removal. */
+    static final int MIN_WIDTH = WIDTH >>> 1;
+
+    /**
+     * Immutable tree node.  A leaf holds elements and has null sizes;
+     * a branch holds child nodes.
+     */
+    static final class Node {
+        /** The elements of a leaf, or the children of a branch */
+        final Object[] slots;
+        /** Cumulative sizes of the children of a branch; null in a leaf */
+        final int[] sizes;
+
+        Node(Object[] slots, int[] sizes) {
+            this.slots = slots;
+            this.sizes = sizes;
+        }
+
+        /** Returns the number of elements under this node. */
+        final int size() {
+            int[] s = sizes;
+            return (s == null) ? slots.length : s[s.length - 1];
+        }
+    }
+
+    /** The root of an empty list */
+    static final Node EMPTY = new Node(new Object[0], null);
+
+    /** The lock protecting all mutators */
+    transient final ReentrantLock lock = new ReentrantLock();
+
+    /** The root, accessed only via getRoot/setRoot. */
+    private volatile transient Node root;
+
+    /**
+     * Gets the root.  Non-private so as to also be accessible
+     * from nested classes.
+     */
+    final Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Sets the root.
+     */
+    final void setRoot(Node r) {
+        root = r;
+    }
+
+    // Tree operations.  None of these modify their arguments.
+
+    /**
+     * Creates a branch over the given children.
+     */
+    static Node branch(Object[] children) {
+        int[] s = new int[children.length];
+        int n = 0;
+        for (int j = 0; j < children.length; ++j)
+            s[j] = n += ((Node)children[j]).size();
+        return new Node(children, s);
+    }
+
+    /**
+     * Creates a node of the same kind as n holding the given slots.
+     */
+    static Node like(Node n, Object[] slots) {
+        return (n.sizes == null) ? new Node(slots, null) : branch(slots);
+    }
+
+    /**
+     * Returns the index of the child holding index i of a branch with
+     * cumulative sizes s, or the last child if i is the size of the
+     * branch.
+     */
+    static int child(int[] s, int i) {
+        int j = 0, last = s.length - 1;
+        while (j < last && s[j] <= i)
+            ++j;
+        return j;
+    }
+
+    static Object[] insertSlot(Object[] a, int i, Object x) {
+        Object[] b = new Object[a.length + 1];
+        System.arraycopy(a, 0, b, 0, i);
+        b[i] = x;
+        System.arraycopy(a, i, b, i + 1, a.length - i);
+        return b;
+    }
+
+    static Object[] removeSlot(Object[] a, int i) {
+        Object[] b = new Object[a.length - 1];
+        System.arraycopy(a, 0, b, 0, i);
+        System.arraycopy(a, i + 1, b, i, b.length - i);
+        return b;
+    }
+
+    static Object get(Node n, int i) {
+        int[] s;
+        while ((s = n.sizes) != null) {
+            int j = child(s, i);
+            if (j > 0)
+                i -= s[j - 1];
+            n = (Node)n.slots[j];
+        }
+        return n.slots[i];
+    }
+
+    static Node set(Node n, int i, Object x) {
+        Object[] a = n.slots.clone();
+        int[] s = n.sizes;
+        if (s == null)
+            a[i] = x;
+        else {
+            int j = child(s, i);
+            a[j] = set((Node)a[j], (j > 0) ? i - s[j - 1] : i, x);
+        }
+        return new Node(a, s);
+    }
+
+    /**
+     * Splits an overflowing node in two.
+     *
+     * @param append true if the node overflowed because of an append
+     */
+    static Object[] split(Node n, boolean append) {
+        Object[] a = n.slots;
+        int k = append ? WIDTH : (a.length + 1) >>> 1;
+        return new Object[] {
+            like(n, Arrays.copyOfRange(a, 0, k)),
+            like(n, Arrays.copyOfRange(a, k, a.length))
+        };
+    }
+
+    /**
+     * Returns a copy of n with x inserted at index i, which may have
+     * one slot more than WIDTH.
+     */
+    static Node insert(Node n, int i, Object x, boolean append) {
+        Object[] a = n.slots;
+        int[] s = n.sizes;
+        if (s == null)
+            return new Node(insertSlot(a, i, x), null);
+        int j = child(s, i);
+        Node c = insert((Node)a[j], (j > 0) ? i - s[j - 1] : i, x, append);
+        Object[] b;
+        if (c.slots.length <= WIDTH) {
+            b = a.clone();
+            b[j] = c;
+        }
+        else {
+            Object[] halves = split(c, append);
+            b = insertSlot(a, j + 1, halves[1]);
+            b[j] = halves[0];
+        }
+        return branch(b);
+    }
+
+    /**
+     * Returns a copy of n without index i, which may have fewer than
+     * MIN_WIDTH slots.
+     */
+    static Node remove(Node n, int i) {
+        Object[] a = n.slots;
+        int[] s = n.sizes;
+        if (s == null)
+            return new Node(removeSlot(a, i), null);
+        int j = child(s, i);
+        Node c = remove((Node)a[j], (j > 0) ? i - s[j - 1] : i);
+        Object[] b = a.clone();
+        b[j] = c;
+        if (c.slots.length < MIN_WIDTH && b.length > 1) {
+            int l = (j > 0) ? j - 1 : j;       // left of c and a sibling
+            Object[] p = ((Node)b[l]).slots;
+            Object[] q = ((Node)b[l + 1]).slots;
+            Object[] m = Arrays.copyOf(p, p.length + q.length);
+            System.arraycopy(q, 0, m, p.length, q.length);
+            if (m.length <= WIDTH) {           // merge
+                b = removeSlot(b, l + 1);
+                b[l] = like(c, m);
+            }
+            else {                             // share evenly
+                int h = m.length >>> 1;
+                b[l] = like(c, Arrays.copyOfRange(m, 0, h));
+                b[l + 1] = like(c, Arrays.copyOfRange(m, h, m.length));
+            }
+        }
+        return branch(b);
+    }
+
+    /**
+     * Returns the root of a list with x inserted at index i.
+     */
+    static Node insertAt(Node root, int i, Object x) {
+        boolean append = (i == root.size());
+        Node r = insert(root, i, x, append);
+        if (r.slots.length > WIDTH)
+            r = branch(split(r, append));
+        return r;
+    }
+
+    /**
+     * Returns the root of a list with index i removed.
+     */
+    static Node removeAt(Node root, int i) {
+        Node r = remove(root, i);
+        while (r.sizes != null && r.slots.length == 1)
+            r = (Node)r.slots[0];
+        return (r.slots.length == 0) ? EMPTY : r;
+    }
+
+    /**
+     * Returns the root of a list holding the first n elements of a.
+     */
+    static Node build(Object[] a, int n) {
+        if (n == 0)
+            return EMPTY;
+        Object[] level = new Object[(n + WIDTH - 1) / WIDTH];
+        for (int i = 0, j = 0; i < n; i += WIDTH)
+            level[j++] = new Node(Arrays.copyOfRange
+                                  (a, i, Math.min(i + WIDTH, n)), null);
+        while (level.length > 1) {
+            int m = level.length;
+            Object[] up = new Object[(m + WIDTH - 1) / WIDTH];
+            for (int i = 0, j = 0; i < m; i += WIDTH)
+                up[j++] = branch(Arrays.copyOfRange
+                                 (level, i, Math.min(i + WIDTH, m)));
+            level = up;
+        }
+        return (Node)level[0];
+    }
+
+    /**
+     * Copies the elements under n into a, starting at index off.
+     *
+     * @return the index following the last element copied
+     */
+    static int copyTo(Node n, Object[] a, int off) {
+        Object[] slots = n.slots;
+        if (n.sizes == null) {
+            System.arraycopy(slots, 0, a, off, slots.length);
+            return off + slots.length;
+        }
+        for (Object c : slots)
+            off = copyTo((Node)c, a, off);
+        return off;
+    }
+
+    /**
+     * Returns the elements of the list with the given root.
+     */
+    static Object[] toArray(Node root) {
+        Object[] a = new Object[root.size()];
+        copyTo(root, a, 0);
+        return a;
+    }
+
+    /**
+     * Creates an empty list.
+     */
+    public CopyOnWriteTrieList() {
+        setRoot(EMPTY);
+    }
+
+    /**
+     * Creates a list containing the elements of the specified
+     * collection, in the order they are returned by the collection's
+     * iterator.
+     *
+     * @param c the collection of initially held elements
+     * @throws NullPointerException if the specified collection is null
+     */
+    public CopyOnWriteTrieList(Collection<? extends E> c) {
+        Object[] elements = c.toArray();
+        setRoot(build(elements, elements.length));
+    }
+
+    /**
+     * Creates a list holding a copy of the given array.
+     *
+     * @param toCopyIn the array (a copy of this array is used as the
+     *        internal array)
+     * @throws NullPointerException if the specified array is null
+     */
+    public CopyOnWriteTrieList(E[] toCopyIn) {
+        setRoot(build(toCopyIn, toCopyIn.length));
+    }
+
+    /**
+     * Returns the number of elements in this list.
+     *
+     * @return the number of elements in this list
+     */
+    public int size() {
+        return getRoot().size();
+    }
+
+    /**
+     * Returns <tt>true</tt> if this list contains no elements.
+     *
+     * @return <tt>true</tt> if this list contains no elements
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Test for equality, coping with nulls.
+     */
+    private static boolean eq(Object o1, Object o2) {
+        return (o1 == null ? o2 == null : o1.equals(o2));
+    }
+
+    /**
+     * static version of indexOf, to allow repeated calls without
+     * needing to re-acquire the root each time.
+     * @param o element to search for
+     * @param root the root
+     * @param index first index to search
+     * @param fence one past last index to search
+     * @return index of element, or -1 if absent
+     */
+    private static int indexOf(Object o, Node root, int index, int fence) {
+        if (index < 0)
+            throw new IndexOutOfBoundsException("Index: "+index);
+        COWTIterator<Object> it = new COWTIterator<Object>(root, index);
+        for (int i = index; i < fence; i++)
+            if (eq(o, it.at(i)))
+                return i;
+        return -1;
+    }
+
+    /**
+     * static version of lastIndexOf.
+     * @param o element to search for
+     * @param root the root
+     * @param index first index to search
+     * @return index of element, or -1 if absent
+     */
+    private static int lastIndexOf(Object o, Node root, int index) {
+        if (index >= root.size())
+            throw new IndexOutOfBoundsException("Index: "+index+
+                                                ", Size: "+root.size());
+        COWTIterator<Object> it = new COWTIterator<Object>(root, index);
+        for (int i = index; i >= 0; i--)
+            if (eq(o, it.at(i)))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this list contains the specified element.
+     * More formally, returns <tt>true</tt> if and only if this list contains
+     * at least one element <tt>e</tt> such that
+     * <tt>(o==null&nbsp;?&nbsp;e==null&nbsp;:&nbsp;o.equals(e))</tt>.
+     *
+     * @param o element whose presence in this list is to be tested
+     * @return <tt>true</tt> if this list contains the specified element
+     */
+    public boolean contains(Object o) {
+        Node r = getRoot();
+        return indexOf(o, r, 0, r.size()) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int indexOf(Object o) {
+        Node r = getRoot();
+        return indexOf(o, r, 0, r.size());
+    }
+
+    /**
+     * Returns the index of the first occurrence of the specified element in
+     * this list, searching forwards from <tt>index</tt>, or returns -1 if
+     * the element is not found.
+     * More formally, returns the lowest index <tt>i</tt> such that
+     * <tt>(i&nbsp;&gt;=&nbsp;index&nbsp;&amp;&amp;&nbsp;(e==null&nbsp;?&nbsp;get(i)==null&nbsp;:&nbsp;e.equals(get(i))))</tt>,
+     * or -1 if there is no such index.
+     *
+     * @param e element to search for
+     * @param index index to start searching from
+     * @return the index of the first occurrence of the element in
+     *         this list at position <tt>index</tt> or later in the list;
+     *         <tt>-1</tt> if the element is not found.
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public int indexOf(E e, int index) {
+        Node r = getRoot();
+        return indexOf(e, r, index, r.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int lastIndexOf(Object o) {
+        Node r = getRoot();
+        return lastIndexOf(o, r, r.size() - 1);
+    }
+
+    /**
+     * Returns the index of the last occurrence of the specified element in
+     * this list, searching backwards from <tt>index</tt>, or returns -1 if
+     * the element is not found.
+     * More formally, returns the highest index <tt>i</tt> such that
+     * <tt>(i&nbsp;&lt;=&nbsp;index&nbsp;&amp;&amp;&nbsp;(e==null&nbsp;?&nbsp;get(i)==null&nbsp;:&nbsp;e.equals(get(i))))</tt>,
+     * or -1 if there is no such index.
+     *
+     * @param e element to search for
+     * @param index index to start searching backwards from
+     * @return the index of the last occurrence of the element at position
+     *         less than or equal to <tt>index</tt> in this list;
+     *         -1 if the element is not found.
+     * @throws IndexOutOfBoundsException if the specified index is greater
+     *         than or equal to the current size of this list
+     */
+    public int lastIndexOf(E e, int index) {
+        return lastIndexOf(e, getRoot(), index);
+    }
+
+    /**
+     * Returns a shallow copy of this list.  (The elements themselves
+     * are not copied.)  This takes constant time, as the copy shares
+     * the current version of this list.
+     *
+     * @return a clone of this list
+     */
+    public Object clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            CopyOnWriteTrieList<E> c = (CopyOnWriteTrieList<E>)(super.clone());
+            c.resetLock();
+            return c;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Returns an array containing all of the elements in this list
+     * in proper sequence (from first to last element).
+     *
+     * <p>The returned array will be "safe" in that no references to it are
+     * maintained by this list.  (In other words, this method must allocate
+     * a new array).  The caller is thus free to modify the returned array.
+     *
+     * <p>This method acts as bridge between array-based and collection-based
+     * APIs.
+     *
+     * @return an array containing all the elements in this list
+     */
+    public Object[] toArray() {
+        return toArray(getRoot());
+    }
+
+    /**
+     * Returns an array containing all of the elements in this list in
+     * proper sequence (from first to last element); the runtime type of
+     * the returned array is that of the specified array.  If the list fits
+     * in the specified array, it is returned therein.  Otherwise, a new
+     * array is allocated with the runtime type of the specified array and
+     * the size of this list.
+     *
+     * <p>If this list fits in the specified array with room to spare
+     * (i.e., the array has more elements than this list), the element in
+     * the array immediately following the end of the list is set to
+     * <tt>null</tt>.  (This is useful in determining the length of this
+     * list <i>only</i> if the caller knows that this list does not contain
+     * any null elements.)
+     *
+     * @param a the array into which the elements of the list are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose.
+     * @return an array containing all the elements in this list
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this list
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T a[]) {
+        Node r = getRoot();
+        int len = r.size();
+        if (a.length < len)
+            a = (T[]) java.lang.reflect.Array.newInstance
+                (a.getClass().getComponentType(), len);
+        copyTo(r, a, 0);
+        if (a.length > len)
+            a[len] = null;
+        return a;
+    }
+
+    // Positional Access Operations
+
+    private static void rangeCheck(Node r, int index) {
+        if (index < 0 || index >= r.size())
+            throw new IndexOutOfBoundsException("Index: "+index+
+                                                ", Size: "+r.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Node r = getRoot();
+        rangeCheck(r, index);
+        return (E) get(r, index);
+    }
+
+    /**
+     * Replaces the element at the specified position in this list with the
+     * specified element.
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public E set(int index, E element) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            rangeCheck(r, index);
+            E oldValue = (E) get(r, index);
+
+            if (oldValue != element)
+                setRoot(set(r, index, element));
+            else
+                // Not quite a no-op; ensures volatile write semantics
+                setRoot(r);
+            return oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the specified element to the end of this list.
+     *
+     * @param e element to be appended to this list
+     * @return <tt>true</tt> (as specified by {@link Collection#add})
+     */
+    public boolean add(E e) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            setRoot(insertAt(r, r.size(), e));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the specified element at the specified position in this
+     * list. Shifts the element currently at that position (if any) and
+     * any subsequent elements to the right (adds one to their indices).
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public void add(int index, E element) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            int len = r.size();
+            if (index > len || index < 0)
+                throw new IndexOutOfBoundsException("Index: "+index+
+                                                    ", Size: "+len);
+            setRoot(insertAt(r, index, element));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the element at the specified position in this list.
+     * Shifts any subsequent elements to the left (subtracts one from their
+     * indices).  Returns the element that was removed from the list.
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public E remove(int index) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            rangeCheck(r, index);
+            E oldValue = (E) get(r, index);
+            setRoot(removeAt(r, index));
+            return oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the first occurrence of the specified element from this list,
+     * if it is present.  If this list does not contain the element, it is
+     * unchanged.  More formally, removes the element with the lowest index
+     * <tt>i</tt> such that
+     * <tt>(o==null&nbsp;?&nbsp;get(i)==null&nbsp;:&nbsp;o.equals(get(i)))</tt>
+     * (if such an element exists).  Returns <tt>true</tt> if this list
+     * contained the specified element (or equivalently, if this list
+     * changed as a result of the call).
+     *
+     * @param o element to be removed from this list, if present
+     * @return <tt>true</tt> if this list contained the specified element
+     */
+    public boolean remove(Object o) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            int i = indexOf(o, r, 0, r.size());
+            if (i < 0)
+                return false;
+            setRoot(removeAt(r, i));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes from this list all of the elements whose index is between
+     * <tt>fromIndex</tt>, inclusive, and <tt>toIndex</tt>, exclusive.
+     * Shifts any succeeding elements to the left (reduces their index).
+     * This call shortens the list by <tt>(toIndex - fromIndex)</tt> elements.
+     * (If <tt>toIndex==fromIndex</tt>, this operation has no effect.)
+     *
+     * @param fromIndex index of first element to be removed
+     * @param toIndex index after last element to be removed
+     * @throws IndexOutOfBoundsException if fromIndex or toIndex out of range
+     *         ({@code{fromIndex < 0 || toIndex > size() || toIndex < fromIndex})
+     */
+    private void removeRange(int fromIndex, int toIndex) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            int len = r.size();
+
+            if (fromIndex < 0 || toIndex > len || toIndex < fromIndex)
+                throw new IndexOutOfBoundsException();
+            int n = toIndex - fromIndex;
+            if (n == 1)
+                setRoot(removeAt(r, fromIndex));
+            else if (n > 1) {
+                Object[] elements = toArray(r);
+                System.arraycopy(elements, toIndex, elements, fromIndex,
+                                 len - toIndex);
+                setRoot(build(elements, len - n));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append the element if not present.
+     *
+     * @param e element to be added to this list, if absent
+     * @return <tt>true</tt> if the element was added
+     */
+    public boolean addIfAbsent(E e) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            int len = r.size();
+            if (indexOf(e, r, 0, len) >= 0)
+                return false;
+            setRoot(insertAt(r, len, e));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if this list contains all of the elements of the
+     * specified collection.
+     *
+     * @param c collection to be checked for containment in this list
+     * @return <tt>true</tt> if this list contains all of the elements of the
+     *         specified collection
+     * @throws NullPointerException if the specified collection is null
+     * @see #contains(Object)
+     */
+    public boolean containsAll(Collection<?> c) {
+        Node r = getRoot();
+        int len = r.size();
+        for (Object e : c) {
+            if (indexOf(e, r, 0, len) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes from this list all of its elements that are contained in
+     * the specified collection.  This rebuilds the whole tree, in time
+     * linear in the size of this list.
+     *
+     * @param c collection containing elements to be removed from this list
+     * @return <tt>true</tt> if this list changed as a result of the call
+     * @throws ClassCastException if the class of an element of this list
+     *         is incompatible with the specified collection
+     *         (<a href="../Collection.html#optional-restrictions">optional</a>)
+     * @throws NullPointerException if this list contains a null element and the
+     *         specified collection does not permit null elements
+     *         (<a href="../Collection.html#optional-restrictions">optional</a>),
+     *         or if the specified collection is null
+     * @see #remove(Object)
+     */
+    public boolean removeAll(Collection<?> c) {
+        return filter(c, false);
+    }
+
+    /**
+     * Retains only the elements in this list that are contained in the
+     * specified collection.  In other words, removes from this list all of
+     * its elements that are not contained in the specified collection.
+     *
+     * @param c collection containing elements to be retained in this list
+     * @return <tt>true</tt> if this list changed as a result of the call
+     * @throws ClassCastException if the class of an element of this list
+     *         is incompatible with the specified collection
+     *         (<a href="../Collection.html#optional-restrictions">optional</a>)
+     * @throws NullPointerException if this list contains a null element and the
+     *         specified collection does not permit null elements
+     *         (<a href="../Collection.html#optional-restrictions">optional</a>),
+     *         or if the specified collection is null
+     * @see #remove(Object)
+     */
+    public boolean retainAll(Collection<?> c) {
+        return filter(c, true);
+    }
+
+    /**
+     * Implements removeAll and retainAll.
+     *
+     * @param retain true to keep the elements contained in c, false
+     *        to keep those not contained in it
+     */
+    private boolean filter(Collection<?> c, boolean retain) {
+        if (c == null)
+            throw new NullPointerException();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] elements = toArray(getRoot());
+            int len = elements.length;
+            int newlen = 0;
+            for (int i = 0; i < len; ++i) {
+                Object element = elements[i];
+                if (c.contains(element) == retain)
+                    elements[newlen++] = element;
+            }
+            if (newlen != len) {
+                setRoot(build(elements, newlen));
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends all of the elements in the specified collection that
+     * are not already contained in this list, to the end of
+     * this list, in the order that they are returned by the
+     * specified collection's iterator.
+     *
+     * @param c collection containing elements to be added to this list
+     * @return the number of elements added
+     * @throws NullPointerException if the specified collection is null
+     * @see #addIfAbsent(Object)
+     */
+    public int addAllAbsent(Collection<? extends E> c) {
+        Object[] cs = c.toArray();
+        if (cs.length == 0)
+            return 0;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            int len = r.size();
+            int added = 0;
+            for (int i = 0; i < cs.length; ++i) { // scan for duplicates
+                Object e = cs[i];
+                if (indexOf(e, r, 0, len + added) < 0) {
+                    r = insertAt(r, len + added, e);
+                    ++added;
+                }
+            }
+            if (added > 0)
+                setRoot(r);
+            return added;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all of the elements from this list.
+     * The list will be empty after this call returns.
+     */
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            setRoot(EMPTY);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends all of the elements in the specified collection to the end
+     * of this list, in the order that they are returned by the specified
+     * collection's iterator.
+     *
+     * @param c collection containing elements to be added to this list
+     * @return <tt>true</tt> if this list changed as a result of the call
+     * @throws NullPointerException if the specified collection is null
+     * @see #add(Object)
+     */
+    public boolean addAll(Collection<? extends E> c) {
+        Object[] cs = c.toArray();
+        if (cs.length == 0)
+            return false;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            setRoot(insertAll(getRoot(), getRoot().size(), cs));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts all of the elements in the specified collection into this
+     * list, starting at the specified position.  Shifts the element
+     * currently at that position (if any) and any subsequent elements to
+     * the right (increases their indices).  The new elements will appear
+     * in this list in the order that they are returned by the
+     * specified collection's iterator.
+     *
+     * @param index index at which to insert the first element
+     *        from the specified collection
+     * @param c collection containing elements to be added to this list
+     * @return <tt>true</tt> if this list changed as a result of the call
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     * @throws NullPointerException if the specified collection is null
+     * @see #add(int,Object)
+     */
+    public boolean addAll(int index, Collection<? extends E> c) {
+        Object[] cs = c.toArray();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            int len = r.size();
+            if (index > len || index < 0)
+                throw new IndexOutOfBoundsException("Index: "+index+
+                                                    ", Size: "+len);
+            if (cs.length == 0)
+                return false;
+            setRoot(insertAll(r, index, cs));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the root of a list with the elements of cs inserted at
+     * index.  Small collections are inserted one element at a time;
+     * larger ones, for which that would copy more than rebuilding,
+     * cause the tree to be rebuilt.
+     */
+    private static Node insertAll(Node r, int index, Object[] cs) {
+        int len = r.size();
+        int n = cs.length;
+        if (n <= WIDTH || (long)n * WIDTH < len) {
+            for (int i = 0; i < n; ++i)
+                r = insertAt(r, index + i, cs[i]);
+            return r;
+        }
+        Object[] elements = new Object[len + n];
+        copyTo(r, elements, 0);
+        System.arraycopy(elements, index, elements, index + n, len - index);
+        System.arraycopy(cs, 0, elements, index, n);
+        return build(elements, len + n);
+    }
+
+    /**
+     * Saves the state of the list to a stream (that is, serializes it).
+     *
+     * @serialData The length of the list is emitted (int), followed by
+     *               all of its elements (each an Object) in the proper
+     *               order.
+     * @param s the stream
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException{
+
+        s.defaultWriteObject();
+
+        Object[] elements = toArray(getRoot());
+        // Write out list length
+        s.writeInt(elements.length);
+
+        // Write out all elements in the proper order.
+        for (Object element : elements)
+            s.writeObject(element);
+    }
+
+    /**
+     * Reconstitutes the list from a stream (that is, deserializes it).
+     *
+     * @param s the stream
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+
+        s.defaultReadObject();
+
+        // bind to new lock
+        resetLock();
+
+        // Read in list length and allocate array
+        int len = s.readInt();
+        Object[] elements = new Object[len];
+
+        // Read in all elements in the proper order.
+        for (int i = 0; i < len; i++)
+            elements[i] = s.readObject();
+        setRoot(build(elements, len));
+    }
+
+    /**
+     * Returns a string representation of this list.  The string
+     * representation consists of the string representations of the list's
+     * elements in the order they are returned by its iterator, enclosed in
+     * square brackets (<tt>"[]"</tt>).  Adjacent elements are separated by
+     * the characters <tt>", "</tt> (comma and space).  Elements are
+     * converted to strings as by {@link String#valueOf(Object)}.
+     *
+     * @return a string representation of this list
+     */
+    public String toString() {
+        return Arrays.toString(toArray(getRoot()));
+    }
+
+    /**
+     * Compares the specified object with this list for equality.
+     * Returns {@code true} if the specified object is the same object
+     * as this object, or if it is also a {@link List} and the sequence
+     * of elements returned by an {@linkplain List#iterator() iterator}
+     * over the specified list is the same as the sequence returned by
+     * an iterator over this list.  The two sequences are considered to
+     * be the same if they have the same length and corresponding
+     * elements at the same position in the sequence are <em>equal</em>.
+     * Two elements {@code e1} and {@code e2} are considered
+     * <em>equal</em> if {@code (e1==null ? e2==null : e1.equals(e2))}.
+     *
+     * @param o the object to be compared for equality with this list
+     * @return {@code true} if the specified object is equal to this list
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof List))
+            return false;
+
+        List<?> list = (List<?>)(o);
+        Iterator<?> it = list.iterator();
+        Node r = getRoot();
+        int len = r.size();
+        COWTIterator<Object> elements = new COWTIterator<Object>(r, 0);
+        for (int i = 0; i < len; ++i)
+            if (!it.hasNext() || !eq(elements.at(i), it.next()))
+                return false;
+        if (it.hasNext())
+            return false;
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this list.
+     *
+     * <p>This implementation uses the definition in {@link List#hashCode}.
+     *
+     * @return the hash code value for this list
+     */
+    public int hashCode() {
+        int hashCode = 1;
+        Node r = getRoot();
+        int len = r.size();
+        COWTIterator<Object> elements = new COWTIterator<Object>(r, 0);
+        for (int i = 0; i < len; ++i) {
+            Object obj = elements.at(i);
+            hashCode = 31*hashCode + (obj==null ? 0 : obj.hashCode());
+        }
+        return hashCode;
+    }
+
+    /**
+     * Returns an iterator over the elements in this list in proper sequence.
+     *
+     * <p>The returned iterator provides a snapshot of the state of the list
+     * when the iterator was constructed. No synchronization is needed while
+     * traversing the iterator. The iterator does <em>NOT</em> support the
+     * <tt>remove</tt> method.
+     *
+     * @return an iterator over the elements in this list in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new COWTIterator<E>(getRoot(), 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned iterator provides a snapshot of the state of the list
+     * when the iterator was constructed. No synchronization is needed while
+     * traversing the iterator. The iterator does <em>NOT</em> support the
+     * <tt>remove</tt>, <tt>set</tt> or <tt>add</tt> methods.
+     */
+    public ListIterator<E> listIterator() {
+        return new COWTIterator<E>(getRoot(), 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned iterator provides a snapshot of the state of the list
+     * when the iterator was constructed. No synchronization is needed while
+     * traversing the iterator. The iterator does <em>NOT</em> support the
+     * <tt>remove</tt>, <tt>set</tt> or <tt>add</tt> methods.
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public ListIterator<E> listIterator(final int index) {
+        Node r = getRoot();
+        int len = r.size();
+        if (index<0 || index>len)
+            throw new IndexOutOfBoundsException("Index: "+index);
+
+        return new COWTIterator<E>(r, index);
+    }
+
+    private static class COWTIterator<E> implements ListIterator<E> {
+        /** Root of the snapshot */
+        private final Node snapshot;
+        /** Size of the snapshot */
+        private final int size;
+        /** Index of element to be returned by subsequent call to next.  */
+        private int cursor;
+        /** Elements of the leaf last accessed */
+        private Object[] leaf;
+        /** Index of the first element of leaf */
+        private int base;
+
+        private COWTIterator(Node root, int initialCursor) {
+            snapshot = root;
+            size = root.size();
+            cursor = initialCursor;
+            leaf = EMPTY.slots;
+        }
+
+        /**
+         * Returns the element at index i, moving to its leaf if needed.
+         */
+        Object at(int i) {
+            int k = i - base;
+            if (k < 0 || k >= leaf.length) {
+                Node n = snapshot;
+                int b = 0;
+                int[] s;
+                while ((s = n.sizes) != null) {
+                    int j = child(s, i - b);
+                    if (j > 0)
+                        b += s[j - 1];
+                    n = (Node)n.slots[j];
+                }
+                leaf = n.slots;
+                base = b;
+                k = i - b;
+            }
+            return leaf[k];
+        }
+
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        public boolean hasPrevious() {
+            return cursor > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (! hasNext())
+                throw new NoSuchElementException();
+            return (E) at(cursor++);
+        }
+
+        @SuppressWarnings("unchecked")
+        public E previous() {
+            if (! hasPrevious())
+                throw new NoSuchElementException();
+            return (E) at(--cursor);
+        }
+
+        public int nextIndex() {
+            return cursor;
+        }
+
+        public int previousIndex() {
+            return cursor-1;
+        }
+
+        /**
+         * Not supported. Always throws UnsupportedOperationException.
+         * @throws UnsupportedOperationException always; <tt>remove</tt>
+         *         is not supported by this iterator.
+         */
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Not supported. Always throws UnsupportedOperationException.
+         * @throws UnsupportedOperationException always; <tt>set</tt>
+         *         is not supported by this iterator.
+         */
+        public void set(E e) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Not supported. Always throws UnsupportedOperationException.
+         * @throws UnsupportedOperationException always; <tt>add</tt>
+         *         is not supported by this iterator.
+         */
+        public void add(E e) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns a view of the portion of this list between
+     * <tt>fromIndex</tt>, inclusive, and <tt>toIndex</tt>, exclusive.
+     * The returned list is backed by this list, so changes in the
+     * returned list are reflected in this list.
+     *
+     * <p>The semantics of the list returned by this method become
+     * undefined if the backing list (i.e., this list) is modified in
+     * any way other than via the returned list.
+     *
+     * @param fromIndex low endpoint (inclusive) of the subList
+     * @param toIndex high endpoint (exclusive) of the subList
+     * @return a view of the specified range within this list
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public List<E> subList(int fromIndex, int toIndex) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int len = getRoot().size();
+            if (fromIndex < 0 || toIndex > len || fromIndex > toIndex)
+                throw new IndexOutOfBoundsException();
+            return new COWTSubList<E>(this, fromIndex, toIndex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sublist for CopyOnWriteTrieList.  As for CopyOnWriteArrayList,
+     * this class extends AbstractList merely for convenience, and
+     * checks for concurrent modification by comparing the root that
+     * the backing list is expected to have with its actual root.
+     */
+    private static class COWTSubList<E>
+        extends AbstractList<E>
+        implements RandomAccess
+    {
+        private final CopyOnWriteTrieList<E> l;
+        private final int offset;
+        private int size;
+        private Node expectedRoot;
+
+        // only call this holding l's lock
+        COWTSubList(CopyOnWriteTrieList<E> list,
+                    int fromIndex, int toIndex) {
+            l = list;
+            expectedRoot = l.getRoot();
+            offset = fromIndex;
+            size = toIndex - fromIndex;
+        }
+
+        // only call this holding l's lock
+        private void checkForComodification() {
+            if (l.getRoot() != expectedRoot)
+                throw new ConcurrentModificationException();
+        }
+
+        // only call this holding l's lock
+        private void rangeCheck(int index) {
+            if (index<0 || index>=size)
+                throw new IndexOutOfBoundsException("Index: "+index+
+                                                    ",Size: "+size);
+        }
+
+        public E set(int index, E element) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                rangeCheck(index);
+                checkForComodification();
+                E x = l.set(index+offset, element);
+                expectedRoot = l.getRoot();
+                return x;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public E get(int index) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                rangeCheck(index);
+                checkForComodification();
+                return l.get(index+offset);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int size() {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void add(int index, E element) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                if (index<0 || index>size)
+                    throw new IndexOutOfBoundsException();
+                l.add(index+offset, element);
+                expectedRoot = l.getRoot();
+                size++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void clear() {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                l.removeRange(offset, offset+size);
+                expectedRoot = l.getRoot();
+                size = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public E remove(int index) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                rangeCheck(index);
+                checkForComodification();
+                E result = l.remove(index+offset);
+                expectedRoot = l.getRoot();
+                size--;
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean remove(Object o) {
+            int index = indexOf(o);
+            if (index == -1)
+                return false;
+            remove(index);
+            return true;
+        }
+
+        public Iterator<E> iterator() {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                return new COWTSubListIterator<E>(l, 0, offset, size);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public ListIterator<E> listIterator(final int index) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                if (index<0 || index>size)
+                    throw new IndexOutOfBoundsException("Index: "+index+
+                                                        ", Size: "+size);
+                return new COWTSubListIterator<E>(l, index, offset, size);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public List<E> subList(int fromIndex, int toIndex) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                if (fromIndex<0 || toIndex>size || fromIndex>toIndex)
+                    throw new IndexOutOfBoundsException();
+                return new COWTSubList<E>(l, fromIndex + offset,
+                                          toIndex + offset);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+
+    private static class COWTSubListIterator<E> implements ListIterator<E> {
+        private final ListIterator<E> i;
+        private final int offset;
+        private final int size;
+
+        COWTSubListIterator(List<E> l, int index, int offset,
+                            int size) {
+            this.offset = offset;
+            this.size = size;
+            i = l.listIterator(index+offset);
+        }
+
+        public boolean hasNext() {
+            return nextIndex() < size;
+        }
+
+        public E next() {
+            if (hasNext())
+                return i.next();
+            else
+                throw new NoSuchElementException();
+        }
+
+        public boolean hasPrevious() {
+            return previousIndex() >= 0;
+        }
+
+        public E previous() {
+            if (hasPrevious())
+                return i.previous();
+            else
+                throw new NoSuchElementException();
+        }
+
+        public int nextIndex() {
+            return i.nextIndex() - offset;
+        }
+
+        public int previousIndex() {
+            return i.previousIndex() - offset;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void set(E e) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void add(E e) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Support for resetting lock while deserializing
+    private void resetLock() {
+        UNSAFE.putObjectVolatile(this, lockOffset, new ReentrantLock());
+    }
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long lockOffset;
+    static {
+        try {
+            UNSAFE = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = CopyOnWriteTrieList.class;
+            lockOffset = UNSAFE.objectFieldOffset
+                (k.getDeclaredField("lock"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
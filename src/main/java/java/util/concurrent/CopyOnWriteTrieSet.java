@@ -0,0 +1,748 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A {@link java.util.Set} that, like {@link CopyOnWriteArraySet},
+ * publishes a new immutable version of itself on every mutation, but
+ * holds its elements in a hash array mapped trie so that a new
+ * version shares all of the previous one except for the nodes on the
+ * path to the element added or removed.  It shares the following
+ * properties with {@link CopyOnWriteArraySet}:
+ * <ul>
+ *  <li>Mutative operations (<tt>add</tt>, <tt>remove</tt>, etc.) are
+ *       serialized by a lock, while reads and traversals never block.
+ *  <li>Iterators do not support the mutative <tt>remove</tt> operation.
+ *  <li>Traversal via iterators is fast and cannot encounter
+ *      interference from other threads. Iterators rely on
+ *      unchanging snapshots of the set when the iterators were
+ *      constructed.
+ * </ul>
+ * It differs from it in the following:
+ * <ul>
+ *  <li><tt>add</tt>, <tt>remove</tt> and <tt>contains</tt> take time
+ *       logarithmic in the size of the set, rather than linear, and
+ *       each mutation copies at most a few small arrays, so that the
+ *       set remains efficient for large sizes and frequent updates.
+ *  <li>Elements are located by their <tt>hashCode</tt> and
+ *       <tt>equals</tt> methods, as for {@link HashSet}.
+ *  <li>Iteration order is unspecified and is not the order in which
+ *       elements were added.
+ * </ul>
+ *
+ * <p>All elements are permitted, including <tt>null</tt>.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code CopyOnWriteTrieSet}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code CopyOnWriteTrieSet} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @see CopyOnWriteArraySet
+ * @see CopyOnWriteTrieList
+ * @since 1.7
+ * @author Doug Lea
+ * @param <E> the type of elements held in this collection
+ */
+public class CopyOnWriteTrieSet<E> extends AbstractSet<E>
+        implements java.io.Serializable {
+    private static final long serialVersionUID = 3826409615312856437L;
+
+    /*
+     * The set is a hash array mapped trie.  Each node covers the
+     * elements whose spread hashes agree on the bits consumed by its
+     * ancestors, and uses the next BITS bits to select one of up to
+     * 32 positions.  The occupied positions are recorded in a bitmap,
+     * and their contents are held, in position order, in an array
+     * exactly as long as the number of bits set.  A slot holds either
+     * an element or, if it is a Node, the subtrie for its position.
+     * (Elements are never Nodes, since Node is a private class.)
+     * Elements whose hashes are equal in all 32 bits end up in a
+     * collision node, below the maximum shift, whose slots are
+     * searched linearly and whose bitmap is unused.
+     *
+     * Nodes are never modified once published.  An update copies the
+     * path from the root to the affected slot and installs the new
+     * root.  Removal replaces a subtrie that is left with a single
+     * element by that element, so that the trie stays as shallow as
+     * the hashes allow.  Each node records the number of elements
+     * under it, so that size() takes constant time.
+     *
+     * As in CopyOnWriteTrieList, mutators are serialized by a lock,
+     * and readers just read the volatile root.
+     */
+
+    /** The number of hash bits consumed per level */
+    static final int BITS = 5;
+
+    /** The maximum shift at which nodes index by hash bits */
+    static final int MAX_SHIFT = 30;
+
+    /**
+     * Immutable trie node.
+     */
+    static final class Node {
+        /** Occupied positions; unused in collision nodes */
+        final int bitmap;
+        /** Elements or subtries, in position order */
+        final Object[] slots;
+        /** The number of elements under this node */
+        final int size;
+
+        Node(int bitmap, Object[] slots, int size) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+            this.size = size;
+        }
+    }
+
+    /** The root of an empty set */
+    static final Node EMPTY = new Node(0, new Object[0], 0);
+
+    /** The lock protecting all mutators */
+    transient final ReentrantLock lock = new ReentrantLock();
+
+    /** The root, accessed only via getRoot/setRoot. */
+    private volatile transient Node root;
+
+    /**
+     * Gets the root.  Non-private so as to also be accessible
+     * from nested classes.
+     */
+    final Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Sets the root.
+     */
+    final void setRoot(Node r) {
+        root = r;
+    }
+
+    /**
+     * Test for equality, coping with nulls.
+     */
+    private static boolean eq(Object o1, Object o2) {
+        return (o1 == null ? o2 == null : o1.equals(o2));
+    }
+
+    /**
+     * Returns the spread hash of o.  Higher bits are folded into
+     * the lower ones, which select the positions nearest the root.
+     */
+    static int hash(Object o) {
+        int h = (o == null) ? 0 : o.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the bit for hash h at the given shift.
+     */
+    static int bit(int h, int shift) {
+        return 1 << ((h >>> shift) & 31);
+    }
+
+    /**
+     * Returns the index in the slots of a node with the given bitmap
+     * of the position with the given bit.
+     */
+    static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    static Object[] insertSlot(Object[] a, int i, Object x) {
+        Object[] b = new Object[a.length + 1];
+        System.arraycopy(a, 0, b, 0, i);
+        b[i] = x;
+        System.arraycopy(a, i, b, i + 1, a.length - i);
+        return b;
+    }
+
+    static Object[] removeSlot(Object[] a, int i) {
+        Object[] b = new Object[a.length - 1];
+        System.arraycopy(a, 0, b, 0, i);
+        System.arraycopy(a, i + 1, b, i, b.length - i);
+        return b;
+    }
+
+    static boolean contains(Node n, Object o, int h) {
+        for (int shift = 0; ; shift += BITS) {
+            Object[] a = n.slots;
+            if (shift > MAX_SHIFT) {
+                for (Object x : a)
+                    if (eq(o, x))
+                        return true;
+                return false;
+            }
+            int b = bit(h, shift);
+            if ((n.bitmap & b) == 0)
+                return false;
+            Object x = a[index(n.bitmap, b)];
+            if (!(x instanceof Node))
+                return eq(o, x);
+            n = (Node)x;
+        }
+    }
+
+    /**
+     * Returns a trie holding the two elements x and y, with hashes
+     * hx and hy, at the given shift.
+     */
+    static Node pair(Object x, int hx, Object y, int hy, int shift) {
+        if (shift > MAX_SHIFT)
+            return new Node(0, new Object[] { x, y }, 2);
+        int bx = bit(hx, shift), by = bit(hy, shift);
+        if (bx == by)
+            return new Node(bx, new Object[] {
+                    pair(x, hx, y, hy, shift + BITS) }, 2);
+        Object[] a = ((bx & (by - 1)) != 0) ?
+            new Object[] { x, y } : new Object[] { y, x };
+        return new Node(bx | by, a, 2);
+    }
+
+    /**
+     * Returns a copy of n also holding o, or n itself if o is
+     * already present.
+     */
+    static Node add(Node n, Object o, int h, int shift) {
+        Object[] a = n.slots;
+        if (shift > MAX_SHIFT) {
+            for (Object x : a)
+                if (eq(o, x))
+                    return n;
+            return new Node(0, insertSlot(a, a.length, o), n.size + 1);
+        }
+        int b = bit(h, shift);
+        int i = index(n.bitmap, b);
+        if ((n.bitmap & b) == 0)
+            return new Node(n.bitmap | b, insertSlot(a, i, o), n.size + 1);
+        Object x = a[i];
+        Node c;
+        if (x instanceof Node) {
+            Node s = (Node)x;
+            if ((c = add(s, o, h, shift + BITS)) == s)
+                return n;
+        }
+        else if (eq(o, x))
+            return n;
+        else
+            c = pair(x, hash(x), o, h, shift + BITS);
+        Object[] copy = a.clone();
+        copy[i] = c;
+        return new Node(n.bitmap, copy, n.size + 1);
+    }
+
+    /**
+     * Returns a copy of n without o, or n itself if o is absent.
+     * The copy may be a node holding a single element, which the
+     * caller replaces with that element.
+     */
+    static Node remove(Node n, Object o, int h, int shift) {
+        Object[] a = n.slots;
+        if (shift > MAX_SHIFT) {
+            for (int i = 0; i < a.length; ++i)
+                if (eq(o, a[i]))
+                    return new Node(0, removeSlot(a, i), n.size - 1);
+            return n;
+        }
+        int b = bit(h, shift);
+        if ((n.bitmap & b) == 0)
+            return n;
+        int i = index(n.bitmap, b);
+        Object x = a[i];
+        if (x instanceof Node) {
+            Node s = (Node)x;
+            Node c = remove(s, o, h, shift + BITS);
+            if (c == s)
+                return n;
+            Object[] copy = a.clone();
+            copy[i] = (c.size == 1 && !(c.slots[0] instanceof Node)) ?
+                c.slots[0] : c;
+            return new Node(n.bitmap, copy, n.size - 1);
+        }
+        if (!eq(o, x))
+            return n;
+        return new Node(n.bitmap & ~b, removeSlot(a, i), n.size - 1);
+    }
+
+    /**
+     * Returns the root of a set holding the elements of n also
+     * holding the elements of a.
+     */
+    static Node addAll(Node n, Object[] a) {
+        for (Object o : a)
+            n = add(n, o, hash(o), 0);
+        return n;
+    }
+
+    /**
+     * Copies the elements under n into a, starting at index off.
+     *
+     * @return the index following the last element copied
+     */
+    static int copyTo(Node n, Object[] a, int off) {
+        for (Object x : n.slots) {
+            if (x instanceof Node)
+                off = copyTo((Node)x, a, off);
+            else
+                a[off++] = x;
+        }
+        return off;
+    }
+
+    /**
+     * Creates an empty set.
+     */
+    public CopyOnWriteTrieSet() {
+        setRoot(EMPTY);
+    }
+
+    /**
+     * Creates a set containing all of the elements of the specified
+     * collection.
+     *
+     * @param c the collection of elements to initially contain
+     * @throws NullPointerException if the specified collection is null
+     */
+    public CopyOnWriteTrieSet(Collection<? extends E> c) {
+        setRoot(addAll(EMPTY, c.toArray()));
+    }
+
+    /**
+     * Returns the number of elements in this set.
+     *
+     * @return the number of elements in this set
+     */
+    public int size() {
+        return getRoot().size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this set contains no elements.
+     *
+     * @return <tt>true</tt> if this set contains no elements
+     */
+    public boolean isEmpty() {
+        return getRoot().size == 0;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this set contains the specified element.
+     * More formally, returns <tt>true</tt> if and only if this set
+     * contains an element <tt>e</tt> such that
+     * <tt>(o==null&nbsp;?&nbsp;e==null&nbsp;:&nbsp;o.equals(e))</tt>.
+     *
+     * @param o element whose presence in this set is to be tested
+     * @return <tt>true</tt> if this set contains the specified element
+     */
+    public boolean contains(Object o) {
+        return contains(getRoot(), o, hash(o));
+    }
+
+    /**
+     * Returns an array containing all of the elements in this set.
+     * The order of the elements is unspecified.
+     *
+     * <p>The returned array will be "safe" in that no references to it
+     * are maintained by this set.  (In other words, this method must
+     * allocate a new array even if this set is backed by an array).
+     * The caller is thus free to modify the returned array.
+     *
+     * <p>This method acts as bridge between array-based and collection-based
+     * APIs.
+     *
+     * @return an array containing all the elements in this set
+     */
+    public Object[] toArray() {
+        Node r = getRoot();
+        Object[] a = new Object[r.size];
+        copyTo(r, a, 0);
+        return a;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this set; the
+     * runtime type of the returned array is that of the specified array.
+     * If the set fits in the specified array, it is returned therein.
+     * Otherwise, a new array is allocated with the runtime type of the
+     * specified array and the size of this set.
+     *
+     * <p>If this set fits in the specified array with room to spare
+     * (i.e., the array has more elements than this set), the element in
+     * the array immediately following the end of the set is set to
+     * <tt>null</tt>.  (This is useful in determining the length of this
+     * set <i>only</i> if the caller knows that this set does not contain
+     * any null elements.)
+     *
+     * @param a the array into which the elements of this set are to be
+     *        stored, if it is big enough; otherwise, a new array of the same
+     *        runtime type is allocated for this purpose.
+     * @return an array containing all the elements in this set
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in this
+     *         set
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Node r = getRoot();
+        int len = r.size;
+        if (a.length < len)
+            a = (T[]) java.lang.reflect.Array.newInstance
+                (a.getClass().getComponentType(), len);
+        copyTo(r, a, 0);
+        if (a.length > len)
+            a[len] = null;
+        return a;
+    }
+
+    /**
+     * Removes all of the elements from this set.
+     * The set will be empty after this call returns.
+     */
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            setRoot(EMPTY);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the specified element from this set if it is present.
+     * More formally, removes an element <tt>e</tt> such that
+     * <tt>(o==null&nbsp;?&nbsp;e==null&nbsp;:&nbsp;o.equals(e))</tt>,
+     * if this set contains such an element.  Returns <tt>true</tt> if
+     * this set contained the element (or equivalently, if this set
+     * changed as a result of the call).  (This set will not contain the
+     * element once the call returns.)
+     *
+     * @param o object to be removed from this set, if present
+     * @return <tt>true</tt> if this set contained the specified element
+     */
+    public boolean remove(Object o) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            Node n = remove(r, o, hash(o), 0);
+            if (n == r)
+                return false;
+            setRoot(n);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the specified element to this set if it is not already present.
+     * More formally, adds the specified element <tt>e</tt> to this set if
+     * the set contains no element <tt>e2</tt> such that
+     * <tt>(e==null&nbsp;?&nbsp;e2==null&nbsp;:&nbsp;e.equals(e2))</tt>.
+     * If this set already contains the element, the call leaves the set
+     * unchanged and returns <tt>false</tt>.
+     *
+     * @param e element to be added to this set
+     * @return <tt>true</tt> if this set did not already contain the specified
+     *         element
+     */
+    public boolean add(E e) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            Node n = add(r, e, hash(e), 0);
+            if (n == r)
+                return false;
+            setRoot(n);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds all of the elements in the specified collection to this set if
+     * they're not already present.  If the specified collection is also a
+     * set, the <tt>addAll</tt> operation effectively modifies this set so
+     * that its value is the <i>union</i> of the two sets.  The new version
+     * of this set is published once, after all elements have been added.
+     *
+     * @param  c collection containing elements to be added to this set
+     * @return <tt>true</tt> if this set changed as a result of the call
+     * @throws NullPointerException if the specified collection is null
+     * @see #add(Object)
+     */
+    public boolean addAll(Collection<? extends E> c) {
+        Object[] cs = c.toArray();
+        if (cs.length == 0)
+            return false;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            Node n = addAll(r, cs);
+            if (n == r)
+                return false;
+            setRoot(n);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes from this set all of its elements that are contained in the
+     * specified collection.  If the specified collection is also a set,
+     * this operation effectively modifies this set so that its value is the
+     * <i>asymmetric set difference</i> of the two sets.
+     *
+     * @param  c collection containing elements to be removed from this set
+     * @return <tt>true</tt> if this set changed as a result of the call
+     * @throws ClassCastException if the class of an element of this set
+     *         is incompatible with the specified collection (optional)
+     * @throws NullPointerException if this set contains a null element and the
+     *         specified collection does not permit null elements (optional),
+     *         or if the specified collection is null
+     * @see #remove(Object)
+     */
+    public boolean removeAll(Collection<?> c) {
+        return filter(c, false);
+    }
+
+    /**
+     * Retains only the elements in this set that are contained in the
+     * specified collection.  In other words, removes from this set all of
+     * its elements that are not contained in the specified collection.  If
+     * the specified collection is also a set, this operation effectively
+     * modifies this set so that its value is the <i>intersection</i> of the
+     * two sets.
+     *
+     * @param  c collection containing elements to be retained in this set
+     * @return <tt>true</tt> if this set changed as a result of the call
+     * @throws ClassCastException if the class of an element of this set
+     *         is incompatible with the specified collection (optional)
+     * @throws NullPointerException if this set contains a null element and the
+     *         specified collection does not permit null elements (optional),
+     *         or if the specified collection is null
+     * @see #remove(Object)
+     */
+    public boolean retainAll(Collection<?> c) {
+        return filter(c, true);
+    }
+
+    /**
+     * Implements removeAll and retainAll.
+     *
+     * @param retain true to keep the elements contained in c, false
+     *        to keep those not contained in it
+     */
+    private boolean filter(Collection<?> c, boolean retain) {
+        if (c == null)
+            throw new NullPointerException();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node r = getRoot();
+            Object[] elements = new Object[r.size];
+            copyTo(r, elements, 0);
+            Node n = r;
+            for (Object e : elements)
+                if (c.contains(e) != retain)
+                    n = remove(n, e, hash(e), 0);
+            if (n == r)
+                return false;
+            setRoot(n);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over the elements contained in this set.
+     * The order of the elements is unspecified.
+     *
+     * <p>The returned iterator provides a snapshot of the state of the set
+     * when the iterator was constructed. No synchronization is needed while
+     * traversing the iterator. The iterator does <em>NOT</em> support the
+     * <tt>remove</tt> method.
+     *
+     * @return an iterator over the elements in this set
+     */
+    public Iterator<E> iterator() {
+        return new COWTIterator<E>(getRoot());
+    }
+
+    /**
+     * Depth-first iterator over a snapshot of the trie.
+     */
+    private static class COWTIterator<E> implements Iterator<E> {
+        /** Slots of the nodes on the path to the next element */
+        private Object[][] stack = new Object[8][];
+        /** Indices of the next slots to visit in each node on the path */
+        private int[] indices = new int[8];
+        /** Index of the top of the stack, or -1 when exhausted */
+        private int top;
+        /** The next element to return */
+        private Object nextItem;
+
+        COWTIterator(Node root) {
+            stack[0] = root.slots;
+            advance();
+        }
+
+        /**
+         * Moves to the next element, setting top to -1 if none.
+         */
+        private void advance() {
+            for (int t = top; t >= 0; ) {
+                Object[] a = stack[t];
+                int i = indices[t];
+                if (i == a.length) {
+                    --t;
+                    continue;
+                }
+                indices[t] = i + 1;
+                Object x = a[i];
+                if (!(x instanceof Node)) {
+                    nextItem = x;
+                    top = t;
+                    return;
+                }
+                if (++t == stack.length) {
+                    stack = Arrays.copyOf(stack, t << 1);
+                    indices = Arrays.copyOf(indices, t << 1);
+                }
+                stack[t] = ((Node)x).slots;
+                indices[t] = 0;
+            }
+            top = -1;
+            nextItem = null;
+        }
+
+        public boolean hasNext() {
+            return top >= 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (top < 0)
+                throw new NoSuchElementException();
+            Object x = nextItem;
+            advance();
+            return (E) x;
+        }
+
+        /**
+         * Not supported. Always throws UnsupportedOperationException.
+         * @throws UnsupportedOperationException always; <tt>remove</tt>
+         *         is not supported by this iterator.
+         */
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Saves the state of the set to a stream (that is, serializes it).
+     *
+     * @serialData The size of the set is emitted (int), followed by
+     *               all of its elements (each an Object) in no
+     *               particular order.
+     * @param s the stream
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+
+        s.defaultWriteObject();
+
+        Object[] elements = toArray();
+        s.writeInt(elements.length);
+        for (Object element : elements)
+            s.writeObject(element);
+    }
+
+    /**
+     * Reconstitutes the set from a stream (that is, deserializes it).
+     *
+     * @param s the stream
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+
+        s.defaultReadObject();
+
+        // bind to new lock
+        resetLock();
+
+        int len = s.readInt();
+        Node r = EMPTY;
+        for (int i = 0; i < len; i++) {
+            Object e = s.readObject();
+            r = add(r, e, hash(e), 0);
+        }
+        setRoot(r);
+    }
+
+    // Support for resetting lock while deserializing
+    private void resetLock() {
+        UNSAFE.putObjectVolatile(this, lockOffset, new ReentrantLock());
+    }
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long lockOffset;
+    static {
+        try {
+            UNSAFE = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = CopyOnWriteTrieSet.class;
+            lockOffset = UNSAFE.objectFieldOffset
+                (k.getDeclaredField("lock"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
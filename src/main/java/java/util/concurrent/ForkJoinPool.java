@@ -265,12 +265,26 @@ public class ForkJoinPool extends AbstractExecutorService {
      * SHRINK_RATE nanosecs. This will slowly propagate, eventually
      * terminating all workers after long periods of non-use.
      *
-     * Submissions. External submissions are maintained in an
-     * array-based queue that is structured identically to
-     * ForkJoinWorkerThread queues except for the use of
-     * submissionLock in method addSubmission. Unlike the case for
-     * worker queues, multiple external threads can add new
-     * submissions, so adding requires a lock.
+     * Submissions. External submissions are maintained in a set of
+     * array-based SubmissionQueues that are structured identically
+     * to ForkJoinWorkerThread queues except for the use of a simple
+     * per-queue spinlock ("qlock") in method addSubmission. Unlike
+     * the case for worker queues, multiple external threads can add
+     * new submissions, so adding requires a lock. To avoid making
+     * that lock a bottleneck when many non-worker threads submit,
+     * the queues are striped: each submitting thread holds a
+     * ThreadLocal Submitter whose hash seed selects a slot in the
+     * submissionQueues array. Queues are created lazily on first use
+     * of a slot, published by CAS and always read back with
+     * volatile reads (submissionQueueAt), so that a queue is never
+     * seen before its array is. A submitter that fails to acquire the lock of its
+     * queue does not wait, but instead rehashes its seed and tries
+     * another slot, so that sustained contention spreads submitters
+     * across queues. Workers take submissions (after failing to
+     * steal from other workers) from any non-empty queue, starting
+     * at a random index, using the same CAS protocol as for steals.
+     * There is no FIFO guarantee across submitters, only within the
+     * queue used by a given submitter.
      *
      * Compensation. Beyond work-stealing support and lifecycle
      * control, the main responsibility of this framework is to take
@@ -456,18 +470,40 @@ public class ForkJoinPool extends AbstractExecutorService {
     private static final int MAXIMUM_QUEUE_CAPACITY = 1 << 24; // 16M
 
     /**
-     * Array serving as submission queue. Initialized upon construction.
+     * Number of submission queue slots per pool. Must be a power of
+     * two. Defaults to the smallest power of two covering twice the
+     * number of available processors, and may be overridden by
+     * defining the system property {@code
+     * java.util.concurrent.ForkJoinPool.submissionQueueStripes}. A
+     * value of {@code 1} gives the single shared submission queue.
      */
-    private ForkJoinTask<?>[] submissionQueue;
+    private static final int SUBMISSION_STRIPES;
 
     /**
-     * Lock protecting submissions array for addSubmission
+     * Upper bound for SUBMISSION_STRIPES.
      */
-    private final ReentrantLock submissionLock;
+    private static final int MAXIMUM_SUBMISSION_STRIPES = 1 << 10;
 
     /**
-     * Condition for awaitTermination, using submissionLock for
-     * convenience.
+     * Array of striped submission queues, of length
+     * SUBMISSION_STRIPES. Slots are lazily filled (via CAS) on first
+     * use by addSubmission and never cleared, and are read only via
+     * submissionQueueAt. Initialized upon construction.
+     */
+    private final SubmissionQueue[] submissionQueues;
+
+    /**
+     * Per-thread records used to select a submission queue.
+     */
+    static final ThreadLocal<Submitter> submitters;
+
+    /**
+     * Lock used only for awaitTermination and its signalling.
+     */
+    private final ReentrantLock terminationLock;
+
+    /**
+     * Condition for awaitTermination, using terminationLock.
      */
     private final Condition termination;
 
@@ -554,22 +590,6 @@ public class ForkJoinPool extends AbstractExecutorService {
      */
     final int parallelism;
 
-    /**
-     * Index (mod submission queue length) of next element to take
-     * from submission queue. Usage is identical to that for
-     * per-worker queues -- see ForkJoinWorkerThread internal
-     * documentation.
-     */
-    volatile int queueBase;
-
-    /**
-     * Index (mod submission queue length) of next element to add
-     * in submission queue. Usage is identical to that for
-     * per-worker queues -- see ForkJoinWorkerThread internal
-     * documentation.
-     */
-    int queueTop;
-
     /**
      * True when shutdown() has been called.
      */
@@ -773,17 +793,22 @@ public class ForkJoinPool extends AbstractExecutorService {
         if (scanGuard != g)                       // staleness check
             return false;
         else {                                    // try to take submission
-            ForkJoinTask<?> t; ForkJoinTask<?>[] q; int b, i;
-            if ((b = queueBase) != queueTop &&
-                (q = submissionQueue) != null &&
-                (i = (q.length - 1) & b) >= 0) {
-                long u = (i << ASHIFT) + ABASE;
-                if ((t = q[i]) != null && queueBase == b &&
-                    UNSAFE.compareAndSwapObject(q, u, t, null)) {
-                    queueBase = b + 1;
-                    w.execTask(t);
+            SubmissionQueue[] qs = submissionQueues;
+            int n = qs.length - 1, k = w.seed;
+            for (int j = n; j >= 0; --j, ++k) {
+                ForkJoinTask<?> t; ForkJoinTask<?>[] q; int b, i;
+                SubmissionQueue s = submissionQueueAt(qs, k & n);
+                if (s != null && (b = s.queueBase) != s.queueTop &&
+                    (q = s.queue) != null &&
+                    (i = (q.length - 1) & b) >= 0) {
+                    long u = (i << ASHIFT) + ABASE;
+                    if ((t = q[i]) != null && s.queueBase == b &&
+                        UNSAFE.compareAndSwapObject(q, u, t, null)) {
+                        s.queueBase = b + 1;
+                        w.execTask(t);
+                    }
+                    return false;
                 }
-                return false;
             }
             return true;                         // all queues empty
         }
@@ -848,7 +873,7 @@ public class ForkJoinPool extends AbstractExecutorService {
                     }
                 }
                 if (scanGuard != g ||              // stale
-                    (queueBase != queueTop && !tryReleaseWaiter()))
+                    (hasQueuedSubmissions() && !tryReleaseWaiter()))
                     rescanned = false;
                 if (!rescanned)
                     Thread.yield();                // reduce contention
@@ -911,57 +936,189 @@ public class ForkJoinPool extends AbstractExecutorService {
     // Submissions
 
     /**
-     * Enqueues the given task in the submissionQueue.  Same idea as
-     * ForkJoinWorkerThread.pushTask except for use of submissionLock.
-     *
-     * @param t the task
+     * Per-thread records for submitters to a pool. Holds the hash
+     * seed used to select a submission queue, rehashed (xorshift)
+     * upon contention. Shared across all pools; the seed is only a
+     * hint.
      */
-    private void addSubmission(ForkJoinTask<?> t) {
-        final ReentrantLock lock = this.submissionLock;
-        lock.lock();
-        try {
-            ForkJoinTask<?>[] q; int s, m;
-            if ((q = submissionQueue) != null) {    // ignore if queue removed
-                long u = (((s = queueTop) & (m = q.length-1)) << ASHIFT)+ABASE;
-                UNSAFE.putOrderedObject(q, u, t);
-                queueTop = s + 1;
-                if (s - queueBase == m)
-                    growSubmissionQueue();
+    static final class Submitter {
+        int seed;
+        Submitter(int s) { seed = s; }
+    }
+
+    /**
+     * ThreadLocal class for Submitters, seeding each from
+     * workerSeedGenerator.
+     */
+    static final class ThreadSubmitter extends ThreadLocal<Submitter> {
+        protected Submitter initialValue() {
+            int s = workerSeedGenerator.nextInt();
+            return new Submitter((s == 0) ? 1 : s); // ensure nonzero
+        }
+    }
+
+    /**
+     * A queue of external submissions. The array and index handling
+     * are basically identical to those of ForkJoinWorkerThread
+     * queues: tasks are pushed at queueTop by the (single) thread
+     * holding qlock, and taken at queueBase by any thread using a
+     * CAS of the array slot. The lock is a simple spinlock that is
+     * never waited for: addSubmission moves on to another queue
+     * rather than spinning when it is held.
+     */
+    static final class SubmissionQueue {
+        // Padding to reduce false sharing among queues allocated together
+        long p0, p1, p2, p3, p4, p5, p6;
+
+        /**
+         * Lock for pushes: 1 if locked, else 0. Accessed via CAS.
+         */
+        volatile int qlock;
+
+        /**
+         * Index (mod queue length) of next element to take. Usage is
+         * identical to that for per-worker queues.
+         */
+        volatile int queueBase;
+
+        /**
+         * Index (mod queue length) of next element to add. Written
+         * only while holding qlock.
+         */
+        int queueTop;
+
+        /**
+         * The task array, created upon construction and doubled as
+         * needed while holding qlock. Never null once the queue has
+         * been published.
+         */
+        ForkJoinTask<?>[] queue;
+
+        long q0, q1, q2, q3, q4, q5, q6;
+
+        SubmissionQueue() {
+            queue = new ForkJoinTask<?>[INITIAL_QUEUE_CAPACITY];
+        }
+
+        /**
+         * Tries once to acquire qlock.
+         */
+        final boolean tryLock() {
+            return qlock == 0 &&
+                UNSAFE.compareAndSwapInt(this, qlockOffset, 0, 1);
+        }
+
+        final void unlock() {
+            qlock = 0;
+        }
+
+        /**
+         * Pushes a task. Call only while holding qlock.
+         *
+         * @param t the task
+         */
+        final void push(ForkJoinTask<?> t) {
+            ForkJoinTask<?>[] q = queue; int s, m;
+            long u = (((s = queueTop) & (m = q.length-1)) << ASHIFT)+ABASE;
+            UNSAFE.putOrderedObject(q, u, t);
+            queueTop = s + 1;
+            if (s - queueBase == m)
+                growQueue();
+        }
+
+        /**
+         * Takes the next task, if one exists, in FIFO order.
+         *
+         * @return a task, or null if empty
+         */
+        final ForkJoinTask<?> poll() {
+            ForkJoinTask<?> t; ForkJoinTask<?>[] q; int b, i;
+            while ((b = queueBase) != queueTop &&
+                   (q = queue) != null &&
+                   (i = (q.length - 1) & b) >= 0) {
+                long u = (i << ASHIFT) + ABASE;
+                if ((t = q[i]) != null &&
+                    queueBase == b &&
+                    UNSAFE.compareAndSwapObject(q, u, t, null)) {
+                    queueBase = b + 1;
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Creates or doubles queue array. Call only while holding
+         * qlock. Basically identical to ForkJoinWorkerThread version.
+         */
+        private void growQueue() {
+            ForkJoinTask<?>[] oldQ = queue;
+            int size = oldQ != null ? oldQ.length << 1 : INITIAL_QUEUE_CAPACITY;
+            if (size > MAXIMUM_QUEUE_CAPACITY)
+                throw new RejectedExecutionException("Queue capacity exceeded");
+            if (size < INITIAL_QUEUE_CAPACITY)
+                size = INITIAL_QUEUE_CAPACITY;
+            ForkJoinTask<?>[] q = queue = new ForkJoinTask<?>[size];
+            int mask = size - 1;
+            int top = queueTop;
+            int oldMask;
+            if (oldQ != null && (oldMask = oldQ.length - 1) >= 0) {
+                for (int b = queueBase; b != top; ++b) {
+                    long u = ((b & oldMask) << ASHIFT) + ABASE;
+                    Object x = UNSAFE.getObjectVolatile(oldQ, u);
+                    if (x != null && UNSAFE.compareAndSwapObject(oldQ, u, x, null))
+                        UNSAFE.putObjectVolatile
+                            (q, ((b & mask) << ASHIFT) + ABASE, x);
+                }
             }
-        } finally {
-            lock.unlock();
         }
-        signalWork();
     }
 
-    //  (pollSubmission is defined below with exported methods)
+    /**
+     * Returns the submission queue in slot i, using a volatile read
+     * so that a queue created by another thread is seen fully
+     * constructed.
+     */
+    static SubmissionQueue submissionQueueAt(SubmissionQueue[] qs, int i) {
+        return (SubmissionQueue)
+            UNSAFE.getObjectVolatile(qs, ((long)i << QSHIFT) + QBASE);
+    }
 
     /**
-     * Creates or doubles submissionQueue array.
-     * Basically identical to ForkJoinWorkerThread version.
-     */
-    private void growSubmissionQueue() {
-        ForkJoinTask<?>[] oldQ = submissionQueue;
-        int size = oldQ != null ? oldQ.length << 1 : INITIAL_QUEUE_CAPACITY;
-        if (size > MAXIMUM_QUEUE_CAPACITY)
-            throw new RejectedExecutionException("Queue capacity exceeded");
-        if (size < INITIAL_QUEUE_CAPACITY)
-            size = INITIAL_QUEUE_CAPACITY;
-        ForkJoinTask<?>[] q = submissionQueue = new ForkJoinTask<?>[size];
-        int mask = size - 1;
-        int top = queueTop;
-        int oldMask;
-        if (oldQ != null && (oldMask = oldQ.length - 1) >= 0) {
-            for (int b = queueBase; b != top; ++b) {
-                long u = ((b & oldMask) << ASHIFT) + ABASE;
-                Object x = UNSAFE.getObjectVolatile(oldQ, u);
-                if (x != null && UNSAFE.compareAndSwapObject(oldQ, u, x, null))
-                    UNSAFE.putObjectVolatile
-                        (q, ((b & mask) << ASHIFT) + ABASE, x);
+     * Enqueues the given task in the submission queue selected by
+     * the caller's Submitter, creating the queue if absent. If the
+     * queue is locked by another submitter, rehashes and tries
+     * another one.
+     *
+     * @param t the task
+     */
+    private void addSubmission(ForkJoinTask<?> t) {
+        Submitter z = submitters.get();
+        SubmissionQueue[] qs = submissionQueues;
+        int m = qs.length - 1;
+        for (int r = z.seed;;) {
+            SubmissionQueue q; int i;
+            if ((q = submissionQueueAt(qs, i = r & m)) == null)
+                UNSAFE.compareAndSwapObject
+                    (qs, ((long)i << QSHIFT) + QBASE, null,
+                     new SubmissionQueue());
+            else if (q.tryLock()) {
+                try {
+                    q.push(t);
+                } finally {
+                    q.unlock();
+                }
+                break;
+            }
+            else {                                 // rehash on contention
+                r ^= r << 13; r ^= r >>> 17; z.seed = r ^= r << 5;
             }
         }
+        signalWork();
     }
 
+    //  (pollSubmission is defined below with exported methods)
+
     // Blocking support
 
     /**
@@ -1258,7 +1415,7 @@ public class ForkJoinPool extends AbstractExecutorService {
                 if ((int)(c >> AC_SHIFT) != -parallelism)
                     return false;
                 if (!shutdown || blockedCount != 0 || quiescerCount != 0 ||
-                    queueBase != queueTop) {
+                    hasQueuedSubmissions()) {
                     if (ctl == c) // staleness check
                         return false;
                     continue;
@@ -1268,7 +1425,7 @@ public class ForkJoinPool extends AbstractExecutorService {
                 startTerminating();
         }
         if ((short)(c >>> TC_SHIFT) == -parallelism) { // signal when 0 workers
-            final ReentrantLock lock = this.submissionLock;
+            final ReentrantLock lock = this.terminationLock;
             lock.lock();
             try {
                 termination.signalAll();
@@ -1315,7 +1472,7 @@ public class ForkJoinPool extends AbstractExecutorService {
      * Polls and cancels all submissions. Called only during termination.
      */
     private void cancelSubmissions() {
-        while (queueBase != queueTop) {
+        while (hasQueuedSubmissions()) {
             ForkJoinTask<?> task = pollSubmission();
             if (task != null) {
                 try {
@@ -1472,7 +1629,7 @@ public class ForkJoinPool extends AbstractExecutorService {
         this.locallyFifo = asyncMode;
         long np = (long)(-parallelism); // offset ctl counts
         this.ctl = ((np << AC_SHIFT) & AC_MASK) | ((np << TC_SHIFT) & TC_MASK);
-        this.submissionQueue = new ForkJoinTask<?>[INITIAL_QUEUE_CAPACITY];
+        this.submissionQueues = new SubmissionQueue[SUBMISSION_STRIPES];
         // initialize workers array with room for 2*parallelism if possible
         int n = parallelism << 1;
         if (n >= MAX_ID)
@@ -1481,8 +1638,8 @@ public class ForkJoinPool extends AbstractExecutorService {
             n |= n >>> 1; n |= n >>> 2; n |= n >>> 4; n |= n >>> 8;
         }
         workers = new ForkJoinWorkerThread[n + 1];
-        this.submissionLock = new ReentrantLock();
-        this.termination = submissionLock.newCondition();
+        this.terminationLock = new ReentrantLock();
+        this.termination = terminationLock.newCondition();
         StringBuilder sb = new StringBuilder("ForkJoinPool-");
         sb.append(poolNumberGenerator.incrementAndGet());
         sb.append("-worker-");
@@ -1790,7 +1947,12 @@ public class ForkJoinPool extends AbstractExecutorService {
      * @return the number of queued submissions
      */
     public int getQueuedSubmissionCount() {
-        return -queueBase + queueTop;
+        int count = 0;
+        SubmissionQueue[] qs = submissionQueues; SubmissionQueue q;
+        for (int i = 0; i < qs.length; ++i)
+            if ((q = submissionQueueAt(qs, i)) != null)
+                count -= q.queueBase - q.queueTop; // must read base first
+        return count;
     }
 
     /**
@@ -1800,7 +1962,12 @@ public class ForkJoinPool extends AbstractExecutorService {
      * @return {@code true} if there are any queued submissions
      */
     public boolean hasQueuedSubmissions() {
-        return queueBase != queueTop;
+        SubmissionQueue[] qs = submissionQueues; SubmissionQueue q;
+        for (int i = 0; i < qs.length; ++i)
+            if ((q = submissionQueueAt(qs, i)) != null &&
+                q.queueBase != q.queueTop)
+                return true;
+        return false;
     }
 
     /**
@@ -1811,18 +1978,12 @@ public class ForkJoinPool extends AbstractExecutorService {
      * @return the next submission, or {@code null} if none
      */
     protected ForkJoinTask<?> pollSubmission() {
-        ForkJoinTask<?> t; ForkJoinTask<?>[] q; int b, i;
-        while ((b = queueBase) != queueTop &&
-               (q = submissionQueue) != null &&
-               (i = (q.length - 1) & b) >= 0) {
-            long u = (i << ASHIFT) + ABASE;
-            if ((t = q[i]) != null &&
-                queueBase == b &&
-                UNSAFE.compareAndSwapObject(q, u, t, null)) {
-                queueBase = b + 1;
+        ForkJoinTask<?> t; SubmissionQueue q;
+        SubmissionQueue[] qs = submissionQueues;
+        for (int i = 0; i < qs.length; ++i)
+            if ((q = submissionQueueAt(qs, i)) != null &&
+                (t = q.poll()) != null)
                 return t;
-            }
-        }
         return null;
     }
 
@@ -1845,7 +2006,7 @@ public class ForkJoinPool extends AbstractExecutorService {
      */
     protected int drainTasksTo(Collection<? super ForkJoinTask<?>> c) {
         int count = 0;
-        while (queueBase != queueTop) {
+        while (hasQueuedSubmissions()) {
             ForkJoinTask<?> t = pollSubmission();
             if (t != null) {
                 c.add(t);
@@ -1998,7 +2159,7 @@ public class ForkJoinPool extends AbstractExecutorService {
     public boolean awaitTermination(long timeout, TimeUnit unit)
         throws InterruptedException {
         long nanos = unit.toNanos(timeout);
-        final ReentrantLock lock = this.submissionLock;
+        final ReentrantLock lock = this.terminationLock;
         lock.lock();
         try {
             for (;;) {
@@ -2138,8 +2299,11 @@ public class ForkJoinPool extends AbstractExecutorService {
     private static final long quiescerCountOffset;
     private static final long scanGuardOffset;
     private static final long nextWorkerNumberOffset;
+    private static final long qlockOffset;
     private static final long ABASE;
     private static final int ASHIFT;
+    private static final long QBASE;
+    private static final int QSHIFT;
 
     static {
         poolNumberGenerator = new AtomicInteger();
@@ -2147,7 +2311,23 @@ public class ForkJoinPool extends AbstractExecutorService {
         modifyThreadPermission = new RuntimePermission("modifyThread");
         defaultForkJoinWorkerThreadFactory =
             new DefaultForkJoinWorkerThreadFactory();
-        int s;
+        submitters = new ThreadSubmitter();
+        int stripes = Runtime.getRuntime().availableProcessors() << 1;
+        try {
+            String ps = System.getProperty
+                ("java.util.concurrent.ForkJoinPool.submissionQueueStripes");
+            if (ps != null)
+                stripes = Integer.parseInt(ps);
+        } catch (Exception ignore) {
+        }
+        if (stripes <= 1)
+            stripes = 1;
+        else if (stripes >= MAXIMUM_SUBMISSION_STRIPES)
+            stripes = MAXIMUM_SUBMISSION_STRIPES;
+        else // round up to a power of two
+            stripes = Integer.highestOneBit(stripes - 1) << 1;
+        SUBMISSION_STRIPES = stripes;
+        int s, qs;
         try {
             UNSAFE = sun.misc.Unsafe.getUnsafe();
             Class k = ForkJoinPool.class;
@@ -2163,15 +2343,21 @@ public class ForkJoinPool extends AbstractExecutorService {
                 (k.getDeclaredField("scanGuard"));
             nextWorkerNumberOffset = UNSAFE.objectFieldOffset
                 (k.getDeclaredField("nextWorkerNumber"));
+            qlockOffset = UNSAFE.objectFieldOffset
+                (SubmissionQueue.class.getDeclaredField("qlock"));
             Class a = ForkJoinTask[].class;
             ABASE = UNSAFE.arrayBaseOffset(a);
             s = UNSAFE.arrayIndexScale(a);
+            Class sa = SubmissionQueue[].class;
+            QBASE = UNSAFE.arrayBaseOffset(sa);
+            qs = UNSAFE.arrayIndexScale(sa);
         } catch (Exception e) {
             throw new Error(e);
         }
-        if ((s & (s-1)) != 0)
+        if ((s & (s-1)) != 0 || (qs & (qs-1)) != 0)
             throw new Error("data type scale not a power of two");
         ASHIFT = 31 - Integer.numberOfLeadingZeros(s);
+        QSHIFT = 31 - Integer.numberOfLeadingZeros(qs);
     }
 
 }
@@ -199,6 +199,44 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         last = last.next = node;
     }
 
+    /**
+     * Links n new nodes holding the elements of a, starting at index
+     * i, at end of queue, and publishes them with a single update of
+     * count.  Call only when holding putLock, with n no greater than
+     * the remaining capacity.
+     *
+     * @return the count before the nodes were added
+     */
+    private int enqueueAll(Object[] a, int i, int n) {
+        // assert putLock.isHeldByCurrentThread();
+        Node<E> l = last;
+        for (int end = i + n; i < end; i++) {
+            @SuppressWarnings("unchecked") E x = (E) a[i];
+            l = l.next = new Node<E>(x);
+        }
+        last = l;
+        int c = count.getAndAdd(n);
+        if (c + n < capacity)
+            notFull.signal();
+        return c;
+    }
+
+    /**
+     * Returns the elements of c as an array, checking them for null
+     * before any is inserted.
+     */
+    private Object[] elementsOf(Collection<? extends E> c) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object e : a)
+            if (e == null)
+                throw new NullPointerException();
+        return a;
+    }
+
     /**
      * Removes a node from head of queue.
      *
@@ -430,6 +468,88 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         return c >= 0;
     }
 
+    /**
+     * Inserts as many of the elements of the specified collection as
+     * fit at the tail of this queue, in traversal order of the
+     * collection's iterator, without waiting.  The put lock is
+     * acquired once, and consumers are signalled at most once, for
+     * the whole collection, whose inserted elements therefore appear
+     * contiguously in this queue.
+     *
+     * @param c the elements to insert
+     * @return the number of elements inserted, which is less than the
+     *         size of the collection if this queue became full
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null, in which case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.7
+     */
+    public int offerAll(Collection<? extends E> c) {
+        Object[] a = elementsOf(c);
+        final AtomicInteger count = this.count;
+        if (a.length == 0 || count.get() == capacity)
+            return 0;
+        int n = 0;
+        int k = -1;
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock();
+        try {
+            n = Math.min(a.length, capacity - count.get());
+            if (n > 0)
+                k = enqueueAll(a, 0, n);
+        } finally {
+            putLock.unlock();
+        }
+        if (k == 0)
+            signalNotEmpty();
+        return n;
+    }
+
+    /**
+     * Inserts all of the elements of the specified collection at the
+     * tail of this queue, in traversal order of the collection's
+     * iterator, waiting for space to become available as necessary.
+     * The put lock is acquired once for as many of the elements as
+     * fit, and again only after waiting for space, so the elements
+     * of a collection larger than the remaining capacity may be
+     * interleaved with those of other producers.
+     *
+     * <p>If interrupted while waiting, the elements inserted up to
+     * that point remain in this queue.
+     *
+     * @param c the elements to insert
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null, in which case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.7
+     */
+    public void putAll(Collection<? extends E> c) throws InterruptedException {
+        Object[] a = elementsOf(c);
+        final ReentrantLock putLock = this.putLock;
+        final AtomicInteger count = this.count;
+        int i = 0;
+        while (i < a.length) {
+            int k = -1;
+            putLock.lockInterruptibly();
+            try {
+                while (count.get() == capacity) {
+                    notFull.await();
+                }
+                int n = Math.min(a.length - i, capacity - count.get());
+                k = enqueueAll(a, i, n);
+                i += n;
+            } finally {
+                putLock.unlock();
+            }
+            if (k == 0)
+                signalNotEmpty();
+        }
+    }
 
     public E take() throws InterruptedException {
         E x;
@@ -761,6 +881,87 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * Removes at most the given number of available elements from
+     * this queue and adds them to the given collection, waiting if
+     * necessary up to the specified wait time for an element to
+     * become available.  Once there is an element, the elements then
+     * present, up to {@code maxElements} of them, are unlinked under
+     * the same acquisition of the take lock, and count is updated
+     * once for all of them.
+     *
+     * @param c the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @param timeout how long to wait before giving up, in units of
+     *        {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return the number of elements transferred, or zero if the
+     *         specified waiting time elapses before an element is
+     *         available
+     * @throws InterruptedException if interrupted while waiting
+     * @throws UnsupportedOperationException if addition of elements
+     *         is not supported by the specified collection
+     * @throws ClassCastException if the class of an element of this queue
+     *         prevents it from being added to the specified collection
+     * @throws NullPointerException if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is this
+     *         queue, or some property of an element of this queue prevents
+     *         it from being added to the specified collection
+     * @since 1.7
+     */
+    public int drainTo(Collection<? super E> c, int maxElements,
+                       long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        long nanos = unit.toNanos(timeout);
+        boolean signalNotFull = false;
+        final AtomicInteger count = this.count;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                if (nanos <= 0)
+                    return 0;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            int n = Math.min(maxElements, count.get());
+            // count.get provides visibility to first n Nodes
+            Node<E> h = head;
+            int i = 0;
+            try {
+                while (i < n) {
+                    Node<E> p = h.next;
+                    c.add(p.item);
+                    p.item = null;
+                    h.next = h;
+                    h = p;
+                    ++i;
+                }
+                return n;
+            } finally {
+                // Restore invariants even if c.add() threw
+                if (i > 0) {
+                    // assert h.item == null;
+                    head = h;
+                    int k = count.getAndAdd(-i);
+                    signalNotFull = (k == capacity);
+                    if (k > i)
+                        notEmpty.signal();
+                }
+            }
+        } finally {
+            takeLock.unlock();
+            if (signalNotFull)
+                signalNotFull();
+        }
+    }
+
     /**
      * Returns an iterator over the elements in this queue in proper sequence.
      * The elements will be returned in order from first (head) to last (tail).
@@ -405,6 +405,17 @@ public class LinkedTransferQueue<E> extends AbstractQueue<E>
      * sweeps. However, the associated garbage chains terminate when
      * some successor ultimately falls off the head of the list and is
      * self-linked.
+     *
+     * *** Batch operations ***
+     *
+     * Methods offerAll and putAll link a whole chain of data nodes,
+     * built before it can be seen, with a single CAS of the last
+     * node's next field (see tryAppendAll), except that while
+     * consumers are waiting, elements are handed to them one at a
+     * time via xfer.  The drainTo methods match data nodes from the
+     * head one at a time (each item must still be claimed by its own
+     * CAS), but advance head only once, past all of them, rather than
+     * after every match as successive polls would (see drainData).
      */
 
     /** True if on multiprocessor */
@@ -470,6 +481,15 @@ public class LinkedTransferQueue<E> extends AbstractQueue<E>
             this.isData = isData;
         }
 
+        /**
+         * Links node to its successor in a chain of new nodes.  Uses
+         * relaxed write because the chain can only be seen after
+         * publication of its first node via casNext.
+         */
+        final void setNext(Node val) {
+            UNSAFE.putObject(this, nextOffset, val);
+        }
+
         /**
          * Links node to itself to avoid garbage retention.  Called
          * only after CASing head field, so uses relaxed write.
@@ -682,6 +702,105 @@ public class LinkedTransferQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * Tries to append the chain of data nodes from s to last as tail.
+     *
+     * @param s the first node of the chain
+     * @param last the last node of the chain
+     * @return false on failure due to a waiting consumer, else true
+     */
+    private boolean tryAppendAll(Node s, Node last) {
+        for (Node t = tail, p = t;;) {        // move p to last node and append
+            Node n, u;                        // temps for reads of next & tail
+            if (p == null && (p = head) == null) {
+                if (casHead(null, s)) {
+                    casTail(null, last);
+                    return true;              // initialize
+                }
+            }
+            else if (p.cannotPrecede(true))
+                return false;                 // lost race vs opposite mode
+            else if ((n = p.next) != null)    // not last; keep traversing
+                p = p != t && t != (u = tail) ? (t = u) : // stale tail
+                    (p != n) ? n : null;      // restart if off list
+            else if (!p.casNext(null, s))
+                p = p.next;                   // re-read on CAS failure
+            else {
+                if ((p != t || s != last) && tail == t)
+                    casTail(t, last);         // update if slack now >= 2
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Appends all the elements of a, in order, as data nodes.
+     */
+    private void appendAll(Object[] a) {
+        if (a.length == 0)
+            return;
+        Node s = null, last = null;
+        for (Object x : a) {
+            Node n = new Node(x, true);
+            if (last == null)
+                s = n;
+            else
+                last.setNext(n);
+            last = n;
+        }
+        for (;;) {
+            if (firstOfMode(false) == null) {
+                if (tryAppendAll(s, last))
+                    return;
+            }
+            else if (xfer(this.<E>cast(s.item), true, NOW, 0) == null) {
+                if ((s = s.next) == null) // handed to a waiting consumer
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Matches up to max data nodes from the head, adding their items
+     * to c, and then advances head once past all of them.
+     *
+     * @return the number of items transferred
+     */
+    private int drainData(Collection<? super E> c, int max) {
+        int n = 0;
+        Node h = head, q = null;              // q is last node matched
+        try {
+            for (Node p = h; p != null && n < max;) {
+                boolean isData = p.isData;
+                Object item = p.item;
+                if (item != p && (item != null) == isData) { // unmatched
+                    if (!isData)              // no data
+                        break;
+                    if (!p.casItem(item, null))
+                        continue;             // re-read on CAS failure
+                    q = p;
+                    ++n;
+                    LockSupport.unpark(p.waiter);
+                    c.add(this.<E>cast(item));
+                }
+                Node next = p.next;
+                if (p != next)
+                    p = next;
+                else {                        // restart from head if off list
+                    p = h = head;
+                    q = null;
+                }
+            }
+        } finally {
+            if (q != null && q != h && head == h) {
+                Node next = q.next;           // all of h..q are matched
+                if (casHead(h, next == null ? q : next))
+                    h.forgetNext();
+            }
+        }
+        return n;
+    }
+
     /**
      * Spins/yields/blocks until node s is matched or caller gives up.
      *
@@ -1078,6 +1197,64 @@ public class LinkedTransferQueue<E> extends AbstractQueue<E>
         return true;
     }
 
+    /**
+     * Inserts all of the elements of the specified collection at the
+     * tail of this queue, in traversal order of the collection's
+     * iterator, handing them to waiting consumers first if there are
+     * any.  Unless consumers are waiting, the elements are linked
+     * into this queue at once, with a single atomic update, and so
+     * appear contiguously in it.
+     * As the queue is unbounded, this method will never return
+     * less than the size of the collection.
+     *
+     * @param c the elements to insert
+     * @return the number of elements inserted
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null, in which case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.7
+     */
+    public int offerAll(Collection<? extends E> c) {
+        Object[] a = elementsOf(c);
+        appendAll(a);
+        return a.length;
+    }
+
+    /**
+     * Inserts all of the elements of the specified collection at the
+     * tail of this queue, as by {@link #offerAll}.
+     * As the queue is unbounded, this method will never block.
+     *
+     * @param c the elements to insert
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null, in which case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.7
+     */
+    public void putAll(Collection<? extends E> c) {
+        appendAll(elementsOf(c));
+    }
+
+    /**
+     * Returns the elements of c as an array, checking them for null
+     * before any is inserted.
+     */
+    private Object[] elementsOf(Collection<? extends E> c) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object e : a)
+            if (e == null)
+                throw new NullPointerException();
+        return a;
+    }
+
     /**
      * Transfers the element to a waiting consumer immediately, if possible.
      *
@@ -1161,13 +1338,7 @@ public class LinkedTransferQueue<E> extends AbstractQueue<E>
             throw new NullPointerException();
         if (c == this)
             throw new IllegalArgumentException();
-        int n = 0;
-        E e;
-        while ( (e = poll()) != null) {
-            c.add(e);
-            ++n;
-        }
-        return n;
+        return drainData(c, Integer.MAX_VALUE);
     }
 
     /**
@@ -1179,13 +1350,50 @@ public class LinkedTransferQueue<E> extends AbstractQueue<E>
             throw new NullPointerException();
         if (c == this)
             throw new IllegalArgumentException();
-        int n = 0;
-        E e;
-        while (n < maxElements && (e = poll()) != null) {
-            c.add(e);
-            ++n;
-        }
-        return n;
+        return drainData(c, maxElements);
+    }
+
+    /**
+     * Removes at most the given number of available elements from
+     * this queue and adds them to the given collection, waiting if
+     * necessary up to the specified wait time for an element to
+     * become available.  Once there is an element, the elements then
+     * present, up to {@code maxElements} of them, are removed without
+     * waiting further, and the head of the queue is advanced once
+     * for all of them.
+     *
+     * @param c the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @param timeout how long to wait before giving up, in units of
+     *        {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return the number of elements transferred, or zero if the
+     *         specified waiting time elapses before an element is
+     *         available
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.7
+     */
+    public int drainTo(Collection<? super E> c, int maxElements,
+                       long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        int n = drainData(c, maxElements);
+        if (n > 0)
+            return n;
+        E e = poll(timeout, unit);
+        if (e == null)
+            return 0;
+        c.add(e);
+        return 1 + drainData(c, maxElements - 1);
     }
 
     /**
@@ -61,6 +61,20 @@ import java.util.*;
  * causes tasks to be immediately removed from the work queue at
  * time of cancellation.
  *
+ * <p>By default, delayed tasks are held in a binary heap, so that
+ * scheduling and cancelling a task take time logarithmic in the
+ * number of queued tasks.  Applications that schedule and cancel
+ * very large numbers of timeouts may instead construct a pool using
+ * a <em>timing wheel</em> with a given tick duration (see {@link
+ * #ScheduledThreadPoolExecutor(int, ThreadFactory,
+ * RejectedExecutionHandler, long, TimeUnit)}), which schedules and
+ * cancels tasks in constant time.  Such a pool enables each task at
+ * the first tick boundary at or after its delay elapses, so tasks
+ * may run up to one tick late, and tasks enabled at the same tick
+ * are not guaranteed to run in FIFO order.  Cancelled tasks are
+ * always removed from a timing wheel at time of cancellation,
+ * regardless of {@link #setRemoveOnCancelPolicy}.
+ *
  * <p>Successive executions of a task scheduled via
  * {@code scheduleAtFixedRate} or
  * {@code scheduleWithFixedDelay} do not overlap. While different
@@ -130,7 +144,10 @@ public class ScheduledThreadPoolExecutor
      *    delayed tasks with a delay of zero.
      *
      * 2. Using a custom queue (DelayedWorkQueue), a variant of
-     *    unbounded DelayQueue. The lack of capacity constraint and
+     *    unbounded DelayQueue, or optionally a hashed hierarchical
+     *    timing wheel (TimingWheelQueue) trading timing precision
+     *    for constant-time insertion and removal. The lack of
+     *    capacity constraint and
      *    the fact that corePoolSize and maximumPoolSize are
      *    effectively identical simplifies some execution mechanics
      *    (see delayedExecute) compared to ThreadPoolExecutor.
@@ -200,6 +217,13 @@ public class ScheduledThreadPoolExecutor
          */
         int heapIndex;
 
+        /**
+         * Node holding this task in a TimingWheelQueue, or null if not
+         * queued in one.  Accessed under the queue's lock, except for
+         * the check in cancel.
+         */
+        TimingWheelQueue.Node wheelNode;
+
         /**
          * Creates a one-shot action with given nanoTime-based trigger time.
          */
@@ -276,7 +300,8 @@ public class ScheduledThreadPoolExecutor
 
         public boolean cancel(boolean mayInterruptIfRunning) {
             boolean cancelled = super.cancel(mayInterruptIfRunning);
-            if (cancelled && removeOnCancel && heapIndex >= 0)
+            if (cancelled && (removeOnCancel || wheelNode != null) &&
+                heapIndex >= 0)
                 remove(this);
             return cancelled;
         }
@@ -483,6 +508,70 @@ public class ScheduledThreadPoolExecutor
               new DelayedWorkQueue(), threadFactory, handler);
     }
 
+    /**
+     * Creates a new {@code ScheduledThreadPoolExecutor} with the
+     * given core pool size that holds delayed tasks in a timing
+     * wheel with the given tick duration.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param tickDuration the resolution with which delays are
+     *        measured; tasks may run up to this long after their
+     *        delays elapse
+     * @param tickUnit the time unit of the {@code tickDuration} argument
+     * @throws IllegalArgumentException if {@code corePoolSize < 0} or
+     *         {@code tickDuration} is not positive
+     * @throws NullPointerException if {@code tickUnit} is null
+     * @since 1.7
+     */
+    public ScheduledThreadPoolExecutor(int corePoolSize,
+                                       long tickDuration,
+                                       TimeUnit tickUnit) {
+        super(corePoolSize, Integer.MAX_VALUE, 0, TimeUnit.NANOSECONDS,
+              new TimingWheelQueue(tickNanos(tickDuration, tickUnit)));
+    }
+
+    /**
+     * Creates a new {@code ScheduledThreadPoolExecutor} with the
+     * given initial parameters that holds delayed tasks in a timing
+     * wheel with the given tick duration.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param threadFactory the factory to use when the executor
+     *        creates a new thread
+     * @param handler the handler to use when execution is blocked
+     *        because the thread bounds and queue capacities are reached
+     * @param tickDuration the resolution with which delays are
+     *        measured; tasks may run up to this long after their
+     *        delays elapse
+     * @param tickUnit the time unit of the {@code tickDuration} argument
+     * @throws IllegalArgumentException if {@code corePoolSize < 0} or
+     *         {@code tickDuration} is not positive
+     * @throws NullPointerException if {@code threadFactory},
+     *         {@code handler} or {@code tickUnit} is null
+     * @since 1.7
+     */
+    public ScheduledThreadPoolExecutor(int corePoolSize,
+                                       ThreadFactory threadFactory,
+                                       RejectedExecutionHandler handler,
+                                       long tickDuration,
+                                       TimeUnit tickUnit) {
+        super(corePoolSize, Integer.MAX_VALUE, 0, TimeUnit.NANOSECONDS,
+              new TimingWheelQueue(tickNanos(tickDuration, tickUnit)),
+              threadFactory, handler);
+    }
+
+    /**
+     * Validates and converts a timing wheel tick duration.
+     */
+    private static long tickNanos(long tickDuration, TimeUnit tickUnit) {
+        long nanos = tickUnit.toNanos(tickDuration);
+        if (nanos <= 0)
+            throw new IllegalArgumentException();
+        return nanos;
+    }
+
     /**
      * Returns the trigger time of a delayed action.
      */
@@ -713,7 +802,8 @@ public class ScheduledThreadPoolExecutor
     /**
      * Sets the policy on whether cancelled tasks should be immediately
      * removed from the work queue at time of cancellation.  This value is
-     * by default {@code false}.
+     * by default {@code false}.  Pools using a timing wheel always
+     * remove cancelled tasks.
      *
      * @param value if {@code true}, remove on cancellation, else don't
      * @see #getRemoveOnCancelPolicy
@@ -1274,4 +1364,692 @@ public class ScheduledThreadPoolExecutor
             }
         }
     }
+
+    /**
+     * Hashed hierarchical timing wheel, an alternative to
+     * DelayedWorkQueue with constant-time insertion and removal. Like
+     * DelayedWorkQueue, this class must be declared as a
+     * BlockingQueue<Runnable> even though it can only hold
+     * RunnableScheduledFutures.
+     */
+    static class TimingWheelQueue extends AbstractQueue<Runnable>
+        implements BlockingQueue<Runnable> {
+
+        /*
+         * Time is measured in ticks of tickNanos since the queue was
+         * created, and each task is assigned the first tick at or
+         * after its trigger time, so never runs early.  The wheel has
+         * LEVELS levels of WHEEL_SIZE slots, level L holding tasks
+         * whose expiration tick was between 2^(8L) and 2^(8(L+1))
+         * ticks ahead when inserted, in the slot given by bits
+         * 8L..8L+7 of the expiration tick.  Since LEVELS * WHEEL_BITS
+         * is 64, every representable delay has a level.  This is the
+         * classic cascading design: whenever currentTick reaches a
+         * multiple of 2^(8L), the slot of level L for that period is
+         * emptied and its tasks are reinserted, which moves them to
+         * lower levels, and the tasks in the level 0 slot of each
+         * tick are moved to the ready list, from which poll and take
+         * return tasks in FIFO order.  Tasks whose delay has already
+         * elapsed when inserted (including all those submitted via
+         * execute) go directly to the ready list.
+         *
+         * Each slot and the ready list are doubly linked lists of
+         * Nodes, so insertion, removal and expiration are O(1) per
+         * task, and cascading touches each task at most LEVELS
+         * times.  Each ScheduledFutureTask records its Node, so
+         * cancellation need not search for it; as in
+         * DelayedWorkQueue, other RunnableScheduledFutures are found
+         * by linear search.
+         *
+         * Ticks are processed lazily, by advance(), whenever the queue
+         * is accessed.  When the lowest L levels are empty, nothing
+         * can happen before the next multiple of 2^(8L) ticks, so
+         * advance skips directly to it, and waiting threads use the
+         * same reasoning (nextEventTick) to compute how long to
+         * sleep.  Waiting follows the same leader-follower protocol
+         * as DelayedWorkQueue, except that the leader's wakeup tick
+         * is recorded so that insertions signal only if they need an
+         * earlier wakeup.
+         */
+
+        private static final int WHEEL_BITS = 8;
+        private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+        private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+        private static final int LEVELS = 8;
+
+        /** Node.bucket value for nodes in the ready list */
+        private static final int READY = -1;
+        /** Node.bucket value for nodes no longer queued */
+        private static final int UNLINKED = -2;
+
+        /**
+         * Holder for a queued task.
+         */
+        static final class Node {
+            final TimingWheelQueue queue;
+            final RunnableScheduledFuture task;
+            /** Trigger time, in nanoseconds since queue origin */
+            final long time;
+            /** Expiration tick */
+            final long tick;
+            /** Index into buckets, or READY or UNLINKED */
+            int bucket = UNLINKED;
+            Node prev, next;
+
+            Node(TimingWheelQueue queue, RunnableScheduledFuture task,
+                 long time, long tick) {
+                this.queue = queue;
+                this.task = task;
+                this.time = time;
+                this.tick = tick;
+            }
+        }
+
+        private final long tickNanos;
+        private final long origin = System.nanoTime();
+        private final Node[] heads = new Node[LEVELS << WHEEL_BITS];
+        private final Node[] tails = new Node[LEVELS << WHEEL_BITS];
+        private final int[] levelCounts = new int[LEVELS];
+        private Node readyHead, readyTail;
+        /** The last tick processed */
+        private long currentTick;
+        private int size;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Thread designated to wait for the next tick at which a task
+         * may expire; see DelayedWorkQueue.leader.
+         */
+        private Thread leader = null;
+
+        /**
+         * Tick at which the leader will wake up, or Long.MAX_VALUE if
+         * there is no leader.
+         */
+        private long leaderTick = Long.MAX_VALUE;
+
+        /**
+         * Condition signalled when a task becomes ready or may expire
+         * sooner than the leader expects, or a new thread may need to
+         * become leader.
+         */
+        private final Condition available = lock.newCondition();
+
+        TimingWheelQueue(long tickNanos) {
+            this.tickNanos = tickNanos;
+        }
+
+        /**
+         * Set f's wheelNode if it is a ScheduledFutureTask.
+         */
+        private void setNode(RunnableScheduledFuture f, Node p) {
+            if (f instanceof ScheduledFutureTask)
+                ((ScheduledFutureTask)f).wheelNode = p;
+        }
+
+        /**
+         * Appends p to the given bucket, or to the ready list if
+         * bucket is READY.  Call only when holding lock.
+         */
+        private void link(Node p, int bucket) {
+            Node t;
+            p.bucket = bucket;
+            p.next = null;
+            if (bucket == READY) {
+                p.prev = t = readyTail;
+                if (t == null)
+                    readyHead = p;
+                else
+                    t.next = p;
+                readyTail = p;
+            } else {
+                p.prev = t = tails[bucket];
+                if (t == null)
+                    heads[bucket] = p;
+                else
+                    t.next = p;
+                tails[bucket] = p;
+                ++levelCounts[bucket >>> WHEEL_BITS];
+            }
+        }
+
+        /**
+         * Removes p from its bucket or the ready list.  Call only
+         * when holding lock.
+         */
+        private void unlink(Node p) {
+            int bucket = p.bucket;
+            Node prev = p.prev, next = p.next;
+            if (bucket == READY) {
+                if (prev == null)
+                    readyHead = next;
+                else
+                    prev.next = next;
+                if (next == null)
+                    readyTail = prev;
+                else
+                    next.prev = prev;
+            } else {
+                if (prev == null)
+                    heads[bucket] = next;
+                else
+                    prev.next = next;
+                if (next == null)
+                    tails[bucket] = prev;
+                else
+                    next.prev = prev;
+                --levelCounts[bucket >>> WHEEL_BITS];
+            }
+            p.prev = p.next = null;
+            p.bucket = UNLINKED;
+        }
+
+        /**
+         * Places p according to its expiration tick relative to
+         * currentTick.  Call only when holding lock.
+         */
+        private void schedule(Node p) {
+            long tick = p.tick;
+            long diff = tick - currentTick;
+            if (diff <= 0)
+                link(p, READY);
+            else {
+                int level =
+                    (63 - Long.numberOfLeadingZeros(diff)) / WHEEL_BITS;
+                int slot = (int)(tick >>> (level * WHEEL_BITS)) & WHEEL_MASK;
+                link(p, (level << WHEEL_BITS) | slot);
+            }
+        }
+
+        /**
+         * Returns the tick at which p will next be moved, either to a
+         * lower level or to the ready list.
+         */
+        private long eventTick(Node p) {
+            int bucket = p.bucket;
+            if (bucket == READY)
+                return currentTick;
+            int shift = (bucket >>> WHEEL_BITS) * WHEEL_BITS;
+            return (p.tick >>> shift) << shift;
+        }
+
+        /**
+         * Returns the current tick.
+         */
+        private long nowTick() {
+            return (System.nanoTime() - origin) / tickNanos;
+        }
+
+        /**
+         * Processes all ticks up to the current time, cascading
+         * higher levels and moving expired tasks to the ready list.
+         * Call only when holding lock.
+         */
+        private void advance() {
+            long now = nowTick();
+            while (currentTick < now) {
+                int k = 0;
+                while (k < LEVELS && levelCounts[k] == 0)
+                    ++k;
+                if (k == LEVELS) {
+                    currentTick = now;
+                    break;
+                }
+                long t = currentTick + 1;
+                if (k > 0) { // skip to next period of lowest nonempty level
+                    int shift = k * WHEEL_BITS;
+                    t = ((currentTick >>> shift) + 1) << shift;
+                    if (t > now) {
+                        currentTick = now;
+                        break;
+                    }
+                }
+                currentTick = t;
+                for (int level = 1; level < LEVELS; ++level) {
+                    int shift = level * WHEEL_BITS;
+                    if ((t & ((1L << shift) - 1)) != 0)
+                        break;
+                    int bucket = (level << WHEEL_BITS) |
+                        ((int)(t >>> shift) & WHEEL_MASK);
+                    Node p = heads[bucket];
+                    while (p != null) {
+                        Node next = p.next;
+                        unlink(p);
+                        schedule(p);
+                        p = next;
+                    }
+                }
+                int bucket = (int)t & WHEEL_MASK;
+                Node p = heads[bucket];
+                while (p != null) {
+                    Node next = p.next;
+                    unlink(p);
+                    link(p, READY);
+                    p = next;
+                }
+            }
+        }
+
+        /**
+         * Returns the earliest tick after currentTick at which advance
+         * will find work, or Long.MAX_VALUE if the wheel is empty.
+         * Call only when holding lock.
+         */
+        private long nextEventTick() {
+            long best = Long.MAX_VALUE;
+            for (int level = 0; level < LEVELS; ++level) {
+                int shift = level * WHEEL_BITS;
+                long period = currentTick >>> shift;
+                if (((period + 1) << shift) >= best)
+                    break; // later levels cannot do better
+                if (levelCounts[level] == 0)
+                    continue;
+                int base = level << WHEEL_BITS;
+                for (int j = 1; j <= WHEEL_SIZE; ++j) {
+                    if (heads[base | ((int)(period + j) & WHEEL_MASK)] != null) {
+                        best = (period + j) << shift;
+                        break;
+                    }
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Returns nanoseconds until the given tick.
+         */
+        private long nanosUntil(long tick) {
+            if (tick >= Long.MAX_VALUE / tickNanos)
+                return Long.MAX_VALUE;
+            return tick * tickNanos - (System.nanoTime() - origin);
+        }
+
+        /**
+         * Returns node holding x, or null if absent.  Call only when
+         * holding lock.
+         */
+        private Node nodeOf(Object x) {
+            if (x != null) {
+                if (x instanceof ScheduledFutureTask) {
+                    Node p = ((ScheduledFutureTask) x).wheelNode;
+                    // Sanity check; x could conceivably be a
+                    // ScheduledFutureTask from some other pool.
+                    if (p != null && p.queue == this && p.bucket != UNLINKED)
+                        return p;
+                } else {
+                    for (Node p = readyHead; p != null; p = p.next)
+                        if (x.equals(p.task))
+                            return p;
+                    for (int b = 0; b < heads.length; ++b)
+                        for (Node p = heads[b]; p != null; p = p.next)
+                            if (x.equals(p.task))
+                                return p;
+                }
+            }
+            return null;
+        }
+
+        public boolean contains(Object x) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                return nodeOf(x) != null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean remove(Object x) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                Node p = nodeOf(x);
+                if (p == null)
+                    return false;
+                unlink(p);
+                setNode(p.task, null);
+                --size;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int size() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        public int remainingCapacity() {
+            return Integer.MAX_VALUE;
+        }
+
+        /**
+         * Returns the task that will be enabled first, or null if
+         * empty.  Among tasks expiring at the same tick, returns the
+         * one with the earliest trigger time.
+         */
+        public RunnableScheduledFuture peek() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                advance();
+                if (readyHead != null)
+                    return readyHead.task;
+                // Within a level, slots expire in circular order from
+                // the current period, so only the first nonempty slot
+                // of each level can hold the earliest task.
+                Node first = null;
+                for (int level = 0; level < LEVELS; ++level) {
+                    if (levelCounts[level] == 0)
+                        continue;
+                    int shift = level * WHEEL_BITS;
+                    long period = currentTick >>> shift;
+                    int base = level << WHEEL_BITS;
+                    for (int j = 1; j <= WHEEL_SIZE; ++j) {
+                        Node p = heads[base | ((int)(period + j) & WHEEL_MASK)];
+                        if (p != null) {
+                            for (; p != null; p = p.next)
+                                if (first == null || p.time < first.time)
+                                    first = p;
+                            break;
+                        }
+                    }
+                }
+                return (first == null) ? null : first.task;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean offer(Runnable x) {
+            if (x == null)
+                throw new NullPointerException();
+            RunnableScheduledFuture e = (RunnableScheduledFuture)x;
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                // Compute trigger time relative to currentTick, reading
+                // the delay first so as never to underestimate it.
+                // currentTick need not be advanced first: a task whose
+                // tick has passed but is later than currentTick
+                // expires on the next advance.
+                long delay = e.getDelay(TimeUnit.NANOSECONDS);
+                long base = currentTick * tickNanos;
+                long elapsed = System.nanoTime() - origin - base;
+                long d = (delay > Long.MAX_VALUE - elapsed) ?
+                    Long.MAX_VALUE : elapsed + delay;
+                long time, tick;
+                if (d <= 0) {
+                    time = base + d;
+                    tick = currentTick;
+                } else {
+                    time = (d > Long.MAX_VALUE - base) ?
+                        Long.MAX_VALUE : base + d;
+                    long ticks = d / tickNanos;
+                    if (ticks * tickNanos != d)
+                        ++ticks;
+                    tick = (ticks > Long.MAX_VALUE - currentTick) ?
+                        Long.MAX_VALUE : currentTick + ticks;
+                }
+                Node p = new Node(this, e, time, tick);
+                schedule(p);
+                setNode(e, p);
+                ++size;
+                if (readyHead != null || eventTick(p) < leaderTick) {
+                    leader = null;
+                    leaderTick = Long.MAX_VALUE;
+                    available.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        }
+
+        public void put(Runnable e) {
+            offer(e);
+        }
+
+        public boolean add(Runnable e) {
+            return offer(e);
+        }
+
+        public boolean offer(Runnable e, long timeout, TimeUnit unit) {
+            return offer(e);
+        }
+
+        /**
+         * Removes and returns the first ready task.  Call only when
+         * holding lock, with readyHead non-null.
+         */
+        private RunnableScheduledFuture finishPoll() {
+            Node p = readyHead;
+            unlink(p);
+            setNode(p.task, null);
+            --size;
+            return p.task;
+        }
+
+        public RunnableScheduledFuture poll() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                advance();
+                return (readyHead == null) ? null : finishPoll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public RunnableScheduledFuture take() throws InterruptedException {
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                for (;;) {
+                    advance();
+                    if (readyHead != null)
+                        return finishPoll();
+                    if (size == 0 || leader != null)
+                        available.await();
+                    else {
+                        long tick = nextEventTick();
+                        Thread thisThread = Thread.currentThread();
+                        leader = thisThread;
+                        leaderTick = tick;
+                        try {
+                            available.awaitNanos(nanosUntil(tick));
+                        } finally {
+                            if (leader == thisThread) {
+                                leader = null;
+                                leaderTick = Long.MAX_VALUE;
+                            }
+                        }
+                    }
+                }
+            } finally {
+                if (leader == null && size != 0)
+                    available.signal();
+                lock.unlock();
+            }
+        }
+
+        public RunnableScheduledFuture poll(long timeout, TimeUnit unit)
+            throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                for (;;) {
+                    advance();
+                    if (readyHead != null)
+                        return finishPoll();
+                    if (nanos <= 0)
+                        return null;
+                    long tick = (size == 0) ? Long.MAX_VALUE : nextEventTick();
+                    long delay = nanosUntil(tick);
+                    if (nanos < delay || leader != null)
+                        nanos = available.awaitNanos(nanos);
+                    else {
+                        Thread thisThread = Thread.currentThread();
+                        leader = thisThread;
+                        leaderTick = tick;
+                        try {
+                            long timeLeft = available.awaitNanos(delay);
+                            nanos -= delay - timeLeft;
+                        } finally {
+                            if (leader == thisThread) {
+                                leader = null;
+                                leaderTick = Long.MAX_VALUE;
+                            }
+                        }
+                    }
+                }
+            } finally {
+                if (leader == null && size != 0)
+                    available.signal();
+                lock.unlock();
+            }
+        }
+
+        public void clear() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                Node p;
+                while ((p = readyHead) != null) {
+                    unlink(p);
+                    setNode(p.task, null);
+                }
+                for (int b = 0; b < heads.length; ++b) {
+                    while ((p = heads[b]) != null) {
+                        unlink(p);
+                        setNode(p.task, null);
+                    }
+                }
+                size = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int drainTo(Collection<? super Runnable> c) {
+            return drainTo(c, Integer.MAX_VALUE);
+        }
+
+        public int drainTo(Collection<? super Runnable> c, int maxElements) {
+            if (c == null)
+                throw new NullPointerException();
+            if (c == this)
+                throw new IllegalArgumentException();
+            if (maxElements <= 0)
+                return 0;
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                advance();
+                int n = 0;
+                while (n < maxElements && readyHead != null) {
+                    c.add(finishPoll());
+                    ++n;
+                }
+                return n;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns the queued tasks, ready ones first.  Call only when
+         * holding lock.
+         */
+        private RunnableScheduledFuture[] tasks() {
+            RunnableScheduledFuture[] a = new RunnableScheduledFuture[size];
+            int i = 0;
+            for (Node p = readyHead; p != null; p = p.next)
+                a[i++] = p.task;
+            for (int b = 0; b < heads.length; ++b)
+                for (Node p = heads[b]; p != null; p = p.next)
+                    a[i++] = p.task;
+            return a;
+        }
+
+        public Object[] toArray() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                return Arrays.copyOf(tasks(), size, Object[].class);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T[] toArray(T[] a) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                RunnableScheduledFuture[] q = tasks();
+                if (a.length < size)
+                    return (T[]) Arrays.copyOf(q, size, a.getClass());
+                System.arraycopy(q, 0, a, 0, size);
+                if (a.length > size)
+                    a[size] = null;
+                return a;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Iterator<Runnable> iterator() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                return new Itr(tasks());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Snapshot iterator that works off a copy of the queued tasks.
+         */
+        private class Itr implements Iterator<Runnable> {
+            final RunnableScheduledFuture[] array;
+            int cursor = 0;     // index of next element to return
+            int lastRet = -1;   // index of last element, or -1 if no such
+
+            Itr(RunnableScheduledFuture[] array) {
+                this.array = array;
+            }
+
+            public boolean hasNext() {
+                return cursor < array.length;
+            }
+
+            public Runnable next() {
+                if (cursor >= array.length)
+                    throw new NoSuchElementException();
+                lastRet = cursor;
+                return array[cursor++];
+            }
+
+            public void remove() {
+                if (lastRet < 0)
+                    throw new IllegalStateException();
+                TimingWheelQueue.this.remove(array[lastRet]);
+                lastRet = -1;
+            }
+        }
+    }
 }
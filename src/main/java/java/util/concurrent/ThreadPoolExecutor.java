@@ -195,6 +195,35 @@ import java.util.*;
  *
  * </dd>
  *
+ * <dt><a name="WorkStealing">Work stealing</a></dt>
+ *
+ * <dd>When every task passes through the single work queue, the
+ * queue's locks become the bottleneck for short tasks.  A pool
+ * constructed with the {@code workStealing} argument set (see {@link
+ * #ThreadPoolExecutor(int, int, long, TimeUnit, BlockingQueue,
+ * ThreadFactory, RejectedExecutionHandler, boolean)}) gives each
+ * worker thread its own local deque.  While no worker is idle,
+ * {@link #execute} places tasks in the local deque of a randomly
+ * chosen worker rather than in the work queue; workers run tasks from
+ * their own deque first and otherwise steal from the deques of other
+ * workers before consulting the work queue.  Tasks are handed to the
+ * work queue as usual when some worker is waiting for work or the
+ * chosen deques are full, so core and maximum pool sizes, keep-alive
+ * times, rejection policies and shutdown behave as described here.
+ * Tasks are only queued locally when the work queue is unbounded,
+ * that is, when its {@code remainingCapacity} was {@code
+ * Integer.MAX_VALUE} when the pool was constructed; each local deque
+ * then holds at most a few thousand tasks.  With a bounded queue or
+ * a direct handoff such as a {@link SynchronousQueue}, every task
+ * passes through the work queue, so the pool grows past its core
+ * size and rejects tasks at the same points as without work
+ * stealing.  Tasks held in local deques are not visible through
+ * {@link #getQueue}, but are included by {@link #remove}, {@link
+ * #purge}, {@link #shutdownNow} and the task statistics methods.
+ * Work stealing requires a work queue that accepts arbitrary {@code
+ * Runnable}s in FIFO order; ordering queues such as {@link
+ * PriorityBlockingQueue} are not supported.</dd>
+ *
  * <dt>Rejected tasks</dt>
  *
  * <dd> New tasks submitted in method {@link #execute} will be
@@ -462,6 +491,16 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     private final HashSet<Worker> workers = new HashSet<Worker>();
 
+    /**
+     * In work-stealing mode, a snapshot of the workers set used to
+     * locate local deques without holding mainLock: replaced (under
+     * mainLock) whenever a worker is added or removed, and read
+     * racily by submitters and thieves.  A worker may still appear in
+     * a stale snapshot after it exits, which is why LocalQueue.offer
+     * rechecks for closure.  Null unless workStealing.
+     */
+    private volatile Worker[] stealWorkers;
+
     /**
      * Wait condition to support awaitTermination
      */
@@ -538,6 +577,50 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     private volatile int maximumPoolSize;
 
+    /**
+     * True if each worker owns a local task deque (see class
+     * LocalQueue).  Fixed at construction.
+     *
+     * In this mode execute() places tasks in the deque of a randomly
+     * chosen worker while no worker is waiting for a task, and
+     * workers take from their own deque, then steal from others,
+     * then fall back to workQueue, which remains the only place
+     * workers block.  The difficulty is waking a worker that blocks
+     * on workQueue just as a task is pushed to a deque.  Workers
+     * announce themselves in idleWorkers before rescanning the deques
+     * and blocking, and submitters recheck idleWorkers after pushing;
+     * if some worker is (or is about to be) blocked and workQueue is
+     * empty, the submitter interrupts one such worker, which then
+     * rescans the deques.  The interrupt is delivered under the
+     * worker's lock, as in interruptIdleWorkers, so it can never
+     * reach a running task: it either aborts the worker's wait or is
+     * cleared by runWorker before the next task starts.  Nothing is
+     * ever added to workQueue on behalf of the deques, so getQueue
+     * and the queue's size and capacity only reflect submitted tasks.
+     */
+    private final boolean workStealing;
+
+    /**
+     * Maximum number of tasks held in each local deque:
+     * LOCAL_QUEUE_CAPACITY if the work queue is unbounded, else zero,
+     * which disables local queuing.  Tasks in local deques are not
+     * counted against a bounded queue's capacity, so queuing them
+     * would let the pool accept more tasks than the queue allows and
+     * delay both the growth past corePoolSize and rejection.
+     */
+    private final int localQueueCapacity;
+
+    /**
+     * Number of workers in work-stealing mode that are about to block
+     * or are blocked on workQueue.  Null unless workStealing.
+     */
+    private final AtomicInteger idleWorkers;
+
+    /**
+     * Upper bound on the capacity of each local deque.
+     */
+    private static final int LOCAL_QUEUE_CAPACITY = 1 << 12;
+
     /**
      * The default rejected execution handler
      */
@@ -599,6 +682,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         Runnable firstTask;
         /** Per-thread task counter */
         volatile long completedTasks;
+        /** Local task deque.  Null unless workStealing. */
+        final LocalQueue localQueue;
+        /** True while counted in idleWorkers.  Unused unless workStealing. */
+        volatile boolean idle;
 
         /**
          * Creates with given first task and thread from ThreadFactory.
@@ -607,6 +694,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         Worker(Runnable firstTask) {
             setState(-1); // inhibit interrupts until runWorker
             this.firstTask = firstTask;
+            this.localQueue = workStealing ? new LocalQueue() : null;
             this.thread = getThreadFactory().newThread(this);
         }
 
@@ -654,6 +742,90 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Task deque owned by a single worker in work-stealing mode.  The
+     * owner takes from the head and thieves from the tail, so the
+     * owner runs its tasks in roughly submission order while thieves
+     * take the most recently added ones, which the owner would reach
+     * last.  Offers are bounded by a capacity passed by the caller,
+     * tracked in count, which is incremented before a task is added
+     * and decremented after it is removed, and so never
+     * underestimates the number of queued tasks.
+     *
+     * A worker closes its deque before exiting.  An offer that finds
+     * the deque closed after adding its task takes the task back out
+     * again if it can; if it cannot, the task has already been taken
+     * and the offer succeeded.  Because a closing worker sets closed
+     * before reading count while an offer increments count before
+     * rechecking closed, either the closer sees the task or the offer
+     * backs it out.
+     */
+    static final class LocalQueue {
+        final ConcurrentLinkedDeque<Runnable> tasks =
+            new ConcurrentLinkedDeque<Runnable>();
+        final AtomicInteger count = new AtomicInteger();
+        volatile boolean closed;
+
+        boolean offer(Runnable task, int capacity) {
+            if (closed || count.get() >= capacity)
+                return false;
+            count.incrementAndGet();
+            tasks.offerLast(task);
+            if (closed && tasks.removeLastOccurrence(task)) {
+                count.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        Runnable poll() {
+            Runnable r = tasks.pollFirst();
+            if (r != null)
+                count.decrementAndGet();
+            return r;
+        }
+
+        Runnable steal() {
+            Runnable r = tasks.pollLast();
+            if (r != null)
+                count.decrementAndGet();
+            return r;
+        }
+
+        boolean remove(Object task) {
+            if (tasks.removeFirstOccurrence(task)) {
+                count.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        int size() {
+            return count.get();
+        }
+
+        /**
+         * Closes this deque if it is empty.
+         *
+         * @return true if closed, false if tasks remain
+         */
+        boolean tryClose() {
+            closed = true;
+            if (count.get() == 0)
+                return true;
+            closed = false;
+            return false;
+        }
+
+        void close() {
+            closed = true;
+        }
+
+        void reopen() {
+            closed = false;
+        }
+    }
+
     /*
      * Methods for setting control state
      */
@@ -689,7 +861,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             int c = ctl.get();
             if (isRunning(c) ||
                 runStateAtLeast(c, TIDYING) ||
-                (runStateOf(c) == SHUTDOWN && ! workQueue.isEmpty()))
+                (runStateOf(c) == SHUTDOWN &&
+                 (! workQueue.isEmpty() || hasLocalTasks())))
                 return;
             if (workerCountOf(c) != 0) { // Eligible to terminate
                 interruptIdleWorkers(ONLY_ONE);
@@ -856,9 +1029,174 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     taskList.add(r);
             }
         }
+        if (workStealing) {
+            for (Worker w : stealWorkers) {
+                Runnable r;
+                while ((r = w.localQueue.poll()) != null)
+                    taskList.add(r);
+            }
+        }
         return taskList;
     }
 
+    /*
+     * Support for work stealing.  See field workStealing.
+     */
+
+    /**
+     * Rebuilds the stealWorkers snapshot.  Call only while holding
+     * mainLock, after changing the workers set.
+     */
+    private void updateStealWorkers() {
+        stealWorkers = workers.toArray(new Worker[workers.size()]);
+    }
+
+    /**
+     * Returns true if any worker's local deque may hold tasks.
+     */
+    private boolean hasLocalTasks() {
+        if (workStealing) {
+            for (Worker w : stealWorkers)
+                if (w.localQueue.size() != 0)
+                    return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the approximate number of tasks held in local deques.
+     */
+    private int localTaskCount() {
+        int n = 0;
+        if (workStealing) {
+            for (Worker w : stealWorkers)
+                n += w.localQueue.size();
+        }
+        return n;
+    }
+
+    /**
+     * Tries to place a task submitted by execute in a local deque.
+     * Returns false, leaving the task to the work queue, if not in
+     * work-stealing mode, if some worker is waiting for a task, or if
+     * the probed deques are full.
+     */
+    private boolean offerLocal(Runnable command) {
+        if (localQueueCapacity == 0 || idleWorkers.get() != 0 ||
+            !pushLocal(command, 2))
+            return false;
+        signalIdleWorker();
+        return true;
+    }
+
+    /**
+     * Offers a task to the local deques of up to the given number of
+     * workers, starting at a random one.
+     *
+     * @return true if the task was added
+     */
+    private boolean pushLocal(Runnable task, int probes) {
+        Worker[] ws = stealWorkers;
+        int n = ws.length;
+        if (n == 0)
+            return false;
+        int i = ThreadLocalRandom.current().nextInt(n);
+        for (int k = Math.min(probes, n); k > 0; --k) {
+            if (ws[i].localQueue.offer(task, localQueueCapacity))
+                return true;
+            if (++i == n)
+                i = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Called after adding a task to a local deque, in case a worker
+     * started waiting on workQueue before the task became visible to
+     * its rescan.  If workQueue is nonempty some worker will soon
+     * take from it and rescan anyway.  Otherwise interrupts one idle
+     * worker, causing it to rescan the deques.
+     */
+    private void signalIdleWorker() {
+        if (idleWorkers.get() == 0 || !workQueue.isEmpty())
+            return;
+        for (Worker w : stealWorkers) {
+            Thread t = w.thread;
+            if (w.idle && w.tryLock()) {
+                try {
+                    if (!t.isInterrupted())
+                        t.interrupt();
+                    return;
+                } catch (SecurityException ignore) {
+                } finally {
+                    w.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes a task from the tail of some other worker's deque,
+     * starting at a random one.
+     *
+     * @param q the caller's own deque
+     * @return a task, or null if none found
+     */
+    private Runnable steal(LocalQueue q) {
+        Worker[] ws = stealWorkers;
+        int n = ws.length;
+        if (n > 1) {
+            int i = ThreadLocalRandom.current().nextInt(n);
+            for (int k = n; k > 0; --k) {
+                LocalQueue o = ws[i].localQueue;
+                Runnable r;
+                if (o != q && (r = o.steal()) != null)
+                    return r;
+                if (++i == n)
+                    i = 0;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Closes the local deque of a worker that is about to stop
+     * counting toward workerCount, moving any tasks left in it to the
+     * work queue or to other deques.  Call only while holding
+     * mainLock.
+     *
+     * @return tasks that could not be moved, or null if none
+     */
+    private List<Runnable> transferLocalTasks(LocalQueue q) {
+        List<Runnable> stranded = null;
+        q.close();
+        Runnable r;
+        while ((r = q.poll()) != null) {
+            if (workQueue.offer(r))
+                continue;
+            if (pushLocal(r, Integer.MAX_VALUE)) {
+                signalIdleWorker();
+                continue;
+            }
+            if (stranded == null)
+                stranded = new ArrayList<Runnable>();
+            stranded.add(r);
+        }
+        return stranded;
+    }
+
+    /**
+     * Runs tasks returned by transferLocalTasks in new threads,
+     * rejecting those for which no thread can be started.
+     */
+    private void rehomeTasks(List<Runnable> stranded) {
+        if (stranded != null) {
+            for (Runnable r : stranded)
+                if (!addWorker(r, false))
+                    reject(r);
+        }
+    }
+
     /*
      * Methods for creating, running and cleaning up after workers
      */
@@ -899,7 +1237,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             if (rs >= SHUTDOWN &&
                 ! (rs == SHUTDOWN &&
                    firstTask == null &&
-                   ! workQueue.isEmpty()))
+                   (! workQueue.isEmpty() || hasLocalTasks())))
                 return false;
 
             for (;;) {
@@ -937,6 +1275,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                         if (t.isAlive()) // precheck that t is startable
                             throw new IllegalThreadStateException();
                         workers.add(w);
+                        if (workStealing)
+                            updateStealWorkers();
                         int s = workers.size();
                         if (s > largestPoolSize)
                             largestPoolSize = s;
@@ -963,18 +1303,23 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * - decrements worker count
      * - rechecks for termination, in case the existence of this
      *   worker was holding up termination
+     * - moves elsewhere any tasks placed in its local deque
      */
     private void addWorkerFailed(Worker w) {
+        List<Runnable> stranded = null;
         final ReentrantLock mainLock = this.mainLock;
         mainLock.lock();
         try {
-            if (w != null)
-                workers.remove(w);
+            if (w != null && w.localQueue != null)
+                stranded = transferLocalTasks(w.localQueue);
+            if (w != null && workers.remove(w) && workStealing)
+                updateStealWorkers();
             decrementWorkerCount();
             tryTerminate();
         } finally {
             mainLock.unlock();
         }
+        rehomeTasks(stranded);
     }
 
     /**
@@ -991,25 +1336,34 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * @param completedAbruptly if the worker died due to user exception
      */
     private void processWorkerExit(Worker w, boolean completedAbruptly) {
-        if (completedAbruptly) // If abrupt, then workerCount wasn't adjusted
-            decrementWorkerCount();
-
+        List<Runnable> stranded = null;
         final ReentrantLock mainLock = this.mainLock;
         mainLock.lock();
         try {
+            // Unless abrupt or stopping, getTaskStealing closed the
+            // deque while empty.  Otherwise move its tasks while still
+            // counted in workerCount, and while holding mainLock so
+            // that drainQueue sees each of them in exactly one place.
+            if (w.localQueue != null)
+                stranded = transferLocalTasks(w.localQueue);
+            if (completedAbruptly) // If abrupt, then workerCount wasn't adjusted
+                decrementWorkerCount();
             completedTaskCount += w.completedTasks;
             workers.remove(w);
+            if (workStealing)
+                updateStealWorkers();
         } finally {
             mainLock.unlock();
         }
 
         tryTerminate();
+        rehomeTasks(stranded);
 
         int c = ctl.get();
         if (runStateLessThan(c, STOP)) {
             if (!completedAbruptly) {
                 int min = allowCoreThreadTimeOut ? 0 : corePoolSize;
-                if (min == 0 && ! workQueue.isEmpty())
+                if (min == 0 && (! workQueue.isEmpty() || hasLocalTasks()))
                     min = 1;
                 if (workerCountOf(c) >= min)
                     return; // replacement not needed
@@ -1077,6 +1431,89 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Version of getTask for work-stealing mode.  Takes tasks from
+     * the worker's own deque, then from other workers' deques, then
+     * from workQueue, and blocks only on workQueue after registering
+     * in idleWorkers and rescanning the deques.  An interrupt while
+     * blocked is a signal from signalIdleWorker to rescan.  Exits under the same
+     * conditions as getTask, except that the pool is not considered
+     * drained while local deques hold tasks, and a worker exits only
+     * once it has closed its own deque while empty.
+     *
+     * @param w the worker
+     * @return task, or null if the worker must exit, in which case
+     *         workerCount is decremented
+     */
+    private Runnable getTaskStealing(Worker w) {
+        final LocalQueue q = w.localQueue;
+        boolean timedOut = false; // Did the last poll() time out?
+
+        retry:
+        for (;;) {
+            int c = ctl.get();
+            int rs = runStateOf(c);
+
+            if (rs >= STOP) {
+                q.close();
+                decrementWorkerCount();
+                return null;
+            }
+            if (rs == SHUTDOWN && workQueue.isEmpty() && !hasLocalTasks() &&
+                q.tryClose()) {
+                decrementWorkerCount();
+                return null;
+            }
+
+            boolean timed;      // Are workers subject to culling?
+
+            for (;;) {
+                int wc = workerCountOf(c);
+                timed = allowCoreThreadTimeOut || wc > corePoolSize;
+
+                if (wc <= maximumPoolSize && ! (timedOut && timed))
+                    break;
+                if (! q.tryClose()) { // Run own tasks before exiting
+                    timedOut = false;
+                    break;
+                }
+                if (compareAndDecrementWorkerCount(c))
+                    return null;
+                q.reopen();
+                c = ctl.get();  // Re-read ctl
+                if (runStateOf(c) != rs)
+                    continue retry;
+                // else CAS failed due to workerCount change; retry inner loop
+            }
+
+            Runnable r;
+            if ((r = q.poll()) == null &&
+                (r = steal(q)) == null &&
+                (r = workQueue.poll()) == null) {
+                w.idle = true;
+                idleWorkers.incrementAndGet();
+                try {
+                    if ((r = q.poll()) == null && (r = steal(q)) == null) {
+                        r = timed ?
+                            workQueue.poll(keepAliveTime, TimeUnit.NANOSECONDS) :
+                            workQueue.take();
+                        if (r == null) {
+                            timedOut = true;
+                            continue;
+                        }
+                    }
+                } catch (InterruptedException retry) {
+                    timedOut = false;
+                    continue;
+                } finally {
+                    idleWorkers.decrementAndGet();
+                    w.idle = false;
+                }
+            }
+            return r;
+        }
+    }
+
     /**
      * Main worker run loop.  Repeatedly gets tasks from queue and
      * executes them, while coping with a number of issues:
@@ -1127,7 +1564,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         w.unlock(); // allow interrupts
         boolean completedAbruptly = true;
         try {
-            while (task != null || (task = getTask()) != null) {
+            while (task != null ||
+                   (task = (w.localQueue == null) ?
+                    getTask() : getTaskStealing(w)) != null) {
                 w.lock();
                 // If pool is stopping, ensure thread is interrupted;
                 // if not, ensure thread is not interrupted.  This
@@ -1303,6 +1742,51 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                               BlockingQueue<Runnable> workQueue,
                               ThreadFactory threadFactory,
                               RejectedExecutionHandler handler) {
+        this(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue,
+             threadFactory, handler, false);
+    }
+
+    /**
+     * Creates a new {@code ThreadPoolExecutor} with the given initial
+     * parameters, optionally giving each worker thread a local task
+     * deque from which other workers may steal (see <a
+     * href="#WorkStealing">Work stealing</a>).
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param maximumPoolSize the maximum number of threads to allow in the
+     *        pool
+     * @param keepAliveTime when the number of threads is greater than
+     *        the core, this is the maximum time that excess idle threads
+     *        will wait for new tasks before terminating.
+     * @param unit the time unit for the {@code keepAliveTime} argument
+     * @param workQueue the queue to use for holding tasks before they are
+     *        executed.  This queue will hold only the {@code Runnable}
+     *        tasks submitted by the {@code execute} method that are not
+     *        placed in local deques.
+     * @param threadFactory the factory to use when the executor
+     *        creates a new thread
+     * @param handler the handler to use when execution is blocked
+     *        because the thread bounds and queue capacities are reached
+     * @param workStealing if {@code true}, tasks may be queued in
+     *        per-worker deques and stolen by idle workers
+     * @throws IllegalArgumentException if one of the following holds:<br>
+     *         {@code corePoolSize < 0}<br>
+     *         {@code keepAliveTime < 0}<br>
+     *         {@code maximumPoolSize <= 0}<br>
+     *         {@code maximumPoolSize < corePoolSize}
+     * @throws NullPointerException if {@code workQueue}
+     *         or {@code threadFactory} or {@code handler} is null
+     * @since 1.7
+     */
+    public ThreadPoolExecutor(int corePoolSize,
+                              int maximumPoolSize,
+                              long keepAliveTime,
+                              TimeUnit unit,
+                              BlockingQueue<Runnable> workQueue,
+                              ThreadFactory threadFactory,
+                              RejectedExecutionHandler handler,
+                              boolean workStealing) {
         if (corePoolSize < 0 ||
             maximumPoolSize <= 0 ||
             maximumPoolSize < corePoolSize ||
@@ -1316,6 +1800,17 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         this.keepAliveTime = unit.toNanos(keepAliveTime);
         this.threadFactory = threadFactory;
         this.handler = handler;
+        this.workStealing = workStealing;
+        if (workStealing) {
+            this.localQueueCapacity =
+                (workQueue.remainingCapacity() == Integer.MAX_VALUE) ?
+                LOCAL_QUEUE_CAPACITY : 0;
+            this.idleWorkers = new AtomicInteger();
+            this.stealWorkers = new Worker[0];
+        } else {
+            this.localQueueCapacity = 0;
+            this.idleWorkers = null;
+        }
     }
 
     /**
@@ -1361,7 +1856,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 return;
             c = ctl.get();
         }
-        if (isRunning(c) && workQueue.offer(command)) {
+        if (isRunning(c) && (offerLocal(command) || workQueue.offer(command))) {
             int recheck = ctl.get();
             if (! isRunning(recheck) && remove(command))
                 reject(command);
@@ -1549,9 +2044,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             // As a heuristic, prestart enough new workers (up to new
             // core size) to handle the current number of tasks in
             // queue, but stop if queue becomes empty while doing so.
-            int k = Math.min(delta, workQueue.size());
+            int k = Math.min(delta, workQueue.size() + localTaskCount());
             while (k-- > 0 && addWorker(null, true)) {
-                if (workQueue.isEmpty())
+                if (workQueue.isEmpty() && !hasLocalTasks())
                     break;
             }
         }
@@ -1650,6 +2145,17 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Returns true if this pool was constructed with work stealing
+     * enabled, so that tasks may be queued in per-worker deques.
+     *
+     * @return {@code true} if this pool uses work stealing
+     * @since 1.7
+     */
+    public boolean isWorkStealing() {
+        return workStealing;
+    }
+
     /**
      * Sets the maximum allowed number of threads. This overrides any
      * value set in the constructor. If the new value is smaller than
@@ -1734,7 +2240,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
     }
 
     /**
-     * Removes this task from the executor's internal queue if it is
+     * Removes this task from the executor's internal queue (or, in
+     * work-stealing mode, from a worker's local deque) if it is
      * present, thus causing it not to be run if it has not already
      * started.
      *
@@ -1751,12 +2258,21 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     public boolean remove(Runnable task) {
         boolean removed = workQueue.remove(task);
+        if (!removed && workStealing) {
+            for (Worker w : stealWorkers) {
+                if (w.localQueue.remove(task)) {
+                    removed = true;
+                    break;
+                }
+            }
+        }
         tryTerminate(); // In case SHUTDOWN and now empty
         return removed;
     }
 
     /**
-     * Tries to remove from the work queue all {@link Future}
+     * Tries to remove from the work queue (and, in work-stealing
+     * mode, from the workers' local deques) all {@link Future}
      * tasks that have been cancelled. This method can be useful as a
      * storage reclamation operation, that has no other impact on
      * functionality. Cancelled tasks are never executed, but may
@@ -1782,6 +2298,14 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 if (r instanceof Future<?> && ((Future<?>)r).isCancelled())
                     q.remove(r);
         }
+        if (workStealing) {
+            for (Worker w : stealWorkers) {
+                LocalQueue lq = w.localQueue;
+                for (Runnable r : lq.tasks)
+                    if (r instanceof Future<?> && ((Future<?>)r).isCancelled())
+                        lq.remove(r);
+            }
+        }
 
         tryTerminate(); // In case SHUTDOWN and now empty
     }
@@ -1860,7 +2384,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 if (w.isLocked())
                     ++n;
             }
-            return n + workQueue.size();
+            return n + workQueue.size() + localTaskCount();
         } finally {
             mainLock.unlock();
         }
@@ -1920,7 +2444,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             "[" + rs +
             ", pool size = " + nworkers +
             ", active threads = " + nactive +
-            ", queued tasks = " + workQueue.size() +
+            ", queued tasks = " + (workQueue.size() + localTaskCount()) +
             ", completed tasks = " + ncompleted +
             "]";
     }
@@ -171,6 +171,16 @@
  * used for example, to represent version numbers corresponding to
  * series of updates.
  *
+ * <p>The {@link java.util.concurrent.atomic.LongAdder},
+ * {@link java.util.concurrent.atomic.DoubleAdder} and
+ * {@link java.util.concurrent.atomic.LongAccumulator} classes maintain
+ * a value spread over a dynamically grown set of padded cells, so
+ * that heavily contended updates such as statistics counters do not
+ * all CAS the same variable.  They trade space, and the atomicity of
+ * reads of the combined value, for update throughput, and are not
+ * replacements for {@code AtomicLong} when a consistent value is
+ * needed for synchronization control.
+ *
  * <p>Atomic classes are designed primarily as building blocks for
  * implementing non-blocking data structures and related infrastructure
  * classes.  The {@code compareAndSet} method is not a general
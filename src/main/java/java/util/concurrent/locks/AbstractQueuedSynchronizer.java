@@ -175,6 +175,19 @@ import sun.misc.Unsafe;
  * and/or {@link #hasQueuedThreads} to only do so if the synchronizer
  * is likely not to be contended.
  *
+ * <p>Subclasses may also opt in to <em>adaptive spinning</em> by
+ * invoking {@link #setAdaptiveSpinning}.  The first queued thread of
+ * such a synchronizer then busy-waits for a release for a short,
+ * self-tuning period before parking, avoiding a park/unpark context
+ * switch when the synchronizer is typically held only briefly.  The
+ * spin period is derived from the recently observed times taken for
+ * the synchronizer to be released to its first waiter (that is, an
+ * estimate of remaining hold times), and spinning is disabled when
+ * these exceed the cost of parking or on uniprocessors.  Counts of
+ * acquisitions that succeeded while spinning and after parking are
+ * available from {@link #getSpinAcquireCount} and {@link
+ * #getParkAcquireCount}.
+ *
  * <p>This class provides an efficient and scalable basis for
  * synchronization in part by specializing its range of use to
  * synchronizers that can rely on <tt>int</tt> state, acquire, and
@@ -502,6 +515,19 @@ public abstract class AbstractQueuedSynchronizer
         Node() {    // Used to establish initial head or SHARED marker
         }
 
+        /**
+         * The time this node started spinning as the first queued
+         * node of an adaptively spinning synchronizer, or 0 if it has
+         * not.  Accessed only by the node's own thread.
+         */
+        long spinStart;
+
+        /**
+         * Whether this node has parked while its synchronizer uses
+         * adaptive spinning.  Accessed only by the node's own thread.
+         */
+        boolean parked;
+
         Node(Thread thread, Node mode) {     // Used by addWaiter
             this.nextWaiter = mode;
             this.thread = thread;
@@ -532,6 +558,13 @@ public abstract class AbstractQueuedSynchronizer
      */
     private volatile int state;
 
+    /**
+     * Adaptive spinning control and statistics, or null if this
+     * synchronizer does not spin.  Not serialized, so deserialized
+     * synchronizers do not spin until re-enabled.
+     */
+    private transient volatile SpinControl spinControl;
+
     /**
      * Returns the current value of synchronization state.
      * This operation has memory semantics of a <tt>volatile</tt> read.
@@ -835,6 +868,57 @@ public abstract class AbstractQueuedSynchronizer
         return Thread.interrupted();
     }
 
+    /**
+     * Called by a queued node about to park after a failed acquire.
+     * If this synchronizer spins adaptively and node is first in
+     * queue, busy-waits until the state changes, head changes, or the
+     * node's spin period expires.  The spin period starts when the
+     * node is first found at the front of the queue and lasts for the
+     * current estimate of the time to release, so a node spins at
+     * most once per acquire, however many times it retries.
+     *
+     * @param pred node's predecessor
+     * @param node the node
+     * @return {@code true} if the caller should retry acquiring
+     *         rather than park
+     */
+    private boolean spinForRelease(Node pred, Node node) {
+        SpinControl sc = spinControl;
+        if (sc == null)
+            return false;
+        if (pred == head) {
+            long start = node.spinStart;
+            long now = System.nanoTime();
+            if (start == 0L)
+                node.spinStart = start = (now == 0L) ? 1L : now;
+            long deadline = start + sc.spinNanos();
+            if (now - deadline < 0L) {
+                int s = state;
+                for (int spins = 0;;) {
+                    if (state != s || head != pred)
+                        return true;
+                    if ((++spins & (SpinControl.SPINS_PER_TIME_CHECK - 1)) == 0 &&
+                        System.nanoTime() - deadline >= 0L)
+                        break;
+                }
+            }
+        }
+        node.parked = true;
+        return false;
+    }
+
+    /**
+     * Records statistics for a node that has acquired after having
+     * been queued.
+     *
+     * @param node the node
+     */
+    private void recordQueuedAcquire(Node node) {
+        SpinControl sc = spinControl;
+        if (sc != null)
+            sc.recordAcquire(node);
+    }
+
     /*
      * Various flavors of acquire, varying in exclusive/shared and
      * control modes.  Each is mostly the same, but annoyingly
@@ -862,9 +946,11 @@ public abstract class AbstractQueuedSynchronizer
                     setHead(node);
                     p.next = null; // help GC
                     failed = false;
+                    recordQueuedAcquire(node);
                     return interrupted;
                 }
                 if (shouldParkAfterFailedAcquire(p, node) &&
+                    !spinForRelease(p, node) &&
                     parkAndCheckInterrupt())
                     interrupted = true;
             }
@@ -889,9 +975,11 @@ public abstract class AbstractQueuedSynchronizer
                     setHead(node);
                     p.next = null; // help GC
                     failed = false;
+                    recordQueuedAcquire(node);
                     return;
                 }
                 if (shouldParkAfterFailedAcquire(p, node) &&
+                    !spinForRelease(p, node) &&
                     parkAndCheckInterrupt())
                     throw new InterruptedException();
             }
@@ -920,12 +1008,14 @@ public abstract class AbstractQueuedSynchronizer
                     setHead(node);
                     p.next = null; // help GC
                     failed = false;
+                    recordQueuedAcquire(node);
                     return true;
                 }
                 if (nanosTimeout <= 0)
                     return false;
                 if (shouldParkAfterFailedAcquire(p, node) &&
-                    nanosTimeout > spinForTimeoutThreshold)
+                    nanosTimeout > spinForTimeoutThreshold &&
+                    !spinForRelease(p, node))
                     LockSupport.parkNanos(this, nanosTimeout);
                 long now = System.nanoTime();
                 nanosTimeout -= now - lastTime;
@@ -958,10 +1048,12 @@ public abstract class AbstractQueuedSynchronizer
                         if (interrupted)
                             selfInterrupt();
                         failed = false;
+                        recordQueuedAcquire(node);
                         return;
                     }
                 }
                 if (shouldParkAfterFailedAcquire(p, node) &&
+                    !spinForRelease(p, node) &&
                     parkAndCheckInterrupt())
                     interrupted = true;
             }
@@ -988,10 +1080,12 @@ public abstract class AbstractQueuedSynchronizer
                         setHeadAndPropagate(node, r);
                         p.next = null; // help GC
                         failed = false;
+                        recordQueuedAcquire(node);
                         return;
                     }
                 }
                 if (shouldParkAfterFailedAcquire(p, node) &&
+                    !spinForRelease(p, node) &&
                     parkAndCheckInterrupt())
                     throw new InterruptedException();
             }
@@ -1023,13 +1117,15 @@ public abstract class AbstractQueuedSynchronizer
                         setHeadAndPropagate(node, r);
                         p.next = null; // help GC
                         failed = false;
+                        recordQueuedAcquire(node);
                         return true;
                     }
                 }
                 if (nanosTimeout <= 0)
                     return false;
                 if (shouldParkAfterFailedAcquire(p, node) &&
-                    nanosTimeout > spinForTimeoutThreshold)
+                    nanosTimeout > spinForTimeoutThreshold &&
+                    !spinForRelease(p, node))
                     LockSupport.parkNanos(this, nanosTimeout);
                 long now = System.nanoTime();
                 nanosTimeout -= now - lastTime;
@@ -1522,6 +1618,79 @@ public abstract class AbstractQueuedSynchronizer
 
     // Instrumentation and monitoring methods
 
+    /**
+     * Enables or disables adaptive spinning for this synchronizer.
+     * When enabled, the first queued thread busy-waits for a release
+     * for a short period before parking, as described in the class
+     * documentation.  Disabling spinning also discards the spinning
+     * statistics.  This method is intended to be invoked from
+     * subclass constructors; it may be invoked at any time, but
+     * threads already spinning may complete their spin period.
+     * The setting is not serialized: a deserialized synchronizer
+     * does not spin unless its <tt>readObject</tt> method enables
+     * spinning again.
+     *
+     * @param enabled {@code true} to spin adaptively
+     */
+    protected final void setAdaptiveSpinning(boolean enabled) {
+        if (!enabled)
+            spinControl = null;
+        else if (spinControl == null)
+            spinControl = new SpinControl();
+    }
+
+    /**
+     * Returns {@code true} if this synchronizer spins adaptively
+     * before parking queued threads.
+     *
+     * @return {@code true} if this synchronizer spins adaptively
+     */
+    public final boolean isAdaptiveSpinning() {
+        return spinControl != null;
+    }
+
+    /**
+     * Returns the number of queued acquisitions that succeeded while
+     * spinning, without parking, since adaptive spinning was enabled.
+     * The value is only an estimate, and is zero if this synchronizer
+     * does not spin.  This method is designed for use in monitoring
+     * system state, not for synchronization control.
+     *
+     * @return the number of queued acquisitions that did not park
+     */
+    public final long getSpinAcquireCount() {
+        SpinControl sc = spinControl;
+        return (sc == null) ? 0L : sc.spinAcquires;
+    }
+
+    /**
+     * Returns the number of queued acquisitions that succeeded only
+     * after parking, since adaptive spinning was enabled.  The value
+     * is only an estimate, and is zero if this synchronizer does not
+     * spin.  This method is designed for use in monitoring system
+     * state, not for synchronization control.
+     *
+     * @return the number of queued acquisitions that parked
+     */
+    public final long getParkAcquireCount() {
+        SpinControl sc = spinControl;
+        return (sc == null) ? 0L : sc.parkAcquires;
+    }
+
+    /**
+     * Returns the current estimate, in nanoseconds, of the time the
+     * first queued thread waits for this synchronizer to be released,
+     * from which the spin period is derived; or zero if this
+     * synchronizer does not spin.  This method is designed for use in
+     * monitoring system state, not for synchronization control.
+     *
+     * @return the estimated release time in nanoseconds
+     */
+    public final long getReleaseTimeEstimate() {
+        SpinControl sc = spinControl;
+        return (sc == null) ? 0L : sc.releaseNanos;
+    }
+
     /**
      * Returns an estimate of the number of threads waiting to
      * acquire.  The value is only an estimate because the number of
@@ -1619,6 +1788,97 @@ public abstract class AbstractQueuedSynchronizer
     }
 
 
+    /**
+     * Adaptive spinning policy and statistics of a synchronizer.
+     * The spin period is twice a moving average of the times first
+     * queued nodes waited until they acquired, whether by spinning or
+     * after parking, bounded by MAX_SPIN_NANOS: waits longer than that
+     * are better spent parked, and once the average exceeds half the
+     * bound spinning stops until shorter waits bring it back down.
+     * All fields are updated without locking; the average tolerates
+     * lost updates, and the counters use CAS.
+     */
+    static final class SpinControl {
+        /** Number of CPUs, to disable spinning on uniprocessors */
+        static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * The maximum spin period, in nanoseconds; roughly the cost of
+         * a park/unpark round trip on common platforms.
+         */
+        static final long MAX_SPIN_NANOS = 50L * 1000L;
+
+        /**
+         * The spin period used before any wait has been observed.
+         */
+        static final long INITIAL_SPIN_NANOS = 10L * 1000L;
+
+        /**
+         * The number of polls between time checks while spinning.
+         * Must be a power of two.
+         */
+        static final int SPINS_PER_TIME_CHECK = 1 << 6;
+
+        /** Moving average of observed release times, or -1 if none yet */
+        volatile long releaseNanos = -1L;
+
+        /** Number of queued acquires that succeeded while spinning */
+        volatile long spinAcquires;
+
+        /** Number of queued acquires that succeeded after parking */
+        volatile long parkAcquires;
+
+        /**
+         * Returns the current spin period, or 0 if threads should park
+         * at once.
+         */
+        final long spinNanos() {
+            if (NCPU < 2)
+                return 0L;
+            long r = releaseNanos;
+            if (r < 0L)
+                return INITIAL_SPIN_NANOS;
+            r <<= 1;
+            return (r > MAX_SPIN_NANOS) ? 0L : r;
+        }
+
+        /**
+         * Records the acquire of a node that had been queued, updating
+         * counters and, if the node was first in queue, the average
+         * release time.
+         */
+        final void recordAcquire(Node node) {
+            long start = node.spinStart;
+            if (node.parked)
+                increment(PARKACQUIRES);
+            else if (start != 0L)
+                increment(SPINACQUIRES);
+            if (start != 0L) {
+                long w = System.nanoTime() - start;
+                long r = releaseNanos;
+                // Weight 1/4 new sample, 3/4 history
+                releaseNanos = (r < 0L) ? w : r + ((w - r) >> 2);
+            }
+        }
+
+        private void increment(long offset) {
+            long c;
+            do {} while (!unsafe.compareAndSwapLong
+                         (this, offset, c = unsafe.getLongVolatile(this, offset), c + 1L));
+        }
+
+        private static final long SPINACQUIRES;
+        private static final long PARKACQUIRES;
+        static {
+            try {
+                SPINACQUIRES = unsafe.objectFieldOffset
+                    (SpinControl.class.getDeclaredField("spinAcquires"));
+                PARKACQUIRES = unsafe.objectFieldOffset
+                    (SpinControl.class.getDeclaredField("parkAcquires"));
+            } catch (Exception ex) { throw new Error(ex); }
+        }
+    }
+
     // Internal support methods for Conditions
 
     /**
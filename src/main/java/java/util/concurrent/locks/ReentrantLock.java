@@ -95,6 +95,16 @@ import java.util.concurrent.atomic.*;
  * {@code protected} access methods that may be useful for
  * instrumentation and monitoring.
  *
+ * <p>The constructor for this class also accepts an optional
+ * <em>adaptive spinning</em> parameter.  When set {@code true}, a
+ * thread that finds the lock held and is first in line to acquire it
+ * busy-waits for a short, self-tuning period before blocking, which
+ * avoids a context switch per acquisition for locks guarding short
+ * critical sections; see {@link AbstractQueuedSynchronizer}.  Methods
+ * {@link #getSpinAcquireCount} and {@link #getParkAcquireCount} report
+ * how often contended acquisitions succeeded by spinning versus
+ * blocking.
+ *
  * <p>Serialization of this class behaves in the same way as built-in
  * locks: a deserialized lock is in the unlocked state, regardless of
  * its state when serialized.
@@ -272,6 +282,19 @@ public class ReentrantLock implements Lock, java.io.Serializable {
         sync = fair ? new FairSync() : new NonfairSync();
     }
 
+    /**
+     * Creates an instance of {@code ReentrantLock} with the
+     * given fairness and adaptive spinning policies.
+     *
+     * @param fair {@code true} if this lock should use a fair ordering policy
+     * @param adaptiveSpinning {@code true} if threads waiting for this
+     *        lock should spin adaptively before blocking
+     */
+    public ReentrantLock(boolean fair, boolean adaptiveSpinning) {
+        this(fair);
+        sync.setAdaptiveSpinning(adaptiveSpinning);
+    }
+
     /**
      * Acquires the lock.
      *
@@ -605,6 +628,41 @@ public class ReentrantLock implements Lock, java.io.Serializable {
         return sync instanceof FairSync;
     }
 
+    /**
+     * Returns {@code true} if this lock has adaptive spinning set true.
+     *
+     * @return {@code true} if this lock has adaptive spinning set true
+     */
+    public final boolean isAdaptiveSpinning() {
+        return sync.isAdaptiveSpinning();
+    }
+
+    /**
+     * Returns an estimate of the number of contended acquisitions of
+     * this lock that succeeded while spinning, without blocking.  This
+     * is always zero if this lock does not spin adaptively.  This
+     * method is designed for use in monitoring of the system state,
+     * not for synchronization control.
+     *
+     * @return the number of acquisitions that spun
+     */
+    public long getSpinAcquireCount() {
+        return sync.getSpinAcquireCount();
+    }
+
+    /**
+     * Returns an estimate of the number of contended acquisitions of
+     * this lock that succeeded only after blocking.  This is always
+     * zero if this lock does not spin adaptively.  This method is
+     * designed for use in monitoring of the system state, not for
+     * synchronization control.
+     *
+     * @return the number of acquisitions that blocked
+     */
+    public long getParkAcquireCount() {
+        return sync.getParkAcquireCount();
+    }
+
     /**
      * Returns the thread that currently owns this lock, or
      * {@code null} if not owned. When this method is called by a
@@ -245,6 +245,22 @@ public class ReentrantReadWriteLock
         writerLock = new WriteLock(this);
     }
 
+    /**
+     * Creates a new {@code ReentrantReadWriteLock} with
+     * the given fairness and adaptive spinning policies.  When
+     * adaptive spinning is set, the first thread waiting for either
+     * the read or the write lock busy-waits for a short, self-tuning
+     * period before blocking; see {@link AbstractQueuedSynchronizer}.
+     *
+     * @param fair {@code true} if this lock should use a fair ordering policy
+     * @param adaptiveSpinning {@code true} if threads waiting for this
+     *        lock should spin adaptively before blocking
+     */
+    public ReentrantReadWriteLock(boolean fair, boolean adaptiveSpinning) {
+        this(fair);
+        sync.setAdaptiveSpinning(adaptiveSpinning);
+    }
+
     public ReentrantReadWriteLock.WriteLock writeLock() { return writerLock; }
     public ReentrantReadWriteLock.ReadLock  readLock()  { return readerLock; }
 
@@ -1232,6 +1248,41 @@ public class ReentrantReadWriteLock
         return sync instanceof FairSync;
     }
 
+    /**
+     * Returns {@code true} if this lock has adaptive spinning set true.
+     *
+     * @return {@code true} if this lock has adaptive spinning set true
+     */
+    public final boolean isAdaptiveSpinning() {
+        return sync.isAdaptiveSpinning();
+    }
+
+    /**
+     * Returns an estimate of the number of contended acquisitions of
+     * the read and write locks that succeeded while spinning, without
+     * blocking.  This is always zero if this lock does not spin
+     * adaptively.  This method is designed for use in monitoring
+     * system state, not for synchronization control.
+     *
+     * @return the number of acquisitions that spun
+     */
+    public long getSpinAcquireCount() {
+        return sync.getSpinAcquireCount();
+    }
+
+    /**
+     * Returns an estimate of the number of contended acquisitions of
+     * the read and write locks that succeeded only after blocking.
+     * This is always zero if this lock does not spin adaptively.  This
+     * method is designed for use in monitoring system state, not for
+     * synchronization control.
+     *
+     * @return the number of acquisitions that blocked
+     */
+    public long getParkAcquireCount() {
+        return sync.getParkAcquireCount();
+    }
+
     /**
      * Returns the thread that currently owns the write lock, or
      * {@code null} if not owned. When this method is called by a
@@ -0,0 +1,676 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.primitive;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Resizable-array list of {@code int} values.  This class provides the
+ * operations of {@link java.util.ArrayList} for primitive elements, so
+ * that lists of integers can be built, scanned and sorted without
+ * allocating an {@code Integer} per element.  It additionally provides
+ * bulk operations in the style of {@link Arrays} ({@link #addAll(int[],
+ * int, int)}, {@link #sort}, {@link #binarySearch}, {@link #toArray})
+ * that work directly on the backing array.
+ *
+ * <p>The list can be viewed as a {@code List<Integer>} via {@link
+ * #asList}, for interoperation with code written against the
+ * collection interfaces.  The view writes through to this list;
+ * elements are boxed only as they pass through it.
+ *
+ * <p>The {@code size}, {@code isEmpty}, {@code get}, {@code set} and
+ * {@code add(int)} operations run in (amortized) constant time; adding
+ * or removing at a given index runs in linear time.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * The iterators returned by {@link #iterator} are <em>fail-fast</em> on
+ * a best-effort basis, as for {@code ArrayList}.
+ *
+ * @see IntHashSet
+ * @see LongHashMap
+ * @since 1.7
+ */
+public class IntArrayList implements RandomAccess, Cloneable, java.io.Serializable {
+    private static final long serialVersionUID = -3916327140733493217L;
+
+    /**
+     * Default initial capacity.
+     */
+    private static final int DEFAULT_CAPACITY = 10;
+
+    /**
+     * Shared empty array instance used for empty instances.
+     */
+    private static final int[] EMPTY_ELEMENTDATA = {};
+
+    /**
+     * The maximum size of array to allocate.
+     * Some VMs reserve some header words in an array.
+     * Attempts to allocate larger arrays may result in
+     * OutOfMemoryError: Requested array size exceeds VM limit
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * The array buffer into which the elements are stored.
+     */
+    private transient int[] elementData;
+
+    /**
+     * The number of elements in the list.
+     */
+    private int size;
+
+    /**
+     * The number of times this list has been structurally modified.
+     */
+    private transient int modCount;
+
+    /**
+     * Cached List view.
+     */
+    private transient List<Integer> listView;
+
+    /**
+     * Constructs an empty list with an initial capacity of ten.
+     */
+    public IntArrayList() {
+        this.elementData = EMPTY_ELEMENTDATA;
+    }
+
+    /**
+     * Constructs an empty list with the specified initial capacity.
+     *
+     * @param  initialCapacity  the initial capacity of the list
+     * @throws IllegalArgumentException if the specified initial capacity
+     *         is negative
+     */
+    public IntArrayList(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                                               initialCapacity);
+        this.elementData = (initialCapacity == 0) ? EMPTY_ELEMENTDATA :
+            new int[initialCapacity];
+    }
+
+    /**
+     * Constructs a list containing the elements of the specified array,
+     * in order.
+     *
+     * @param a the array whose elements are to be placed into this list
+     * @throws NullPointerException if the specified array is null
+     */
+    public IntArrayList(int[] a) {
+        elementData = a.clone();
+        size = a.length;
+    }
+
+    /**
+     * Increases the capacity of this list, if necessary, to ensure that
+     * it can hold at least the number of elements specified by the
+     * minimum capacity argument.
+     *
+     * @param   minCapacity   the desired minimum capacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elementData.length)
+            grow(minCapacity);
+    }
+
+    /**
+     * Trims the capacity of this list to be the list's current size.
+     */
+    public void trimToSize() {
+        if (size < elementData.length)
+            elementData = (size == 0) ? EMPTY_ELEMENTDATA :
+                Arrays.copyOf(elementData, size);
+    }
+
+    private void ensureCapacityInternal(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        if (minCapacity > elementData.length) {
+            if (elementData == EMPTY_ELEMENTDATA)
+                minCapacity = Math.max(DEFAULT_CAPACITY, minCapacity);
+            grow(minCapacity);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        int oldCapacity = elementData.length;
+        int newCapacity = oldCapacity + (oldCapacity >> 1);
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = (minCapacity > MAX_ARRAY_SIZE) ?
+                Integer.MAX_VALUE : MAX_ARRAY_SIZE;
+        elementData = Arrays.copyOf(elementData, newCapacity);
+    }
+
+    /**
+     * Returns the number of elements in this list.
+     *
+     * @return the number of elements in this list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this list contains no elements.
+     *
+     * @return {@code true} if this list contains no elements
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this list contains the specified value.
+     *
+     * @param v value whose presence in this list is to be tested
+     * @return {@code true} if this list contains the specified value
+     */
+    public boolean contains(int v) {
+        return indexOf(v) >= 0;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the specified value
+     * in this list, or -1 if this list does not contain it.
+     *
+     * @param v value to search for
+     * @return the index of the first occurrence, or -1
+     */
+    public int indexOf(int v) {
+        int[] a = elementData;
+        for (int i = 0, n = size; i < n; i++)
+            if (a[i] == v)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last occurrence of the specified value
+     * in this list, or -1 if this list does not contain it.
+     *
+     * @param v value to search for
+     * @return the index of the last occurrence, or -1
+     */
+    public int lastIndexOf(int v) {
+        int[] a = elementData;
+        for (int i = size - 1; i >= 0; i--)
+            if (a[i] == v)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns the element at the specified position in this list.
+     *
+     * @param  index index of the element to return
+     * @return the element at the specified position in this list
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int get(int index) {
+        rangeCheck(index);
+        return elementData[index];
+    }
+
+    /**
+     * Replaces the element at the specified position in this list with
+     * the specified value.
+     *
+     * @param index index of the element to replace
+     * @param v value to be stored at the specified position
+     * @return the element previously at the specified position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int set(int index, int v) {
+        rangeCheck(index);
+        int oldValue = elementData[index];
+        elementData[index] = v;
+        return oldValue;
+    }
+
+    /**
+     * Appends the specified value to the end of this list.
+     *
+     * @param v value to be appended to this list
+     * @return {@code true}
+     */
+    public boolean add(int v) {
+        ensureCapacityInternal(size + 1);
+        modCount++;
+        elementData[size++] = v;
+        return true;
+    }
+
+    /**
+     * Inserts the specified value at the specified position in this
+     * list, shifting any subsequent elements to the right.
+     *
+     * @param index index at which the specified value is to be inserted
+     * @param v value to be inserted
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public void add(int index, int v) {
+        rangeCheckForAdd(index);
+        ensureCapacityInternal(size + 1);
+        modCount++;
+        System.arraycopy(elementData, index, elementData, index + 1,
+                         size - index);
+        elementData[index] = v;
+        size++;
+    }
+
+    /**
+     * Removes the element at the specified position in this list,
+     * shifting any subsequent elements to the left.
+     *
+     * @param index the index of the element to be removed
+     * @return the element that was removed from the list
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int removeAt(int index) {
+        rangeCheck(index);
+        modCount++;
+        int oldValue = elementData[index];
+        int numMoved = size - index - 1;
+        if (numMoved > 0)
+            System.arraycopy(elementData, index+1, elementData, index,
+                             numMoved);
+        --size;
+        return oldValue;
+    }
+
+    /**
+     * Removes the first occurrence of the specified value from this
+     * list, if it is present.
+     *
+     * @param v value to be removed from this list, if present
+     * @return {@code true} if this list contained the specified value
+     */
+    public boolean removeValue(int v) {
+        int i = indexOf(v);
+        if (i < 0)
+            return false;
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * Removes from this list all of the elements whose index is between
+     * {@code fromIndex}, inclusive, and {@code toIndex}, exclusive.
+     *
+     * @param fromIndex index of first element to be removed
+     * @param toIndex index after last element to be removed
+     * @throws IndexOutOfBoundsException if {@code fromIndex} or
+     *         {@code toIndex} is out of range, or
+     *         {@code fromIndex > toIndex}
+     */
+    public void removeRange(int fromIndex, int toIndex) {
+        subRangeCheck(fromIndex, toIndex);
+        modCount++;
+        System.arraycopy(elementData, toIndex, elementData, fromIndex,
+                         size - toIndex);
+        size -= toIndex - fromIndex;
+    }
+
+    /**
+     * Removes all of the elements from this list.
+     */
+    public void clear() {
+        modCount++;
+        size = 0;
+    }
+
+    /**
+     * Appends all of the elements of the specified array to the end of
+     * this list, in order.
+     *
+     * @param a array containing the values to be added
+     * @return {@code true} if this list changed as a result of the call
+     * @throws NullPointerException if the specified array is null
+     */
+    public boolean addAll(int[] a) {
+        return addAll(a, 0, a.length);
+    }
+
+    /**
+     * Appends {@code len} elements of the specified array, starting at
+     * {@code off}, to the end of this list, in order.
+     *
+     * @param a array containing the values to be added
+     * @param off the index of the first value to add
+     * @param len the number of values to add
+     * @return {@code true} if this list changed as a result of the call
+     * @throws NullPointerException if the specified array is null
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len} is
+     *         out of the bounds of the array
+     */
+    public boolean addAll(int[] a, int off, int len) {
+        if (off < 0 || len < 0 || off > a.length - len)
+            throw new IndexOutOfBoundsException("off: " + off + ", len: " +
+                                                len + ", length: " + a.length);
+        ensureCapacityInternal(size + len);
+        modCount++;
+        System.arraycopy(a, off, elementData, size, len);
+        size += len;
+        return len != 0;
+    }
+
+    /**
+     * Appends all of the elements of the specified list to the end of
+     * this list, in order.
+     *
+     * @param l list containing the values to be added
+     * @return {@code true} if this list changed as a result of the call
+     * @throws NullPointerException if the specified list is null
+     */
+    public boolean addAll(IntArrayList l) {
+        return addAll(l.elementData, 0, l.size);
+    }
+
+    /**
+     * Returns an array containing all of the elements in this list in
+     * proper sequence.
+     *
+     * @return an array containing all of the elements in this list
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(elementData, size);
+    }
+
+    /**
+     * Copies the elements of this list, starting at {@code index}, into
+     * the specified array.
+     *
+     * @param index the index of the first element to copy
+     * @param dest the destination array
+     * @param off the starting position in the destination array
+     * @param len the number of elements to copy
+     * @throws IndexOutOfBoundsException if the source or destination
+     *         range is out of bounds
+     */
+    public void getElements(int index, int[] dest, int off, int len) {
+        subRangeCheck(index, index + len);
+        System.arraycopy(elementData, index, dest, off, len);
+    }
+
+    /**
+     * Sorts the elements of this list into ascending numerical order.
+     *
+     * @see Arrays#sort(int[], int, int)
+     */
+    public void sort() {
+        Arrays.sort(elementData, 0, size);
+    }
+
+    /**
+     * Sorts the specified range of this list into ascending numerical
+     * order.
+     *
+     * @param fromIndex the index of the first element, inclusive
+     * @param toIndex the index of the last element, exclusive
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public void sort(int fromIndex, int toIndex) {
+        subRangeCheck(fromIndex, toIndex);
+        Arrays.sort(elementData, fromIndex, toIndex);
+    }
+
+    /**
+     * Searches this list for the specified value using the binary search
+     * algorithm.  The list must be sorted (as by {@link #sort()}) prior
+     * to making this call; if it is not, the results are undefined.
+     *
+     * @param key the value to be searched for
+     * @return index of the search key, if it is contained in the list;
+     *         otherwise, <tt>(-(<i>insertion point</i>) - 1)</tt>
+     * @see Arrays#binarySearch(int[], int, int, int)
+     */
+    public int binarySearch(int key) {
+        return Arrays.binarySearch(elementData, 0, size, key);
+    }
+
+    /**
+     * Returns an iterator over the elements in this list in proper
+     * sequence.
+     *
+     * @return an iterator over the elements in this list
+     */
+    public IntIterator iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Returns a {@code List<Integer>} view of this list.  Changes to the
+     * view are reflected in this list and vice versa.  The view does not
+     * permit {@code null} elements.
+     *
+     * @return a list view of this list
+     */
+    public List<Integer> asList() {
+        List<Integer> l = listView;
+        return (l != null) ? l : (listView = new ListView());
+    }
+
+    /**
+     * Compares the specified object with this list for equality.
+     * Returns {@code true} if it is also an {@code IntArrayList} with the
+     * same elements in the same order.
+     *
+     * @param o the object to be compared for equality with this list
+     * @return {@code true} if the specified object is equal to this list
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntArrayList))
+            return false;
+        IntArrayList l = (IntArrayList) o;
+        if (l.size != size)
+            return false;
+        int[] a = elementData, b = l.elementData;
+        for (int i = 0; i < size; i++)
+            if (a[i] != b[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this list.  This is the same value
+     * as that of a {@code List<Integer>} with the same elements.
+     *
+     * @return the hash code value for this list
+     */
+    public int hashCode() {
+        int hashCode = 1;
+        int[] a = elementData;
+        for (int i = 0; i < size; i++)
+            hashCode = 31*hashCode + a[i];
+        return hashCode;
+    }
+
+    /**
+     * Returns a string representation of this list, in the format of
+     * {@link java.util.AbstractCollection#toString}.
+     *
+     * @return a string representation of this list
+     */
+    public String toString() {
+        if (size == 0)
+            return "[]";
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = 0;;) {
+            sb.append(elementData[i]);
+            if (++i == size)
+                return sb.append(']').toString();
+            sb.append(',').append(' ');
+        }
+    }
+
+    /**
+     * Returns a shallow copy of this list.
+     *
+     * @return a clone of this list
+     */
+    public IntArrayList clone() {
+        try {
+            IntArrayList v = (IntArrayList) super.clone();
+            v.elementData = Arrays.copyOf(elementData, size);
+            v.modCount = 0;
+            v.listView = null;
+            return v;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError();
+        }
+    }
+
+    private void rangeCheck(int index) {
+        if (index >= size || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private void rangeCheckForAdd(int index) {
+        if (index > size || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private void subRangeCheck(int fromIndex, int toIndex) {
+        if (fromIndex < 0)
+            throw new IndexOutOfBoundsException("fromIndex = " + fromIndex);
+        if (toIndex > size)
+            throw new IndexOutOfBoundsException("toIndex = " + toIndex);
+        if (fromIndex > toIndex)
+            throw new IllegalArgumentException("fromIndex(" + fromIndex +
+                                               ") > toIndex(" + toIndex + ")");
+    }
+
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    /**
+     * Save the state of the list to a stream (that is, serialize it).
+     *
+     * @serialData The length of the array backing the list is emitted
+     *             (int), followed by all of its elements (each an
+     *             {@code int}) in the proper order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException{
+        int expectedModCount = modCount;
+        s.defaultWriteObject();
+        s.writeInt(size);
+        for (int i = 0; i < size; i++)
+            s.writeInt(elementData[i]);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Reconstitute the list from a stream (that is, deserialize it).
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        s.readInt(); // ignored
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + size);
+        int[] a = elementData = (size == 0) ? EMPTY_ELEMENTDATA : new int[size];
+        for (int i = 0; i < size; i++)
+            a[i] = s.readInt();
+    }
+
+    private class Itr implements IntIterator {
+        int cursor;       // index of next element to return
+        int lastRet = -1; // index of last element returned; -1 if no such
+        int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return cursor != size;
+        }
+
+        public int nextInt() {
+            checkForComodification();
+            int i = cursor;
+            if (i >= size)
+                throw new NoSuchElementException();
+            int[] a = IntArrayList.this.elementData;
+            if (i >= a.length)
+                throw new ConcurrentModificationException();
+            cursor = i + 1;
+            return a[lastRet = i];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+            IntArrayList.this.removeAt(lastRet);
+            cursor = lastRet;
+            lastRet = -1;
+            expectedModCount = modCount;
+        }
+
+        final void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    private class ListView extends AbstractList<Integer> implements RandomAccess {
+        public int size()                      { return size; }
+        public Integer get(int index)          { return IntArrayList.this.get(index); }
+        public Integer set(int index, Integer e) { return IntArrayList.this.set(index, e); }
+        public boolean contains(Object o) {
+            return (o instanceof Integer) && IntArrayList.this.contains((Integer) o);
+        }
+        public int indexOf(Object o) {
+            return (o instanceof Integer) ? IntArrayList.this.indexOf((Integer) o) : -1;
+        }
+        public int lastIndexOf(Object o) {
+            return (o instanceof Integer) ? IntArrayList.this.lastIndexOf((Integer) o) : -1;
+        }
+        public void add(int index, Integer e) {
+            IntArrayList.this.add(index, e);
+            modCount++;
+        }
+        public Integer remove(int index) {
+            int v = IntArrayList.this.removeAt(index);
+            modCount++;
+            return v;
+        }
+        public boolean addAll(Collection<? extends Integer> c) {
+            int n = c.size();
+            if (n == 0)
+                return false;
+            IntArrayList.this.ensureCapacityInternal(size + n);
+            for (Integer e : c)
+                IntArrayList.this.add(e);
+            modCount++;
+            return true;
+        }
+        public void clear() {
+            IntArrayList.this.clear();
+            modCount++;
+        }
+        protected void removeRange(int fromIndex, int toIndex) {
+            IntArrayList.this.removeRange(fromIndex, toIndex);
+            modCount++;
+        }
+    }
+}
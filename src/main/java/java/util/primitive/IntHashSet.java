@@ -0,0 +1,651 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.primitive;
+
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Hash set of {@code int} values, implemented as an open-addressing
+ * table with linear probing.  Unlike a {@code HashSet<Integer>}, which
+ * allocates an {@code Integer} and a map entry per element, this set
+ * stores its elements directly in a single {@code int[]}, so adding
+ * and looking up values allocates nothing except when the table grows.
+ *
+ * <p>The table capacity is always a power of two, and is doubled when
+ * the number of elements exceeds the load factor times the capacity.
+ * Element hash codes are spread by multiplication with a constant
+ * derived from the golden ratio, so that sequential or otherwise
+ * regular values still distribute well.  Removal uses backward-shift
+ * deletion rather than tombstones, so lookup cost depends only on the
+ * current contents and not on the history of removals.  Slots holding
+ * {@code 0} are free; the element {@code 0} itself is kept separately.
+ *
+ * <p>The set can be viewed as a {@code Set<Integer>} via {@link #asSet}
+ * for interoperation with code written against the collection
+ * interfaces.  Bulk operations over {@code int[]} arrays are provided
+ * by {@link #addAll(int[])}, {@link #removeAll(int[])}, {@link
+ * #containsAll(int[])} and {@link #toArray}.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * The iterators returned by {@link #iterator} are <em>fail-fast</em> on
+ * a best-effort basis, as for {@code HashSet}.  Iteration order is
+ * unspecified.
+ *
+ * @see IntArrayList
+ * @see LongHashMap
+ * @since 1.7
+ */
+public class IntHashSet implements Cloneable, java.io.Serializable {
+    private static final long serialVersionUID = 5024744406713321678L;
+
+    /**
+     * The number of elements an empty set created without arguments
+     * can hold before resizing.
+     */
+    static final int DEFAULT_EXPECTED_SIZE = 16;
+
+    /**
+     * The maximum capacity, used if a higher value is implicitly specified
+     * by either of the constructors with arguments.
+     * MUST be a power of two <= 1<<30.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * The table of elements, with 0 marking free slots. Length MUST
+     * always be a power of two.
+     */
+    transient int[] keys;
+
+    /**
+     * Whether the set contains the element 0, which cannot be stored in
+     * the table.
+     */
+    transient boolean containsZero;
+
+    /**
+     * The number of elements contained in this set, including 0.
+     */
+    transient int size;
+
+    /**
+     * The size at which to double the table (capacity * load factor).
+     */
+    transient int threshold;
+
+    /**
+     * The load factor for the hash table.
+     *
+     * @serial
+     */
+    final float loadFactor;
+
+    /**
+     * The number of times this set has been structurally modified.
+     */
+    transient int modCount;
+
+    /**
+     * Cached Set view.
+     */
+    private transient Set<Integer> setView;
+
+    /**
+     * Constructs an empty set able to hold 16 elements without
+     * resizing, with the default load factor (0.75).
+     */
+    public IntHashSet() {
+        this(DEFAULT_EXPECTED_SIZE, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty set able to hold the specified number of
+     * elements without resizing, with the default load factor (0.75).
+     *
+     * @param  expectedSize the expected number of elements
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public IntHashSet(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty set able to hold the specified number of
+     * elements without resizing, with the specified load factor.
+     *
+     * @param  expectedSize the expected number of elements
+     * @param  loadFactor   the load factor, which must be less than 1
+     *         since every probe sequence must end at a free slot
+     * @throws IllegalArgumentException if the expected size is negative
+     *         or the load factor is not in the range (0, 1)
+     */
+    public IntHashSet(int expectedSize, float loadFactor) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Illegal expected size: " +
+                                               expectedSize);
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+        this.loadFactor = loadFactor;
+        int cap = tableSizeFor(expectedSize, loadFactor);
+        keys = new int[cap];
+        threshold = thresholdFor(cap, loadFactor);
+    }
+
+    /**
+     * Constructs a set containing the elements of the specified array.
+     *
+     * @param a the array whose elements are to be placed into this set
+     * @throws NullPointerException if the specified array is null
+     */
+    public IntHashSet(int[] a) {
+        this(a.length, DEFAULT_LOAD_FACTOR);
+        addAll(a);
+    }
+
+    /**
+     * Returns the power-of-two table capacity for the given number of
+     * elements and load factor.
+     */
+    static int tableSizeFor(int expectedSize, float loadFactor) {
+        long needed = (long) Math.ceil(expectedSize / (double) loadFactor) + 1;
+        if (needed >= MAXIMUM_CAPACITY)
+            return MAXIMUM_CAPACITY;
+        int cap = 2;
+        while (cap < needed)
+            cap <<= 1;
+        return cap;
+    }
+
+    /**
+     * Returns the resize threshold for the given capacity, leaving at
+     * least one free slot.
+     */
+    static int thresholdFor(int cap, float loadFactor) {
+        return Math.min((int) Math.ceil(cap * loadFactor), cap - 1);
+    }
+
+    /**
+     * Spreads the bits of an element so that consecutive values are
+     * scattered over the table.
+     */
+    static int mix(int x) {
+        int h = x * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the number of elements in this set.
+     *
+     * @return the number of elements in this set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this set contains no elements.
+     *
+     * @return {@code true} if this set contains no elements
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this set contains the specified element.
+     *
+     * @param v element whose presence in this set is to be tested
+     * @return {@code true} if this set contains the specified element
+     */
+    public boolean contains(int v) {
+        if (v == 0)
+            return containsZero;
+        int[] tab = keys;
+        int m = tab.length - 1;
+        for (int i = mix(v) & m;; i = (i + 1) & m) {
+            int k = tab[i];
+            if (k == v)
+                return true;
+            if (k == 0)
+                return false;
+        }
+    }
+
+    /**
+     * Adds the specified element to this set if it is not already
+     * present.
+     *
+     * @param v element to be added to this set
+     * @return {@code true} if this set did not already contain the
+     *         specified element
+     */
+    public boolean add(int v) {
+        if (v == 0) {
+            if (containsZero)
+                return false;
+            containsZero = true;
+        } else {
+            int[] tab = keys;
+            int m = tab.length - 1;
+            int i = mix(v) & m;
+            for (int k; (k = tab[i]) != 0; i = (i + 1) & m)
+                if (k == v)
+                    return false;
+            tab[i] = v;
+        }
+        modCount++;
+        if (++size > threshold)
+            resize(keys.length << 1);
+        return true;
+    }
+
+    /**
+     * Removes the specified element from this set if it is present.
+     *
+     * @param v element to be removed from this set, if present
+     * @return {@code true} if this set contained the specified element
+     */
+    public boolean remove(int v) {
+        if (v == 0) {
+            if (!containsZero)
+                return false;
+            containsZero = false;
+        } else {
+            int[] tab = keys;
+            int m = tab.length - 1;
+            int i = mix(v) & m;
+            for (int k; (k = tab[i]) != v; i = (i + 1) & m)
+                if (k == 0)
+                    return false;
+            shiftKeys(i);
+        }
+        modCount++;
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all of the elements from this set.
+     */
+    public void clear() {
+        modCount++;
+        java.util.Arrays.fill(keys, 0);
+        containsZero = false;
+        size = 0;
+    }
+
+    /**
+     * Empties the slot at pos by shifting back the following elements of
+     * its run that may occupy it, so that no lookup is cut short.
+     */
+    final void shiftKeys(int pos) {
+        int[] tab = keys;
+        int m = tab.length - 1;
+        for (;;) {
+            int last = pos, k;
+            for (pos = (pos + 1) & m;; pos = (pos + 1) & m) {
+                if ((k = tab[pos]) == 0) {
+                    tab[last] = 0;
+                    return;
+                }
+                int slot = mix(k) & m;
+                // k may move to last unless its home slot lies
+                // cyclically in (last, pos]
+                if (last <= pos ? (last >= slot || slot > pos)
+                                : (last >= slot && slot > pos))
+                    break;
+            }
+            tab[last] = k;
+        }
+    }
+
+    /**
+     * Rehashes the elements into a new table of the given capacity.
+     */
+    final void resize(int newCapacity) {
+        int[] oldTab = keys;
+        if (oldTab.length >= MAXIMUM_CAPACITY) {
+            if (size > MAXIMUM_CAPACITY - 1)
+                throw new IllegalStateException("Set too large");
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        int[] newTab = new int[newCapacity];
+        int m = newCapacity - 1;
+        for (int j = 0; j < oldTab.length; j++) {
+            int k = oldTab[j];
+            if (k != 0) {
+                int i = mix(k) & m;
+                while (newTab[i] != 0)
+                    i = (i + 1) & m;
+                newTab[i] = k;
+            }
+        }
+        keys = newTab;
+        threshold = thresholdFor(newCapacity, loadFactor);
+    }
+
+    /**
+     * Adds all of the elements of the specified array to this set.
+     *
+     * @param a array containing elements to be added to this set
+     * @return {@code true} if this set changed as a result of the call
+     * @throws NullPointerException if the specified array is null
+     */
+    public boolean addAll(int[] a) {
+        int needed = tableSizeFor(size + a.length, loadFactor);
+        if (needed > keys.length)
+            resize(needed);
+        boolean modified = false;
+        for (int v : a)
+            if (add(v))
+                modified = true;
+        return modified;
+    }
+
+    /**
+     * Removes from this set all of the elements of the specified array.
+     *
+     * @param a array containing elements to be removed from this set
+     * @return {@code true} if this set changed as a result of the call
+     * @throws NullPointerException if the specified array is null
+     */
+    public boolean removeAll(int[] a) {
+        boolean modified = false;
+        for (int v : a)
+            if (remove(v))
+                modified = true;
+        return modified;
+    }
+
+    /**
+     * Returns {@code true} if this set contains all of the elements of
+     * the specified array.
+     *
+     * @param a array to be checked for containment in this set
+     * @return {@code true} if this set contains all of the elements of
+     *         the specified array
+     * @throws NullPointerException if the specified array is null
+     */
+    public boolean containsAll(int[] a) {
+        for (int v : a)
+            if (!contains(v))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this set, in
+     * no particular order.
+     *
+     * @return an array containing all of the elements in this set
+     */
+    public int[] toArray() {
+        int[] r = new int[size];
+        int n = 0;
+        if (containsZero)
+            r[n++] = 0;
+        for (int k : keys)
+            if (k != 0)
+                r[n++] = k;
+        return r;
+    }
+
+    /**
+     * Returns an iterator over the elements in this set, in no
+     * particular order.
+     *
+     * @return an iterator over the elements in this set
+     */
+    public IntIterator iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Returns a {@code Set<Integer>} view of this set.  Changes to the
+     * view are reflected in this set and vice versa.  The view does not
+     * permit {@code null} elements.
+     *
+     * @return a set view of this set
+     */
+    public Set<Integer> asSet() {
+        Set<Integer> s = setView;
+        return (s != null) ? s : (setView = new SetView());
+    }
+
+    /**
+     * Compares the specified object with this set for equality.  Returns
+     * {@code true} if it is also an {@code IntHashSet} containing the
+     * same elements.
+     *
+     * @param o object to be compared for equality with this set
+     * @return {@code true} if the specified object is equal to this set
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntHashSet))
+            return false;
+        IntHashSet s = (IntHashSet) o;
+        if (s.size != size || s.containsZero != containsZero)
+            return false;
+        for (int k : keys)
+            if (k != 0 && !s.contains(k))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this set.  This is the same value
+     * as that of a {@code Set<Integer>} with the same elements.
+     *
+     * @return the hash code value for this set
+     */
+    public int hashCode() {
+        int h = 0;
+        for (int k : keys)
+            h += k;
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this set, in the format of
+     * {@link java.util.AbstractCollection#toString}.
+     *
+     * @return a string representation of this set
+     */
+    public String toString() {
+        IntIterator it = iterator();
+        if (!it.hasNext())
+            return "[]";
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (;;) {
+            sb.append(it.nextInt());
+            if (!it.hasNext())
+                return sb.append(']').toString();
+            sb.append(',').append(' ');
+        }
+    }
+
+    /**
+     * Returns a shallow copy of this set.
+     *
+     * @return a clone of this set
+     */
+    public IntHashSet clone() {
+        try {
+            IntHashSet s = (IntHashSet) super.clone();
+            s.keys = keys.clone();
+            s.modCount = 0;
+            s.setView = null;
+            return s;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Save the state of this set to a stream (that is, serialize it).
+     *
+     * @serialData The size of the set (the number of elements it
+     *             contains) is emitted (int), followed by all of its
+     *             elements (each an int) in no particular order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        if (containsZero)
+            s.writeInt(0);
+        for (int k : keys)
+            if (k != 0)
+                s.writeInt(k);
+    }
+
+    /**
+     * Reconstitute the set from a stream (that is, deserialize it).
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new java.io.InvalidObjectException("Illegal load factor: " +
+                                                     loadFactor);
+        int n = s.readInt();
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        int cap = tableSizeFor(n, loadFactor);
+        keys = new int[cap];
+        threshold = thresholdFor(cap, loadFactor);
+        for (int i = 0; i < n; i++)
+            add(s.readInt());
+    }
+
+    /**
+     * Iterator walking the table from the last slot down.  Removal
+     * through the iterator may shift an element not yet visited (one
+     * whose probe run wrapped around the end of the table) into an
+     * already visited slot; such elements are remembered and returned
+     * after the table walk.
+     */
+    private final class Itr implements IntIterator {
+        int pos = keys.length;          // next slot to examine is pos-1
+        int lastRet = -1;               // slot of last element returned
+        boolean lastWasZero;            // last element returned was 0
+        int lastWrapped;                // last element returned from wrapped
+        boolean mustReturnZero = containsZero;
+        int remaining = size;
+        IntArrayList wrapped;           // elements shifted past the cursor
+        int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return remaining != 0;
+        }
+
+        public int nextInt() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining == 0)
+                throw new NoSuchElementException();
+            remaining--;
+            if (mustReturnZero) {
+                mustReturnZero = false;
+                lastWasZero = true;
+                return 0;
+            }
+            lastWasZero = false;
+            int[] tab = keys;
+            for (;;) {
+                if (--pos < 0) {
+                    lastRet = Integer.MIN_VALUE;
+                    return lastWrapped = wrapped.get(-pos - 1);
+                }
+                int k = tab[pos];
+                if (k != 0)
+                    return tab[lastRet = pos];
+            }
+        }
+
+        public void remove() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (lastWasZero) {
+                lastWasZero = false;
+                containsZero = false;
+            } else if (lastRet == Integer.MIN_VALUE) {
+                lastRet = -1;
+                IntHashSet.this.remove(lastWrapped);
+                expectedModCount = modCount;
+                return;
+            } else if (lastRet >= 0) {
+                shiftKeys(lastRet);
+                lastRet = -1;
+            } else
+                throw new IllegalStateException();
+            size--;
+            expectedModCount = ++modCount;
+        }
+
+        /**
+         * Variant of IntHashSet.shiftKeys that records elements moved
+         * from the unvisited part of the table into the visited part.
+         */
+        private void shiftKeys(int pos) {
+            int[] tab = keys;
+            int m = tab.length - 1;
+            for (;;) {
+                int last = pos, k;
+                for (pos = (pos + 1) & m;; pos = (pos + 1) & m) {
+                    if ((k = tab[pos]) == 0) {
+                        tab[last] = 0;
+                        return;
+                    }
+                    int slot = mix(k) & m;
+                    if (last <= pos ? (last >= slot || slot > pos)
+                                    : (last >= slot && slot > pos))
+                        break;
+                }
+                if (pos < last) {
+                    if (wrapped == null)
+                        wrapped = new IntArrayList(2);
+                    wrapped.add(k);
+                }
+                tab[last] = k;
+            }
+        }
+    }
+
+    private final class SetView extends AbstractSet<Integer> {
+        public int size()                 { return size; }
+        public void clear()               { IntHashSet.this.clear(); }
+        public boolean add(Integer e)     { return IntHashSet.this.add(e); }
+        public boolean contains(Object o) {
+            return (o instanceof Integer) && IntHashSet.this.contains((Integer) o);
+        }
+        public boolean remove(Object o) {
+            return (o instanceof Integer) && IntHashSet.this.remove((Integer) o);
+        }
+        public Iterator<Integer> iterator() {
+            final IntIterator it = IntHashSet.this.iterator();
+            return new Iterator<Integer>() {
+                public boolean hasNext() { return it.hasNext(); }
+                public Integer next()    { return it.nextInt(); }
+                public void remove()     { it.remove(); }
+            };
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.primitive;
+
+/**
+ * An iterator over a collection of {@code int} values.  Behaves like
+ * {@link java.util.Iterator}, but returns the elements without boxing
+ * them.
+ *
+ * @see IntArrayList#iterator()
+ * @see IntHashSet#iterator()
+ * @since 1.7
+ */
+public interface IntIterator {
+    /**
+     * Returns {@code true} if the iteration has more elements.
+     *
+     * @return {@code true} if the iteration has more elements
+     */
+    boolean hasNext();
+
+    /**
+     * Returns the next element in the iteration.
+     *
+     * @return the next element in the iteration
+     * @throws java.util.NoSuchElementException if the iteration has no
+     *         more elements
+     */
+    int nextInt();
+
+    /**
+     * Removes from the underlying collection the last element returned
+     * by this iterator.  This method can be called only once per call
+     * to {@link #nextInt}.
+     *
+     * @throws UnsupportedOperationException if the {@code remove}
+     *         operation is not supported by this iterator
+     * @throws IllegalStateException if the {@code nextInt} method has not
+     *         yet been called, or the {@code remove} method has already
+     *         been called after the last call to the {@code nextInt}
+     *         method
+     */
+    void remove();
+}
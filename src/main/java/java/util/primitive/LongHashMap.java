@@ -0,0 +1,983 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.primitive;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Hash map from {@code long} keys to {@code long} values, implemented
+ * as an open-addressing table with linear probing over two parallel
+ * arrays.  Unlike a {@code HashMap<Long,Long>}, which allocates two
+ * boxed values and an entry per mapping, this map stores keys and
+ * values directly, so lookups, updates and in particular counter-style
+ * aggregation with {@link #addTo} allocate nothing except when the
+ * table grows.
+ *
+ * <p>The table capacity is always a power of two, and is doubled when
+ * the number of mappings exceeds the load factor times the capacity.
+ * Key hash codes are spread by multiplication with a constant derived
+ * from the golden ratio.  Removal uses backward-shift deletion rather
+ * than tombstones.  Key slots holding {@code 0} are free; the mapping
+ * for key {@code 0} itself is kept separately.
+ *
+ * <p>Since values are primitives, {@link #get} cannot return
+ * {@code null} for absent keys; it returns {@code 0} instead, as do
+ * {@link #put} and {@link #remove} when there was no previous mapping.
+ * Use {@link #containsKey} or {@link #getOrDefault} where the
+ * distinction matters.
+ *
+ * <p>The map can be viewed as a {@code Map<Long,Long>} via {@link
+ * #asMap} for interoperation with code written against the collection
+ * interfaces.  Bulk operations over arrays are provided by {@link
+ * #putAll(long[], long[])}, {@link #addToAll}, {@link #keys} and
+ * {@link #values}, and the mappings can be traversed without boxing
+ * using a {@link Cursor}.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * Iterators and cursors are <em>fail-fast</em> on a best-effort basis,
+ * as for {@code HashMap}.  Iteration order is unspecified.
+ *
+ * @see IntArrayList
+ * @see IntHashSet
+ * @since 1.7
+ */
+public class LongHashMap implements Cloneable, java.io.Serializable {
+    private static final long serialVersionUID = -2298720713917658262L;
+
+    /**
+     * The number of mappings an empty map created without arguments
+     * can hold before resizing.
+     */
+    static final int DEFAULT_EXPECTED_SIZE = 16;
+
+    /**
+     * The maximum capacity. MUST be a power of two <= 1<<30.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * The table of keys, with 0 marking free slots. Length MUST always
+     * be a power of two.
+     */
+    transient long[] keys;
+
+    /**
+     * The table of values, parallel to keys.
+     */
+    transient long[] vals;
+
+    /**
+     * Whether the map contains a mapping for key 0, which cannot be
+     * stored in the table.
+     */
+    transient boolean containsZeroKey;
+
+    /**
+     * The value mapped to key 0, if containsZeroKey.
+     */
+    transient long zeroValue;
+
+    /**
+     * The number of mappings contained in this map, including that of
+     * key 0.
+     */
+    transient int size;
+
+    /**
+     * The size at which to double the table.
+     */
+    transient int threshold;
+
+    /**
+     * The load factor for the hash table.
+     *
+     * @serial
+     */
+    final float loadFactor;
+
+    /**
+     * The number of times this map has been structurally modified.
+     */
+    transient int modCount;
+
+    /**
+     * Cached Map view.
+     */
+    private transient Map<Long,Long> mapView;
+
+    /**
+     * Constructs an empty map able to hold 16 mappings without
+     * resizing, with the default load factor (0.75).
+     */
+    public LongHashMap() {
+        this(DEFAULT_EXPECTED_SIZE, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map able to hold the specified number of
+     * mappings without resizing, with the default load factor (0.75).
+     *
+     * @param  expectedSize the expected number of mappings
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public LongHashMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map able to hold the specified number of
+     * mappings without resizing, with the specified load factor.
+     *
+     * @param  expectedSize the expected number of mappings
+     * @param  loadFactor   the load factor, which must be less than 1
+     *         since every probe sequence must end at a free slot
+     * @throws IllegalArgumentException if the expected size is negative
+     *         or the load factor is not in the range (0, 1)
+     */
+    public LongHashMap(int expectedSize, float loadFactor) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Illegal expected size: " +
+                                               expectedSize);
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+        this.loadFactor = loadFactor;
+        int cap = IntHashSet.tableSizeFor(expectedSize, loadFactor);
+        keys = new long[cap];
+        vals = new long[cap];
+        threshold = IntHashSet.thresholdFor(cap, loadFactor);
+    }
+
+    /**
+     * Spreads the bits of a key so that consecutive values are
+     * scattered over the table.
+     */
+    static int mix(long x) {
+        long h = x * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+
+    /**
+     * Returns the slot holding the given nonzero key, or -1 if none.
+     */
+    final int slotOf(long key) {
+        long[] tab = keys;
+        int m = tab.length - 1;
+        for (int i = mix(key) & m;; i = (i + 1) & m) {
+            long k = tab[i];
+            if (k == key)
+                return i;
+            if (k == 0L)
+                return -1;
+        }
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the
+     *         specified key
+     */
+    public boolean containsKey(long key) {
+        return (key == 0L) ? containsZeroKey : slotOf(key) >= 0;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation requires time linear in the
+     * capacity of the map.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the
+     *         specified value
+     */
+    public boolean containsValue(long value) {
+        if (containsZeroKey && zeroValue == value)
+            return true;
+        long[] tab = keys, vs = vals;
+        for (int i = 0; i < tab.length; i++)
+            if (tab[i] != 0L && vs[i] == value)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code 0} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         {@code 0} if this map contains no mapping for the key
+     */
+    public long get(long key) {
+        return getOrDefault(key, 0L);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code defaultValue} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if there is no mapping
+     * @return the value to which the specified key is mapped, or
+     *         {@code defaultValue} if this map contains no mapping for
+     *         the key
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        if (key == 0L)
+            return containsZeroKey ? zeroValue : defaultValue;
+        int i = slotOf(key);
+        return (i >= 0) ? vals[i] : defaultValue;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this
+     * map, replacing any previous value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code 0} if there was no mapping for {@code key}
+     */
+    public long put(long key, long value) {
+        if (key == 0L) {
+            long old = zeroValue;
+            zeroValue = value;
+            if (containsZeroKey)
+                return old;
+            containsZeroKey = true;
+            afterInsertion();
+            return 0L;
+        }
+        long[] tab = keys;
+        int m = tab.length - 1;
+        int i = mix(key) & m;
+        for (long k; (k = tab[i]) != 0L; i = (i + 1) & m) {
+            if (k == key) {
+                long old = vals[i];
+                vals[i] = value;
+                return old;
+            }
+        }
+        tab[i] = key;
+        vals[i] = value;
+        afterInsertion();
+        return 0L;
+    }
+
+    /**
+     * Adds {@code delta} to the value associated with the specified key,
+     * treating an absent mapping as {@code 0}.  This is the aggregation
+     * primitive for counters and sums: it performs a single probe and
+     * no allocation.
+     *
+     * @param key key whose value is to be incremented
+     * @param delta the amount to add
+     * @return the new value associated with {@code key}
+     */
+    public long addTo(long key, long delta) {
+        if (key == 0L) {
+            if (!containsZeroKey) {
+                containsZeroKey = true;
+                zeroValue = delta;
+                afterInsertion();
+                return delta;
+            }
+            return zeroValue += delta;
+        }
+        long[] tab = keys;
+        int m = tab.length - 1;
+        int i = mix(key) & m;
+        for (long k; (k = tab[i]) != 0L; i = (i + 1) & m)
+            if (k == key)
+                return vals[i] += delta;
+        tab[i] = key;
+        vals[i] = delta;
+        afterInsertion();
+        return delta;
+    }
+
+    private void afterInsertion() {
+        modCount++;
+        if (++size > threshold)
+            resize(keys.length << 1);
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if
+     * present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with {@code key}, or
+     *         {@code 0} if there was no mapping for {@code key}
+     */
+    public long remove(long key) {
+        long old;
+        if (key == 0L) {
+            if (!containsZeroKey)
+                return 0L;
+            containsZeroKey = false;
+            old = zeroValue;
+            zeroValue = 0L;
+        } else {
+            int i = slotOf(key);
+            if (i < 0)
+                return 0L;
+            old = vals[i];
+            shiftKeys(i);
+        }
+        modCount++;
+        size--;
+        return old;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        modCount++;
+        java.util.Arrays.fill(keys, 0L);
+        containsZeroKey = false;
+        zeroValue = 0L;
+        size = 0;
+    }
+
+    /**
+     * Empties the slot at pos by shifting back the following mappings
+     * of its run that may occupy it, so that no lookup is cut short.
+     */
+    final void shiftKeys(int pos) {
+        long[] tab = keys, vs = vals;
+        int m = tab.length - 1;
+        for (;;) {
+            int last = pos;
+            long k;
+            for (pos = (pos + 1) & m;; pos = (pos + 1) & m) {
+                if ((k = tab[pos]) == 0L) {
+                    tab[last] = 0L;
+                    return;
+                }
+                int slot = mix(k) & m;
+                // k may move to last unless its home slot lies
+                // cyclically in (last, pos]
+                if (last <= pos ? (last >= slot || slot > pos)
+                                : (last >= slot && slot > pos))
+                    break;
+            }
+            tab[last] = k;
+            vs[last] = vs[pos];
+        }
+    }
+
+    /**
+     * Rehashes the mappings into new tables of the given capacity.
+     */
+    final void resize(int newCapacity) {
+        long[] oldTab = keys, oldVals = vals;
+        if (oldTab.length >= MAXIMUM_CAPACITY) {
+            if (size > MAXIMUM_CAPACITY - 1)
+                throw new IllegalStateException("Map too large");
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        long[] newTab = new long[newCapacity];
+        long[] newVals = new long[newCapacity];
+        int m = newCapacity - 1;
+        for (int j = 0; j < oldTab.length; j++) {
+            long k = oldTab[j];
+            if (k != 0L) {
+                int i = mix(k) & m;
+                while (newTab[i] != 0L)
+                    i = (i + 1) & m;
+                newTab[i] = k;
+                newVals[i] = oldVals[j];
+            }
+        }
+        keys = newTab;
+        vals = newVals;
+        threshold = IntHashSet.thresholdFor(newCapacity, loadFactor);
+    }
+
+    private void ensureExpected(int n) {
+        int needed = IntHashSet.tableSizeFor(n, loadFactor);
+        if (needed > keys.length)
+            resize(needed);
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this map.
+     *
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public void putAll(LongHashMap m) {
+        ensureExpected(size + m.size);
+        if (m.containsZeroKey)
+            put(0L, m.zeroValue);
+        long[] tab = m.keys, vs = m.vals;
+        for (int i = 0; i < tab.length; i++)
+            if (tab[i] != 0L)
+                put(tab[i], vs[i]);
+    }
+
+    /**
+     * Associates each {@code values[i]} with {@code keys[i]} in this
+     * map.  Later pairs replace earlier ones with the same key.
+     *
+     * @param keys the keys
+     * @param values the values, parallel to keys
+     * @throws NullPointerException if either array is null
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public void putAll(long[] keys, long[] values) {
+        if (keys.length != values.length)
+            throw new IllegalArgumentException("Array lengths differ: " +
+                                               keys.length + " != " +
+                                               values.length);
+        ensureExpected(size + keys.length);
+        for (int i = 0; i < keys.length; i++)
+            put(keys[i], values[i]);
+    }
+
+    /**
+     * Adds each {@code deltas[i]} to the value associated with
+     * {@code keys[i]}, as if by {@link #addTo}.
+     *
+     * @param keys the keys
+     * @param deltas the amounts to add, parallel to keys
+     * @throws NullPointerException if either array is null
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public void addToAll(long[] keys, long[] deltas) {
+        if (keys.length != deltas.length)
+            throw new IllegalArgumentException("Array lengths differ: " +
+                                               keys.length + " != " +
+                                               deltas.length);
+        for (int i = 0; i < keys.length; i++)
+            addTo(keys[i], deltas[i]);
+    }
+
+    /**
+     * Returns an array containing all of the keys in this map, in no
+     * particular order.
+     *
+     * @return an array containing all of the keys in this map
+     */
+    public long[] keys() {
+        long[] r = new long[size];
+        int n = 0;
+        if (containsZeroKey)
+            r[n++] = 0L;
+        for (long k : keys)
+            if (k != 0L)
+                r[n++] = k;
+        return r;
+    }
+
+    /**
+     * Returns an array containing all of the values in this map, in the
+     * same order as the keys returned by {@link #keys}, absent
+     * intervening modification.
+     *
+     * @return an array containing all of the values in this map
+     */
+    public long[] values() {
+        long[] r = new long[size];
+        int n = 0;
+        if (containsZeroKey)
+            r[n++] = zeroValue;
+        long[] tab = keys, vs = vals;
+        for (int i = 0; i < tab.length; i++)
+            if (tab[i] != 0L)
+                r[n++] = vs[i];
+        return r;
+    }
+
+    /**
+     * Returns an iterator over the keys of this map.  Its {@code remove}
+     * method removes the corresponding mapping.
+     *
+     * @return an iterator over the keys of this map
+     */
+    public LongIterator keyIterator() {
+        return new KeyIterator();
+    }
+
+    /**
+     * Returns a cursor positioned before the first mapping of this map.
+     *
+     * @return a cursor over the mappings of this map
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Returns a {@code Map<Long,Long>} view of this map.  Changes to the
+     * view are reflected in this map and vice versa.  The view does not
+     * permit {@code null} keys or values.
+     *
+     * @return a map view of this map
+     */
+    public Map<Long,Long> asMap() {
+        Map<Long,Long> mv = mapView;
+        return (mv != null) ? mv : (mapView = new MapView());
+    }
+
+    /**
+     * Compares the specified object with this map for equality.
+     * Returns {@code true} if it is also a {@code LongHashMap}
+     * representing the same mappings.
+     *
+     * @param o object to be compared for equality with this map
+     * @return {@code true} if the specified object is equal to this map
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof LongHashMap))
+            return false;
+        LongHashMap m = (LongHashMap) o;
+        if (m.size != size || m.containsZeroKey != containsZeroKey ||
+            (containsZeroKey && m.zeroValue != zeroValue))
+            return false;
+        long[] tab = keys, vs = vals;
+        for (int i = 0; i < tab.length; i++) {
+            long k = tab[i];
+            if (k != 0L) {
+                int j = m.slotOf(k);
+                if (j < 0 || m.vals[j] != vs[i])
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this map.  This is the same value
+     * as that of a {@code Map<Long,Long>} with the same mappings.
+     *
+     * @return the hash code value for this map
+     */
+    public int hashCode() {
+        int h = containsZeroKey ? hash(zeroValue) : 0;
+        long[] tab = keys, vs = vals;
+        for (int i = 0; i < tab.length; i++)
+            if (tab[i] != 0L)
+                h += hash(tab[i]) ^ hash(vs[i]);
+        return h;
+    }
+
+    private static int hash(long v) {
+        return (int) (v ^ (v >>> 32));
+    }
+
+    /**
+     * Returns a string representation of this map, in the format of
+     * {@link AbstractMap#toString}.
+     *
+     * @return a string representation of this map
+     */
+    public String toString() {
+        Cursor c = cursor();
+        if (!c.advance())
+            return "{}";
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        for (;;) {
+            sb.append(c.key()).append('=').append(c.value());
+            if (!c.advance())
+                return sb.append('}').toString();
+            sb.append(',').append(' ');
+        }
+    }
+
+    /**
+     * Returns a shallow copy of this map.
+     *
+     * @return a clone of this map
+     */
+    public LongHashMap clone() {
+        try {
+            LongHashMap m = (LongHashMap) super.clone();
+            m.keys = keys.clone();
+            m.vals = vals.clone();
+            m.modCount = 0;
+            m.mapView = null;
+            return m;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Save the state of this map to a stream (that is, serialize it).
+     *
+     * @serialData The size of the map (the number of key-value
+     *             mappings) is emitted (int), followed by the key (long)
+     *             and value (long) for each mapping, in no particular
+     *             order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        if (containsZeroKey) {
+            s.writeLong(0L);
+            s.writeLong(zeroValue);
+        }
+        long[] tab = keys, vs = vals;
+        for (int i = 0; i < tab.length; i++) {
+            if (tab[i] != 0L) {
+                s.writeLong(tab[i]);
+                s.writeLong(vs[i]);
+            }
+        }
+    }
+
+    /**
+     * Reconstitute the map from a stream (that is, deserialize it).
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new java.io.InvalidObjectException("Illegal load factor: " +
+                                                     loadFactor);
+        int n = s.readInt();
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        int cap = IntHashSet.tableSizeFor(n, loadFactor);
+        keys = new long[cap];
+        vals = new long[cap];
+        threshold = IntHashSet.thresholdFor(cap, loadFactor);
+        for (int i = 0; i < n; i++) {
+            long k = s.readLong();
+            put(k, s.readLong());
+        }
+    }
+
+    /**
+     * Base of iterators and cursors, walking the table from the last
+     * slot down.  Removal through an iterator may shift a mapping not
+     * yet visited (one whose probe run wrapped around the end of the
+     * table) into an already visited slot; such keys are remembered
+     * and returned after the table walk.
+     */
+    abstract class HashIterator {
+        int pos = keys.length;          // next slot to examine is pos-1
+        int lastRet = -1;               // slot of last mapping returned
+        long lastKey;                   // key of last mapping returned
+        boolean lastWasZero;            // last mapping returned was key 0
+        boolean mustReturnZero = containsZeroKey;
+        int remaining = size;
+        long[] wrapped;                 // keys shifted past the cursor
+        int wrappedCount;
+        int expectedModCount = modCount;
+
+        public final boolean hasNext() {
+            return remaining != 0;
+        }
+
+        /**
+         * Advances to the next mapping, setting lastKey and either
+         * lastRet or lastWasZero.
+         */
+        final void nextEntry() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining == 0)
+                throw new NoSuchElementException();
+            remaining--;
+            if (mustReturnZero) {
+                mustReturnZero = false;
+                lastWasZero = true;
+                lastRet = -1;
+                lastKey = 0L;
+                return;
+            }
+            lastWasZero = false;
+            long[] tab = keys;
+            for (;;) {
+                if (--pos < 0) {
+                    lastKey = wrapped[-pos - 1];
+                    lastRet = slotOf(lastKey);
+                    return;
+                }
+                long k = tab[pos];
+                if (k != 0L) {
+                    lastKey = k;
+                    lastRet = pos;
+                    return;
+                }
+            }
+        }
+
+        final long currentValue() {
+            if (lastWasZero)
+                return zeroValue;
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            return vals[lastRet];
+        }
+
+        final void setCurrentValue(long value) {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (lastWasZero)
+                zeroValue = value;
+            else if (lastRet >= 0)
+                vals[lastRet] = value;
+            else
+                throw new IllegalStateException();
+        }
+
+        public final void remove() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (lastWasZero) {
+                lastWasZero = false;
+                containsZeroKey = false;
+                zeroValue = 0L;
+            } else if (lastRet >= 0) {
+                if (pos < 0)  // all slots visited; plain removal is safe
+                    LongHashMap.this.shiftKeys(lastRet);
+                else
+                    shiftKeys(lastRet);
+                lastRet = -1;
+            } else
+                throw new IllegalStateException();
+            size--;
+            expectedModCount = ++modCount;
+        }
+
+        /**
+         * Variant of LongHashMap.shiftKeys that records keys moved from
+         * the unvisited part of the table into the visited part.
+         */
+        private void shiftKeys(int pos) {
+            long[] tab = keys, vs = vals;
+            int m = tab.length - 1;
+            for (;;) {
+                int last = pos;
+                long k;
+                for (pos = (pos + 1) & m;; pos = (pos + 1) & m) {
+                    if ((k = tab[pos]) == 0L) {
+                        tab[last] = 0L;
+                        return;
+                    }
+                    int slot = mix(k) & m;
+                    if (last <= pos ? (last >= slot || slot > pos)
+                                    : (last >= slot && slot > pos))
+                        break;
+                }
+                if (pos < last) {
+                    if (wrapped == null)
+                        wrapped = new long[2];
+                    else if (wrappedCount == wrapped.length)
+                        wrapped = java.util.Arrays.copyOf(wrapped, wrappedCount << 1);
+                    wrapped[wrappedCount++] = k;
+                }
+                tab[last] = k;
+                vs[last] = vs[pos];
+            }
+        }
+    }
+
+    final class KeyIterator extends HashIterator implements LongIterator {
+        public long nextLong() {
+            nextEntry();
+            return lastKey;
+        }
+    }
+
+    /**
+     * A cursor over the mappings of a {@code LongHashMap}, allowing them
+     * to be read, updated and removed without boxing:
+     * <pre> {@code
+     * LongHashMap.Cursor c = map.cursor();
+     * while (c.advance())
+     *   total += c.value();}</pre>
+     *
+     * <p>Cursors are fail-fast in the same way as iterators.
+     */
+    public final class Cursor extends HashIterator {
+        Cursor() {}
+
+        /**
+         * Moves to the next mapping, if any.
+         *
+         * @return {@code true} if the cursor is now positioned at a
+         *         mapping, {@code false} if there are no more mappings
+         */
+        public boolean advance() {
+            if (!hasNext()) {
+                lastRet = -1;
+                lastWasZero = false;
+                return false;
+            }
+            nextEntry();
+            return true;
+        }
+
+        /**
+         * Returns the key of the current mapping.
+         *
+         * @return the key of the current mapping
+         * @throws IllegalStateException if the cursor is not positioned
+         *         at a mapping
+         */
+        public long key() {
+            if (!lastWasZero && lastRet < 0)
+                throw new IllegalStateException();
+            return lastKey;
+        }
+
+        /**
+         * Returns the value of the current mapping.
+         *
+         * @return the value of the current mapping
+         * @throws IllegalStateException if the cursor is not positioned
+         *         at a mapping
+         */
+        public long value() {
+            return currentValue();
+        }
+
+        /**
+         * Replaces the value of the current mapping.
+         *
+         * @param value the new value
+         * @throws IllegalStateException if the cursor is not positioned
+         *         at a mapping
+         */
+        public void setValue(long value) {
+            setCurrentValue(value);
+        }
+    }
+
+    final class EntryIterator extends HashIterator
+        implements Iterator<Map.Entry<Long,Long>> {
+        public Map.Entry<Long,Long> next() {
+            nextEntry();
+            return new MapEntry(lastKey, currentValue());
+        }
+    }
+
+    /**
+     * Entry returned by the Map view's iterator; setValue writes
+     * through to the map.
+     */
+    final class MapEntry extends AbstractMap.SimpleEntry<Long,Long> {
+        private static final long serialVersionUID = 2467290542937315287L;
+
+        MapEntry(long key, long value) {
+            super(key, value);
+        }
+
+        public Long setValue(Long value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    private final class MapView extends AbstractMap<Long,Long> {
+        private transient Set<Map.Entry<Long,Long>> entrySet;
+
+        public int size()                 { return size; }
+        public void clear()               { LongHashMap.this.clear(); }
+        public boolean containsKey(Object k) {
+            return (k instanceof Long) && LongHashMap.this.containsKey((Long) k);
+        }
+        public boolean containsValue(Object v) {
+            return (v instanceof Long) && LongHashMap.this.containsValue((Long) v);
+        }
+        public Long get(Object k) {
+            if (!(k instanceof Long))
+                return null;
+            long key = (Long) k;
+            if (key == 0L)
+                return containsZeroKey ? zeroValue : null;
+            int i = slotOf(key);
+            return (i >= 0) ? vals[i] : null;
+        }
+        public Long put(Long k, Long v) {
+            long key = k, value = v;
+            boolean present = LongHashMap.this.containsKey(key);
+            long old = LongHashMap.this.put(key, value);
+            return present ? old : null;
+        }
+        public Long remove(Object k) {
+            if (!(k instanceof Long))
+                return null;
+            long key = (Long) k;
+            if (!LongHashMap.this.containsKey(key))
+                return null;
+            return LongHashMap.this.remove(key);
+        }
+        public Set<Map.Entry<Long,Long>> entrySet() {
+            Set<Map.Entry<Long,Long>> es = entrySet;
+            return (es != null) ? es : (entrySet = new EntrySet());
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<Long,Long>> {
+        public int size()   { return size; }
+        public void clear() { LongHashMap.this.clear(); }
+        public Iterator<Map.Entry<Long,Long>> iterator() {
+            return new EntryIterator();
+        }
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            Object k = e.getKey(), v = e.getValue();
+            if (!(k instanceof Long) || !(v instanceof Long))
+                return false;
+            long key = (Long) k;
+            return LongHashMap.this.containsKey(key) &&
+                LongHashMap.this.get(key) == (Long) v;
+        }
+        public boolean remove(Object o) {
+            if (!contains(o))
+                return false;
+            LongHashMap.this.remove((Long) ((Map.Entry<?,?>) o).getKey());
+            return true;
+        }
+    }
+}
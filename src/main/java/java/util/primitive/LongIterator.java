@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package java.util.primitive;
+
+/**
+ * An iterator over a collection of {@code long} values.  Behaves like
+ * {@link java.util.Iterator}, but returns the elements without boxing
+ * them.
+ *
+ * @see LongHashMap#keyIterator()
+ * @since 1.7
+ */
+public interface LongIterator {
+    /**
+     * Returns {@code true} if the iteration has more elements.
+     *
+     * @return {@code true} if the iteration has more elements
+     */
+    boolean hasNext();
+
+    /**
+     * Returns the next element in the iteration.
+     *
+     * @return the next element in the iteration
+     * @throws java.util.NoSuchElementException if the iteration has no
+     *         more elements
+     */
+    long nextLong();
+
+    /**
+     * Removes from the underlying collection the last element returned
+     * by this iterator.  This method can be called only once per call
+     * to {@link #nextLong}.
+     *
+     * @throws UnsupportedOperationException if the {@code remove}
+     *         operation is not supported by this iterator
+     * @throws IllegalStateException if the {@code nextLong} method has not
+     *         yet been called, or the {@code remove} method has already
+     *         been called after the last call to the {@code nextLong}
+     *         method
+     */
+    void remove();
+}
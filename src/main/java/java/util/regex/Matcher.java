@@ -25,6 +25,7 @@
 
 package java.util.regex;
 
+import java.nio.ByteBuffer;
 
 /**
  * An engine that performs match operations on a {@link java.lang.CharSequence
@@ -88,7 +89,16 @@ package java.util.regex;
  * method or, if a new input sequence is desired, its {@link
  * #reset(java.lang.CharSequence) reset(CharSequence)} method.  Resetting a
  * matcher discards its explicit state information and sets the append position
- * to zero.
+ * to zero.  The {@link #reset(byte[], int, int) reset(byte[], int, int)} and
+ * {@link #reset(ByteBuffer) reset(ByteBuffer)} methods match against bytes
+ * taken as ISO-8859-1 characters (which includes US-ASCII) without decoding
+ * them first, so that a single matcher can scan any number of lines of input
+ * without allocating.
+ *
+ * <p> A matcher obtained by {@link Pattern#acquireMatcher
+ * Pattern.acquireMatcher} may be returned to its pattern by its {@link
+ * #release release} method, to be handed out again by a later call in the
+ * same thread.
  *
  * <p> Instances of this class are not safe for use by multiple concurrent
  * threads. </p>
@@ -166,6 +176,24 @@ public final class Matcher implements MatchResult {
      */
     int[] locals;
 
+    /**
+     * State of the non-backtracking engine, created on first use when the
+     * pattern has a non-backtracking program.
+     */
+    Prog.Machine machine;
+
+    /**
+     * The pattern to whose pool of free matchers this matcher is returned
+     * by release, or null if it was not acquired from a pool.
+     */
+    Pattern pool;
+
+    /**
+     * The view of byte input installed by reset(byte[], int, int) and
+     * reset(ByteBuffer), kept for reuse.
+     */
+    private Latin1Chars bytes;
+
     /**
      * Boolean indicating whether or not more input could change
      * the results of the last match.
@@ -328,6 +356,92 @@ public final class Matcher implements MatchResult {
         return reset();
     }
 
+    /**
+     * Resets this matcher with a new input sequence of bytes, each of which
+     * is taken as the ISO-8859-1 character of the same value.
+     *
+     * <p> The bytes are not copied: the input sequence is a view of the
+     * array, which must not be modified while this matcher uses it.  Apart
+     * from that this method behaves as {@link #reset(CharSequence)}.
+     *
+     * @param  input
+     *         The array holding the new input
+     *
+     * @param  offset
+     *         The index of the first byte of the input
+     *
+     * @param  length
+     *         The number of bytes of the input
+     *
+     * @return  This matcher
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If <tt>offset</tt> or <tt>length</tt> is negative, or
+     *          <tt>offset + length</tt> is greater than
+     *          <tt>input.length</tt>
+     *
+     * @since 1.7
+     */
+    public Matcher reset(byte[] input, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > input.length - length)
+            throw new IndexOutOfBoundsException();
+        return reset(latin1Chars().set(input, offset, length));
+    }
+
+    /**
+     * Resets this matcher with a new input sequence of bytes, the remaining
+     * bytes of the given buffer, each of which is taken as the ISO-8859-1
+     * character of the same value.
+     *
+     * <p> The input is the content of the buffer between its position and
+     * its limit at the time of the call; later changes to the position and
+     * limit do not change the input, and the buffer's position is not
+     * changed by matching.  The bytes are not copied, and must not be
+     * modified while this matcher uses them.  Apart from that this method
+     * behaves as {@link #reset(CharSequence)}.
+     *
+     * @param  input
+     *         The buffer holding the new input
+     *
+     * @return  This matcher
+     *
+     * @since 1.7
+     */
+    public Matcher reset(ByteBuffer input) {
+        return reset(latin1Chars().set(input));
+    }
+
+    private Latin1Chars latin1Chars() {
+        if (bytes == null)
+            bytes = new Latin1Chars();
+        return bytes;
+    }
+
+    /**
+     * Returns this matcher to the pool of free matchers of the pattern it
+     * was acquired from, so that a later invocation of {@link
+     * Pattern#acquireMatcher acquireMatcher} in the current thread may
+     * return it again.
+     *
+     * <p> This matcher must not be used after it has been released.  The
+     * reference to its input sequence is dropped, so that the input can be
+     * garbage collected.  Invoking this method on a matcher that was not
+     * acquired from a pattern, or that was already released, has no effect.
+     * </p>
+     *
+     * @since 1.7
+     */
+    public void release() {
+        Pattern p = pool;
+        if (p != null) {
+            pool = null;
+            text = "";
+            if (bytes != null)
+                bytes.set(null, 0, 0);
+            p.releaseMatcher(this);
+        }
+    }
+
     /**
      * Returns the start index of the previous match.  </p>
      *
@@ -1196,7 +1310,10 @@ public final class Matcher implements MatchResult {
         for (int i = 0; i < groups.length; i++)
             groups[i] = -1;
         acceptMode = NOANCHOR;
-        boolean result = parentPattern.root.match(this, from, text);
+        Prog prog = parentPattern.prog;
+        boolean result = (prog != null)
+            ? machine(prog).search(this, from, text)
+            : parentPattern.root.match(this, from, text);
         if (!result)
             this.first = -1;
         this.oldLast = this.last;
@@ -1218,13 +1335,27 @@ public final class Matcher implements MatchResult {
         for (int i = 0; i < groups.length; i++)
             groups[i] = -1;
         acceptMode = anchor;
-        boolean result = parentPattern.matchRoot.match(this, from, text);
+        Prog prog = parentPattern.prog;
+        boolean result = (prog != null)
+            ? machine(prog).match(this, from, text)
+            : parentPattern.matchRoot.match(this, from, text);
         if (!result)
             this.first = -1;
         this.oldLast = this.last;
         return result;
     }
 
+    /**
+     * Returns the non-backtracking engine for prog, which is the program
+     * of the current pattern.
+     */
+    private Prog.Machine machine(Prog prog) {
+        Prog.Machine m = machine;
+        if (m == null || m.prog != prog)
+            machine = m = new Prog.Machine(prog);
+        return m;
+    }
+
     /**
      * Returns the end index of the text.
      *
@@ -1254,4 +1385,67 @@ public final class Matcher implements MatchResult {
         return text.charAt(i);
     }
 
+
+    /**
+     * A character sequence over bytes taken as ISO-8859-1 characters,
+     * backed either by an array or by a buffer without an accessible array.
+     */
+    static final class Latin1Chars implements CharSequence {
+        private byte[] array;
+        private ByteBuffer buffer;
+        private int offset;
+        private int count;
+
+        Latin1Chars set(byte[] array, int offset, int count) {
+            this.array = array;
+            this.buffer = null;
+            this.offset = offset;
+            this.count = count;
+            return this;
+        }
+
+        Latin1Chars set(ByteBuffer buf) {
+            if (buf.hasArray())
+                return set(buf.array(), buf.arrayOffset() + buf.position(),
+                           buf.remaining());
+            this.array = null;
+            this.buffer = buf;
+            this.offset = buf.position();
+            this.count = buf.remaining();
+            return this;
+        }
+
+        public int length() {
+            return count;
+        }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= count)
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            if (array != null)
+                return (char)(array[offset + index] & 0xff);
+            return (char)(buffer.get(offset + index) & 0xff);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || start > end || end > count)
+                throw new IndexOutOfBoundsException();
+            Latin1Chars sub = new Latin1Chars();
+            sub.array = array;
+            sub.buffer = buffer;
+            sub.offset = offset + start;
+            sub.count = end - start;
+            return sub;
+        }
+
+        @SuppressWarnings("deprecation")
+        public String toString() {
+            if (array != null)
+                return new String(array, 0, offset, count);
+            char[] chars = new char[count];
+            for (int i = 0; i < count; i++)
+                chars[i] = (char)(buffer.get(offset + i) & 0xff);
+            return new String(chars);
+        }
+    }
 }
@@ -25,6 +25,7 @@
 
 package java.util.regex;
 
+import java.lang.ref.WeakReference;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.text.CharacterIterator;
@@ -911,6 +912,39 @@ public final class Pattern
      */
     public static final int UNICODE_CHARACTER_CLASS = 0x100;
 
+    /**
+     * Enables linear-time matching.
+     *
+     * <p> By default a pattern is matched by backtracking, which can take
+     * time exponential in the length of the input for patterns such as
+     * <tt>(a|aa)*b</tt> or <tt>(a+)+b</tt>.  When this flag is specified,
+     * a pattern that uses no back references, look-ahead, look-behind,
+     * possessive quantifiers or independent groups is instead matched by
+     * following all of its alternatives over the input at once, so that
+     * each match operation takes time proportional to the length of the
+     * input searched.  Searches are also narrowed with the literal text
+     * every match must start with or contain, and with a deterministic
+     * automaton that is built as the input is scanned.
+     *
+     * <p> The matches found are the same as without this flag.  A group
+     * inside a repeated group may capture a different subsequence where
+     * backtracking would leave it set by an iteration that was given up,
+     * and the values reported by {@link Matcher#hitEnd} and {@link
+     * Matcher#requireEnd} may differ.  A pattern that uses any of the
+     * constructs listed above, that repeats a subexpression which can
+     * match the empty string, such as <tt>(a*)*b</tt>, or that repeats a
+     * subexpression a very large number of times, is matched by
+     * backtracking, as if the flag had not been specified.
+     *
+     * <p> There is no embedded flag character for enabling linear-time
+     * matching.
+     *
+     * <p> Specifying this flag may impose a performance penalty on
+     * patterns that are already matched without significant backtracking.
+     * @since 1.7
+     */
+    public static final int LINEAR_TIME = 0x200;
+
     /* Pattern has only two serialized components: The pattern string
      * and the flags, which are all that is needed to recompile the pattern
      * when it is deserialized.
@@ -957,6 +991,26 @@ public final class Pattern
      */
     transient Node matchRoot;
 
+    /**
+     * The non-backtracking program for the match operations, or null if
+     * the pattern was not compiled with LINEAR_TIME or cannot be matched
+     * without backtracking.
+     */
+    transient Prog prog;
+
+    /**
+     * The matchers released by each thread, free to be handed out again
+     * by acquireMatcher in that thread.  Created on first use.  The free
+     * matchers refer back to this pattern, so they are only weakly
+     * referenced: otherwise the value of each thread's entry would keep
+     * its ThreadLocal key, and with it this pattern, reachable for as
+     * long as the thread lives.
+     */
+    private transient volatile ThreadLocal<WeakReference<Matcher[]>> freeMatchers;
+
+    /** The number of free matchers kept per thread. */
+    private static final int FREE_MATCHERS = 4;
+
     /**
      * Temporary storage used by parsing pattern slice.
      */
@@ -1033,8 +1087,8 @@ public final class Pattern
      *         Match flags, a bit mask that may include
      *         {@link #CASE_INSENSITIVE}, {@link #MULTILINE}, {@link #DOTALL},
      *         {@link #UNICODE_CASE}, {@link #CANON_EQ}, {@link #UNIX_LINES},
-     *         {@link #LITERAL}, {@link #UNICODE_CHARACTER_CLASS}
-     *         and {@link #COMMENTS}
+     *         {@link #LITERAL}, {@link #UNICODE_CHARACTER_CLASS},
+     *         {@link #LINEAR_TIME} and {@link #COMMENTS}
      *
      * @throws  IllegalArgumentException
      *          If bit values other than those corresponding to the defined
@@ -1089,6 +1143,86 @@ public final class Pattern
         return m;
     }
 
+    /**
+     * Returns a matcher that will match the given input against this
+     * pattern, reusing one released by the current thread if possible.
+     *
+     * <p> The matcher returned is in the same state as one created by
+     * {@link #matcher matcher}: it uses the default region, anchoring bounds
+     * and opaque bounds.  When it is no longer needed it should be returned
+     * with {@link Matcher#release release}, after which it must not be used
+     * any more.  Free matchers are kept for each thread separately, so a
+     * loop that acquires and releases a matcher for each line of its input
+     * does not allocate one per line, and matchers acquired at the same
+     * time, for instance by nested invocations, are distinct.  </p>
+     *
+     * @param  input
+     *         The character sequence to be matched
+     *
+     * @return  A matcher for this pattern
+     *
+     * @since 1.7
+     */
+    public Matcher acquireMatcher(CharSequence input) {
+        if (!compiled) {
+            synchronized(this) {
+                if (!compiled)
+                    compile();
+            }
+        }
+        Matcher[] free = freeMatchers();
+        for (int i = 0; i < free.length; i++) {
+            Matcher m = free[i];
+            if (m != null) {
+                free[i] = null;
+                m.pool = this;
+                m.useAnchoringBounds(true);
+                m.useTransparentBounds(false);
+                return m.reset(input);
+            }
+        }
+        Matcher m = new Matcher(this, input);
+        m.pool = this;
+        return m;
+    }
+
+    /**
+     * Keeps a matcher released by the current thread for reuse, unless
+     * enough matchers are kept already.
+     */
+    void releaseMatcher(Matcher m) {
+        if (m.parentPattern != this)
+            m.usePattern(this);
+        Matcher[] free = freeMatchers();
+        for (int i = 0; i < free.length; i++) {
+            if (free[i] == null) {
+                free[i] = m;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the free matchers of the current thread, starting over with
+     * none if they have been garbage collected.
+     */
+    private Matcher[] freeMatchers() {
+        ThreadLocal<WeakReference<Matcher[]>> tl = freeMatchers;
+        if (tl == null) {
+            synchronized(this) {
+                if ((tl = freeMatchers) == null)
+                    freeMatchers = tl = new ThreadLocal<>();
+            }
+        }
+        WeakReference<Matcher[]> ref = tl.get();
+        Matcher[] free = (ref == null) ? null : ref.get();
+        if (free == null) {
+            free = new Matcher[FREE_MATCHERS];
+            tl.set(new WeakReference<>(free));
+        }
+        return free;
+    }
+
     /**
      * Returns this pattern's match flags.  </p>
      *
@@ -1685,6 +1819,9 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
             root = hasSupplementary ? new StartS(matchRoot) : new Start(matchRoot);
         }
 
+        // Non-backtracking program, if the pattern allows one
+        prog = has(LINEAR_TIME) ? Prog.compile(this) : null;
+
         // Release temporary storage
         temp = null;
         buffer = null;
@@ -3681,7 +3818,7 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
      * Abstract node class to match one character satisfying some
      * boolean property.
      */
-    private static abstract class CharProperty extends Node {
+    static abstract class CharProperty extends Node {
         abstract boolean isSatisfiedBy(int ch);
         CharProperty complement() {
             return new CharProperty() {
@@ -3709,7 +3846,7 @@ loop:   for(int x=0, offset=0; x<nCodePoints; x++, offset+=len) {
      * Optimized version of CharProperty that works only for
      * properties never satisfied by Supplementary characters.
      */
-    private static abstract class BmpCharProperty extends CharProperty {
+    static abstract class BmpCharProperty extends CharProperty {
         boolean match(Matcher matcher, int i, CharSequence seq) {
             if (i < matcher.to) {
                 return isSatisfiedBy(seq.charAt(i))
@@ -0,0 +1,1022 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.regex;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The non-backtracking form of a {@link Pattern} compiled with the
+ * {@link Pattern#LINEAR_TIME} flag.
+ *
+ * <p> The node graph built by the parser is translated into a program
+ * for a Thompson NFA, which a {@link Matcher} runs as a Pike VM: all
+ * threads advance over the input in lockstep, each instruction is
+ * entered at most once per input position, and the threads are kept in
+ * priority order so that the match reported is the one the backtracking
+ * engine would find (leftmost, then by the greediness of each
+ * quantifier and the order of alternatives).  Character predicates and
+ * the zero-width assertions are evaluated by the very nodes the
+ * backtracking engine uses, so both engines agree on what is matched.
+ *
+ * <p> An unanchored search is narrowed before the VM is started:
+ * <ul>
+ * <li> a <i>required literal</i> that every match must contain must
+ *      occur in the region;
+ * <li> the VM starts at the next occurrence of the <i>literal
+ *      prefix</i> that every match must begin with, and skips ahead to
+ *      the next one whenever it runs out of threads;
+ * <li> a DFA, built lazily from the same program while ignoring groups
+ *      and treating assertions as always true, must accept some suffix
+ *      of the region.
+ * </ul>
+ *
+ * <p> Back references, look-around, possessive quantifiers,
+ * independent groups and repetitions of subexpressions that can match
+ * the empty string cannot be translated; {@link #compile} returns
+ * <tt>null</tt> for such patterns, which are then matched by the
+ * backtracking engine.
+ */
+final class Prog {
+
+    /*
+     * Opcodes.  The consuming instructions come first; CHAR* and BMP_PROP
+     * consume one char, CP* and PROP one code point.  Instructions that
+     * may consume any surrogate char are never emitted, so all threads
+     * at one position consume the same number of chars.
+     */
+    static final int CHAR     = 0;  // char == x
+    static final int CHAR_I   = 1;  // char == x, ASCII case folded
+    static final int CHAR_U   = 2;  // char == x, Unicode case folded
+    static final int BMP_PROP = 3;  // obj.isSatisfiedBy(char)
+    static final int CP       = 4;  // code point == x
+    static final int CP_I     = 5;  // code point == x, ASCII case folded
+    static final int CP_U     = 6;  // code point == x, Unicode case folded
+    static final int PROP     = 7;  // obj.isSatisfiedBy(code point)
+    static final int MATCH    = 8;  // accept
+    static final int JMP      = 9;  // goto x
+    static final int SPLIT    = 10; // goto x, then y
+    static final int MARK     = 11; // local x = i
+    static final int SAVE     = 12; // group y = [local x, i)
+    static final int ASSERT   = 13; // zero-width node obj holds at i
+
+    /** Largest program translated; bounded repetitions are unrolled. */
+    static final int MAX_LENGTH = 1 << 14;
+
+    /** Largest number of DFA states kept before the DFA gives up. */
+    static final int MAX_STATES = 1 << 12;
+
+    final int[] op;
+    final int[] x;
+    final int[] y;
+    final Object[] obj;
+    final int length;
+
+    /** Number of group slots, two per capturing group including group 0. */
+    final int groupSlots;
+
+    /** Number of slots per thread: groups followed by locals. */
+    final int slots;
+
+    /** True if matches may only start at the search origin. */
+    final boolean anchored;
+
+    /** True if the search may not start between a surrogate pair. */
+    final boolean startS;
+
+    /**
+     * Minimum length of a match as computed by Start, which never tries
+     * a match that starts closer than this to the end of the region.
+     */
+    final int minLength;
+
+    /** Literal every match starts with, or null. */
+    final String prefix;
+
+    /** Literal every match contains, or null if not useful. */
+    final String required;
+
+    /**
+     * The ASCII chars a match may start with, or null if a match may be
+     * empty.  Non-ASCII chars are always taken as possible starts.
+     */
+    final boolean[] first;
+
+    final DFA dfa;
+
+    private Prog(Pattern p, Compiler c) {
+        op = c.op;
+        x = c.x;
+        y = c.y;
+        obj = c.obj;
+        length = c.length;
+        groupSlots = p.capturingGroupCount * 2;
+        slots = groupSlots + p.localCount;
+        anchored = p.matchRoot instanceof Pattern.Begin;
+        startS = p.root instanceof Pattern.StartS;
+        minLength = (p.root instanceof Pattern.Start) ?
+            ((Pattern.Start)p.root).minLength : 0;
+        String pre = prefix(this);
+        prefix = pre.length() > 0 ? pre : null;
+        String req = required(this);
+        required = (req.length() > 1 && !pre.startsWith(req)) ? req : null;
+        dfa = new DFA(this);
+        first = dfa.first();
+    }
+
+    /**
+     * Translates the compiled pattern, or returns null if it uses a
+     * construct that needs backtracking or the program gets too large.
+     */
+    static Prog compile(Pattern p) {
+        try {
+            Compiler c = new Compiler();
+            c.sequence(p.matchRoot, null);
+            return new Prog(p, c);
+        } catch (Unsupported e) {
+            return null;
+        }
+    }
+
+    /** Tests consuming instruction pc against a char or code point. */
+    final boolean matches(int pc, int ch) {
+        int c = x[pc];
+        switch (op[pc]) {
+        case CHAR:
+        case CP:
+            return ch == c;
+        case CHAR_I:
+        case CP_I:
+            return ch == c || c == ASCII.toLower(ch);
+        case CHAR_U:
+        case CP_U:
+            return ch == c
+                || c == Character.toLowerCase(Character.toUpperCase(ch));
+        default:
+            return ((Pattern.CharProperty)obj[pc]).isSatisfiedBy(ch);
+        }
+    }
+
+    /**
+     * Returns the first index of s in text within [from, to), or -1.
+     */
+    static int indexOf(CharSequence text, String s, int from, int to) {
+        int n = s.length();
+        int max = to - n;
+        if (text instanceof String && to == text.length()) {
+            int k = ((String)text).indexOf(s, from);
+            return k <= max ? k : -1;
+        }
+        char first = s.charAt(0);
+        for (int i = from; i <= max; i++) {
+            if (text.charAt(i) != first)
+                continue;
+            int j = 1;
+            while (j < n && text.charAt(i + j) == s.charAt(j))
+                j++;
+            if (j == n)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first index in [from, to) at which a match may start,
+     * or to if there is none before it.
+     */
+    final int skip(CharSequence text, int from, int to) {
+        if (prefix != null) {
+            int k = indexOf(text, prefix, from, to);
+            return k < 0 ? to : k;
+        }
+        int i = from;
+        if (first != null) {
+            char c;
+            while (i < to && (c = text.charAt(i)) < 128 && !first[c])
+                i++;
+        }
+        return i;
+    }
+
+    /**
+     * The chars every match starts with: the leading run of literal
+     * chars, looking through group marks and forward jumps.
+     */
+    private static String prefix(Prog prog) {
+        StringBuilder sb = new StringBuilder();
+        int pc = 0;
+        for (;;) {
+            switch (prog.op[pc]) {
+            case MARK:
+            case SAVE:
+                pc++;
+                continue;
+            case JMP:
+                if (prog.x[pc] <= pc)
+                    break;
+                pc = prog.x[pc];
+                continue;
+            case CHAR:
+            case BMP_PROP:
+                int c = literal(prog, pc);
+                if (c < 0)
+                    break;
+                sb.append((char)c);
+                pc++;
+                continue;
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * The longest run of literal chars that every path through the
+     * program passes, which every match therefore contains.  The node
+     * graph is not walked for this: the parser may link an alternative
+     * inside a quantified group straight to the end of the pattern, past
+     * what looks like the rest of the top level.
+     */
+    private static String required(Prog prog) {
+        int n = prog.length;
+        boolean[] target = new boolean[n + 1];
+        for (int pc = 0; pc < n; pc++) {
+            if (prog.op[pc] == JMP) {
+                target[prog.x[pc]] = true;
+            } else if (prog.op[pc] == SPLIT) {
+                target[prog.x[pc]] = true;
+                target[prog.y[pc]] = true;
+            }
+        }
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        int pc = 0;
+        while (pc < n) {
+            // A run may only be entered at its first char
+            int end = pc;
+            int c;
+            while (end < n && (end == pc || !target[end])
+                   && (c = literal(prog, end)) >= 0) {
+                run.append((char)c);
+                end++;
+            }
+            if (end == pc) {
+                pc++;
+                continue;
+            }
+            if (run.length() > best.length() && !avoidable(prog, pc))
+                best = run.toString();
+            run.setLength(0);
+            pc = end;
+        }
+        return best;
+    }
+
+    /** The char instruction pc matches literally, or -1. */
+    private static int literal(Prog prog, int pc) {
+        if (prog.op[pc] == CHAR)
+            return prog.x[pc];
+        if (prog.op[pc] == BMP_PROP && prog.obj[pc] instanceof Pattern.Single)
+            return ((Pattern.Single)prog.obj[pc]).c;
+        return -1;
+    }
+
+    /**
+     * Returns true if some path from the start of the program reaches
+     * MATCH without passing instruction skip.
+     */
+    private static boolean avoidable(Prog prog, int skip) {
+        int n = prog.length;
+        boolean[] seen = new boolean[n];
+        int[] stack = new int[2 * n + 1];
+        int sp = 0;
+        stack[sp++] = 0;
+        seen[skip] = true;
+        while (sp > 0) {
+            int pc = stack[--sp];
+            if (seen[pc])
+                continue;
+            seen[pc] = true;
+            switch (prog.op[pc]) {
+            case MATCH:
+                return true;
+            case JMP:
+                stack[sp++] = prog.x[pc];
+                break;
+            case SPLIT:
+                stack[sp++] = prog.x[pc];
+                stack[sp++] = prog.y[pc];
+                break;
+            default:
+                stack[sp++] = pc + 1;
+                break;
+            }
+        }
+        return false;
+    }
+
+    /** Thrown by the compiler for constructs it cannot translate. */
+    static final class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = -3157284398163240371L;
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Unsupported UNSUPPORTED = new Unsupported();
+
+    /**
+     * Continuation of the private copies of assertion nodes, so that
+     * an assertion can be evaluated on its own.
+     */
+    private static final Pattern.Node PROBE = new Pattern.Node() {
+        boolean match(Matcher matcher, int i, CharSequence seq) {
+            return true;
+        }
+    };
+
+    /**
+     * Translates a node graph into instructions.
+     */
+    static final class Compiler {
+        int[] op = new int[16];
+        int[] x = new int[16];
+        int[] y = new int[16];
+        Object[] obj = new Object[16];
+        int length;
+
+        /** Char classes known to admit no surrogate char. */
+        private final Map<Pattern.CharProperty,Boolean> bmpSafe =
+            new IdentityHashMap<>();
+
+        int emit(int o, int a, int b, Object ob) {
+            if (length == op.length) {
+                if (length >= MAX_LENGTH)
+                    throw UNSUPPORTED;
+                int n = length << 1;
+                op = Arrays.copyOf(op, n);
+                x = Arrays.copyOf(x, n);
+                y = Arrays.copyOf(y, n);
+                obj = Arrays.copyOf(obj, n);
+            }
+            op[length] = o;
+            x[length] = a;
+            y[length] = b;
+            obj[length] = ob;
+            return length++;
+        }
+
+        /**
+         * Emits the chain of nodes from node up to, but excluding, end.
+         */
+        void sequence(Pattern.Node node, Pattern.Node end) {
+            Pattern.Node n = node;
+            while (n != end) {
+                if (n instanceof Pattern.LastNode) {
+                    emit(MATCH, 0, 0, null);
+                    return;
+                } else if (n instanceof Pattern.CharProperty) {
+                    Pattern.CharProperty cp = (Pattern.CharProperty)n;
+                    if (n instanceof Pattern.BmpCharProperty) {
+                        checkBmp(cp);
+                        emit(BMP_PROP, 0, 0, cp);
+                    } else {
+                        emit(PROP, 0, 0, cp);
+                    }
+                } else if (n instanceof Pattern.SliceNode) {
+                    slice((Pattern.SliceNode)n);
+                } else if (n instanceof Pattern.Begin) {
+                    assertion(new Pattern.Begin());
+                } else if (n instanceof Pattern.End) {
+                    assertion(new Pattern.End());
+                } else if (n instanceof Pattern.Caret) {
+                    assertion(new Pattern.Caret());
+                } else if (n instanceof Pattern.UnixCaret) {
+                    assertion(new Pattern.UnixCaret());
+                } else if (n instanceof Pattern.LastMatch) {
+                    assertion(new Pattern.LastMatch());
+                } else if (n instanceof Pattern.Dollar) {
+                    assertion(new Pattern.Dollar(((Pattern.Dollar)n).multiline));
+                } else if (n instanceof Pattern.UnixDollar) {
+                    assertion(new Pattern.UnixDollar(
+                                  ((Pattern.UnixDollar)n).multiline));
+                } else if (n instanceof Pattern.Bound) {
+                    Pattern.Bound b = (Pattern.Bound)n;
+                    assertion(new Pattern.Bound(b.type, b.useUWORD));
+                } else if (n instanceof Pattern.GroupHead) {
+                    emit(MARK, ((Pattern.GroupHead)n).localIndex, 0, null);
+                } else if (n instanceof Pattern.GroupTail) {
+                    Pattern.GroupTail t = (Pattern.GroupTail)n;
+                    if (t.groupIndex != 0) // slots 0 and 1 hold the match
+                        emit(SAVE, t.localIndex, t.groupIndex, null);
+                } else if (n instanceof Pattern.BranchConn) {
+                    // end of an alternative reached through a group
+                } else if (n instanceof Pattern.Branch) {
+                    Pattern.Branch b = (Pattern.Branch)n;
+                    int[] jumps = new int[b.size];
+                    for (int k = 0; k < b.size; k++) {
+                        boolean last = k == b.size - 1;
+                        int split = last ? -1 : emit(SPLIT, length + 1, -1, null);
+                        if (b.atoms[k] != null)
+                            sequence(b.atoms[k], b.conn);
+                        if (!last) {
+                            jumps[k] = emit(JMP, -1, 0, null);
+                            y[split] = length;
+                        }
+                    }
+                    for (int k = 0; k < b.size - 1; k++)
+                        x[jumps[k]] = length;
+                    n = b.conn.next;
+                    continue;
+                } else if (n instanceof Pattern.Ques) {
+                    Pattern.Ques q = (Pattern.Ques)n;
+                    repeat(q.atom, Pattern.accept, -1, 0, 1, greedy(q.type));
+                } else if (n instanceof Pattern.Curly) {
+                    Pattern.Curly c = (Pattern.Curly)n;
+                    repeat(c.atom, Pattern.accept, -1, c.cmin, c.cmax,
+                           greedy(c.type));
+                } else if (n instanceof Pattern.GroupCurly) {
+                    Pattern.GroupCurly g = (Pattern.GroupCurly)n;
+                    repeat(g.atom, Pattern.accept, g.localIndex, g.cmin, g.cmax,
+                           greedy(g.type));
+                } else if (n instanceof Pattern.Prolog) {
+                    Pattern.Loop loop = ((Pattern.Prolog)n).loop;
+                    repeat(loop.body, loop, -1, loop.cmin, loop.cmax,
+                           !(loop instanceof Pattern.LazyLoop));
+                    n = loop.next;
+                    continue;
+                } else {
+                    // back references, look-around, independent groups
+                    throw UNSUPPORTED;
+                }
+                n = n.next;
+            }
+        }
+
+        private static boolean greedy(int type) {
+            if (type == Pattern.GREEDY)
+                return true;
+            if (type == Pattern.LAZY)
+                return false;
+            throw UNSUPPORTED;
+        }
+
+        /**
+         * Emits atom cmin times followed by the optional iterations.  If
+         * mark is not negative, each iteration first marks its start in
+         * that local.
+         *
+         * <p> An atom that can match the empty string may only be
+         * repeated once.  The backtracking engine stops repeating as soon
+         * as an iteration matches the empty string, and where it goes on
+         * from there depends on the path taken to that point, which a
+         * thread deduplicated by instruction alone cannot follow.
+         */
+        void repeat(Pattern.Node atom, Pattern.Node end, int mark,
+                    int cmin, int cmax, boolean greedy) {
+            if (cmin > MAX_LENGTH ||
+                (cmax != Pattern.MAX_REPS && cmax - cmin > MAX_LENGTH))
+                throw UNSUPPORTED;
+            int optional = (cmax == Pattern.MAX_REPS) ? 1 : cmax - cmin;
+            int[] splits = new int[optional];
+            for (int j = 0; j < cmin; j++)
+                body(atom, end, mark, cmax > 1 && j == 0);
+            for (int j = 0; j < optional; j++) {
+                splits[j] = emit(SPLIT, -1, -1, null);
+                body(atom, end, mark, cmax > 1 && cmin == 0 && j == 0);
+            }
+            if (cmax == Pattern.MAX_REPS)
+                emit(JMP, splits[0], 0, null);
+            for (int j = 0; j < optional; j++)
+                split(splits[j], greedy);
+        }
+
+        private void body(Pattern.Node atom, Pattern.Node end, int mark,
+                          boolean nonEmpty) {
+            int start = length;
+            if (mark >= 0)
+                emit(MARK, mark, 0, null);
+            sequence(atom, end);
+            if (nonEmpty && canMatchEmpty(start))
+                throw UNSUPPORTED;
+        }
+
+        /**
+         * Returns true if the instructions from start to the current end
+         * can be passed without consuming input.
+         */
+        private boolean canMatchEmpty(int start) {
+            boolean[] seen = new boolean[length - start];
+            int[] stack = new int[2 * (length - start) + 1];
+            int sp = 0;
+            stack[sp++] = start;
+            while (sp > 0) {
+                int pc = stack[--sp];
+                if (pc >= length)
+                    return true;
+                if (seen[pc - start])
+                    continue;
+                seen[pc - start] = true;
+                switch (op[pc]) {
+                case JMP:
+                    stack[sp++] = x[pc];
+                    break;
+                case SPLIT:
+                    stack[sp++] = x[pc];
+                    stack[sp++] = y[pc];
+                    break;
+                case MARK:
+                case SAVE:
+                case ASSERT:
+                    stack[sp++] = pc + 1;
+                    break;
+                }
+            }
+            return false;
+        }
+
+        /** Points the split at pc to its body and to the current end. */
+        private void split(int pc, boolean greedy) {
+            x[pc] = greedy ? pc + 1 : length;
+            y[pc] = greedy ? length : pc + 1;
+        }
+
+        private void assertion(Pattern.Node node) {
+            node.next = PROBE;
+            emit(ASSERT, 0, 0, node);
+        }
+
+        private void slice(Pattern.SliceNode n) {
+            int o;
+            if (n instanceof Pattern.Slice)
+                o = CHAR;
+            else if (n instanceof Pattern.SliceI)
+                o = CHAR_I;
+            else if (n instanceof Pattern.SliceU)
+                o = CHAR_U;
+            else if (n instanceof Pattern.SliceUS)
+                o = CP_U;
+            else if (n instanceof Pattern.SliceIS)
+                o = CP_I;
+            else if (n instanceof Pattern.SliceS)
+                o = CP;
+            else
+                throw UNSUPPORTED;
+            for (int c : n.buffer) {
+                if (o < BMP_PROP && Character.isSurrogate((char)c))
+                    throw UNSUPPORTED;
+                emit(o, c, 0, null);
+            }
+        }
+
+        private void checkBmp(Pattern.CharProperty cp) {
+            Boolean safe = bmpSafe.get(cp);
+            if (safe == null) {
+                safe = Boolean.TRUE;
+                for (int c = Character.MIN_SURROGATE;
+                     c <= Character.MAX_SURROGATE; c++) {
+                    if (cp.isSatisfiedBy(c)) {
+                        safe = Boolean.FALSE;
+                        break;
+                    }
+                }
+                bmpSafe.put(cp, safe);
+            }
+            if (!safe)
+                throw UNSUPPORTED;
+        }
+    }
+
+    /**
+     * A list of threads at one input position, in priority order, that
+     * is also a sparse set of the instructions already entered there.
+     */
+    static final class Threads {
+        final int[] sparse;
+        final int[] dense;
+        final int[][] caps;
+        int size;
+
+        Threads(int n) {
+            sparse = new int[n];
+            dense = new int[n];
+            caps = new int[n][];
+        }
+
+        boolean contains(int pc) {
+            int k = sparse[pc];
+            return k < size && dense[k] == pc;
+        }
+
+        /** Adds pc; caps is null for instructions that do not wait. */
+        void add(int pc, int[] c) {
+            sparse[pc] = size;
+            dense[size] = pc;
+            caps[size++] = c;
+        }
+
+        void clear() {
+            for (int k = 0; k < size; k++)
+                caps[k] = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * The per-matcher state of the Pike VM.
+     */
+    static final class Machine {
+        final Prog prog;
+        private final Threads[] lists;
+        private final int[] stackPc;
+        private final int[][] stackCaps;
+
+        Machine(Prog prog) {
+            this.prog = prog;
+            int n = prog.length;
+            lists = new Threads[] { new Threads(n), new Threads(n),
+                                    new Threads(n) };
+            stackPc = new int[n + 1];
+            stackCaps = new int[n + 1][];
+        }
+
+        /**
+         * Searches for a match starting at or after from, as
+         * Start.match does for the backtracking engine.
+         */
+        boolean search(Matcher matcher, int from, CharSequence seq) {
+            Prog p = prog;
+            if (p.anchored)
+                return run(matcher, from, seq, false);
+            int to = matcher.to;
+            int i = -1;
+            if (p.required == null || indexOf(seq, p.required, from, to) >= 0)
+                i = p.skip(seq, from, to);
+            if (i < 0 || i > to - p.minLength || (i == to && p.first != null)
+                || !p.dfa.mayMatch(seq, i, to)) {
+                matcher.hitEnd = true;
+                return false;
+            }
+            if (run(matcher, i, seq, true))
+                return true;
+            matcher.hitEnd = true;
+            return false;
+        }
+
+        /**
+         * Looks for a match starting exactly at from.
+         */
+        boolean match(Matcher matcher, int from, CharSequence seq) {
+            return run(matcher, from, seq, false);
+        }
+
+        private boolean run(Matcher matcher, int from, CharSequence seq,
+                            boolean unanchored) {
+            Prog p = prog;
+            int to = matcher.to;
+            boolean endAnchor = matcher.acceptMode == Matcher.ENDANCHOR;
+            Threads cur = lists[0], next = lists[1], after = lists[2];
+            int[] found = null;
+            int end = -1;
+            int i = from;
+            for (;;) {
+                if (found == null &&
+                    (i == from || unanchored && i <= to - p.minLength &&
+                     canStart(i, seq))) {
+                    int[] caps = new int[p.slots];
+                    Arrays.fill(caps, -1);
+                    caps[0] = i;
+                    add(cur, 0, caps, i, matcher, seq);
+                }
+                for (int k = 0; k < cur.size; k++) {
+                    int[] caps = cur.caps[k];
+                    if (caps == null)
+                        continue;
+                    int pc = cur.dense[k];
+                    int o = p.op[pc];
+                    if (o == MATCH) {
+                        if (endAnchor && i != to)
+                            continue;
+                        found = caps;
+                        end = i;
+                        break;      // cut the lower priority threads
+                    }
+                    if (i >= to) {
+                        matcher.hitEnd = true;
+                        continue;
+                    }
+                    if (o <= BMP_PROP) {
+                        if (p.matches(pc, seq.charAt(i)))
+                            add(next, pc + 1, caps, i + 1, matcher, seq);
+                    } else {
+                        int ch = Character.codePointAt(seq, i);
+                        int w = Character.charCount(ch);
+                        if (i + w > to && o != PROP) // as Slice*S do
+                            matcher.hitEnd = true;
+                        else if (p.matches(pc, ch))
+                            add(w == 1 ? next : after, pc + 1, caps, i + w,
+                                matcher, seq);
+                    }
+                }
+                cur.clear();
+                if (i >= to && next.size == 0 && after.size == 0)
+                    break;
+                Threads t = cur;
+                cur = next;
+                next = after;
+                after = t;
+                i++;
+                if (cur.size == 0 && next.size == 0) {
+                    if (found != null || !unanchored)
+                        break;
+                    if (i < to && (i = p.skip(seq, i, to)) == to && p.first != null)
+                        break;
+                }
+            }
+            cur.clear();
+            next.clear();
+            after.clear();
+            if (found == null)
+                return false;
+            for (int g = 2; g < p.groupSlots; g++)
+                matcher.groups[g] = found[g];
+            matcher.first = found[0];
+            matcher.last = end;
+            matcher.groups[0] = found[0];
+            matcher.groups[1] = end;
+            return true;
+        }
+
+        /** Whether a match may start at i; StartS skips low surrogates. */
+        private boolean canStart(int i, CharSequence seq) {
+            return !prog.startS || i < 1 || i >= seq.length()
+                || !Character.isLowSurrogate(seq.charAt(i))
+                || !Character.isHighSurrogate(seq.charAt(i - 1));
+        }
+
+        /**
+         * Adds the thread at pc and everything reachable from it without
+         * consuming input, in priority order.
+         */
+        private void add(Threads list, int pc0, int[] caps0, int i,
+                         Matcher matcher, CharSequence seq) {
+            Prog p = prog;
+            int sp = 0;
+            stackPc[sp] = pc0;
+            stackCaps[sp++] = caps0;
+            while (sp > 0) {
+                int pc = stackPc[--sp];
+                int[] caps = stackCaps[sp];
+                stackCaps[sp] = null;
+                follow:
+                while (!list.contains(pc)) {
+                    switch (p.op[pc]) {
+                    case JMP:
+                        list.add(pc, null);
+                        pc = p.x[pc];
+                        break;
+                    case SPLIT:
+                        list.add(pc, null);
+                        stackPc[sp] = p.y[pc];
+                        stackCaps[sp++] = caps;
+                        pc = p.x[pc];
+                        break;
+                    case MARK:
+                        list.add(pc, null);
+                        caps = caps.clone();
+                        caps[p.groupSlots + p.x[pc]] = i;
+                        pc++;
+                        break;
+                    case SAVE:
+                        list.add(pc, null);
+                        caps = caps.clone();
+                        caps[p.y[pc]] = caps[p.groupSlots + p.x[pc]];
+                        caps[p.y[pc] + 1] = i;
+                        pc++;
+                        break;
+                    case ASSERT:
+                        list.add(pc, null);
+                        if (!((Pattern.Node)p.obj[pc]).match(matcher, i, seq))
+                            break follow;
+                        pc++;
+                        break;
+                    default:
+                        list.add(pc, caps);
+                        break follow;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A lazily built DFA over chars, used to reject searches that cannot
+     * match.  A state is the set of consuming and MATCH instructions the
+     * NFA may be at; assertions are taken as true and groups ignored, so
+     * the DFA accepts a superset of what the program matches.  States
+     * and their transitions are shared by all matchers of the pattern.
+     */
+    static final class DFA {
+        private final Prog prog;
+        private final ConcurrentHashMap<Key,State> states =
+            new ConcurrentHashMap<>();
+        private final State start;
+
+        DFA(Prog prog) {
+            this.prog = prog;
+            Builder b = new Builder(prog.length);
+            b.closure(0);
+            start = intern(b.toArray());
+        }
+
+        /**
+         * The ASCII chars taking the start state to a live state, or null
+         * if the start state matches.
+         */
+        boolean[] first() {
+            if (start.match)
+                return null;
+            boolean[] first = new boolean[128];
+            for (int pc : start.pcs) {
+                for (int c = 0; c < 128; c++)
+                    first[c] |= prog.matches(pc, c);
+            }
+            return first;
+        }
+
+        /**
+         * Returns false only if no match starts in [from, to] and ends
+         * by to.  Gives up, returning true, on surrogates and when the
+         * state limit is reached.
+         */
+        boolean mayMatch(CharSequence seq, int from, int to) {
+            State s = start;
+            if (s == null)
+                return true;
+            for (int i = from; ; i++) {
+                if (s.match)
+                    return true;
+                if (i >= to)
+                    return false;
+                char c = seq.charAt(i);
+                State t;
+                if (c < 128) {
+                    t = s.ascii[c];
+                    if (t == null) {
+                        if ((t = step(s, c)) == null)
+                            return true;
+                        s.ascii[c] = t;
+                    }
+                } else if (Character.isSurrogate(c)) {
+                    return true;
+                } else {
+                    synchronized (s) {
+                        if (s.other == null)
+                            s.other = new HashMap<>();
+                        t = s.other.get(c);
+                    }
+                    if (t == null) {
+                        if ((t = step(s, c)) == null)
+                            return true;
+                        synchronized (s) {
+                            s.other.put(c, t);
+                        }
+                    }
+                }
+                if (t.pcs.length == 0)
+                    return false;
+                s = t;
+            }
+        }
+
+        private State step(State s, char c) {
+            Builder b = new Builder(prog.length);
+            for (int pc : s.pcs) {
+                if (prog.op[pc] != MATCH && prog.matches(pc, c))
+                    b.closure(pc + 1);
+            }
+            if (!prog.anchored)
+                b.closure(0);
+            return intern(b.toArray());
+        }
+
+        private State intern(int[] pcs) {
+            Arrays.sort(pcs);
+            Key k = new Key(pcs);
+            State s = states.get(k);
+            if (s == null) {
+                if (states.size() >= MAX_STATES)
+                    return null;
+                boolean match = false;
+                for (int pc : pcs)
+                    match |= prog.op[pc] == MATCH;
+                State t = states.putIfAbsent(k, s = new State(pcs, match));
+                if (t != null)
+                    s = t;
+            }
+            return s;
+        }
+
+        /** Collects the instructions reachable without consuming input. */
+        private final class Builder {
+            final boolean[] seen;
+            final int[] pcs;
+            final int[] stack;
+            int size;
+
+            Builder(int n) {
+                seen = new boolean[n];
+                pcs = new int[n];
+                stack = new int[n + 1];
+            }
+
+            void closure(int pc0) {
+                int sp = 0;
+                stack[sp++] = pc0;
+                while (sp > 0) {
+                    int pc = stack[--sp];
+                    follow:
+                    while (!seen[pc]) {
+                        seen[pc] = true;
+                        switch (prog.op[pc]) {
+                        case JMP:
+                            pc = prog.x[pc];
+                            break;
+                        case SPLIT:
+                            stack[sp++] = prog.y[pc];
+                            pc = prog.x[pc];
+                            break;
+                        case MARK:
+                        case SAVE:
+                        case ASSERT:
+                            pc++;
+                            break;
+                        default:
+                            pcs[size++] = pc;
+                            break follow;
+                        }
+                    }
+                }
+            }
+
+            int[] toArray() {
+                return Arrays.copyOf(pcs, size);
+            }
+        }
+    }
+
+    static final class Key {
+        final int[] pcs;
+        final int hash;
+
+        Key(int[] pcs) {
+            this.pcs = pcs;
+            this.hash = Arrays.hashCode(pcs);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(pcs, ((Key)o).pcs);
+        }
+    }
+
+    static final class State {
+        final int[] pcs;
+        final boolean match;
+        final State[] ascii = new State[128];
+        Map<Character,State> other;     // guarded by this
+
+        State(int[] pcs, boolean match) {
+            this.pcs = pcs;
+            this.match = match;
+        }
+    }
+}
@@ -0,0 +1,624 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.misc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.AccessController;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Manifest;
+import sun.net.www.ParseUtil;
+import sun.security.action.GetPropertyAction;
+
+/*
+ * ClassDataArchive is intended to decrease the startup time of
+ * applications that are launched over and over with the same class path,
+ * by serving the class files they load from a single memory-mapped file
+ * instead of opening, searching and inflating the JAR files of the class
+ * path.
+ *
+ * A training run records the classes the application class loader finds
+ * in JAR files and writes the archive when the VM exits:
+ *
+ *     java -Dsun.misc.ClassDataArchive.dump=app.cda -cp app.jar Main
+ *
+ * Later runs with the same class path define those classes straight from
+ * the mapped file:
+ *
+ *     java -Dsun.misc.ClassDataArchive=app.cda -cp app.jar Main
+ *
+ * The archive records the class path it was dumped for together with the
+ * size and modification time of each file on it, and of each JAR file
+ * reached through a Class-Path attribute that is searched before an
+ * archived class, and is ignored if any of them has changed. Only classes
+ * from unsigned JAR files on the class path itself are archived. Since a
+ * directory does not change when a class is added deep inside it, an
+ * archived class is only served if no directory searched before its JAR
+ * file has a file of the same name. An archive that cannot be read is
+ * ignored. Running this class prints the contents of an archive:
+ *
+ *     java sun.misc.ClassDataArchive app.cda
+ *
+ * Set sun.misc.ClassDataArchive.debug to see why an archive is not used.
+ *
+ * The file starts with the magic number, the version and the length of
+ * the header, all ints. The header, in DataOutput format, holds the class
+ * path (count, then the URL, modification time and size of each entry),
+ * the search path up to the last code source in the same form, the code
+ * sources (count, then the URL and the manifest of each, the
+ * manifest as a length, -1 if none, and its bytes) and the classes (count,
+ * then the resource name, the code source index and the length of each).
+ * The class files follow the header back to back, in the order the
+ * training run loaded them.
+ */
+public class ClassDataArchive {
+    private static final int MAGIC = 0xCDA0CAFE;
+    private static final int VERSION = 2;
+
+    private static final boolean DEBUG =
+        AccessController.doPrivileged(
+            new GetPropertyAction("sun.misc.ClassDataArchive.debug")) != null;
+
+    /* The class path the archive was dumped for, see stamps() */
+    private final String[] classPath;
+    private final long[] classStamps;
+
+    /* The directories and JAR files searched before the last code source */
+    private final URL[] searchPath;
+    private final long[] searchStamps;
+
+    /* The code sources and the class files, when serving from an archive */
+    private final Source[] sources;
+    private final Map<String, Entry> entries;
+
+    /* The file to dump and the classes loaded so far, in a training run */
+    private final File dumpFile;
+    private final URLClassPath ucp;
+    private final URL[] urls;
+    private final Set<String> loaded;
+
+    private ClassDataArchive(String[] classPath, long[] classStamps,
+                             URL[] searchPath, long[] searchStamps,
+                             Source[] sources, Map<String, Entry> entries) {
+        this.classPath = classPath;
+        this.classStamps = classStamps;
+        this.searchPath = searchPath;
+        this.searchStamps = searchStamps;
+        this.sources = sources;
+        this.entries = entries;
+        this.dumpFile = null;
+        this.ucp = null;
+        this.urls = null;
+        this.loaded = null;
+    }
+
+    private ClassDataArchive(File dumpFile, URLClassPath ucp, URL[] urls) {
+        this.classPath = null;
+        this.classStamps = null;
+        this.searchPath = null;
+        this.searchStamps = null;
+        this.sources = null;
+        this.entries = null;
+        this.dumpFile = dumpFile;
+        this.ucp = ucp;
+        this.urls = urls;
+        this.loaded = new LinkedHashSet<String>();
+    }
+
+    /*
+     * Sets up the archive requested by the system properties, if any, for
+     * the class path of the given loader. Called while creating the
+     * application class loader.
+     */
+    static void setup(URLClassLoader loader, URL[] urls) {
+        String dump = AccessController.doPrivileged(
+            new GetPropertyAction("sun.misc.ClassDataArchive.dump"));
+        String use = AccessController.doPrivileged(
+            new GetPropertyAction("sun.misc.ClassDataArchive"));
+        if (dump == null && use == null) {
+            return;
+        }
+        URLClassPath ucp =
+            SharedSecrets.getJavaNetAccess().getURLClassPath(loader);
+        if (dump != null) {
+            final ClassDataArchive cda =
+                new ClassDataArchive(new File(dump), ucp, urls);
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                public void run() {
+                    cda.dump();
+                }
+            });
+            ucp.setClassDataArchive(cda);
+            return;
+        }
+        try {
+            ClassDataArchive cda = open(new File(use));
+            if (cda.matches(urls)) {
+                ucp.setClassDataArchive(cda);
+            }
+        } catch (IOException | RuntimeException e) {
+            // A corrupt archive must not keep the application from starting
+            if (DEBUG) {
+                System.err.println("ClassDataArchive: cannot read " + use +
+                                   ": " + e);
+            }
+        }
+    }
+
+    /*
+     * Returns the archived class file with the specified resource name,
+     * or null if there is none.
+     */
+    Resource getResource(final String name) {
+        if (entries == null) {
+            return null;
+        }
+        final Entry e = entries.get(name);
+        if (e == null || e.source.isShadowed(name)) {
+            return null;
+        }
+        return new Resource() {
+            public String getName() { return name; }
+            public URL getURL() { return e.source.getURL(name); }
+            public URL getCodeSourceURL() { return e.source.url; }
+            public InputStream getInputStream()
+                { return new ByteArrayInputStream(e.getBytes()); }
+            public int getContentLength() { return e.length; }
+            public ByteBuffer getByteBuffer() { return e.getByteBuffer(); }
+            public Manifest getManifest() throws IOException
+                { return e.source.getManifest(); }
+        };
+    }
+
+    /*
+     * Records a class file found on the class path in a training run.
+     */
+    void loaded(String name, Resource res) {
+        if (loaded != null && name.endsWith(".class")) {
+            synchronized (loaded) {
+                loaded.add(name);
+            }
+        }
+    }
+
+    /*
+     * Returns true if the archive was dumped for the given class path and
+     * none of the files on it has changed since.
+     */
+    private boolean matches(URL[] urls) {
+        if (classPath.length != urls.length) {
+            if (DEBUG) {
+                System.err.println("ClassDataArchive: class path changed");
+            }
+            return false;
+        }
+        long[] stamps = stamps(urls);
+        for (int i = 0; i < urls.length; i++) {
+            if (!classPath[i].equals(urls[i].toString()) ||
+                classStamps[2 * i] != stamps[2 * i] ||
+                classStamps[2 * i + 1] != stamps[2 * i + 1]) {
+                if (DEBUG) {
+                    System.err.println("ClassDataArchive: " + urls[i] +
+                                       " changed");
+                }
+                return false;
+            }
+        }
+        stamps = stamps(searchPath);
+        for (int i = 0; i < searchPath.length; i++) {
+            if (searchStamps[2 * i] != stamps[2 * i] ||
+                searchStamps[2 * i + 1] != stamps[2 * i + 1]) {
+                if (DEBUG) {
+                    System.err.println("ClassDataArchive: " + searchPath[i] +
+                                       " changed");
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Returns the modification time and size of each file in the given
+     * search path, or zeros for URLs that are not files.
+     */
+    private static long[] stamps(URL[] urls) {
+        long[] stamps = new long[urls.length * 2];
+        for (int i = 0; i < urls.length; i++) {
+            if ("file".equals(urls[i].getProtocol())) {
+                File f = new File(ParseUtil.decode(urls[i].getFile()));
+                stamps[2 * i] = f.lastModified();
+                stamps[2 * i + 1] = f.length();
+            }
+        }
+        return stamps;
+    }
+
+    /*
+     * Writes the classes recorded in the training run to the dump file.
+     */
+    private void dump() {
+        String[] names;
+        synchronized (loaded) {
+            names = loaded.toArray(new String[loaded.size()]);
+        }
+        try {
+            List<Source> srcs = new ArrayList<Source>();
+            Map<String, Integer> srcIndex = new HashMap<String, Integer>();
+            List<String> classNames = new ArrayList<String>();
+            List<Integer> classSources = new ArrayList<Integer>();
+            List<Integer> classLengths = new ArrayList<Integer>();
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            Set<String> jars = new HashSet<String>();
+            for (URL url : urls) {
+                jars.add(url.toString());
+            }
+            for (String name : names) {
+                Resource res = ucp.getResource(name, false);
+                if (res == null) {
+                    continue;
+                }
+                URL csu = res.getCodeSourceURL();
+                // Directories may change without notice, and JAR files
+                // reached through a JAR index or addURL may not be there
+                // at startup, so only classes from (unsigned) JAR files
+                // on the class path are archived
+                if (csu == null || csu.getFile().endsWith("/") ||
+                    !jars.contains(csu.toString())) {
+                    continue;
+                }
+                byte[] b = res.getBytes();
+                if (res.getCodeSigners() != null) {
+                    continue;
+                }
+                Integer si = srcIndex.get(csu.toString());
+                if (si == null) {
+                    byte[] mb = null;
+                    Manifest man = res.getManifest();
+                    if (man != null) {
+                        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                        man.write(bout);
+                        mb = bout.toByteArray();
+                    }
+                    si = srcs.size();
+                    srcs.add(new Source(csu, mb));
+                    srcIndex.put(csu.toString(), si);
+                }
+                classNames.add(name);
+                classSources.add(si);
+                data.write(b);
+                classLengths.add(b.length);
+            }
+
+            // Everything searched before a code source may shadow its
+            // classes, including JAR files reached through Class-Path
+            URL[] opened = ucp.getOpenedURLs();
+            int searched = 0;
+            for (int i = 0; i < opened.length; i++) {
+                if (srcIndex.containsKey(opened[i].toString())) {
+                    searched = i + 1;
+                }
+            }
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(header);
+            writePath(out, urls, urls.length);
+            writePath(out, opened, searched);
+            out.writeInt(srcs.size());
+            for (Source s : srcs) {
+                out.writeUTF(s.url.toString());
+                if (s.manifestBytes == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(s.manifestBytes.length);
+                    out.write(s.manifestBytes);
+                }
+            }
+            out.writeInt(classNames.size());
+            for (int i = 0; i < classNames.size(); i++) {
+                out.writeUTF(classNames.get(i));
+                out.writeInt(classSources.get(i));
+                out.writeInt(classLengths.get(i));
+            }
+            out.flush();
+
+            try (DataOutputStream file = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(dumpFile)))) {
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                file.writeInt(header.size());
+                header.writeTo(file);
+                data.writeTo(file);
+            }
+            if (DEBUG) {
+                System.err.println("ClassDataArchive: dumped " +
+                                   classNames.size() + " classes to " +
+                                   dumpFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("ClassDataArchive: cannot write " + dumpFile +
+                               ": " + e);
+        }
+    }
+
+    private static void writePath(DataOutputStream out, URL[] path, int n)
+        throws IOException
+    {
+        long[] stamps = stamps(path);
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeUTF(path[i].toString());
+            out.writeLong(stamps[2 * i]);
+            out.writeLong(stamps[2 * i + 1]);
+        }
+    }
+
+    /*
+     * Maps the specified archive file.
+     */
+    private static ClassDataArchive open(File file) throws IOException {
+        ByteBuffer map;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                       0, raf.length());
+        }
+        if (map.limit() < 12 || map.getInt(0) != MAGIC ||
+            map.getInt(4) != VERSION) {
+            throw new IOException("not a class data archive");
+        }
+        int hlen = map.getInt(8);
+        if (hlen < 0 || hlen > map.limit() - 12) {
+            throw new IOException("truncated class data archive");
+        }
+        byte[] header = new byte[hlen];
+        ByteBuffer bb = map.duplicate();
+        bb.position(12);
+        bb.get(header);
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(header));
+
+        // Every count is checked against the smallest size its items take
+        // in the header, so a corrupt count cannot allocate a huge array
+        int n = count(in, hlen, 2 + 8 + 8);
+        String[] classPath = new String[n];
+        long[] stamps = new long[n * 2];
+        for (int i = 0; i < n; i++) {
+            classPath[i] = in.readUTF();
+            stamps[2 * i] = in.readLong();
+            stamps[2 * i + 1] = in.readLong();
+        }
+        n = count(in, hlen, 2 + 8 + 8);
+        URL[] searchPath = new URL[n];
+        long[] searchStamps = new long[n * 2];
+        for (int i = 0; i < n; i++) {
+            searchPath[i] = new URL(in.readUTF());
+            searchStamps[2 * i] = in.readLong();
+            searchStamps[2 * i + 1] = in.readLong();
+        }
+        n = count(in, hlen, 2 + 4);
+        Source[] sources = new Source[n];
+        for (int i = 0; i < n; i++) {
+            String url = in.readUTF();
+            byte[] mb = null;
+            int mlen = in.readInt();
+            if (mlen >= 0) {
+                mb = new byte[count(mlen, hlen, 1)];
+                in.readFully(mb);
+            }
+            sources[i] = new Source(new URL(url), mb);
+            sources[i].findDirectories(searchPath);
+        }
+        n = count(in, hlen, 2 + 4 + 4);
+        Map<String, Entry> entries = new HashMap<String, Entry>(n * 4 / 3 + 1);
+        int offset = 12 + hlen;
+        for (int i = 0; i < n; i++) {
+            String name = in.readUTF();
+            int si = in.readInt();
+            int length = in.readInt();
+            if (si < 0 || si >= sources.length || length < 0 ||
+                length > map.limit() - offset) {
+                throw new IOException("corrupt class data archive");
+            }
+            entries.put(name, new Entry(map, sources[si], offset, length));
+            offset += length;
+        }
+        return new ClassDataArchive(classPath, stamps, searchPath,
+                                    searchStamps, sources, entries);
+    }
+
+    private static int count(DataInputStream in, int hlen, int itemSize)
+        throws IOException
+    {
+        return count(in.readInt(), hlen, itemSize);
+    }
+
+    private static int count(int n, int hlen, int itemSize)
+        throws IOException
+    {
+        if (n < 0 || n > hlen / itemSize) {
+            throw new IOException("corrupt class data archive");
+        }
+        return n;
+    }
+
+    /*
+     * A JAR file classes were archived from.
+     */
+    private static class Source {
+        final URL url;
+        final byte[] manifestBytes;
+        private volatile Manifest manifest;
+
+        /* The directories searched before this JAR file */
+        private File[] directories = new File[0];
+
+        /* False if something searched before this JAR file is not local */
+        private boolean checkable = true;
+
+        Source(URL url, byte[] manifestBytes) {
+            this.url = url;
+            this.manifestBytes = manifestBytes;
+        }
+
+        /*
+         * Finds the directories in the search path that are searched
+         * before this JAR file. The JAR files among them are stamped, but
+         * a directory or JAR file that is not a local file cannot be
+         * checked at all.
+         */
+        void findDirectories(URL[] searchPath) {
+            List<File> dirs = new ArrayList<File>();
+            String jar = url.toString();
+            for (URL u : searchPath) {
+                if (u.toString().equals(jar)) {
+                    break;
+                }
+                if (!"file".equals(u.getProtocol())) {
+                    checkable = false;
+                } else if (u.getFile().endsWith("/")) {
+                    dirs.add(new File(ParseUtil.decode(u.getFile())));
+                }
+            }
+            directories = dirs.toArray(new File[dirs.size()]);
+        }
+
+        /*
+         * Returns true if a directory searched before this JAR file may
+         * supply the resource with the specified name.
+         */
+        boolean isShadowed(String name) {
+            if (!checkable) {
+                return true;
+            }
+            if (directories.length == 0) {
+                return false;
+            }
+            String path = name.replace('/', File.separatorChar);
+            for (File dir : directories) {
+                if (new File(dir, path).exists()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        URL getURL(String name) {
+            try {
+                return new URL("jar", "", -1,
+                               url + "!/" + ParseUtil.encodePath(name, false));
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+
+        Manifest getManifest() throws IOException {
+            if (manifestBytes == null) {
+                return null;
+            }
+            Manifest man = manifest;
+            if (man == null) {
+                manifest = man =
+                    new Manifest(new ByteArrayInputStream(manifestBytes));
+            }
+            return man;
+        }
+    }
+
+    /*
+     * An archived class file.
+     */
+    private static class Entry {
+        private final ByteBuffer map;
+        final Source source;
+        final int offset;
+        final int length;
+
+        Entry(ByteBuffer map, Source source, int offset, int length) {
+            this.map = map;
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /* A direct buffer, so the class is defined without copying it */
+        ByteBuffer getByteBuffer() {
+            ByteBuffer bb = map.duplicate();
+            bb.limit(offset + length);
+            bb.position(offset);
+            return bb.slice();
+        }
+
+        byte[] getBytes() {
+            byte[] b = new byte[length];
+            getByteBuffer().get(b);
+            return b;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java sun.misc.ClassDataArchive <archive>");
+            System.exit(1);
+        }
+        ClassDataArchive cda = open(new File(args[0]));
+        System.out.println("Class path:");
+        for (int i = 0; i < cda.classPath.length; i++) {
+            System.out.println("  " + cda.classPath[i]);
+        }
+        long total = 0;
+        for (Source s : cda.sources) {
+            int count = 0;
+            for (Entry e : cda.entries.values()) {
+                if (e.source == s) {
+                    count++;
+                    total += e.length;
+                }
+            }
+            System.out.println(s.url + ": " + count + " classes");
+        }
+        System.out.println(cda.entries.size() + " classes, " + total +
+                           " bytes");
+    }
+}
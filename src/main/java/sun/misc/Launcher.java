@@ -298,7 +298,9 @@ public class Launcher {
                     public AppClassLoader run() {
                     URL[] urls =
                         (s == null) ? new URL[0] : pathToURLs(path);
-                    return new AppClassLoader(urls, extcl);
+                    AppClassLoader loader = new AppClassLoader(urls, extcl);
+                    ClassDataArchive.setup(loader, urls);
+                    return loader;
                 }
             });
         }
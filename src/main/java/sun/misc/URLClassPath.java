@@ -26,6 +26,7 @@
 package sun.misc;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarFile;
 import sun.misc.JarIndex;
 import sun.misc.InvalidJarIndexException;
@@ -70,6 +71,7 @@ public class URLClassPath {
     private static final boolean DISABLE_ACC_CHECKING;
     private static final boolean DISABLE_CP_URL_CHECK;
     private static final boolean DEBUG_CP_URL_CHECK;
+    private static final boolean DISABLE_PACKAGE_INDEX;
 
     static {
         JAVA_VERSION = java.security.AccessController.doPrivileged(
@@ -90,6 +92,10 @@ public class URLClassPath {
 
         DISABLE_CP_URL_CHECK = p != null ? p.equals("true") || p.isEmpty() : false;
         DEBUG_CP_URL_CHECK = "debug".equals(p);
+
+        p = AccessController.doPrivileged(
+            new GetPropertyAction("sun.misc.URLClassPath.disablePackageIndex"));
+        DISABLE_PACKAGE_INDEX = p != null ? p.equals("true") || p.isEmpty() : false;
     }
 
     /* The original search path of URLs. */
@@ -104,6 +110,12 @@ public class URLClassPath {
     /* Map of each URL opened to its corresponding Loader */
     HashMap<String, Loader> lmap = new HashMap<String, Loader>();
 
+    /* Package index of the opened Loaders, in search path order */
+    private final PackageIndex pindex = new PackageIndex();
+
+    /* The archive classes are served from or recorded to, if any */
+    private volatile ClassDataArchive archive;
+
     /* The jar protocol handler to use when creating new URLs */
     private URLStreamHandler jarHandler;
 
@@ -168,6 +180,7 @@ public class URLClassPath {
             }
         }
         closed = true;
+        pindex.clear();
         return result;
     }
 
@@ -190,6 +203,28 @@ public class URLClassPath {
         }
     }
 
+    /*
+     * Sets the archive to serve class files from, or to record the class
+     * files found to, for lookups that do not need a security check.
+     */
+    void setClassDataArchive(ClassDataArchive archive) {
+        this.archive = archive;
+    }
+
+    /*
+     * Returns the URLs of the directories and JAR files opened so far,
+     * in search order.
+     */
+    synchronized URL[] getOpenedURLs() {
+        URL[] us = new URL[loaders.size()];
+        for (int i = 0; i < us.length; i++) {
+            Loader loader = loaders.get(i);
+            us[i] = (loader instanceof JarLoader) ?
+                ((JarLoader)loader).csu : loader.getBaseURL();
+        }
+        return us;
+    }
+
     /**
      * Returns the original search path of URLs.
      */
@@ -209,8 +244,10 @@ public class URLClassPath {
      * if the resource could not be found.
      */
     public URL findResource(String name, boolean check) {
+        String pkg = packageOf(name);
         Loader loader;
-        for (int i = 0; (loader = getLoader(i)) != null; i++) {
+        for (int i = pindex.next(pkg, 0); (loader = getLoader(i)) != null;
+             i = pindex.next(pkg, i + 1)) {
             URL url = loader.findResource(name, check);
             if (url != null) {
                 return url;
@@ -232,10 +269,22 @@ public class URLClassPath {
             System.err.println("URLClassPath.getResource(\"" + name + "\")");
         }
 
+        ClassDataArchive cda = check ? null : archive;
+        if (cda != null) {
+            Resource res = cda.getResource(name);
+            if (res != null) {
+                return res;
+            }
+        }
+        String pkg = packageOf(name);
         Loader loader;
-        for (int i = 0; (loader = getLoader(i)) != null; i++) {
+        for (int i = pindex.next(pkg, 0); (loader = getLoader(i)) != null;
+             i = pindex.next(pkg, i + 1)) {
             Resource res = loader.getResource(name, check);
             if (res != null) {
+                if (cda != null) {
+                    cda.loaded(name, res);
+                }
                 return res;
             }
         }
@@ -252,6 +301,7 @@ public class URLClassPath {
     public Enumeration<URL> findResources(final String name,
                                      final boolean check) {
         return new Enumeration<URL>() {
+            private final String pkg = packageOf(name);
             private int index = 0;
             private URL url = null;
 
@@ -260,7 +310,8 @@ public class URLClassPath {
                     return true;
                 } else {
                     Loader loader;
-                    while ((loader = getLoader(index++)) != null) {
+                    while ((loader = getLoader(index = pindex.next(pkg, index))) != null) {
+                        index++;
                         url = loader.findResource(name, check);
                         if (url != null) {
                             return true;
@@ -299,6 +350,7 @@ public class URLClassPath {
     public Enumeration<Resource> getResources(final String name,
                                     final boolean check) {
         return new Enumeration<Resource>() {
+            private final String pkg = packageOf(name);
             private int index = 0;
             private Resource res = null;
 
@@ -307,7 +359,8 @@ public class URLClassPath {
                     return true;
                 } else {
                     Loader loader;
-                    while ((loader = getLoader(index++)) != null) {
+                    while ((loader = getLoader(index = pindex.next(pkg, index))) != null) {
+                        index++;
                         res = loader.getResource(name, check);
                         if (res != null) {
                             return true;
@@ -341,7 +394,17 @@ public class URLClassPath {
      * path. The URLs are opened and expanded as needed. Returns null
      * if the specified index is out of range.
      */
-     private synchronized Loader getLoader(int index) {
+    private Loader getLoader(int index) {
+        // Loaders that are already open are found without locking
+        Loader loader = pindex.get(index);
+        return (loader != null) ? loader : openLoader(index);
+    }
+
+    /*
+     * Opens Loaders up to the specified position in the URL search path,
+     * adding each of them to the package index.
+     */
+     private synchronized Loader openLoader(int index) {
         if (closed) {
             return null;
         }
@@ -389,6 +452,8 @@ public class URLClassPath {
             // Finally, add the Loader to the search path.
             loaders.add(loader);
             lmap.put(urlNoFragString, loader);
+            pindex.add(DISABLE_PACKAGE_INDEX ? null : loader.getPackages(),
+                       loader);
         }
         return loaders.get(index);
     }
@@ -429,6 +494,110 @@ public class URLClassPath {
         }
     }
 
+    /*
+     * Returns the package part of a resource or JAR entry name, that is
+     * everything before its last '/'. The trailing '/' of a directory
+     * entry is ignored, as JarFile.getEntry also matches "dir" to "dir/".
+     */
+    static String packageOf(String name) {
+        int end = name.length();
+        if (end > 0 && name.charAt(end - 1) == '/') {
+            end--;
+        }
+        int i = name.lastIndexOf('/', end - 1);
+        return (i < 0) ? "" : name.substring(0, i);
+    }
+
+    /*
+     * Index from package name to the positions of the opened Loaders that
+     * have entries in that package. A lookup then only has to consult
+     * those Loaders, the Loaders that cannot be indexed (directories,
+     * non-JAR URLs, JARs with a JarIndex or a MetaIndex) and the Loaders
+     * that have not been opened yet, in search path order.
+     *
+     * Loaders are added under the URLClassPath lock; lookups are lock
+     * free. The array of opened Loaders is published last, so a reader
+     * that sees n Loaders sees the index entries of all of them.
+     */
+    private static class PackageIndex {
+        private static final Loader[] NO_LOADERS = new Loader[0];
+        private static final int[] NO_POSITIONS = new int[0];
+
+        private final ConcurrentHashMap<String, int[]> packages =
+            new ConcurrentHashMap<String, int[]>();
+        private volatile int[] unindexed = NO_POSITIONS;
+        private volatile Loader[] opened = NO_LOADERS;
+
+        /*
+         * Appends a Loader with the given packages, or null if the Loader
+         * has to be searched for every package.
+         */
+        void add(Set<String> pkgs, Loader loader) {
+            Loader[] ls = opened;
+            int pos = ls.length;
+            if (pkgs == null) {
+                unindexed = append(unindexed, pos);
+            } else {
+                for (String pkg : pkgs) {
+                    int[] positions = packages.get(pkg);
+                    packages.put(pkg, (positions == null) ?
+                                 new int[] { pos } : append(positions, pos));
+                }
+            }
+            ls = Arrays.copyOf(ls, pos + 1);
+            ls[pos] = loader;
+            opened = ls;
+        }
+
+        void clear() {
+            opened = NO_LOADERS;
+            unindexed = NO_POSITIONS;
+            packages.clear();
+        }
+
+        /*
+         * Returns the opened Loader at the given position, or null if
+         * it has not been opened yet.
+         */
+        Loader get(int pos) {
+            Loader[] ls = opened;
+            return (pos < ls.length) ? ls[pos] : null;
+        }
+
+        /*
+         * Returns the first position at or after from whose Loader may
+         * have a resource in the given package. Positions past the opened
+         * Loaders are returned as is.
+         */
+        int next(String pkg, int from) {
+            int n = opened.length;
+            if (from >= n) {
+                return from;
+            }
+            int next = first(packages.get(pkg), from, n);
+            return first(unindexed, from, next);
+        }
+
+        private static int first(int[] positions, int from, int limit) {
+            if (positions != null) {
+                int i = Arrays.binarySearch(positions, from);
+                if (i < 0) {
+                    i = -(i + 1);
+                }
+                if (i < positions.length && positions[i] < limit) {
+                    return positions[i];
+                }
+            }
+            return limit;
+        }
+
+        private static int[] append(int[] a, int pos) {
+            a = Arrays.copyOf(a, a.length + 1);
+            a[a.length - 1] = pos;
+            return a;
+        }
+    }
+
     /**
      * Convert class path specification into an array of file URLs.
      *
@@ -623,6 +792,14 @@ public class URLClassPath {
             }
         }
 
+        /*
+         * Returns the names of the packages this loader has resources in,
+         * or null if it has to be searched for every resource name.
+         */
+        Set<String> getPackages() {
+            return null;
+        }
+
         /*
          * Returns the local class path for this loader, or null if none.
          */
@@ -781,6 +958,25 @@ public class URLClassPath {
             return checkJar(jarFile);
         }
 
+        /*
+         * Returns the packages of the entries of this JAR file. JAR files
+         * with a JarIndex may find resources in other JAR files, and those
+         * with a MetaIndex are not opened until needed, so neither of them
+         * is indexed.
+         */
+        @Override
+        Set<String> getPackages() {
+            if (metaIndex != null || jar == null || index != null) {
+                return null;
+            }
+            Set<String> pkgs = new HashSet<String>();
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                pkgs.add(packageOf(entries.nextElement().getName()));
+            }
+            return pkgs;
+        }
+
         /*
          * Returns the index of this JarLoader if it exists.
          */
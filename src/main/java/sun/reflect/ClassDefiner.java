@@ -25,6 +25,7 @@
 
 package sun.reflect;
 
+import java.lang.ref.WeakReference;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import sun.misc.Unsafe;
@@ -54,13 +55,56 @@ class ClassDefiner {
     static Class<?> defineClass(String name, byte[] bytes, int off, int len,
                                 final ClassLoader parentClassLoader)
     {
-        ClassLoader newLoader = AccessController.doPrivileged(
+        ClassLoader newLoader = newLoader(parentClassLoader);
+        return unsafe.defineClass(name, bytes, off, len, newLoader, null);
+    }
+
+    /** Defines generated code for the given target class. If
+        ReflectionFactory.sharedAccessorLoaders() is set, all code
+        generated for one target class goes into the same loader,
+        otherwise each class gets a new loader as above. */
+    static Class<?> defineClass(String name, byte[] bytes, int off, int len,
+                                Class<?> targetClass)
+    {
+        if (!ReflectionFactory.sharedAccessorLoaders()) {
+            return defineClass(name, bytes, off, len,
+                               targetClass.getClassLoader());
+        }
+        ClassLoader loader = sharedLoaders.get(targetClass).get(targetClass);
+        return unsafe.defineClass(name, bytes, off, len, loader, null);
+    }
+
+    private static ClassLoader newLoader(final ClassLoader parentClassLoader) {
+        return AccessController.doPrivileged(
             new PrivilegedAction<ClassLoader>() {
                 public ClassLoader run() {
                         return new DelegatingClassLoader(parentClassLoader);
                     }
                 });
-        return unsafe.defineClass(name, bytes, off, len, newLoader, null);
+    }
+
+    /** The shared loader of each target class. It is stored with the
+        target class but only weakly referenced, so that, as with a
+        loader per class, the generated code can be unloaded once none
+        of it is in use; the next accessor then gets a new loader. */
+    private static final ClassValue<SharedLoader> sharedLoaders =
+        new ClassValue<SharedLoader>() {
+            protected SharedLoader computeValue(Class<?> type) {
+                return new SharedLoader();
+            }
+        };
+
+    private static class SharedLoader {
+        private WeakReference<ClassLoader> ref;
+
+        synchronized ClassLoader get(Class<?> targetClass) {
+            ClassLoader loader = (ref == null) ? null : ref.get();
+            if (loader == null) {
+                loader = newLoader(targetClass.getClassLoader());
+                ref = new WeakReference<ClassLoader>(loader);
+            }
+            return loader;
+        }
     }
 }
 
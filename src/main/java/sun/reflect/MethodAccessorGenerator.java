@@ -400,7 +400,7 @@ class MethodAccessorGenerator extends AccessorGenerator {
                                  bytes,
                                  0,
                                  bytes.length,
-                                 declaringClass.getClassLoader()).newInstance();
+                                 declaringClass).newInstance();
                         } catch (InstantiationException |
                                  IllegalAccessException e) {
                             throw (InternalError)
@@ -85,6 +85,14 @@ public class ReflectionFactory {
     private static boolean noInflation        = false;
     private static int     inflationThreshold = 15;
 
+    // Each generated accessor is normally defined in a class loader of
+    // its own, so frameworks that reflect on thousands of methods create
+    // thousands of loaders. With sharedAccessorLoaders the accessors of
+    // the members of one class share a single loader instead (see
+    // ClassDefiner). Together with noInflation this generates bytecode
+    // accessors on first use without a loader per accessor.
+    private static boolean sharedAccessorLoaders = false;
+
     private ReflectionFactory() {}
 
     /**
@@ -632,6 +640,10 @@ public class ReflectionFactory {
         return inflationThreshold;
     }
 
+    static boolean sharedAccessorLoaders() {
+        return sharedAccessorLoaders;
+    }
+
     /** We have to defer full initialization of this class until after
         the static initializer is run since java.lang.reflect.Method's
         static initializer (more properly, that for
@@ -670,6 +682,11 @@ public class ReflectionFactory {
                         }
                     }
 
+                    val = System.getProperty("sun.reflect.sharedAccessorLoaders");
+                    if (val != null && val.equals("true")) {
+                        sharedAccessorLoaders = true;
+                    }
+
                     initted = true;
                     return null;
                 }
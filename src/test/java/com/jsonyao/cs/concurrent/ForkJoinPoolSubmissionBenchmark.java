@@ -0,0 +1,96 @@
+package com.jsonyao.cs.concurrent;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ForkJoinPool外部提交吞吐量基准测试: 对比分段提交队列(默认)与单一提交队列(submissionQueueStripes=1)
+ *
+ * 用法: java com.jsonyao.cs.concurrent.ForkJoinPoolSubmissionBenchmark [每个提交线程的任务数]
+ * 不带-Djava.util.concurrent.ForkJoinPool.submissionQueueStripes运行时, 会分别以两种配置启动子JVM并打印结果
+ */
+public class ForkJoinPoolSubmissionBenchmark {
+
+    private static final String STRIPES_PROPERTY = "java.util.concurrent.ForkJoinPool.submissionQueueStripes";
+
+    private static final int[] SUBMITTERS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws Exception {
+        int tasksPerSubmitter = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        if (System.getProperty(STRIPES_PROPERTY) == null) {
+            // 父进程: 分别以单一队列和默认分段队列运行子JVM
+            fork("1", tasksPerSubmitter);
+            fork(null, tasksPerSubmitter);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool();
+        System.out.println("stripes=" + System.getProperty(STRIPES_PROPERTY) + ", parallelism=" + pool.getParallelism());
+        for (int round = 0; round < 2; round++) {
+            boolean warmup = round == 0;
+            for (int submitters : SUBMITTERS) {
+                long nanos = run(pool, submitters, warmup ? tasksPerSubmitter / 10 : tasksPerSubmitter);
+                if (!warmup) {
+                    double opsPerSec = (double) submitters * tasksPerSubmitter * TimeUnit.SECONDS.toNanos(1) / nanos;
+                    System.out.printf("  submitters=%3d  %,14.0f tasks/s%n", submitters, opsPerSec);
+                }
+            }
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // 启动若干外部提交线程, 每个线程提交tasks个空任务, 返回全部任务执行完毕的耗时
+    private static long run(final ForkJoinPool pool, int submitters, final int tasks) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(submitters * tasks);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < submitters; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < tasks; j++)
+                        pool.execute(task);
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        for (Thread t : threads)
+            t.join();
+        return elapsed;
+    }
+
+    // 以指定的分段数启动子JVM运行基准测试, stripes为null时使用默认分段数
+    private static void fork(String stripes, int tasksPerSubmitter) throws Exception {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + "/bin/java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-D" + STRIPES_PROPERTY + "=" + (stripes != null ? stripes : "default"));
+        command.add(ForkJoinPoolSubmissionBenchmark.class.getName());
+        command.add(String.valueOf(tasksPerSubmitter));
+        Process p = new ProcessBuilder(command).inheritIO().start();
+        p.waitFor();
+    }
+}
@@ -0,0 +1,153 @@
+package com.jsonyao.cs.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 读多写少场景下的锁吞吐量基准测试: 对比ReentrantReadWriteLock读锁、StampedLock悲观读锁与StampedLock乐观读
+ *
+ * 用法: java com.jsonyao.cs.concurrent.StampedLockBenchmark [每个读线程的读次数] [写线程每次写入的间隔微秒数]
+ * 每种锁都在1~64个读线程下运行, 同时有1个写线程按固定间隔更新共享数据
+ */
+public class StampedLockBenchmark {
+
+    private static final int[] READERS = {1, 2, 4, 8, 16, 32, 64};
+
+    private static final String[] MODES = {"ReentrantReadWriteLock", "StampedLock.readLock", "StampedLock.optimistic"};
+
+    // 被保护的共享数据, 写线程保证x与y始终相等
+    static int x, y;
+
+    public static void main(String[] args) throws Exception {
+        int readsPerReader = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        long writeIntervalMicros = args.length > 1 ? Long.parseLong(args[1]) : 100L;
+        System.out.println("processors=" + Runtime.getRuntime().availableProcessors()
+                + ", readsPerReader=" + readsPerReader + ", writeIntervalMicros=" + writeIntervalMicros);
+        for (int round = 0; round < 2; round++) {
+            boolean warmup = round == 0;
+            for (int mode = 0; mode < MODES.length; mode++) {
+                if (!warmup)
+                    System.out.println(MODES[mode]);
+                for (int readers : READERS) {
+                    int reads = warmup ? readsPerReader / 10 : readsPerReader;
+                    long nanos = run(mode, readers, reads, writeIntervalMicros);
+                    if (!warmup) {
+                        double opsPerSec = (double) readers * reads * TimeUnit.SECONDS.toNanos(1) / nanos;
+                        System.out.printf("  readers=%3d  %,14.0f reads/s%n", readers, opsPerSec);
+                    }
+                }
+            }
+        }
+    }
+
+    // 启动readers个读线程与1个写线程, 返回全部读线程完成reads次读取的耗时
+    private static long run(final int mode, int readers, final int reads, final long writeIntervalMicros)
+            throws InterruptedException {
+        final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
+        final StampedLock sl = new StampedLock();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(readers);
+        x = y = 0;
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                while (done.getCount() > 0) {
+                    if (mode == 0) {
+                        rwl.writeLock().lock();
+                        try {
+                            x++;
+                            y++;
+                        } finally {
+                            rwl.writeLock().unlock();
+                        }
+                    } else {
+                        long stamp = sl.writeLock();
+                        try {
+                            x++;
+                            y++;
+                        } finally {
+                            sl.unlockWrite(stamp);
+                        }
+                    }
+                    try {
+                        TimeUnit.MICROSECONDS.sleep(writeIntervalMicros);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        };
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < readers; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < reads; j++) {
+                        if (read(mode, rwl, sl) != 0)
+                            throw new IllegalStateException("inconsistent read");
+                    }
+                    done.countDown();
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        writer.start();
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        for (Thread t : threads)
+            t.join();
+        writer.join();
+        return elapsed;
+    }
+
+    // 按指定方式读取共享数据, 返回x与y的差值(正确时为0)
+    private static int read(int mode, ReentrantReadWriteLock rwl, StampedLock sl) {
+        int cx, cy;
+        if (mode == 0) {
+            rwl.readLock().lock();
+            try {
+                cx = x;
+                cy = y;
+            } finally {
+                rwl.readLock().unlock();
+            }
+        } else if (mode == 1) {
+            long stamp = sl.readLock();
+            try {
+                cx = x;
+                cy = y;
+            } finally {
+                sl.unlockRead(stamp);
+            }
+        } else {
+            // 乐观读不写共享内存, 校验失败时才退化为悲观读锁
+            long stamp = sl.tryOptimisticRead();
+            cx = x;
+            cy = y;
+            if (!sl.validate(stamp)) {
+                stamp = sl.readLock();
+                try {
+                    cx = x;
+                    cy = y;
+                } finally {
+                    sl.unlockRead(stamp);
+                }
+            }
+        }
+        return cx - cy;
+    }
+}
@@ -0,0 +1,85 @@
+package com.jsonyao.cs.concurrent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ThreadPoolExecutor工作窃取模式测试: 有界队列下, 线程池扩容到最大线程数和拒绝任务的时机
+ * 应与不开启工作窃取时相同(本地队列不能绕过工作队列的容量); 无界队列下所有任务都能执行完
+ *
+ * 用法: java com.jsonyao.cs.concurrent.ThreadPoolWorkStealingTest
+ * 校验失败时抛出AssertionError
+ */
+public class ThreadPoolWorkStealingTest {
+
+    public static void main(String[] args) throws Exception {
+        for (boolean workStealing : new boolean[] { false, true }) {
+            checkBoundedSaturation(workStealing);
+        }
+        checkUnbounded(200000);
+    }
+
+    // 核心线程2, 最大线程4, 队列容量10: 第3个任务起进入队列, 第13个任务起扩容, 第15个任务被拒绝
+    private static void checkBoundedSaturation(boolean workStealing) throws InterruptedException {
+        final int core = 2, max = 4, capacity = 10;
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(core, max, 1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<Runnable>(capacity), Executors.defaultThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy(), workStealing);
+        final CountDownLatch gate = new CountDownLatch(1);
+        Runnable blocker = new Runnable() {
+            public void run() {
+                try {
+                    gate.await();
+                } catch (InterruptedException ignore) {
+                }
+            }
+        };
+        int accepted = 0;
+        try {
+            for (int i = 0; i < 100; i++) {
+                pool.execute(blocker);
+                accepted++;
+                if (accepted == core + capacity && pool.getPoolSize() != core)
+                    throw new AssertionError("队列未满就扩容: 线程数" + pool.getPoolSize());
+            }
+        } catch (RejectedExecutionException expected) {
+        } finally {
+            gate.countDown();
+            pool.shutdown();
+        }
+        if (!pool.awaitTermination(10, TimeUnit.SECONDS))
+            throw new AssertionError("线程池未能终止");
+        System.out.println("workStealing=" + workStealing + " 接受任务数: " + accepted);
+        if (accepted != max + capacity)
+            throw new AssertionError("接受了" + accepted + "个任务, 应为" + (max + capacity));
+        if (pool.getCompletedTaskCount() != accepted)
+            throw new AssertionError("完成任务数" + pool.getCompletedTaskCount() + " != " + accepted);
+    }
+
+    // 无界队列可以使用本地队列, 所有任务都应执行且只执行一次
+    private static void checkUnbounded(int tasks) throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(4, 4, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<Runnable>(), Executors.defaultThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy(), true);
+        final AtomicInteger ran = new AtomicInteger();
+        Runnable task = new Runnable() {
+            public void run() {
+                ran.incrementAndGet();
+            }
+        };
+        for (int i = 0; i < tasks; i++)
+            pool.execute(task);
+        pool.shutdown();
+        if (!pool.awaitTermination(60, TimeUnit.SECONDS))
+            throw new AssertionError("线程池未能终止");
+        System.out.println("无界队列执行任务数: " + ran.get());
+        if (ran.get() != tasks)
+            throw new AssertionError("执行了" + ran.get() + "个任务, 应为" + tasks);
+    }
+}
@@ -0,0 +1,157 @@
+package com.jsonyao.cs.lang;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+
+/**
+ * 紧凑字符串基准测试: 分别统计ASCII与中文字符串的单个字符串分配字节数, 以及equals、hashCode、
+ * indexOf、compareTo和StringBuilder拼接的耗时
+ *
+ * 用法: java [-XX:+CompactStrings] com.jsonyao.cs.lang.CompactStringBenchmark [字符串个数]
+ * 分别在开启与关闭紧凑字符串时运行, 对比两次输出(分配字节数需HotSpot的com.sun.management.ThreadMXBean)
+ */
+public class CompactStringBenchmark {
+
+    // 防止JIT消除结果
+    static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        System.out.println("COMPACT_STRINGS=" + compactStrings() + ", count=" + count);
+        String[] ascii = strings(count, "user-session-key-");
+        String[] chinese = strings(count, "用户会话键-");
+        for (int round = 0; round < 3; round++) {
+            boolean warmup = round == 0;
+            run(warmup, "ASCII", ascii);
+            run(warmup, "中文", chinese);
+        }
+    }
+
+    private static void run(boolean warmup, String name, String[] strs) {
+        report(warmup, name + " 新建字符串", create(strs));
+        report(warmup, name + " equals", equalsAll(strs));
+        report(warmup, name + " hashCode", hashAll(strs));
+        report(warmup, name + " indexOf", indexOfAll(strs));
+        report(warmup, name + " compareTo", compareAll(strs));
+        report(warmup, name + " StringBuilder", buildAll(strs));
+    }
+
+    // 生成count个以prefix开头、以序号结尾的字符串
+    private static String[] strings(int count, String prefix) {
+        String[] strs = new String[count];
+        for (int i = 0; i < count; i++)
+            strs[i] = prefix + i;
+        return strs;
+    }
+
+    // 复制每个字符串的内容新建字符串, 分配字节数即单个字符串(含value数组)的大小
+    private static long[] create(String[] strs) {
+        char[][] chars = new char[strs.length][];
+        for (int i = 0; i < strs.length; i++)
+            chars[i] = strs[i].toCharArray();
+        long[] m = begin();
+        long h = 0;
+        for (char[] c : chars)
+            h += new String(c).length();
+        sink += h;
+        return end(m, strs.length);
+    }
+
+    // 与内容相同但不是同一对象的字符串比较
+    private static long[] equalsAll(String[] strs) {
+        String[] copies = copies(strs);
+        long[] m = begin();
+        int n = 0;
+        for (int i = 0; i < strs.length; i++)
+            if (strs[i].equals(copies[i]))
+                n++;
+        sink += n;
+        return end(m, strs.length);
+    }
+
+    // 新复制的字符串没有缓存的哈希值
+    private static long[] hashAll(String[] strs) {
+        String[] copies = copies(strs);
+        long[] m = begin();
+        long h = 0;
+        for (String s : copies)
+            h += s.hashCode();
+        sink += h;
+        return end(m, strs.length);
+    }
+
+    private static long[] indexOfAll(String[] strs) {
+        long[] m = begin();
+        long h = 0;
+        for (String s : strs)
+            h += s.indexOf("-1") + s.indexOf('9');
+        sink += h;
+        return end(m, strs.length);
+    }
+
+    // 与相邻字符串比较, 公共前缀较长
+    private static long[] compareAll(String[] strs) {
+        long[] m = begin();
+        long h = 0;
+        for (int i = 1; i < strs.length; i++)
+            h += strs[i].compareTo(strs[i - 1]);
+        sink += h;
+        return end(m, strs.length);
+    }
+
+    private static long[] buildAll(String[] strs) {
+        StringBuilder sb = new StringBuilder(64);
+        long[] m = begin();
+        long h = 0;
+        for (int i = 0; i < strs.length; i++) {
+            sb.setLength(0);
+            sb.append(strs[i]).append('=').append(i).append(';');
+            h += sb.toString().length();
+        }
+        sink += h;
+        return end(m, strs.length);
+    }
+
+    private static String[] copies(String[] strs) {
+        String[] copies = new String[strs.length];
+        for (int i = 0; i < strs.length; i++)
+            copies[i] = new String(strs[i].toCharArray());
+        return copies;
+    }
+
+    // 记录开始时刻与当前线程已分配字节数
+    private static long[] begin() {
+        return new long[] { System.nanoTime(), allocatedBytes() };
+    }
+
+    // 返回每个字符串的平均耗时(ns)与平均分配字节数
+    private static long[] end(long[] m, int count) {
+        long nanos = System.nanoTime() - m[0];
+        long bytes = allocatedBytes() - m[1];
+        return new long[] { nanos / count, bytes < 0 ? -1 : bytes / count };
+    }
+
+    private static void report(boolean warmup, String name, long[] r) {
+        if (!warmup)
+            System.out.printf("%-22s %6d ns/op %8d B/op%n", name, r[0], r[1]);
+    }
+
+    // 当前线程累计分配的字节数, 不支持时返回-1
+    private static long allocatedBytes() {
+        Object bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    // 读取String.COMPACT_STRINGS, 该字段由虚拟机在启动时设置
+    private static String compactStrings() {
+        try {
+            Field f = String.class.getDeclaredField("COMPACT_STRINGS");
+            f.setAccessible(true);
+            return String.valueOf(f.getBoolean(null));
+        } catch (Exception e) {
+            return "未知";
+        }
+    }
+}
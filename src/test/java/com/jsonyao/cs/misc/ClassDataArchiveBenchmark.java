@@ -0,0 +1,127 @@
+package com.jsonyao.cs.misc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 应用类数据归档(sun.misc.ClassDataArchive)启动基准测试: 子进程加载类路径上所有jar中的类,
+ * 分别统计不使用归档、训练运行(dump归档)以及使用归档时的进程总耗时与类加载耗时
+ *
+ * 用法: java -cp <含若干jar的类路径> com.jsonyao.cs.misc.ClassDataArchiveBenchmark [每种方式的运行次数]
+ * 类路径中的jar越多、类越多, 差别越明显
+ */
+public class ClassDataArchiveBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("child")) {
+            child(args[1]);
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String cp = System.getProperty("java.class.path");
+        File list = File.createTempFile("classes", ".lst");
+        File archive = File.createTempFile("app", ".cda");
+        list.deleteOnExit();
+        archive.deleteOnExit();
+        int count = writeClassList(cp, list);
+        System.out.println("classes=" + count + ", runs=" + runs);
+
+        // 训练运行: 记录加载的类并在退出时写归档
+        long[] dump = launch(cp, list, "-Dsun.misc.ClassDataArchive.dump=" + archive);
+        System.out.printf("训练运行(dump)    进程 %6d ms  类加载 %6d ms  归档 %,d 字节%n",
+                dump[0], dump[1], archive.length());
+
+        for (int round = 0; round < 2; round++) {
+            boolean warmup = round == 0;
+            int n = warmup ? 1 : runs;
+            report(warmup, "不使用归档", cp, list, n, null);
+            report(warmup, "使用归档", cp, list, n, "-Dsun.misc.ClassDataArchive=" + archive);
+        }
+    }
+
+    // 子进程: 按列表加载类(不初始化), 打印加载成功的类数和耗时
+    private static void child(String listFile) throws IOException {
+        long start = System.nanoTime();
+        ClassLoader loader = ClassLoader.getSystemClassLoader();
+        int loaded = 0;
+        try (BufferedReader in = new BufferedReader(new FileReader(listFile))) {
+            String name;
+            while ((name = in.readLine()) != null) {
+                try {
+                    Class.forName(name, false, loader);
+                    loaded++;
+                } catch (Throwable t) {
+                    // 缺少依赖的类忽略
+                }
+            }
+        }
+        System.out.println(loaded + " " + (System.nanoTime() - start) / 1000000);
+    }
+
+    // 运行n次子进程, 打印平均的进程总耗时和类加载耗时
+    private static void report(boolean warmup, String name, String cp, File list, int n,
+                               String option) throws Exception {
+        long total = 0, load = 0;
+        for (int i = 0; i < n; i++) {
+            long[] r = launch(cp, list, option);
+            total += r[0];
+            load += r[1];
+        }
+        if (!warmup)
+            System.out.printf("%-12s 进程 %6d ms  类加载 %6d ms%n", name, total / n, load / n);
+    }
+
+    // 启动子进程, 返回{进程总耗时, 子进程报告的类加载耗时}
+    private static long[] launch(String cp, File list, String option) throws Exception {
+        List<String> cmd = new ArrayList<String>();
+        cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (option != null)
+            cmd.add(option);
+        cmd.add("-cp");
+        cmd.add(cp);
+        cmd.add(ClassDataArchiveBenchmark.class.getName());
+        cmd.add("child");
+        cmd.add(list.getPath());
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        String line, last = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+            while ((line = in.readLine()) != null)
+                last = line;
+        }
+        if (p.waitFor() != 0 || last == null)
+            throw new IllegalStateException("子进程失败: " + last);
+        long nanos = System.nanoTime() - start;
+        return new long[] {nanos / 1000000, Long.parseLong(last.substring(last.indexOf(' ') + 1))};
+    }
+
+    // 把类路径上所有jar中的类名写入列表文件, 返回类的个数
+    private static int writeClassList(String cp, File list) throws IOException {
+        int count = 0;
+        try (PrintWriter out = new PrintWriter(list)) {
+            for (String path : cp.split(File.pathSeparator)) {
+                if (!path.endsWith(".jar"))
+                    continue;
+                try (JarFile jar = new JarFile(path)) {
+                    for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); ) {
+                        String name = e.nextElement().getName();
+                        if (name.endsWith(".class") && !name.startsWith("META-INF/")) {
+                            out.println(name.substring(0, name.length() - 6).replace('/', '.'));
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+}
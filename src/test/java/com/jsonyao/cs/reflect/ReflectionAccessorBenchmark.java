@@ -0,0 +1,108 @@
+package com.jsonyao.cs.reflect;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * 反射访问器基准测试: 对一批JDK类的无参只读方法, 统计每个方法首次Method.invoke的耗时、
+ * 期间新加载的类数(生成的访问器类), 以及之后稳定状态下每次invoke的耗时
+ *
+ * 用法: java [-Dsun.reflect.noInflation=true] [-Dsun.reflect.sharedAccessorLoaders=true]
+ *           com.jsonyao.cs.reflect.ReflectionAccessorBenchmark [稳定状态的调用轮数]
+ * 分别以默认(先本地调用后生成字节码)、noInflation、noInflation加sharedAccessorLoaders运行, 对比输出
+ */
+public class ReflectionAccessorBenchmark {
+
+    // 只调用这些前缀的方法, 都不会修改对象
+    private static final String[] PREFIXES = {"get", "is", "to", "hash", "size", "length", "byteValue",
+            "shortValue", "intValue", "longValue", "floatValue", "doubleValue", "signum", "abs", "negate",
+            "trim", "keySet", "values", "entrySet"};
+
+    // 防止JIT消除结果
+    static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        Object[] targets = {"Benchmark", 12345, 12345L, 1.5d, 2.5f, (short) 7, (byte) 3, 'c', true,
+                BigInteger.valueOf(123456789), new BigDecimal("1234.5678"), new Date(0), Locale.CHINA,
+                UUID.nameUUIDFromBytes(new byte[1]), new ArrayList<String>(Arrays.asList("a", "b")),
+                new HashMap<String, String>(), new StringBuilder("sb"), Thread.currentThread().getName()};
+        List<Object> receivers = new ArrayList<Object>();
+        List<Method> methods = new ArrayList<Method>();
+        for (Object target : targets)
+            collect(target, receivers, methods);
+        System.out.println("noInflation=" + System.getProperty("sun.reflect.noInflation")
+                + ", sharedAccessorLoaders=" + System.getProperty("sun.reflect.sharedAccessorLoaders")
+                + ", methods=" + methods.size());
+
+        // 首次调用: 每个Method各调用一次
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+        long loadedBefore = classes.getTotalLoadedClassCount();
+        long start = System.nanoTime();
+        invokeAll(receivers, methods, 1);
+        long firstNanos = System.nanoTime() - start;
+        long loaded = classes.getTotalLoadedClassCount() - loadedBefore;
+        System.out.printf("首次调用   %,10.1f us/方法  新加载类 %d%n",
+                firstNanos / 1000.0 / methods.size(), loaded);
+
+        // 稳定状态: 默认模式下前15次走本地调用, 预热越过膨胀阈值后再计时
+        invokeAll(receivers, methods, 50);
+        for (int round = 0; round < 3; round++) {
+            boolean warmup = round == 0;
+            start = System.nanoTime();
+            invokeAll(receivers, methods, rounds);
+            long nanos = System.nanoTime() - start;
+            if (!warmup)
+                System.out.printf("稳定状态   %,10.1f ns/次%n", (double) nanos / rounds / methods.size());
+        }
+        System.out.println("类总数 " + classes.getLoadedClassCount() + ", 已卸载 " + classes.getUnloadedClassCount());
+    }
+
+    // 收集target所属类中声明的public无参、非void、名字为只读前缀且不会抛异常的实例方法
+    private static void collect(Object target, List<Object> receivers, List<Method> methods) {
+        for (Method m : target.getClass().getDeclaredMethods()) {
+            if (!Modifier.isPublic(m.getModifiers()) || Modifier.isStatic(m.getModifiers())
+                    || m.getParameterTypes().length != 0 || m.getReturnType() == void.class
+                    || !readOnly(m.getName()))
+                continue;
+            receivers.add(target);
+            methods.add(m);
+        }
+    }
+
+    private static boolean readOnly(String name) {
+        // xxxValueExact等方法在超出范围时抛异常
+        if (name.endsWith("Exact"))
+            return false;
+        for (String prefix : PREFIXES) {
+            if (name.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    // 对每个方法连续调用times次
+    private static void invokeAll(List<Object> receivers, List<Method> methods, int times) throws Exception {
+        long h = 0;
+        for (int i = 0; i < methods.size(); i++) {
+            Method m = methods.get(i);
+            Object receiver = receivers.get(i);
+            for (int t = 0; t < times; t++) {
+                Object r = m.invoke(receiver);
+                h += r == null ? 0 : 1;
+            }
+        }
+        sink += h;
+    }
+}
@@ -0,0 +1,85 @@
+package com.jsonyao.cs.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Formatter;
+
+/**
+ * Formatter预编译模板基准测试: 对比String.format(每次解析格式串)与Formatter.compile得到的Template
+ *
+ * 用法: java com.jsonyao.cs.util.FormatterTemplateBenchmark [每轮调用次数]
+ * 分别打印每次调用的耗时与分配字节数(需HotSpot的com.sun.management.ThreadMXBean)
+ */
+public class FormatterTemplateBenchmark {
+
+    private static final String FORMAT = "user=%s id=%d flags=%x elapsed=%dms";
+
+    private static final Formatter.Template TEMPLATE = Formatter.compile(FORMAT);
+
+    // 防止JIT消除结果
+    private static int sink;
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        for (int round = 0; round < 3; round++) {
+            boolean warmup = round == 0;
+            report(warmup, "String.format", stringFormat(calls));
+            report(warmup, "Template.format", templateFormat(calls));
+            report(warmup, "Template.formatTo(复用)", templateFormatTo(calls));
+        }
+        System.out.println(sink);
+    }
+
+    // 每次调用都新建Formatter并用正则解析格式串
+    private static long[] stringFormat(int calls) {
+        long[] m = begin();
+        for (int i = 0; i < calls; i++)
+            sink += String.format(FORMAT, "alice", i, i, i & 1023).length();
+        return end(m, calls);
+    }
+
+    // 复用已解析的模板, 每次调用仍返回新字符串
+    private static long[] templateFormat(int calls) {
+        long[] m = begin();
+        for (int i = 0; i < calls; i++)
+            sink += TEMPLATE.format("alice", i, i, i & 1023).length();
+        return end(m, calls);
+    }
+
+    // 复用模板、Formatter与StringBuilder, 适合日志等高频场景
+    private static long[] templateFormatTo(int calls) {
+        StringBuilder sb = new StringBuilder(64);
+        Formatter formatter = new Formatter(sb);
+        long[] m = begin();
+        for (int i = 0; i < calls; i++) {
+            sb.setLength(0);
+            TEMPLATE.formatTo(formatter, "alice", i, i, i & 1023);
+            sink += sb.length();
+        }
+        return end(m, calls);
+    }
+
+    // 记录开始时刻与当前线程已分配字节数
+    private static long[] begin() {
+        return new long[] { System.nanoTime(), allocatedBytes() };
+    }
+
+    // 返回每次调用的平均耗时(ns)与平均分配字节数
+    private static long[] end(long[] m, int calls) {
+        long nanos = System.nanoTime() - m[0];
+        long bytes = allocatedBytes() - m[1];
+        return new long[] { nanos / calls, bytes < 0 ? -1 : bytes / calls };
+    }
+
+    private static void report(boolean warmup, String name, long[] r) {
+        if (!warmup)
+            System.out.printf("%-26s %6d ns/op %8d B/op%n", name, r[0], r[1]);
+    }
+
+    // 当前线程累计分配的字节数, 不支持时返回-1
+    private static long allocatedBytes() {
+        Object bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+}
@@ -0,0 +1,117 @@
+package com.jsonyao.cs.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HashMap树化桶测试: 大量hash相同的键都放进同一个桶时, 可相互比较的键应通过红黑树快速查找;
+ * 不可相互比较的键无法在树中排序, 查找不应比逐个遍历链表慢(桶应保持为链表)
+ *
+ * 用法: java com.jsonyao.cs.util.HashMapCollisionTest [键个数]
+ * 校验失败时抛出AssertionError
+ */
+public class HashMapCollisionTest {
+
+    // hash全部相同且可相互比较的键
+    static final class ComparableKey implements Comparable<ComparableKey> {
+        final int value;
+
+        ComparableKey(int value) {
+            this.value = value;
+        }
+
+        public int hashCode() {
+            return 42;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof ComparableKey && ((ComparableKey) o).value == value;
+        }
+
+        public int compareTo(ComparableKey o) {
+            return Integer.compare(value, o.value);
+        }
+    }
+
+    // hash全部相同且不可比较的键
+    static final class CollidingKey {
+        final int value;
+
+        CollidingKey(int value) {
+            this.value = value;
+        }
+
+        public int hashCode() {
+            return 42;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).value == value;
+        }
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        checkComparable(count);
+        checkColliding(count);
+    }
+
+    // 可比较的键: 红黑树按compareTo排序, 查找远快于遍历链表
+    private static void checkComparable(int count) {
+        List<Object> keys = new ArrayList<Object>();
+        for (int i = 0; i < count; i++)
+            keys.add(new ComparableKey(i));
+        long map = timeMap(keys);
+        long list = timeList(keys);
+        System.out.println("可比较的键: HashMap " + map / 1000000 + "ms, 遍历链表 " + list / 1000000 + "ms");
+        if (map > list)
+            throw new AssertionError("可比较的冲突键没有通过红黑树查找");
+    }
+
+    // 不可比较的键: 红黑树要搜索两棵子树, 应保持为链表, 耗时与遍历链表相当
+    private static void checkColliding(int count) {
+        List<Object> keys = new ArrayList<Object>();
+        for (int i = 0; i < count; i++)
+            keys.add(new CollidingKey(i));
+        long map = timeMap(keys);
+        long list = timeList(keys);
+        System.out.println("不可比较的键: HashMap " + map / 1000000 + "ms, 遍历链表 " + list / 1000000 + "ms");
+        if (map > 4 * list)
+            throw new AssertionError("不可比较的冲突键比遍历链表慢太多");
+    }
+
+    // 逐个put再逐个get所有键的耗时(纳秒)
+    private static long timeMap(List<Object> keys) {
+        long start = System.nanoTime();
+        Map<Object, Integer> m = new HashMap<Object, Integer>();
+        for (int i = 0; i < keys.size(); i++)
+            m.put(keys.get(i), i);
+        for (int i = 0; i < keys.size(); i++) {
+            Integer v = m.get(keys.get(i));
+            if (v == null || v != i)
+                throw new AssertionError("get返回错误的值: " + v + ", 应为" + i);
+        }
+        if (m.size() != keys.size())
+            throw new AssertionError("size为" + m.size() + ", 应为" + keys.size());
+        return System.nanoTime() - start;
+    }
+
+    // 与链表桶相同的比较次数: 每次插入和查找都遍历一遍已有的键
+    private static long timeList(List<Object> keys) {
+        long start = System.nanoTime();
+        List<Object> l = new LinkedList<Object>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (l.contains(keys.get(i)))
+                throw new AssertionError("重复的键");
+            l.add(keys.get(i));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            if (l.indexOf(keys.get(i)) != i)
+                throw new AssertionError("indexOf返回错误的位置");
+        }
+        return System.nanoTime() - start;
+    }
+}
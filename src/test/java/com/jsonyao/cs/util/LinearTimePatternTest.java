@@ -0,0 +1,117 @@
+package com.jsonyao.cs.util;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pattern.LINEAR_TIME差分测试: 以回溯引擎为准, 比较两种引擎find()找到的每个匹配的起止位置,
+ * 重点覆盖*和+中循环体可以匹配空串(\b、$、^、可选项等零宽分支)的情况, 另外随机生成模式
+ * (分组、分支、贪婪/懒惰量词、零宽断言任意嵌套)做差分
+ *
+ * 用法: java com.jsonyao.cs.util.LinearTimePatternTest [每个模式的随机输入个数] [随机模式个数]
+ * 发现不一致时抛出AssertionError并打印模式和输入
+ */
+public class LinearTimePatternTest {
+
+    private static final String[] PATTERNS = {
+            "(?:\\b|[a-])*-", "(?:\\b|[a-])*?-", "(?:\\b|.)+$", "(?:\\b|.)*$", "(?:\\b|a)+b", "(?:\\b|a|)+b",
+            "(?:\\B|-)*x", "(?:^|a)*b", "(?:$|a)*", "(?:a?)+?b", "(?:a?)*b", "(?:a*)*b", "(?:a*|b)*c",
+            "(?:\\b|\\w)+\\W", "(?:(?:\\b|a)*|b)+c", "(?:\\b|[a-]){2,}-", "(?:|a)*", "(?:a|b|)+", "(?:x?)*y",
+            "(?:\\b|-)+(?:\\b|a)*", "(?m)(?:^|$|a)+-", "(?:b*.??|.*)*",
+    };
+
+    private static final int[] FLAGS = {0, Pattern.DOTALL, Pattern.MULTILINE, Pattern.CASE_INSENSITIVE};
+
+    private static final String ALPHABET = "ab-xy \nA";
+
+    public static void main(String[] args) {
+        int inputs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int randomPatterns = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        Random random = new Random(42);
+        int cases = 0;
+
+        // 同一位置上的两个线程循环开始位置不同, 不能只按指令去重
+        expect("(?:b*.??|.*)*", "bAa", "0-1 1-1 2-2 3-3 ");
+        for (String regex : PATTERNS) {
+            for (int flags : FLAGS) {
+                Pattern backtracking = Pattern.compile(regex, flags);
+                Pattern linear = Pattern.compile(regex, flags | Pattern.LINEAR_TIME);
+                check(backtracking, linear, "a--");
+                check(backtracking, linear, "ab\n");
+                for (int n = 0; n < inputs; n++) {
+                    check(backtracking, linear, randomInput(random));
+                    cases++;
+                }
+            }
+        }
+        for (int n = 0; n < randomPatterns; n++) {
+            String regex = alternation(random, 0);
+            int flags = FLAGS[random.nextInt(FLAGS.length)];
+            Pattern backtracking = Pattern.compile(regex, flags);
+            Pattern linear = Pattern.compile(regex, flags | Pattern.LINEAR_TIME);
+            for (int k = 0; k < 8; k++) {
+                check(backtracking, linear, randomInput(random));
+                cases++;
+            }
+        }
+        System.out.println("patterns=" + PATTERNS.length + "+" + randomPatterns + ", cases=" + cases + ", 全部一致");
+    }
+
+    private static void expect(String regex, String input, String expected) {
+        String actual = matches(Pattern.compile(regex, Pattern.LINEAR_TIME).matcher(input));
+        if (!expected.equals(actual))
+            throw new AssertionError("pattern=" + regex + " input=\"" + input + "\" expected " + expected
+                    + " but was " + actual);
+    }
+
+    // 随机模式: 分支由序列组成, 序列由带量词的原子组成, 原子可以是嵌套的分组(最多两层, 更深的嵌套会让回溯引擎指数级变慢)
+    private static String alternation(Random random, int depth) {
+        StringBuilder sb = new StringBuilder(sequence(random, depth));
+        while (random.nextInt(3) == 0)
+            sb.append('|').append(sequence(random, depth));
+        return sb.toString();
+    }
+
+    private static String sequence(Random random, int depth) {
+        StringBuilder sb = new StringBuilder();
+        int n = random.nextInt(3) + (depth == 0 ? 1 : 0);
+        for (int i = 0; i < n; i++)
+            sb.append(atom(random, depth)).append(QUANTIFIERS[random.nextInt(QUANTIFIERS.length)]);
+        return sb.toString();
+    }
+
+    private static String atom(Random random, int depth) {
+        int k = random.nextInt(depth > 1 ? ATOMS.length : ATOMS.length + 4);
+        if (k < ATOMS.length)
+            return ATOMS[k];
+        return (k % 2 == 0 ? "(" : "(?:") + alternation(random, depth + 1) + ")";
+    }
+
+    private static final String[] ATOMS = {"a", "b", "A", "-", ".", "[ab]", "\\b", "$", "^"};
+
+    private static final String[] QUANTIFIERS = {"", "", "", "", "", "*", "+", "?", "*?", "+?", "??", "{0,2}", "{1,3}"};
+
+    // 比较两个引擎在同一输入上find()的全部匹配
+    private static void check(Pattern backtracking, Pattern linear, String input) {
+        String expected = matches(backtracking.matcher(input));
+        String actual = matches(linear.matcher(input));
+        if (!expected.equals(actual))
+            throw new AssertionError("pattern=" + backtracking.pattern() + " flags=" + backtracking.flags()
+                    + " input=\"" + input.replace("\n", "\\n") + "\" expected " + expected + " but was " + actual);
+    }
+
+    private static String matches(Matcher m) {
+        StringBuilder sb = new StringBuilder();
+        while (m.find())
+            sb.append(m.start()).append('-').append(m.end()).append(' ');
+        return sb.toString();
+    }
+
+    private static String randomInput(Random random) {
+        char[] cs = new char[random.nextInt(8)];
+        for (int i = 0; i < cs.length; i++)
+            cs[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        return new String(cs);
+    }
+}
@@ -0,0 +1,69 @@
+package com.jsonyao.cs.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pattern.acquireMatcher/Matcher.release测试: 校验同一线程内释放的Matcher会被再次取出复用,
+ * 以及用过匹配器池的Pattern在不再被引用后可以被垃圾回收(池不会让Pattern在线程存活期间一直可达)
+ *
+ * 用法: java com.jsonyao.cs.util.PatternMatcherPoolTest [Pattern个数]
+ * 校验失败时抛出AssertionError
+ */
+public class PatternMatcherPoolTest {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        checkReuse();
+        checkCollectable(count);
+    }
+
+    // 释放后再次获取应得到同一个Matcher, 同时持有的两个Matcher互不相同
+    private static void checkReuse() {
+        Pattern p = Pattern.compile("(\\w+)@(\\w+)");
+        Matcher m1 = p.acquireMatcher("a@b");
+        Matcher m2 = p.acquireMatcher("c@d");
+        if (m1 == m2)
+            throw new AssertionError("同时获取的Matcher相同");
+        if (!m1.matches() || !m1.group(2).equals("b"))
+            throw new AssertionError("匹配结果错误");
+        m1.release();
+        Matcher m3 = p.acquireMatcher("x@y");
+        if (m3 != m1)
+            throw new AssertionError("释放的Matcher没有被复用");
+        if (!m3.matches() || !m3.group(1).equals("x"))
+            throw new AssertionError("复用的Matcher匹配结果错误");
+        m3.release();
+        m2.release();
+        System.out.println("复用: 通过");
+    }
+
+    // 每个Pattern获取并释放一个Matcher后丢弃, GC后统计仍可达的Pattern个数
+    private static void checkCollectable(int count) throws InterruptedException {
+        List<WeakReference<Pattern>> refs = new ArrayList<WeakReference<Pattern>>();
+        for (int i = 0; i < count; i++) {
+            Pattern p = Pattern.compile("key" + i + "=(\\d+)");
+            Matcher m = p.acquireMatcher("key" + i + "=42");
+            if (!m.matches())
+                throw new AssertionError("匹配失败: " + p);
+            m.release();
+            refs.add(new WeakReference<Pattern>(p));
+        }
+        int alive = count;
+        for (int round = 0; round < 10 && alive > 0; round++) {
+            System.gc();
+            Thread.sleep(100);
+            alive = 0;
+            for (WeakReference<Pattern> ref : refs) {
+                if (ref.get() != null)
+                    alive++;
+            }
+        }
+        System.out.println("GC后仍可达的Pattern: " + alive + "/" + count);
+        if (alive > 0)
+            throw new AssertionError(alive + "个Pattern在丢弃后仍可达");
+    }
+}
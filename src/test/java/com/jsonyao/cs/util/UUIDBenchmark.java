@@ -0,0 +1,114 @@
+package com.jsonyao.cs.util;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UUID生成吞吐量基准测试: 对比共享SecureRandom(旧randomUUID实现)、每线程SecureRandom的randomUUID、
+ * 使用ThreadLocalRandom的randomUUID(Random)以及时间有序的timeOrderedUUID
+ *
+ * 用法: java com.jsonyao.cs.util.UUIDBenchmark [每个线程生成的UUID个数]
+ * 每种方式都在1~32个线程下运行, 打印总吞吐量
+ */
+public class UUIDBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+
+    private static final String[] MODES = {"共享SecureRandom", "randomUUID()", "randomUUID(ThreadLocalRandom)", "timeOrderedUUID()"};
+
+    // 旧实现: 所有线程共用一个SecureRandom, nextBytes是同步方法
+    private static final SecureRandom SHARED = new SecureRandom();
+
+    // 防止JIT消除结果
+    static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        System.out.println("processors=" + Runtime.getRuntime().availableProcessors() + ", perThread=" + perThread);
+        for (int round = 0; round < 2; round++) {
+            boolean warmup = round == 0;
+            for (int mode = 0; mode < MODES.length; mode++) {
+                if (!warmup)
+                    System.out.println(MODES[mode]);
+                for (int threads : THREADS) {
+                    int count = warmup ? perThread / 10 : perThread;
+                    long nanos = run(mode, threads, count);
+                    if (!warmup) {
+                        double opsPerSec = (double) threads * count * TimeUnit.SECONDS.toNanos(1) / nanos;
+                        System.out.printf("  threads=%3d  %,14.0f uuids/s%n", threads, opsPerSec);
+                    }
+                }
+            }
+        }
+        checkOrder();
+    }
+
+    // 启动threads个线程各生成count个UUID, 返回全部完成的耗时
+    private static long run(final int mode, int threads, final int count) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long h = 0;
+                    for (int i = 0; i < count; i++)
+                        h += next(mode).getLeastSignificantBits();
+                    sink += h;
+                    done.countDown();
+                }
+            }.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - begin;
+    }
+
+    private static UUID next(int mode) {
+        switch (mode) {
+            case 0:
+                return sharedRandomUUID();
+            case 1:
+                return UUID.randomUUID();
+            case 2:
+                return UUID.randomUUID(ThreadLocalRandom.current());
+            default:
+                return UUID.timeOrderedUUID();
+        }
+    }
+
+    // 与改动前的randomUUID相同: 每次都从共享的SecureRandom取16个字节
+    private static UUID sharedRandomUUID() {
+        byte[] b = new byte[16];
+        SHARED.nextBytes(b);
+        b[6] = (byte) ((b[6] & 0x0f) | 0x40);
+        b[8] = (byte) ((b[8] & 0x3f) | 0x80);
+        long msb = 0, lsb = 0;
+        for (int i = 0; i < 8; i++)
+            msb = (msb << 8) | (b[i] & 0xff);
+        for (int i = 8; i < 16; i++)
+            lsb = (lsb << 8) | (b[i] & 0xff);
+        return new UUID(msb, lsb);
+    }
+
+    // 校验timeOrderedUUID严格递增且版本号为7
+    private static void checkOrder() {
+        UUID prev = UUID.timeOrderedUUID();
+        for (int i = 0; i < 1000000; i++) {
+            UUID u = UUID.timeOrderedUUID();
+            if (u.compareTo(prev) <= 0 || u.version() != 7 || u.variant() != 2)
+                throw new AssertionError(prev + " -> " + u);
+            prev = u;
+        }
+        System.out.println("timeOrderedUUID: 1000000个UUID严格递增, 最后一个为" + prev);
+    }
+}